@@ -5,7 +5,6 @@
 package actions;
 
 import java.awt.GridLayout;
-import java.awt.Image;
 import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
@@ -13,13 +12,13 @@ import java.util.HashMap;
 import java.util.Map;
 
 import javax.swing.AbstractAction;
-import javax.swing.ImageIcon;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
 
+import tools.AssetManager;
 import view.GamePanel;
 
 /**
@@ -95,11 +94,9 @@ public class SetControls extends AbstractAction implements KeyListener {
         if (!myGamePanel.isPaused()) {
             myGamePanel.pause();
         }
-        Image image = new ImageIcon("images/tetris.png").getImage();  
-        image = image.getScaledInstance(ICON_DIMENSIONS, ICON_DIMENSIONS, 
-                                        java.awt.Image.SCALE_SMOOTH);
         JOptionPane.showMessageDialog(myFrame, getPanel(), "Set Controls", 
-                                      JOptionPane.OK_OPTION, new ImageIcon(image));
+                                      JOptionPane.OK_OPTION, 
+                                      AssetManager.getIcon(AssetManager.LOGO, ICON_DIMENSIONS));
         for (KeyListener l : myGamePanel.getKeyListeners()) {
             myGamePanel.removeKeyListener(l);
         }
@@ -0,0 +1,109 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package bench;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+
+import view.GamePanel;
+import view.SpriteCache;
+import view.StatsPanel;
+
+/**
+ * Measures the bytes allocated by painting the game board and the statistics
+ * panel while a game runs, and fails when a paint allocates more than a
+ * budget. Both panels are painted into one offscreen image with one graphics
+ * object, so only the allocations of the drawing code itself are counted.
+ * Needs a JVM whose thread bean reports allocated bytes.
+ *
+ * <p>Arguments: [number of paints] [allowed bytes per paint].
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+final class AllocationBenchmark {
+
+    /**
+     * The default number of paints measured.
+     */
+    private static final double DEFAULT_PAINTS = 20000;
+
+    /**
+     * The default number of bytes a paint may allocate.
+     */
+    private static final double DEFAULT_BUDGET = 256;
+
+    /**
+     * The number of paints run before measuring, to warm up the JIT and caches.
+     */
+    private static final int WARM_UP = 5000;
+
+    /**
+     * The width of the board.
+     */
+    private static final int WIDTH = 10;
+
+    /**
+     * The height of the board.
+     */
+    private static final int HEIGHT = 20;
+
+    /**
+     * The width and height of each panel, in pixels.
+     */
+    private static final int PANEL_SIZE = 500;
+
+    /**
+     * Constructor to ensure uninstantiability.
+     */
+    private AllocationBenchmark() {
+        //ensure uninstantiability
+    }
+
+    /**
+     * Runs the benchmark, exiting with a failure status when over budget.
+     *
+     * @param the_args the optional number of paints and bytes allowed per paint
+     */
+    static void run(final String[] the_args) {
+        final int paints = (int) BenchmarkMain.argument(the_args, 0, DEFAULT_PAINTS);
+        final double budget = BenchmarkMain.argument(the_args, 1, DEFAULT_BUDGET);
+        final com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long thread = Thread.currentThread().getId();
+
+        final SpriteCache sprites = new SpriteCache();
+        final GamePanel board = new GamePanel(WIDTH, HEIGHT, sprites);
+        final StatsPanel stats = new StatsPanel(sprites);
+        board.addGameObserver(stats);
+        board.setSize(PANEL_SIZE, PANEL_SIZE);
+        stats.setSize(PANEL_SIZE, PANEL_SIZE);
+        board.enableSound(false);
+        board.start();
+
+        final BufferedImage image =
+                new BufferedImage(PANEL_SIZE, PANEL_SIZE, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g2d = image.createGraphics();
+        g2d.setClip(0, 0, PANEL_SIZE, PANEL_SIZE);
+        long allocated = 0;
+        for (int i = 0; i < WARM_UP + paints; i++) {
+            final long before = threads.getThreadAllocatedBytes(thread);
+            board.paintComponent(g2d);
+            stats.paintComponent(g2d);
+            if (i >= WARM_UP) {
+                allocated += threads.getThreadAllocatedBytes(thread) - before;
+            }
+        }
+        g2d.dispose();
+
+        final double perPaint = (double) allocated / paints;
+        System.out.printf("bytes allocated per paint: %.1f (budget %.1f)%n", perPaint, budget);
+        if (perPaint > budget) {
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package bench;
+
+import java.util.Arrays;
+
+/**
+ * Entry point of the benchmark harness; the first argument names the benchmark
+ * and the remaining arguments are passed on to it.
+ * 
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+public final class BenchmarkMain {
+    
+    /**
+     * Constructor to ensure uninstantiability.
+     */
+    private BenchmarkMain() {
+        //ensure uninstantiability
+    }
+    
+    /**
+     * Runs the named benchmark.
+     * 
+     * @param the_args the benchmark name followed by its arguments
+     * @throws Exception if the benchmark fails
+     */
+    public static void main(final String[] the_args) throws Exception {
+        final String name;
+        if (the_args.length > 0) {
+            name = the_args[0];
+        } else {
+            name = "";
+        }
+        final String[] args = Arrays.copyOfRange(the_args, Math.min(1, the_args.length),
+                                                 the_args.length);
+        switch (name) {
+            case "sessions":
+                SessionBenchmark.run(args);
+                break;
+            case "input":
+                InputBenchmark.run(args);
+                break;
+            case "alloc":
+                AllocationBenchmark.run(args);
+                break;
+            case "board":
+                LargeBoardBenchmark.run(args);
+                break;
+            default:
+                System.err.println("usage: BenchmarkMain sessions|input|alloc|board [args...]");
+                break;
+        }
+    }
+    
+    /**
+     * Parses an optional numeric benchmark argument.
+     * 
+     * @param the_args the benchmark arguments
+     * @param the_index the position of the argument
+     * @param the_default the value to use when the argument is absent
+     * @return the argument's value
+     */
+    static double argument(final String[] the_args, final int the_index, 
+                           final double the_default) {
+        double result = the_default;
+        if (the_args.length > the_index) {
+            result = Double.parseDouble(the_args[the_index]);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package bench;
+
+import java.awt.EventQueue;
+import java.util.Random;
+
+import engine.GameCommand;
+import engine.GameSnapshot;
+import engine.SimulationLoop;
+import engine.SnapshotPublisher;
+import tools.LatencyHistogram;
+
+/**
+ * Measures input-to-move latency: the time from a key press being posted to
+ * the EDT, as the key listener would see it, until the simulation publishes a
+ * snapshot with the piece moved. Presses alternate left and right at random
+ * intervals so they land at every phase of the simulation step.
+ * 
+ * <p>Arguments: [number of presses].
+ * 
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+final class InputBenchmark {
+    
+    /**
+     * The default number of presses measured.
+     */
+    private static final double DEFAULT_PRESSES = 2000;
+    
+    /**
+     * The number of presses run before measuring, to warm up the JIT.
+     */
+    private static final int WARM_UP = 200;
+    
+    /**
+     * The longest time to wait for a move, in nanoseconds.
+     */
+    private static final long TIMEOUT = 100000000L;
+    
+    /**
+     * The longest pause between presses, in milliseconds.
+     */
+    private static final int MAX_PAUSE = 10;
+    
+    /**
+     * The width of the board.
+     */
+    private static final int WIDTH = 10;
+    
+    /**
+     * The height of the board.
+     */
+    private static final int HEIGHT = 20;
+    
+    /**
+     * Constructor to ensure uninstantiability.
+     */
+    private InputBenchmark() {
+        //ensure uninstantiability
+    }
+    
+    /**
+     * Runs the benchmark.
+     * 
+     * @param the_args the optional number of presses
+     * @throws InterruptedException if interrupted while running
+     */
+    static void run(final String[] the_args) throws InterruptedException {
+        final int presses = (int) BenchmarkMain.argument(the_args, 0, DEFAULT_PRESSES);
+        final SimulationLoop loop = new SimulationLoop(WIDTH, HEIGHT);
+        final SnapshotPublisher publisher = loop.getPublisher();
+        final LatencyHistogram latency = new LatencyHistogram();
+        final Random random = new Random(0);
+        int missed = 0;
+        loop.start();
+        
+        for (int i = 0; i < WARM_UP + presses; i++) {
+            final GameCommand direction;
+            if (i % 2 == 0) {
+                direction = GameCommand.LEFT;
+            } else {
+                direction = GameCommand.RIGHT;
+            }
+            final GameSnapshot before = publisher.getLatest();
+            final long start = System.nanoTime();
+            EventQueue.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    loop.press(direction);
+                }
+            });
+            GameSnapshot after = before;
+            long remaining = TIMEOUT;
+            while (pieceColumn(after) == pieceColumn(before) && remaining > 0) {
+                after = publisher.awaitNewer(after.getSequence(), remaining);
+                remaining = TIMEOUT - (System.nanoTime() - start);
+            }
+            final long elapsed = System.nanoTime() - start;
+            if (i >= WARM_UP) {
+                if (pieceColumn(after) == pieceColumn(before)) {
+                    missed++;
+                } else {
+                    latency.record(elapsed);
+                }
+            }
+            loop.release(direction);
+            Thread.sleep(1 + random.nextInt(MAX_PAUSE));
+        }
+        loop.stop();
+        System.out.println("input-to-move latency: " + latency);
+        System.out.println("presses without a move: " + missed);
+    }
+    
+    /**
+     * Returns the column of the current piece's first block.
+     * 
+     * @param the_snapshot the snapshot
+     * @return the column
+     */
+    private static int pieceColumn(final GameSnapshot the_snapshot) {
+        return the_snapshot.getPieceCoordinate(0, 0);
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package bench;
+
+import java.awt.Graphics2D;
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+import java.awt.image.BufferedImage;
+import java.util.LinkedList;
+import java.util.Random;
+
+import model.Board;
+import model.Piece;
+import tools.LatencyHistogram;
+import view.GamePanel;
+import view.SpriteCache;
+
+/**
+ * Measures a game on a large board: how long locking a piece takes as the
+ * stack grows, and how long a paint of the game panel takes while pieces are
+ * dropped, against the time of one frame at sixty frames a second. Pieces
+ * are moved a random distance and hard dropped, so every lock reaches the
+ * stack, checks for full rows and spawns the next piece. Exits with a
+ * failure status when the 99th percentile of either misses the frame.
+ *
+ * <p>Arguments: [columns] [rows] [pieces] [paints].
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+final class LargeBoardBenchmark {
+
+    /**
+     * The default number of columns.
+     */
+    private static final double DEFAULT_COLUMNS = 1024;
+
+    /**
+     * The default number of rows.
+     */
+    private static final double DEFAULT_ROWS = 4096;
+
+    /**
+     * The default number of pieces locked.
+     */
+    private static final double DEFAULT_PIECES = 200000;
+
+    /**
+     * The default number of paints measured.
+     */
+    private static final double DEFAULT_PAINTS = 5000;
+
+    /**
+     * The number of paints run before measuring, to warm up the JIT and caches.
+     */
+    private static final int WARM_UP = 1000;
+
+    /**
+     * The number of paints between hard drops of the panel's game.
+     */
+    private static final int PAINTS_PER_DROP = 4;
+
+    /**
+     * The width and height of the panel, in pixels.
+     */
+    private static final int PANEL_SIZE = 500;
+
+    /**
+     * The time of one frame, in milliseconds.
+     */
+    private static final double FRAME_MILLIS = 1000.0 / 60;
+
+    /**
+     * Constructor to ensure uninstantiability.
+     */
+    private LargeBoardBenchmark() {
+        //ensure uninstantiability
+    }
+
+    /**
+     * Runs the benchmark, exiting with a failure status when a frame is missed.
+     *
+     * @param the_args the optional board size and numbers of pieces and paints
+     */
+    static void run(final String[] the_args) {
+        final int columns = (int) BenchmarkMain.argument(the_args, 0, DEFAULT_COLUMNS);
+        final int rows = (int) BenchmarkMain.argument(the_args, 1, DEFAULT_ROWS);
+        final int pieces = (int) BenchmarkMain.argument(the_args, 2, DEFAULT_PIECES);
+        final int paints = (int) BenchmarkMain.argument(the_args, 3, DEFAULT_PAINTS);
+
+        final LatencyHistogram locks = measureLocks(columns, rows, pieces);
+        System.out.println(columns + "x" + rows + " lock: " + locks);
+        final LatencyHistogram frames = measurePaints(columns, rows, paints);
+        System.out.println(columns + "x" + rows + " paint: " + frames);
+
+        if (locks.getPercentile(.99) > FRAME_MILLIS
+                || frames.getPercentile(.99) > FRAME_MILLIS) {
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Drops pieces on a board, timing each hard drop, and starts a new game
+     * whenever one ends.
+     *
+     * @param the_columns the number of columns
+     * @param the_rows the number of rows
+     * @param the_pieces the number of pieces to drop
+     * @return the time of each hard drop
+     */
+    private static LatencyHistogram measureLocks(final int the_columns, final int the_rows,
+                                                 final int the_pieces) {
+        final Random random = new Random(0);
+        final Board board = new Board(the_columns, the_rows, new LinkedList<Piece>(), random);
+        final LatencyHistogram result = new LatencyHistogram();
+        int games = 1;
+        for (int i = 0; i < the_pieces; i++) {
+            if (board.isGameOver()) {
+                board.newGame(the_columns, the_rows, new LinkedList<Piece>());
+                games++;
+            }
+            final int shift = random.nextInt(the_columns) - the_columns / 2;
+            for (int j = 0; j < shift && board.moveRight(); j++) {
+                //keep moving
+            }
+            for (int j = 0; j > shift && board.moveLeft(); j--) {
+                //keep moving
+            }
+            final long start = System.nanoTime();
+            board.hardDrop();
+            result.record(System.nanoTime() - start);
+        }
+        System.out.println("games played: " + games + ", rows in the last: "
+                           + board.getFrozenBlocks().size());
+        return result;
+    }
+
+    /**
+     * Paints the game panel offscreen, timing each paint, while its game's
+     * pieces are hard dropped.
+     *
+     * @param the_columns the number of columns
+     * @param the_rows the number of rows
+     * @param the_paints the number of paints to time
+     * @return the time of each paint
+     */
+    private static LatencyHistogram measurePaints(final int the_columns, final int the_rows,
+                                                  final int the_paints) {
+        final GamePanel panel = new GamePanel(the_columns, the_rows, new SpriteCache());
+        panel.setSize(PANEL_SIZE, PANEL_SIZE);
+        panel.enableSound(false);
+        panel.start();
+        final int drop = panel.getControlKeys().get("instadrop");
+        final KeyEvent press = new KeyEvent(panel, KeyEvent.KEY_PRESSED, 0, 0, drop,
+                                            KeyEvent.CHAR_UNDEFINED);
+        final KeyEvent release = new KeyEvent(panel, KeyEvent.KEY_RELEASED, 0, 0, drop,
+                                              KeyEvent.CHAR_UNDEFINED);
+
+        final BufferedImage image =
+                new BufferedImage(PANEL_SIZE, PANEL_SIZE, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g2d = image.createGraphics();
+        g2d.setClip(0, 0, PANEL_SIZE, PANEL_SIZE);
+        final LatencyHistogram result = new LatencyHistogram();
+        for (int i = 0; i < WARM_UP + the_paints; i++) {
+            if (i % PAINTS_PER_DROP == 0) {
+                for (KeyListener listener : panel.getKeyListeners()) {
+                    listener.keyPressed(press);
+                    listener.keyReleased(release);
+                }
+            }
+            final long start = System.nanoTime();
+            panel.paintComponent(g2d);
+            if (i >= WARM_UP) {
+                result.record(System.nanoTime() - start);
+            }
+        }
+        g2d.dispose();
+        return result;
+    }
+}
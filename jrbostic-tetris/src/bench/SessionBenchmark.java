@@ -0,0 +1,123 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package bench;
+
+import server.GameServer;
+import tools.LatencyHistogram;
+
+/**
+ * Measures how many headless sessions each core can host while keeping the
+ * 99th percentile tick lateness under a target. The session count doubles
+ * until the target is missed.
+ * 
+ * <p>Arguments: [target p99 in ms] [tick delay in ms] [seconds per step].
+ * 
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+final class SessionBenchmark {
+    
+    /**
+     * The default target for 99th percentile tick lateness, in milliseconds.
+     */
+    private static final double DEFAULT_TARGET = 2;
+    
+    /**
+     * The default delay between ticks, in milliseconds; one display frame.
+     */
+    private static final double DEFAULT_DELAY = 16;
+    
+    /**
+     * The default number of seconds each session count is run for.
+     */
+    private static final double DEFAULT_SECONDS = 5;
+    
+    /**
+     * The number of sessions per core in the first step.
+     */
+    private static final int FIRST_STEP_PER_CORE = 64;
+    
+    /**
+     * The largest number of sessions tried.
+     */
+    private static final int MAX_SESSIONS = 1 << 20;
+    
+    /**
+     * The fraction of each step spent warming up before measuring.
+     */
+    private static final double WARM_UP = .2;
+    
+    /**
+     * The 99th percentile.
+     */
+    private static final double P99 = .99;
+    
+    /**
+     * The number of milliseconds in a second.
+     */
+    private static final double MILLIS_PER_SECOND = 1000;
+    
+    /**
+     * The number of nanoseconds in a millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1000000;
+    
+    /**
+     * Constructor to ensure uninstantiability.
+     */
+    private SessionBenchmark() {
+        //ensure uninstantiability
+    }
+    
+    /**
+     * Runs the benchmark.
+     * 
+     * @param the_args the optional target, tick delay and step duration
+     * @throws InterruptedException if interrupted while running
+     */
+    static void run(final String[] the_args) throws InterruptedException {
+        final double target = BenchmarkMain.argument(the_args, 0, DEFAULT_TARGET);
+        final double delay = BenchmarkMain.argument(the_args, 1, DEFAULT_DELAY);
+        final double seconds = BenchmarkMain.argument(the_args, 2, DEFAULT_SECONDS);
+        final int cores = Runtime.getRuntime().availableProcessors();
+        
+        int passed = 0;
+        for (int sessions = cores * FIRST_STEP_PER_CORE; sessions <= MAX_SESSIONS; 
+                sessions *= 2) {
+            final LatencyHistogram latency = runStep(sessions, delay, seconds);
+            System.out.println(sessions + " sessions: " + latency);
+            if (latency.getPercentile(P99) > target) {
+                break;
+            }
+            passed = sessions;
+        }
+        System.out.printf("%d cores, %.1fms ticks: %d sessions per core at p99 <= %.1fms%n",
+                          cores, delay, passed / cores, target);
+    }
+    
+    /**
+     * Runs the given number of sessions and measures their tick lateness.
+     * 
+     * @param the_sessions the number of sessions
+     * @param the_delay the delay between ticks in milliseconds
+     * @param the_seconds the number of seconds to run for
+     * @return the tick lateness measured after warm up
+     * @throws InterruptedException if interrupted while running
+     */
+    private static LatencyHistogram runStep(final int the_sessions, final double the_delay,
+                                            final double the_seconds) 
+        throws InterruptedException {
+        final GameServer server = new GameServer();
+        for (int i = 0; i < the_sessions; i++) {
+            server.openSession(GameServer.DEFAULT_WIDTH, GameServer.DEFAULT_HEIGHT, i, 
+                               (long) (the_delay * NANOS_PER_MILLI));
+        }
+        final long warmUp = (long) (the_seconds * MILLIS_PER_SECOND * WARM_UP);
+        server.measureFrom(System.nanoTime() + (long) (warmUp * NANOS_PER_MILLI));
+        Thread.sleep((long) (the_seconds * MILLIS_PER_SECOND));
+        server.shutdown();
+        return server.getTickLatency();
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package engine;
+
+import model.Board;
+
+/**
+ * Tracks which movement keys are held and repeats their moves on the
+ * simulation clock rather than relying on the operating system's key repeat.
+ * A sideways key moves once when pressed; once it has been held for the
+ * delayed auto shift (DAS) it repeats every auto repeat rate (ARR) period,
+ * and an ARR of zero slides the piece straight to the wall. A held down key
+ * repeats at the soft drop rate; soft drop never locks a piece, which is left
+ * to the lock delay once it rests. Only the simulation thread uses this class.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+final class AutoShift {
+
+    /**
+     * The interval between moves of a held down key, in nanoseconds.
+     */
+    private static final long SOFT_DROP_RATE = 33000000L;
+
+    /**
+     * The board being played.
+     */
+    private final Board myBoard;
+
+    /**
+     * The delayed auto shift, in nanoseconds.
+     */
+    private long myDelay;
+
+    /**
+     * The auto repeat rate, in nanoseconds; zero slides to the wall.
+     */
+    private long myRate;
+
+    /**
+     * Whether the left key is held.
+     */
+    private boolean myLeftHeld;
+
+    /**
+     * Whether the right key is held.
+     */
+    private boolean myRightHeld;
+
+    /**
+     * Whether the down key is held.
+     */
+    private boolean myDownHeld;
+
+    /**
+     * The direction being shifted, LEFT, RIGHT or null.
+     */
+    private GameCommand myShift;
+
+    /**
+     * Whether the shift has been held past the delayed auto shift.
+     */
+    private boolean myCharged;
+
+    /**
+     * The time the shift has been held toward its next move, in nanoseconds.
+     */
+    private long myShiftTime;
+
+    /**
+     * The time the down key has been held toward its next move, in nanoseconds.
+     */
+    private long myDownTime;
+
+    /**
+     * Constructs the key state for a board.
+     *
+     * @param the_board the board being played
+     * @param the_delay the delayed auto shift, in nanoseconds
+     * @param the_rate the auto repeat rate, in nanoseconds; zero slides to the wall
+     */
+    AutoShift(final Board the_board, final long the_delay, final long the_rate) {
+        myBoard = the_board;
+        setTimings(the_delay, the_rate);
+    }
+
+    /**
+     * Sets the repeat timings.
+     *
+     * @param the_delay the delayed auto shift, in nanoseconds
+     * @param the_rate the auto repeat rate, in nanoseconds; zero slides to the wall
+     */
+    void setTimings(final long the_delay, final long the_rate) {
+        myDelay = the_delay;
+        myRate = the_rate;
+    }
+
+    /**
+     * Applies a key going down. Repeated presses of a held key are ignored.
+     *
+     * @param the_command the input whose key went down
+     */
+    void press(final GameCommand the_command) {
+        switch (the_command) {
+            case LEFT:
+                if (!myLeftHeld) {
+                    myLeftHeld = true;
+                    startShift(GameCommand.LEFT);
+                }
+                break;
+            case RIGHT:
+                if (!myRightHeld) {
+                    myRightHeld = true;
+                    startShift(GameCommand.RIGHT);
+                }
+                break;
+            case DOWN:
+                if (!myDownHeld) {
+                    myDownHeld = true;
+                    myDownTime = 0;
+                    myBoard.fall(1);
+                }
+                break;
+            case DROP:
+                myBoard.hardDrop();
+                break;
+            case ROTATE:
+                myBoard.rotate();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Applies a key going up. Releasing one direction while the other is still
+     * held shifts the other way.
+     *
+     * @param the_command the input whose key went up
+     * @return true if the key was held
+     */
+    boolean release(final GameCommand the_command) {
+        boolean result = false;
+        switch (the_command) {
+            case LEFT:
+                result = myLeftHeld;
+                myLeftHeld = false;
+                if (myShift == GameCommand.LEFT) {
+                    myShift = null;
+                    if (myRightHeld) {
+                        startShift(GameCommand.RIGHT);
+                    }
+                }
+                break;
+            case RIGHT:
+                result = myRightHeld;
+                myRightHeld = false;
+                if (myShift == GameCommand.RIGHT) {
+                    myShift = null;
+                    if (myLeftHeld) {
+                        startShift(GameCommand.LEFT);
+                    }
+                }
+                break;
+            case DOWN:
+                result = myDownHeld;
+                myDownHeld = false;
+                break;
+            default:
+                break;
+        }
+        return result;
+    }
+
+    /**
+     * Forgets every held key, as when a new game starts.
+     */
+    void releaseAll() {
+        myLeftHeld = false;
+        myRightHeld = false;
+        myDownHeld = false;
+        myShift = null;
+    }
+
+    /**
+     * Advances the held keys by one simulation step.
+     *
+     * @param the_step the length of the step, in nanoseconds
+     */
+    void step(final long the_step) {
+        if (myShift != null) {
+            myShiftTime += the_step;
+            if (!myCharged && myShiftTime >= myDelay) {
+                myCharged = true;
+                myShiftTime -= myDelay;
+                shift();
+            }
+            if (myCharged) {
+                if (myRate == 0) {
+                    slide();
+                } else {
+                    while (myShiftTime >= myRate) {
+                        myShiftTime -= myRate;
+                        shift();
+                    }
+                }
+            }
+        }
+        if (myDownHeld) {
+            myDownTime += the_step;
+            while (myDownTime >= SOFT_DROP_RATE && !myBoard.isGameOver()) {
+                myDownTime -= SOFT_DROP_RATE;
+                myBoard.fall(1);
+            }
+        }
+    }
+
+    /**
+     * Starts shifting in a direction with a single move.
+     *
+     * @param the_direction LEFT or RIGHT
+     */
+    private void startShift(final GameCommand the_direction) {
+        myShift = the_direction;
+        myCharged = false;
+        myShiftTime = 0;
+        shift();
+    }
+
+    /**
+     * Moves the piece one column in the shift direction.
+     */
+    private void shift() {
+        if (myShift == GameCommand.LEFT) {
+            myBoard.moveLeft();
+        } else {
+            myBoard.moveRight();
+        }
+    }
+
+    /**
+     * Moves the piece to the wall in the shift direction.
+     */
+    private void slide() {
+        if (myShift == GameCommand.LEFT) {
+            myBoard.slideLeft();
+        } else {
+            myBoard.slideRight();
+        }
+    }
+}
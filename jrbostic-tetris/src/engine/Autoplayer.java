@@ -0,0 +1,131 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package engine;
+
+import java.util.Observer;
+import java.util.Random;
+
+import model.GameStats;
+
+/**
+ * Plays games by itself, as fast as it is stepped, by tapping a random key
+ * every few steps; a game that ends is replaced by a new one. Used to put
+ * the game code through its paces without a player, such as to warm up the
+ * JIT before play. The games are reproducible from the seed.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+public final class Autoplayer {
+
+    /**
+     * The number of steps between key taps.
+     */
+    private static final int INPUT_INTERVAL = 6;
+
+    /**
+     * The keys tapped; the drop is rarer so pieces reach the stack in varied
+     * places.
+     */
+    private static final GameCommand[] KEYS = {GameCommand.LEFT, GameCommand.LEFT,
+        GameCommand.RIGHT, GameCommand.RIGHT, GameCommand.ROTATE, GameCommand.ROTATE,
+        GameCommand.DOWN, GameCommand.DROP};
+
+    /**
+     * The number of nanoseconds in a millisecond.
+     */
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /**
+     * The game.
+     */
+    private final Simulation mySimulation;
+
+    /**
+     * The source of keys and of the seeds of new games.
+     */
+    private final Random myRandom;
+
+    /**
+     * The number of games finished.
+     */
+    private int myGames;
+
+    /**
+     * Sets up a player and its first game.
+     *
+     * @param the_width the width of the board
+     * @param the_height the height of the board
+     * @param the_seed the seed of the keys and games played
+     */
+    public Autoplayer(final int the_width, final int the_height, final long the_seed) {
+        myRandom = new Random(the_seed);
+        mySimulation = new Simulation(the_width, the_height, myRandom.nextLong());
+    }
+
+    /**
+     * Adds an observer of the board, told of every move as in a live game.
+     *
+     * @param the_observer the observer
+     */
+    public void addBoardObserver(final Observer the_observer) {
+        mySimulation.getBoard().addObserver(the_observer);
+    }
+
+    /**
+     * Advances the game by one fixed step, tapping a key every few steps, or
+     * starts a new game if it is over.
+     */
+    public void step() {
+        if (mySimulation.getBoard().isGameOver()) {
+            myGames++;
+            mySimulation.newGame(myRandom.nextLong());
+        } else {
+            if (mySimulation.getSteps() % INPUT_INTERVAL == 0) {
+                mySimulation.apply(new InputEvent(KEYS[myRandom.nextInt(KEYS.length)],
+                                                  true, true), false);
+            }
+            mySimulation.step(SimulationLoop.DEFAULT_SHIFT_DELAY * NANOS_PER_MILLI,
+                              SimulationLoop.DEFAULT_SHIFT_RATE * NANOS_PER_MILLI,
+                              SimulationLoop.DEFAULT_LOCK_DELAY * NANOS_PER_MILLI);
+        }
+    }
+
+    /**
+     * @return whether the current game is over; the next step starts a new one
+     */
+    public boolean isGameOver() {
+        return mySimulation.getBoard().isGameOver();
+    }
+
+    /**
+     * @return the statistics of the current game, or of the game just over
+     */
+    public GameStats getStats() {
+        return mySimulation.getBoard().getStats();
+    }
+
+    /**
+     * @return the level of the current game
+     */
+    public int getLevel() {
+        return mySimulation.getSchedule().getLevel();
+    }
+
+    /**
+     * @return the number of games finished
+     */
+    public int getGames() {
+        return myGames;
+    }
+
+    /**
+     * @return the current state of the game
+     */
+    public GameSnapshot getSnapshot() {
+        return new GameSnapshot(mySimulation.getSteps(), mySimulation.getSteps(),
+                                mySimulation.getBoard(), mySimulation.getSchedule());
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package engine;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * Plays many games headless with {@link Autoplayer}s and writes the
+ * distributions of their results as CSV or JSON:
+ * {@code java -cp bin engine.BatchRunner <games> [workers] [csv|json] [file]}.
+ * Each worker plays its share of the games with its own player and its own
+ * {@link BatchStatistics}, sharing nothing with the others, and the
+ * statistics are merged once every worker is done, so a run of millions of
+ * games takes constant memory and no locks. The run is reproducible: worker
+ * n plays from seed n.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+public final class BatchRunner {
+
+    /**
+     * The width of the boards played on.
+     */
+    public static final int WIDTH = 10;
+
+    /**
+     * The height of the boards played on.
+     */
+    public static final int HEIGHT = 20;
+
+    /**
+     * The name of the randomizer dealing the pieces: the board's own, each
+     * piece drawn independently and uniformly.
+     */
+    public static final String RANDOMIZER = "uniform";
+
+    /**
+     * The number of games run when none is given.
+     */
+    private static final int DEFAULT_GAMES = 10000;
+
+    /**
+     * The number of nanoseconds in a second.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * Constructor to ensure uninstantiability.
+     */
+    private BatchRunner() {
+        //ensure uninstantiability
+    }
+
+    /**
+     * Plays games on worker threads and merges their statistics.
+     *
+     * @param the_games the number of games to play
+     * @param the_workers the number of worker threads
+     * @return the statistics of every game played
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public static BatchStatistics run(final long the_games, final int the_workers)
+        throws InterruptedException {
+        final Worker[] workers = new Worker[the_workers];
+        for (int i = 0; i < the_workers; i++) {
+            final long share = the_games / the_workers
+                               + (i < the_games % the_workers ? 1 : 0);
+            workers[i] = new Worker(i, share);
+            workers[i].start();
+        }
+        final BatchStatistics result = new BatchStatistics(RANDOMIZER, HEIGHT);
+        for (final Worker worker : workers) {
+            worker.join();
+            result.merge(worker.myStatistics);
+        }
+        return result;
+    }
+
+    /**
+     * Runs a batch: [games] [workers] [csv|json] [file]. The statistics go to
+     * the file, or to standard output if none is given; the time taken goes
+     * to standard error.
+     *
+     * @param the_args the optional game count, worker count, format and file
+     * @throws InterruptedException if interrupted while running
+     * @throws IOException if the statistics cannot be written
+     */
+    public static void main(final String[] the_args) throws InterruptedException, IOException {
+        long games = DEFAULT_GAMES;
+        if (the_args.length > 0) {
+            games = Long.parseLong(the_args[0]);
+        }
+        int workers = Runtime.getRuntime().availableProcessors();
+        if (the_args.length > 1) {
+            workers = Integer.parseInt(the_args[1]);
+        }
+        boolean json = false;
+        if (the_args.length > 2) {
+            json = "json".equalsIgnoreCase(the_args[2]);
+        }
+
+        final long start = System.nanoTime();
+        final BatchStatistics statistics = run(games, workers);
+        final double seconds = (System.nanoTime() - start) / NANOS_PER_SECOND;
+        System.err.printf("%d games on %d workers in %.1fs (%.0f games/s)%n",
+                          statistics.getGames(), workers, seconds,
+                          statistics.getGames() / seconds);
+
+        final Writer out;
+        if (the_args.length > 3) {
+            out = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(the_args[3]), Charset.forName("UTF-8")));
+        } else {
+            out = new OutputStreamWriter(System.out, Charset.defaultCharset());
+        }
+        try {
+            if (json) {
+                statistics.writeJson(out);
+            } else {
+                statistics.writeCsv(out);
+            }
+        } finally {
+            out.flush();
+            if (the_args.length > 3) {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * A thread playing its share of a batch.
+     *
+     * @author Jesse Bostic
+     * @version Autumn 2013
+     */
+    private static final class Worker extends Thread {
+
+        /**
+         * The player of this worker's games.
+         */
+        private final Autoplayer myPlayer;
+
+        /**
+         * The number of games to play.
+         */
+        private final long myGames;
+
+        /**
+         * The statistics of this worker's games, read once it has ended.
+         */
+        private final BatchStatistics myStatistics = new BatchStatistics(RANDOMIZER, HEIGHT);
+
+        /**
+         * Constructs a worker.
+         *
+         * @param the_index the index of the worker, also the seed of its games
+         * @param the_games the number of games to play
+         */
+        private Worker(final int the_index, final long the_games) {
+            super("batch-" + the_index);
+            myPlayer = new Autoplayer(WIDTH, HEIGHT, the_index);
+            myGames = the_games;
+        }
+
+        /**
+         * Steps the player until it has finished its games, counting each as
+         * it ends.
+         */
+        @Override
+        public void run() {
+            long games = 0;
+            while (games < myGames) {
+                if (myPlayer.isGameOver()) {
+                    myStatistics.record(myPlayer.getStats(), myPlayer.getLevel());
+                    games++;
+                }
+                myPlayer.step();
+            }
+        }
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package engine;
+
+import java.io.IOException;
+
+import model.Block;
+import model.GameStats;
+import tools.FixedHistogram;
+import tools.Moments;
+import tools.QuantileSketch;
+
+/**
+ * The distributions of many finished games: score quantiles and moments, a
+ * histogram of lines per game, the stack height each game topped out at, and
+ * how often the randomizer dealt each piece. Its size is fixed however many
+ * games it counts. Each worker of a batch run keeps its own, with no
+ * sharing, and they are merged once the workers are done.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+public final class BatchStatistics {
+
+    /**
+     * The quantiles of the score written out.
+     */
+    private static final double[] QUANTILES = {.5, .9, .99, .999};
+
+    /**
+     * The names of the quantiles written out.
+     */
+    private static final String[] QUANTILE_NAMES = {"p50", "p90", "p99", "p99.9"};
+
+    /**
+     * The number of one-line buckets in the lines per game histogram.
+     */
+    private static final int LINE_BUCKETS = 200;
+
+    /**
+     * The rows above the board a stack can top out at.
+     */
+    private static final int TOP_OUT_ROWS = 4;
+
+    /**
+     * The name of the randomizer dealing the pieces.
+     */
+    private final String myRandomizer;
+
+    /**
+     * The sketch of the scores.
+     */
+    private final QuantileSketch myScores = new QuantileSketch();
+
+    /**
+     * The moments of the scores.
+     */
+    private final Moments myScoreMoments = new Moments();
+
+    /**
+     * The histogram of the lines cleared in each game.
+     */
+    private final FixedHistogram myLines = new FixedHistogram(0, 1, LINE_BUCKETS);
+
+    /**
+     * The moments of the lines cleared in each game.
+     */
+    private final Moments myLineMoments = new Moments();
+
+    /**
+     * The moments of the pieces locked in each game.
+     */
+    private final Moments myPieces = new Moments();
+
+    /**
+     * The moments of the pieces locked per second of each game.
+     */
+    private final Moments myPiecesPerSecond = new Moments();
+
+    /**
+     * The moments of the level each game reached.
+     */
+    private final Moments myLevels = new Moments();
+
+    /**
+     * The histogram of the stack height at the end of each game.
+     */
+    private final FixedHistogram myTopOuts;
+
+    /**
+     * The pieces dealt over all games, by block type ordinal.
+     */
+    private final long[] myPieceCounts = new long[Block.values().length];
+
+    /**
+     * Constructs empty statistics.
+     *
+     * @param the_randomizer the name of the randomizer dealing the pieces
+     * @param the_height the block height of the boards played on
+     */
+    public BatchStatistics(final String the_randomizer, final int the_height) {
+        myRandomizer = the_randomizer;
+        myTopOuts = new FixedHistogram(0, 1, the_height + TOP_OUT_ROWS + 1);
+    }
+
+    /**
+     * Counts a finished game.
+     *
+     * @param the_stats the statistics of the game
+     * @param the_level the level the game reached
+     */
+    public void record(final GameStats the_stats, final int the_level) {
+        myScores.record(the_stats.getScore());
+        myScoreMoments.record(the_stats.getScore());
+        myLines.record(the_stats.getLines());
+        myLineMoments.record(the_stats.getLines());
+        myPieces.record(the_stats.getPieces());
+        myPiecesPerSecond.record(the_stats.getPiecesPerSecond());
+        myLevels.record(the_level);
+        int topOut = 0;
+        if (the_stats.getPieces() > 0) {
+            topOut = the_stats.getHeightAt(the_stats.getPieces() - 1);
+        }
+        myTopOuts.record(topOut);
+        for (final Block block : Block.values()) {
+            myPieceCounts[block.ordinal()] += the_stats.getPieceCount(block);
+        }
+    }
+
+    /**
+     * Adds every game counted by other statistics to these.
+     *
+     * @param the_other statistics of games on boards of the same height
+     */
+    public void merge(final BatchStatistics the_other) {
+        myScores.merge(the_other.myScores);
+        myScoreMoments.merge(the_other.myScoreMoments);
+        myLines.merge(the_other.myLines);
+        myLineMoments.merge(the_other.myLineMoments);
+        myPieces.merge(the_other.myPieces);
+        myPiecesPerSecond.merge(the_other.myPiecesPerSecond);
+        myLevels.merge(the_other.myLevels);
+        myTopOuts.merge(the_other.myTopOuts);
+        for (int i = 0; i < myPieceCounts.length; i++) {
+            myPieceCounts[i] += the_other.myPieceCounts[i];
+        }
+    }
+
+    /**
+     * @return the number of games counted
+     */
+    public long getGames() {
+        return myScoreMoments.getCount();
+    }
+
+    /**
+     * Writes the statistics as CSV rows of metric, key and value.
+     *
+     * @param the_out the output
+     * @throws IOException if the output cannot be written
+     */
+    public void writeCsv(final Appendable the_out) throws IOException {
+        the_out.append("metric,key,value\n");
+        csv(the_out, "games", "", getGames());
+        csvMoments(the_out, "score", myScoreMoments);
+        for (int i = 0; i < QUANTILES.length; i++) {
+            csv(the_out, "score", QUANTILE_NAMES[i], myScores.getQuantile(QUANTILES[i]));
+        }
+        csvMoments(the_out, "lines", myLineMoments);
+        csvMoments(the_out, "pieces", myPieces);
+        csvMoments(the_out, "pieces_per_second", myPiecesPerSecond);
+        csvMoments(the_out, "level", myLevels);
+        for (int i = 0; i < myLines.getBucketCount(); i++) {
+            if (myLines.getCount(i) > 0) {
+                csv(the_out, "lines_per_game", String.valueOf(myLines.getBucketStart(i)),
+                    myLines.getCount(i));
+            }
+        }
+        if (myLines.getOverflow() > 0) {
+            csv(the_out, "lines_per_game", ">=" + myLines.getBucketStart(LINE_BUCKETS),
+                myLines.getOverflow());
+        }
+        for (int i = 0; i < myTopOuts.getBucketCount(); i++) {
+            csv(the_out, "top_out_height", String.valueOf(myTopOuts.getBucketStart(i)),
+                myTopOuts.getCount(i));
+        }
+        for (final Block block : Block.values()) {
+            if (block != Block.EMPTY) {
+                csv(the_out, "piece_frequency_" + myRandomizer, block.name(),
+                    getFrequency(block));
+            }
+        }
+    }
+
+    /**
+     * Writes the statistics as a JSON object.
+     *
+     * @param the_out the output
+     * @throws IOException if the output cannot be written
+     */
+    public void writeJson(final Appendable the_out) throws IOException {
+        the_out.append("{\n  \"games\": ").append(String.valueOf(getGames()));
+        the_out.append(",\n  \"score\": ");
+        jsonMoments(the_out, myScoreMoments);
+        the_out.append(",\n  \"score_quantiles\": {");
+        for (int i = 0; i < QUANTILES.length; i++) {
+            the_out.append(i == 0 ? "" : ", ").append('"').append(QUANTILE_NAMES[i])
+                    .append("\": ").append(String.valueOf(myScores.getQuantile(QUANTILES[i])));
+        }
+        the_out.append("}");
+        the_out.append(",\n  \"lines\": ");
+        jsonMoments(the_out, myLineMoments);
+        the_out.append(",\n  \"pieces\": ");
+        jsonMoments(the_out, myPieces);
+        the_out.append(",\n  \"pieces_per_second\": ");
+        jsonMoments(the_out, myPiecesPerSecond);
+        the_out.append(",\n  \"level\": ");
+        jsonMoments(the_out, myLevels);
+        the_out.append(",\n  \"lines_per_game\": ");
+        jsonHistogram(the_out, myLines);
+        the_out.append(",\n  \"top_out_height\": ");
+        jsonHistogram(the_out, myTopOuts);
+        the_out.append(",\n  \"piece_frequency\": {\"").append(myRandomizer).append("\": {");
+        boolean first = true;
+        for (final Block block : Block.values()) {
+            if (block != Block.EMPTY) {
+                the_out.append(first ? "" : ", ").append('"').append(block.name())
+                        .append("\": ").append(String.valueOf(getFrequency(block)));
+                first = false;
+            }
+        }
+        the_out.append("}}\n}\n");
+    }
+
+    /**
+     * @param the_block a block type
+     * @return the fraction of pieces dealt that were of that type
+     */
+    private double getFrequency(final Block the_block) {
+        long total = 0;
+        for (final long count : myPieceCounts) {
+            total += count;
+        }
+        double result = 0;
+        if (total > 0) {
+            result = (double) myPieceCounts[the_block.ordinal()] / total;
+        }
+        return result;
+    }
+
+    /**
+     * Writes a CSV row.
+     *
+     * @param the_out the output
+     * @param the_metric the metric
+     * @param the_key the key within the metric
+     * @param the_value the value
+     * @throws IOException if the output cannot be written
+     */
+    private static void csv(final Appendable the_out, final String the_metric,
+                            final String the_key, final Object the_value)
+        throws IOException {
+        the_out.append(the_metric).append(',').append(the_key).append(',')
+                .append(String.valueOf(the_value)).append('\n');
+    }
+
+    /**
+     * Writes the CSV rows of a metric's moments.
+     *
+     * @param the_out the output
+     * @param the_metric the metric
+     * @param the_moments the moments
+     * @throws IOException if the output cannot be written
+     */
+    private static void csvMoments(final Appendable the_out, final String the_metric,
+                                   final Moments the_moments) throws IOException {
+        csv(the_out, the_metric, "mean", the_moments.getMean());
+        csv(the_out, the_metric, "sd", the_moments.getStandardDeviation());
+        csv(the_out, the_metric, "min", the_moments.getMin());
+        csv(the_out, the_metric, "max", the_moments.getMax());
+    }
+
+    /**
+     * Writes moments as a JSON object.
+     *
+     * @param the_out the output
+     * @param the_moments the moments
+     * @throws IOException if the output cannot be written
+     */
+    private static void jsonMoments(final Appendable the_out, final Moments the_moments)
+        throws IOException {
+        the_out.append("{\"mean\": ").append(String.valueOf(the_moments.getMean()))
+                .append(", \"sd\": ")
+                .append(String.valueOf(the_moments.getStandardDeviation()))
+                .append(", \"min\": ").append(String.valueOf(the_moments.getMin()))
+                .append(", \"max\": ").append(String.valueOf(the_moments.getMax()))
+                .append('}');
+    }
+
+    /**
+     * Writes a histogram as a JSON object of its start, bucket counts and
+     * overflow.
+     *
+     * @param the_out the output
+     * @param the_histogram the histogram
+     * @throws IOException if the output cannot be written
+     */
+    private static void jsonHistogram(final Appendable the_out,
+                                      final FixedHistogram the_histogram)
+        throws IOException {
+        the_out.append("{\"start\": ").append(String.valueOf(the_histogram.getBucketStart(0)))
+                .append(", \"counts\": [");
+        int last = the_histogram.getBucketCount() - 1;
+        while (last > 0 && the_histogram.getCount(last) == 0) {
+            last--;
+        }
+        for (int i = 0; i <= last; i++) {
+            the_out.append(i == 0 ? "" : ", ").append(String.valueOf(the_histogram.getCount(i)));
+        }
+        the_out.append("], \"overflow\": ").append(String.valueOf(the_histogram.getOverflow()))
+                .append('}');
+    }
+}
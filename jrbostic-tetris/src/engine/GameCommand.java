@@ -0,0 +1,24 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package engine;
+
+/**
+ * The player inputs queued for the simulation thread.
+ * 
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+public enum GameCommand {
+    /** Move the current piece left. */
+    LEFT,
+    /** Move the current piece right. */
+    RIGHT,
+    /** Move the current piece down. */
+    DOWN,
+    /** Drop the current piece all the way down. */
+    DROP,
+    /** Rotate the current piece. */
+    ROTATE
+}
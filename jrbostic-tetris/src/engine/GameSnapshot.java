@@ -0,0 +1,270 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package engine;
+
+import java.util.List;
+
+import model.AbstractPiece;
+import model.Block;
+import model.Board;
+import model.GameStats;
+import model.LevelSchedule;
+
+/**
+ * An immutable picture of a game at one instant, published by the simulation
+ * thread for renderers to draw without touching the live board. Frozen rows
+ * are shared with the board and with earlier snapshots rather than copied,
+ * since the board never modifies a row once it holds it; an unchanged row is
+ * the same array from one snapshot to the next.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+public final class GameSnapshot {
+
+    /**
+     * The position of this snapshot in the sequence published for its game.
+     */
+    private final long mySequence;
+
+    /**
+     * The number of simulation steps run when this snapshot was taken.
+     */
+    private final long myStep;
+
+    /**
+     * The time this snapshot was taken, in System.nanoTime() terms.
+     */
+    private final long myTime;
+
+    /**
+     * The width of the board.
+     */
+    private final int myWidth;
+
+    /**
+     * The height of the board.
+     */
+    private final int myHeight;
+
+    /**
+     * The frozen blocks, bottom row first.
+     */
+    private final Block[][] myRows;
+
+    /**
+     * The board coordinates of the current piece's blocks.
+     */
+    private final int[][] myPiece;
+
+    /**
+     * The block type of the current piece.
+     */
+    private final Block myPieceBlock;
+
+    /**
+     * The current level.
+     */
+    private final int myLevel;
+
+    /**
+     * The gravity ticks counted on the current level.
+     */
+    private final int myLevelTicks;
+
+    /**
+     * The gravity ticks needed to complete the current level.
+     */
+    private final int myTicksPerLevel;
+
+    /**
+     * Whether the game is over.
+     */
+    private final boolean myGameOver;
+
+    /**
+     * The points scored.
+     */
+    private final int myScore;
+
+    /**
+     * The lines cleared.
+     */
+    private final int myLines;
+
+    /**
+     * The pieces locked.
+     */
+    private final int myPieces;
+
+    /**
+     * Captures the state of a board and its level schedule.
+     *
+     * @param the_sequence the position of this snapshot in its sequence
+     * @param the_step the number of simulation steps run
+     * @param the_board the board, read only from the simulation thread
+     * @param the_schedule the level schedule of the game on the board
+     */
+    GameSnapshot(final long the_sequence, final long the_step, final Board the_board,
+                 final LevelSchedule the_schedule) {
+        mySequence = the_sequence;
+        myStep = the_step;
+        myTime = System.nanoTime();
+        myWidth = the_board.getWidth();
+        myHeight = the_board.getHeight();
+        final List<Block[]> frozen = the_board.getFrozenBlocks();
+        myRows = frozen.toArray(new Block[frozen.size()][]);
+        final AbstractPiece piece = (AbstractPiece) the_board.getCurrentPiece();
+        myPiece = piece.getBoardCoordinates();
+        myPieceBlock = piece.getBlock();
+        myLevel = the_schedule.getLevel();
+        myLevelTicks = the_schedule.getTicks();
+        myTicksPerLevel = the_schedule.getTicksPerLevel();
+        myGameOver = the_board.isGameOver();
+        final GameStats stats = the_board.getStats();
+        myScore = stats.getScore();
+        myLines = stats.getLines();
+        myPieces = stats.getPieces();
+    }
+
+    /**
+     * @return the position of this snapshot in the sequence published for its game
+     */
+    public long getSequence() {
+        return mySequence;
+    }
+
+    /**
+     * @return the number of simulation steps run when this snapshot was taken
+     */
+    public long getStep() {
+        return myStep;
+    }
+
+    /**
+     * @return the time this snapshot was taken, in System.nanoTime() terms
+     */
+    public long getTime() {
+        return myTime;
+    }
+
+    /**
+     * Returns a row of frozen blocks. The array is shared and must not be
+     * modified; the same array is returned by later snapshots for as long as
+     * the row is unchanged.
+     *
+     * @param the_row the row, from the bottom; less than getRowCount()
+     * @return the blocks of the row, from the left
+     */
+    public Block[] getRow(final int the_row) {
+        return myRows[the_row];
+    }
+
+    /**
+     * @return the width of the board
+     */
+    public int getWidth() {
+        return myWidth;
+    }
+
+    /**
+     * @return the height of the board
+     */
+    public int getHeight() {
+        return myHeight;
+    }
+
+    /**
+     * @return the number of rows holding frozen blocks
+     */
+    public int getRowCount() {
+        return myRows.length;
+    }
+
+    /**
+     * Returns the frozen block at the given position.
+     *
+     * @param the_column the column, from the left
+     * @param the_row the row, from the bottom; less than getRowCount()
+     * @return the block, EMPTY if there is none
+     */
+    public Block getBlock(final int the_column, final int the_row) {
+        return myRows[the_row][the_column];
+    }
+
+    /**
+     * Returns the board coordinates of one of the current piece's blocks.
+     *
+     * @param the_index the index of the block
+     * @param the_axis 0 for the x-coordinate, 1 for the y-coordinate
+     * @return the coordinate
+     */
+    public int getPieceCoordinate(final int the_index, final int the_axis) {
+        return myPiece[the_index][the_axis];
+    }
+
+    /**
+     * @return the number of blocks in the current piece
+     */
+    public int getPieceSize() {
+        return myPiece.length;
+    }
+
+    /**
+     * @return the block type of the current piece
+     */
+    public Block getPieceBlock() {
+        return myPieceBlock;
+    }
+
+    /**
+     * @return the current level
+     */
+    public int getLevel() {
+        return myLevel;
+    }
+
+    /**
+     * @return the gravity ticks counted on the current level
+     */
+    public int getLevelTicks() {
+        return myLevelTicks;
+    }
+
+    /**
+     * @return the gravity ticks needed to complete the current level
+     */
+    public int getTicksPerLevel() {
+        return myTicksPerLevel;
+    }
+
+    /**
+     * @return whether the game is over
+     */
+    public boolean isGameOver() {
+        return myGameOver;
+    }
+
+    /**
+     * @return the points scored
+     */
+    public int getScore() {
+        return myScore;
+    }
+
+    /**
+     * @return the lines cleared
+     */
+    public int getLines() {
+        return myLines;
+    }
+
+    /**
+     * @return the pieces locked
+     */
+    public int getPieces() {
+        return myPieces;
+    }
+}
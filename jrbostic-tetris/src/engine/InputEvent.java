@@ -0,0 +1,64 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package engine;
+
+/**
+ * A key going down or up, queued for the simulation thread.
+ * 
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+final class InputEvent {
+    
+    /**
+     * The input whose key changed.
+     */
+    private final GameCommand myCommand;
+    
+    /**
+     * Whether the key went down, rather than up.
+     */
+    private final boolean myPressed;
+    
+    /**
+     * Whether the key is released as soon as it is pressed.
+     */
+    private final boolean myTap;
+    
+    /**
+     * Constructs an input event.
+     * 
+     * @param the_command the input whose key changed
+     * @param the_pressed whether the key went down
+     * @param the_tap whether the key is released as soon as it is pressed
+     */
+    InputEvent(final GameCommand the_command, final boolean the_pressed, 
+               final boolean the_tap) {
+        myCommand = the_command;
+        myPressed = the_pressed;
+        myTap = the_tap;
+    }
+    
+    /**
+     * @return the input whose key changed
+     */
+    GameCommand getCommand() {
+        return myCommand;
+    }
+    
+    /**
+     * @return whether the key went down, rather than up
+     */
+    boolean isPressed() {
+        return myPressed;
+    }
+    
+    /**
+     * @return whether the key is released as soon as it is pressed
+     */
+    boolean isTap() {
+        return myTap;
+    }
+}
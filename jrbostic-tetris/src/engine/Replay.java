@@ -0,0 +1,420 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package engine;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A recorded game: the seed of its pieces, and every input and repeat or lock
+ * timing change by the step it was applied before. Played back by a
+ * {@link ReplayPlayer}, it reproduces the game exactly. Every
+ * {@link #KEYFRAME_INTERVAL} steps a digest of the game's state is kept as a
+ * keyframe, so playback can tell where a replay stops matching the rules it
+ * is played with. Replays are immutable.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+public final class Replay {
+
+    /**
+     * The number of steps between keyframes; ten seconds of play.
+     */
+    public static final int KEYFRAME_INTERVAL = 600;
+
+    /**
+     * The first word of a replay file.
+     */
+    private static final int MAGIC = 0x54525032;
+
+    /**
+     * The first word of a replay file from before fixed point gravity and
+     * lock delay, whose games no longer play the same.
+     */
+    private static final int OLD_MAGIC = 0x54525031;
+
+    /**
+     * The number of low bits of an input code holding the key state.
+     */
+    private static final int STATE_BITS = 2;
+
+    /**
+     * The bit of an input code set for a key going down.
+     */
+    private static final int PRESSED = 2;
+
+    /**
+     * The bit of an input code set for a tap.
+     */
+    private static final int TAP = 1;
+
+    /**
+     * The multiplier of the replay id.
+     */
+    private static final long ID_PRIME = 1099511628211L;
+
+    /**
+     * The block width of the game board.
+     */
+    private final int myWidth;
+
+    /**
+     * The block height of the game board.
+     */
+    private final int myHeight;
+
+    /**
+     * The seed of the game's pieces.
+     */
+    private final long mySeed;
+
+    /**
+     * The number of steps played.
+     */
+    private final int myLength;
+
+    /**
+     * The step each input was applied before, in order.
+     */
+    private final int[] myInputSteps;
+
+    /**
+     * The inputs: the command's ordinal, then the pressed and tap bits.
+     */
+    private final byte[] myInputs;
+
+    /**
+     * The step each timing change was applied before, in order.
+     */
+    private final int[] myTimingSteps;
+
+    /**
+     * The delayed auto shift from each timing change, in nanoseconds.
+     */
+    private final long[] myDelays;
+
+    /**
+     * The auto repeat rate from each timing change, in nanoseconds.
+     */
+    private final long[] myRates;
+
+    /**
+     * The lock delay from each timing change, in nanoseconds.
+     */
+    private final long[] myLockDelays;
+
+    /**
+     * The digest of the game after every KEYFRAME_INTERVAL steps.
+     */
+    private final long[] myKeyframes;
+
+    /**
+     * Constructs a replay; the arrays are kept, not copied.
+     *
+     * @param the_width the block width of the game board
+     * @param the_height the block height of the game board
+     * @param the_seed the seed of the game's pieces
+     * @param the_length the number of steps played
+     * @param the_input_steps the step each input was applied before
+     * @param the_inputs the input codes
+     * @param the_timing_steps the step each timing change was applied before
+     * @param the_delays the delayed auto shift from each timing change
+     * @param the_rates the auto repeat rate from each timing change
+     * @param the_lock_delays the lock delay from each timing change
+     * @param the_keyframes the digest of the game after every KEYFRAME_INTERVAL steps
+     */
+    Replay(final int the_width, final int the_height, final long the_seed,
+           final int the_length, final int[] the_input_steps, final byte[] the_inputs,
+           final int[] the_timing_steps, final long[] the_delays, final long[] the_rates,
+           final long[] the_lock_delays, final long[] the_keyframes) {
+        myWidth = the_width;
+        myHeight = the_height;
+        mySeed = the_seed;
+        myLength = the_length;
+        myInputSteps = the_input_steps;
+        myInputs = the_inputs;
+        myTimingSteps = the_timing_steps;
+        myDelays = the_delays;
+        myRates = the_rates;
+        myLockDelays = the_lock_delays;
+        myKeyframes = the_keyframes;
+    }
+
+    /**
+     * Reads a replay written by {@link #write}.
+     *
+     * @param the_in the stream to read from; it is not closed
+     * @return the replay
+     * @throws IOException if the stream cannot be read or does not hold a replay
+     */
+    public static Replay read(final InputStream the_in) throws IOException {
+        final DataInputStream in = new DataInputStream(the_in);
+        final int magic = in.readInt();
+        if (magic == OLD_MAGIC) {
+            throw new IOException("replay from an older version");
+        } else if (magic != MAGIC) {
+            throw new IOException("not a replay");
+        }
+        final int width = in.readInt();
+        final int height = in.readInt();
+        final long seed = in.readLong();
+        final int length = in.readInt();
+        if (in.readInt() != KEYFRAME_INTERVAL) {
+            throw new IOException("unsupported keyframe interval");
+        }
+
+        final int[] inputSteps = new int[readCount(in)];
+        final byte[] inputs = new byte[inputSteps.length];
+        for (int i = 0; i < inputs.length; i++) {
+            inputSteps[i] = in.readInt();
+            inputs[i] = in.readByte();
+            if (inputs[i] < 0 || inputs[i] >> STATE_BITS >= GameCommand.values().length) {
+                throw new IOException("corrupt replay");
+            }
+        }
+        final int[] timingSteps = new int[readCount(in)];
+        final long[] delays = new long[timingSteps.length];
+        final long[] rates = new long[timingSteps.length];
+        final long[] lockDelays = new long[timingSteps.length];
+        for (int i = 0; i < timingSteps.length; i++) {
+            timingSteps[i] = in.readInt();
+            delays[i] = in.readLong();
+            rates[i] = in.readLong();
+            lockDelays[i] = in.readLong();
+        }
+        final long[] keyframes = new long[readCount(in)];
+        for (int i = 0; i < keyframes.length; i++) {
+            keyframes[i] = in.readLong();
+        }
+        return new Replay(width, height, seed, length, inputSteps, inputs,
+                          timingSteps, delays, rates, lockDelays, keyframes);
+    }
+
+    /**
+     * Reads the length of a section of a replay.
+     *
+     * @param the_in the stream to read from
+     * @return the number of entries in the section
+     * @throws IOException if the stream cannot be read or the length is negative
+     */
+    private static int readCount(final DataInputStream the_in) throws IOException {
+        final int result = the_in.readInt();
+        if (result < 0) {
+            throw new IOException("corrupt replay");
+        }
+        return result;
+    }
+
+    /**
+     * Writes the replay.
+     *
+     * @param the_out the stream to write to; it is flushed but not closed
+     * @throws IOException if the stream cannot be written
+     */
+    public void write(final OutputStream the_out) throws IOException {
+        final DataOutputStream out = new DataOutputStream(the_out);
+        out.writeInt(MAGIC);
+        out.writeInt(myWidth);
+        out.writeInt(myHeight);
+        out.writeLong(mySeed);
+        out.writeInt(myLength);
+        out.writeInt(KEYFRAME_INTERVAL);
+        out.writeInt(myInputs.length);
+        for (int i = 0; i < myInputs.length; i++) {
+            out.writeInt(myInputSteps[i]);
+            out.writeByte(myInputs[i]);
+        }
+        out.writeInt(myTimingSteps.length);
+        for (int i = 0; i < myTimingSteps.length; i++) {
+            out.writeInt(myTimingSteps[i]);
+            out.writeLong(myDelays[i]);
+            out.writeLong(myRates[i]);
+            out.writeLong(myLockDelays[i]);
+        }
+        out.writeInt(myKeyframes.length);
+        for (long keyframe : myKeyframes) {
+            out.writeLong(keyframe);
+        }
+        out.flush();
+    }
+
+    /**
+     * Encodes an input for a replay.
+     *
+     * @param the_event the input
+     * @return the input code
+     */
+    static byte encode(final InputEvent the_event) {
+        int result = the_event.getCommand().ordinal() << STATE_BITS;
+        if (the_event.isPressed()) {
+            result |= PRESSED;
+        }
+        if (the_event.isTap()) {
+            result |= TAP;
+        }
+        return (byte) result;
+    }
+
+    /**
+     * Decodes an input of a replay.
+     *
+     * @param the_code the input code
+     * @return the input
+     */
+    static InputEvent decode(final byte the_code) {
+        return new InputEvent(GameCommand.values()[the_code >> STATE_BITS],
+                              (the_code & PRESSED) != 0, (the_code & TAP) != 0);
+    }
+
+    /**
+     * @return the block width of the game board
+     */
+    public int getWidth() {
+        return myWidth;
+    }
+
+    /**
+     * @return the block height of the game board
+     */
+    public int getHeight() {
+        return myHeight;
+    }
+
+    /**
+     * @return the number of steps played
+     */
+    public int getLength() {
+        return myLength;
+    }
+
+    /**
+     * Returns an id of the replay, a hash of everything in it, by which a
+     * score can name the game it was made in. Equal replays have equal ids;
+     * the id is never zero.
+     *
+     * @return the id
+     */
+    public long getId() {
+        long result = ((mySeed * ID_PRIME + myWidth) * ID_PRIME + myHeight) * ID_PRIME
+                      + myLength;
+        for (int i = 0; i < myInputs.length; i++) {
+            result = (result * ID_PRIME + myInputSteps[i]) * ID_PRIME + myInputs[i];
+        }
+        for (int i = 0; i < myTimingSteps.length; i++) {
+            result = (((result * ID_PRIME + myTimingSteps[i]) * ID_PRIME + myDelays[i])
+                     * ID_PRIME + myRates[i]) * ID_PRIME + myLockDelays[i];
+        }
+        for (long keyframe : myKeyframes) {
+            result = result * ID_PRIME + keyframe;
+        }
+        if (result == 0) {
+            result = 1;
+        }
+        return result;
+    }
+
+    /**
+     * @return the seed of the game's pieces
+     */
+    long getSeed() {
+        return mySeed;
+    }
+
+    /**
+     * @return the number of inputs recorded
+     */
+    int getInputCount() {
+        return myInputs.length;
+    }
+
+    /**
+     * Returns the step an input was applied before.
+     *
+     * @param the_index the position of the input
+     * @return the step
+     */
+    int getInputStep(final int the_index) {
+        return myInputSteps[the_index];
+    }
+
+    /**
+     * Returns an input.
+     *
+     * @param the_index the position of the input
+     * @return the input code
+     */
+    byte getInput(final int the_index) {
+        return myInputs[the_index];
+    }
+
+    /**
+     * @return the number of timing changes recorded
+     */
+    int getTimingCount() {
+        return myTimingSteps.length;
+    }
+
+    /**
+     * Returns the step a timing change was applied before.
+     *
+     * @param the_index the position of the change
+     * @return the step
+     */
+    int getTimingStep(final int the_index) {
+        return myTimingSteps[the_index];
+    }
+
+    /**
+     * Returns the delayed auto shift from a timing change.
+     *
+     * @param the_index the position of the change
+     * @return the delay, in nanoseconds
+     */
+    long getDelay(final int the_index) {
+        return myDelays[the_index];
+    }
+
+    /**
+     * Returns the auto repeat rate from a timing change.
+     *
+     * @param the_index the position of the change
+     * @return the rate, in nanoseconds
+     */
+    long getRate(final int the_index) {
+        return myRates[the_index];
+    }
+
+    /**
+     * Returns the lock delay from a timing change.
+     *
+     * @param the_index the position of the change
+     * @return the lock delay, in nanoseconds
+     */
+    long getLockDelay(final int the_index) {
+        return myLockDelays[the_index];
+    }
+
+    /**
+     * @return the number of keyframes recorded
+     */
+    int getKeyframeCount() {
+        return myKeyframes.length;
+    }
+
+    /**
+     * Returns the digest of the game at a keyframe.
+     *
+     * @param the_index the position of the keyframe; keyframe i follows step
+     *                  (i + 1) * KEYFRAME_INTERVAL
+     * @return the digest
+     */
+    long getKeyframe(final int the_index) {
+        return myKeyframes[the_index];
+    }
+}
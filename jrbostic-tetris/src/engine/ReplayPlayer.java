@@ -0,0 +1,161 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package engine;
+
+import java.util.Observer;
+
+/**
+ * Plays a {@link Replay} back one step at a time on the calling thread, with
+ * no clock and no display, so replays can be rendered offscreen as fast as
+ * the renderer allows. Every keyframe is checked as it is passed; a replay
+ * that no longer plays the same game is reported rather than rendered wrong.
+ * Not thread safe; each thread plays its own copy.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+public final class ReplayPlayer {
+
+    /**
+     * The replay being played.
+     */
+    private final Replay myReplay;
+
+    /**
+     * The game being played.
+     */
+    private final Simulation mySimulation;
+
+    /**
+     * The position of the next input to apply.
+     */
+    private int myNextInput;
+
+    /**
+     * The position of the next timing change to apply.
+     */
+    private int myNextTiming;
+
+    /**
+     * The delayed auto shift of held keys, in nanoseconds.
+     */
+    private long myDelay;
+
+    /**
+     * The auto repeat rate of held keys, in nanoseconds.
+     */
+    private long myRate;
+
+    /**
+     * The lock delay of resting pieces, in nanoseconds.
+     */
+    private long myLockDelay;
+
+    /**
+     * Sets up a replay at its first step.
+     *
+     * @param the_replay the replay to play
+     */
+    public ReplayPlayer(final Replay the_replay) {
+        myReplay = the_replay;
+        mySimulation = new Simulation(the_replay.getWidth(), the_replay.getHeight(),
+                                      the_replay.getSeed());
+        if (isFinished()) {
+            applyInputs(0);
+        }
+    }
+
+    /**
+     * Adds an observer to the board; it is notified on the playing thread.
+     *
+     * @param the_observer the observer to add
+     */
+    public void addBoardObserver(final Observer the_observer) {
+        mySimulation.getBoard().addObserver(the_observer);
+    }
+
+    /**
+     * @return the number of steps played so far
+     */
+    public int getStep() {
+        return mySimulation.getSteps();
+    }
+
+    /**
+     * @return true once every step of the replay has been played
+     */
+    public boolean isFinished() {
+        return mySimulation.getSteps() >= myReplay.getLength();
+    }
+
+    /**
+     * Plays the next step: the inputs recorded before it, then the step itself.
+     * The last step also applies the inputs recorded after it, such as the
+     * drop that ended the game, which no step followed.
+     *
+     * @throws IllegalStateException if the replay is finished, or the game
+     *         played differs from the one recorded
+     */
+    public void step() {
+        if (isFinished()) {
+            throw new IllegalStateException("replay finished");
+        }
+        final int step = mySimulation.getSteps();
+        applyInputs(step);
+        while (myNextTiming < myReplay.getTimingCount()
+                && myReplay.getTimingStep(myNextTiming) <= step) {
+            myDelay = myReplay.getDelay(myNextTiming);
+            myRate = myReplay.getRate(myNextTiming);
+            myLockDelay = myReplay.getLockDelay(myNextTiming);
+            myNextTiming++;
+        }
+        mySimulation.step(myDelay, myRate, myLockDelay);
+
+        final int played = mySimulation.getSteps();
+        if (played != step + 1) {
+            throw new IllegalStateException("replay ended early at step " + step);
+        }
+        final int keyframe = played / Replay.KEYFRAME_INTERVAL - 1;
+        if (played % Replay.KEYFRAME_INTERVAL == 0 && keyframe < myReplay.getKeyframeCount()
+                && mySimulation.digest() != myReplay.getKeyframe(keyframe)) {
+            throw new IllegalStateException("replay diverged before step " + played);
+        }
+        if (isFinished()) {
+            applyInputs(played);
+        }
+    }
+
+    /**
+     * Applies the inputs recorded up to a step that have not been applied yet.
+     *
+     * @param the_step the step the inputs were recorded before
+     */
+    private void applyInputs(final int the_step) {
+        while (myNextInput < myReplay.getInputCount()
+                && myReplay.getInputStep(myNextInput) <= the_step) {
+            mySimulation.apply(Replay.decode(myReplay.getInput(myNextInput)), false);
+            myNextInput++;
+        }
+    }
+
+    /**
+     * Plays steps without taking snapshots, as when skipping ahead.
+     *
+     * @param the_step the step to stop at, no further than the replay's length
+     */
+    public void skipTo(final int the_step) {
+        while (mySimulation.getSteps() < the_step) {
+            step();
+        }
+    }
+
+    /**
+     * @return a snapshot of the game as of the last step played
+     */
+    public GameSnapshot getSnapshot() {
+        return new GameSnapshot(mySimulation.getSteps(), mySimulation.getSteps(),
+                                mySimulation.getBoard(), mySimulation.getSchedule());
+    }
+}
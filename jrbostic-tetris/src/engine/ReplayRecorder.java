@@ -0,0 +1,187 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package engine;
+
+import java.util.Arrays;
+
+/**
+ * Records the game a {@link SimulationLoop} is playing, as it is played.
+ * The simulation thread records; any thread may take a {@link Replay} of the
+ * game so far.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+final class ReplayRecorder {
+
+    /**
+     * The initial capacity of the input and timing records.
+     */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * The block width of the game board.
+     */
+    private final int myWidth;
+
+    /**
+     * The block height of the game board.
+     */
+    private final int myHeight;
+
+    /**
+     * The seed of the game's pieces.
+     */
+    private final long mySeed;
+
+    /**
+     * The number of steps played.
+     */
+    private int myLength;
+
+    /**
+     * The step each input was applied before.
+     */
+    private int[] myInputSteps;
+
+    /**
+     * The input codes.
+     */
+    private byte[] myInputs;
+
+    /**
+     * The number of inputs recorded.
+     */
+    private int myInputCount;
+
+    /**
+     * The step each timing change was applied before.
+     */
+    private int[] myTimingSteps;
+
+    /**
+     * The delayed auto shift from each timing change, in nanoseconds.
+     */
+    private long[] myDelays;
+
+    /**
+     * The auto repeat rate from each timing change, in nanoseconds.
+     */
+    private long[] myRates;
+
+    /**
+     * The lock delay from each timing change, in nanoseconds.
+     */
+    private long[] myLockDelays;
+
+    /**
+     * The number of timing changes recorded.
+     */
+    private int myTimingCount;
+
+    /**
+     * The digests of the game at each keyframe.
+     */
+    private long[] myKeyframes;
+
+    /**
+     * The number of keyframes recorded.
+     */
+    private int myKeyframeCount;
+
+    /**
+     * Starts recording a game.
+     *
+     * @param the_width the block width of the game board
+     * @param the_height the block height of the game board
+     * @param the_seed the seed of the game's pieces
+     */
+    ReplayRecorder(final int the_width, final int the_height, final long the_seed) {
+        myWidth = the_width;
+        myHeight = the_height;
+        mySeed = the_seed;
+        myInputSteps = new int[INITIAL_CAPACITY];
+        myInputs = new byte[INITIAL_CAPACITY];
+        myTimingSteps = new int[1];
+        myDelays = new long[1];
+        myRates = new long[1];
+        myLockDelays = new long[1];
+        myKeyframes = new long[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Records an input applied before a step.
+     *
+     * @param the_step the step the input was applied before
+     * @param the_event the input
+     */
+    synchronized void recordInput(final int the_step, final InputEvent the_event) {
+        if (myInputCount == myInputs.length) {
+            myInputSteps = Arrays.copyOf(myInputSteps, 2 * myInputCount);
+            myInputs = Arrays.copyOf(myInputs, 2 * myInputCount);
+        }
+        myInputSteps[myInputCount] = the_step;
+        myInputs[myInputCount] = Replay.encode(the_event);
+        myInputCount++;
+    }
+
+    /**
+     * Records the repeat and lock timings of a step, if they changed.
+     *
+     * @param the_step the step the timings are applied to
+     * @param the_delay the delayed auto shift, in nanoseconds
+     * @param the_rate the auto repeat rate, in nanoseconds
+     * @param the_lock_delay the lock delay, in nanoseconds
+     */
+    synchronized void recordTimings(final int the_step, final long the_delay,
+                                    final long the_rate, final long the_lock_delay) {
+        if (myTimingCount > 0 && myDelays[myTimingCount - 1] == the_delay
+                && myRates[myTimingCount - 1] == the_rate
+                && myLockDelays[myTimingCount - 1] == the_lock_delay) {
+            return;
+        }
+        if (myTimingCount == myTimingSteps.length) {
+            myTimingSteps = Arrays.copyOf(myTimingSteps, 2 * myTimingCount);
+            myDelays = Arrays.copyOf(myDelays, 2 * myTimingCount);
+            myRates = Arrays.copyOf(myRates, 2 * myTimingCount);
+            myLockDelays = Arrays.copyOf(myLockDelays, 2 * myTimingCount);
+        }
+        myTimingSteps[myTimingCount] = the_step;
+        myDelays[myTimingCount] = the_delay;
+        myRates[myTimingCount] = the_rate;
+        myLockDelays[myTimingCount] = the_lock_delay;
+        myTimingCount++;
+    }
+
+    /**
+     * Records that a step was played, keeping a keyframe when one is due.
+     *
+     * @param the_simulation the simulation after the step
+     */
+    synchronized void recordStep(final Simulation the_simulation) {
+        myLength = the_simulation.getSteps();
+        if (myLength % Replay.KEYFRAME_INTERVAL == 0) {
+            if (myKeyframeCount == myKeyframes.length) {
+                myKeyframes = Arrays.copyOf(myKeyframes, 2 * myKeyframeCount);
+            }
+            myKeyframes[myKeyframeCount] = the_simulation.digest();
+            myKeyframeCount++;
+        }
+    }
+
+    /**
+     * @return a replay of the game so far
+     */
+    synchronized Replay toReplay() {
+        return new Replay(myWidth, myHeight, mySeed, myLength,
+                          Arrays.copyOf(myInputSteps, myInputCount),
+                          Arrays.copyOf(myInputs, myInputCount),
+                          Arrays.copyOf(myTimingSteps, myTimingCount),
+                          Arrays.copyOf(myDelays, myTimingCount),
+                          Arrays.copyOf(myRates, myTimingCount),
+                          Arrays.copyOf(myLockDelays, myTimingCount),
+                          Arrays.copyOf(myKeyframes, myKeyframeCount));
+    }
+}
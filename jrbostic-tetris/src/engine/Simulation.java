@@ -0,0 +1,275 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package engine;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import model.AbstractPiece;
+import model.Block;
+import model.Board;
+import model.LevelSchedule;
+import model.Piece;
+
+/**
+ * The deterministic core of a game: the board, its level schedule, the held
+ * keys and gravity, advanced one fixed step at a time. Given the same seed,
+ * inputs and timings at the same steps, two simulations play the same game,
+ * which is what lets replays be recorded live and played back offscreen.
+ * Not thread safe; a simulation belongs to the thread stepping it.
+ *
+ * <p>Gravity accumulates in fixed point, 1/{@link LevelSchedule#ONE_G}ths of
+ * a row per step, and the whole rows it adds up to are fallen in one move, so
+ * anything from a row a minute to twenty rows a step costs the same. A piece
+ * that comes to rest locks once it has rested for the lock delay; falling any
+ * further restarts the delay.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+final class Simulation {
+
+    /**
+     * The multiplier of the state digest.
+     */
+    private static final long DIGEST_PRIME = 1099511628211L;
+
+    /**
+     * The width of the game board.
+     */
+    private final int myBoardWidth;
+
+    /**
+     * The height of the game board.
+     */
+    private final int myBoardHeight;
+
+    /**
+     * The source of the board's pieces, reseeded for every game.
+     */
+    private final Random myRandom;
+
+    /**
+     * The game board.
+     */
+    private final Board myBoard;
+
+    /**
+     * The gravity and level progression of the current game.
+     */
+    private final LevelSchedule mySchedule;
+
+    /**
+     * The held keys and their auto repeat.
+     */
+    private final AutoShift myAutoShift;
+
+    /**
+     * The gravity accumulated toward the next row, in 1/ONE_G rows.
+     */
+    private int myGravity;
+
+    /**
+     * The time the current piece has rested on the stack, in nanoseconds.
+     */
+    private long myLock;
+
+    /**
+     * The piece the lock delay is being counted for.
+     */
+    private Piece myPiece;
+
+    /**
+     * The number of steps the current game has been advanced.
+     */
+    private int mySteps;
+
+    /**
+     * DIGEST_PRIME to the power of the board width: the factor by which the
+     * digest of the rows below a row is carried past it.
+     */
+    private final long myRowFactor;
+
+    /**
+     * The digest of each frozen row as of the last digest, by row array. A
+     * row array never changes once on the board, so only rows new since the
+     * last digest are summed again; a large board costs a lookup per row.
+     */
+    private Map<Block[], Long> myRowDigests = new IdentityHashMap<>();
+
+    /**
+     * Constructs a simulation and starts its first game.
+     *
+     * @param the_width the block width of the game board
+     * @param the_height the block height of the game board
+     * @param the_seed the seed of the first game's pieces
+     */
+    Simulation(final int the_width, final int the_height, final long the_seed) {
+        myBoardWidth = the_width;
+        myBoardHeight = the_height;
+        myRandom = new Random(the_seed);
+        myBoard = new Board(the_width, the_height, new LinkedList<Piece>(), myRandom);
+        mySchedule = new LevelSchedule();
+        myAutoShift = new AutoShift(myBoard, 0, 0);
+        long factor = 1;
+        for (int i = 0; i < the_width; i++) {
+            factor *= DIGEST_PRIME;
+        }
+        myRowFactor = factor;
+    }
+
+    /**
+     * Replaces the current game with a new one.
+     *
+     * @param the_seed the seed of the new game's pieces
+     */
+    void newGame(final long the_seed) {
+        myRandom.setSeed(the_seed);
+        myGravity = 0;
+        myLock = 0;
+        myPiece = null;
+        mySteps = 0;
+        mySchedule.reset();
+        myAutoShift.releaseAll();
+        myBoard.newGame(myBoardWidth, myBoardHeight, new LinkedList<Piece>());
+    }
+
+    /**
+     * Applies an input. Key releases always apply; presses are ignored while
+     * paused or once the game is over.
+     *
+     * @param the_event the input
+     * @param the_paused whether the game is paused
+     * @return true if the input changed the held keys or the board
+     */
+    boolean apply(final InputEvent the_event, final boolean the_paused) {
+        boolean result = true;
+        if (!the_event.isPressed()) {
+            result = myAutoShift.release(the_event.getCommand());
+        } else if (!the_paused && !myBoard.isGameOver()) {
+            myAutoShift.press(the_event.getCommand());
+            if (the_event.isTap()) {
+                myAutoShift.release(the_event.getCommand());
+            }
+        } else {
+            result = false;
+        }
+        return result;
+    }
+
+    /**
+     * Advances the game by one fixed step, unless it is over.
+     *
+     * @param the_delay the delayed auto shift of held keys, in nanoseconds
+     * @param the_rate the auto repeat rate of held keys, in nanoseconds
+     * @param the_lock_delay the time a resting piece waits before it locks,
+     *                       in nanoseconds; zero locks it as it lands
+     * @return true if the game went up a level
+     */
+    boolean step(final long the_delay, final long the_rate, final long the_lock_delay) {
+        boolean result = false;
+        if (!myBoard.isGameOver()) {
+            mySteps++;
+            myAutoShift.setTimings(the_delay, the_rate);
+            myAutoShift.step(SimulationLoop.STEP);
+            myBoard.getStats().addTime(SimulationLoop.STEP);
+        }
+        if (!myBoard.isGameOver()) {
+            if (myBoard.getCurrentPiece() != myPiece) {
+                myPiece = myBoard.getCurrentPiece();
+                myLock = 0;
+            }
+            myGravity += mySchedule.getGravity();
+            final int rows = myGravity / LevelSchedule.ONE_G;
+            myGravity %= LevelSchedule.ONE_G;
+            for (int i = 0; i < rows; i++) {
+                result |= mySchedule.tick();
+            }
+            if (myBoard.fall(rows) > 0) {
+                myLock = 0;
+            }
+            if (myBoard.getDropDistance() == 0) {
+                myLock += SimulationLoop.STEP;
+                if (myLock >= the_lock_delay) {
+                    myBoard.lock();
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the game board
+     */
+    Board getBoard() {
+        return myBoard;
+    }
+
+    /**
+     * @return the level schedule of the current game
+     */
+    LevelSchedule getSchedule() {
+        return mySchedule;
+    }
+
+    /**
+     * @return the number of steps the current game has been advanced
+     */
+    int getSteps() {
+        return mySteps;
+    }
+
+    /**
+     * Sums up the visible state of the game: the frozen blocks, the current
+     * piece and the level progress. Two simulations of one replay that agree
+     * on every digest have played the same game.
+     *
+     * @return the digest
+     */
+    long digest() {
+        long result = mySchedule.getLevel() * DIGEST_PRIME + mySchedule.getTicks();
+        final List<Block[]> rows = myBoard.getFrozenBlocks();
+        final Map<Block[], Long> rowDigests = new IdentityHashMap<>(rows.size());
+        for (Block[] row : rows) {
+            Long rowDigest = myRowDigests.get(row);
+            if (rowDigest == null) {
+                rowDigest = digest(row);
+            }
+            rowDigests.put(row, rowDigest);
+            result = result * myRowFactor + rowDigest;
+        }
+        myRowDigests = rowDigests;
+        final AbstractPiece piece = (AbstractPiece) myBoard.getCurrentPiece();
+        for (int[] block : piece.getBoardCoordinates()) {
+            result = (result * DIGEST_PRIME + block[0]) * DIGEST_PRIME + block[1];
+        }
+        return result;
+    }
+
+    /**
+     * Sums up a row of frozen blocks, so that carrying the digest of the rows
+     * below by the row factor and adding this gives the same digest as
+     * summing the row's blocks one by one.
+     *
+     * @param the_row the blocks of the row
+     * @return the digest of the row
+     */
+    private static long digest(final Block[] the_row) {
+        long result = 0;
+        for (Block block : the_row) {
+            final int value;
+            if (block == null) {
+                value = 0;
+            } else {
+                value = block.ordinal() + 1;
+            }
+            result = result * DIGEST_PRIME + value;
+        }
+        return result;
+    }
+}
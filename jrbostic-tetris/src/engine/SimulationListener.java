@@ -0,0 +1,33 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package engine;
+
+/**
+ * Receives game events from the simulation thread. Methods are called on that
+ * thread, so implementations touching Swing must hand off to the EDT.
+ * 
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+public interface SimulationListener {
+    
+    /**
+     * Called after a new snapshot of the game has been published.
+     */
+    void framePublished();
+    
+    /**
+     * Called when the game advances a level.
+     * 
+     * @param the_level the new level
+     */
+    void levelUp(int the_level);
+    
+    /**
+     * Called once when the game ends, after the snapshot of its final state
+     * is published.
+     */
+    void gameOver();
+}
@@ -0,0 +1,445 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package engine;
+
+import java.util.Observable;
+import java.util.Observer;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a game on its own thread with a fixed timestep driven by
+ * System.nanoTime(), independent of the EDT. Key presses and releases are
+ * queued from any thread and applied as soon as the simulation thread wakes;
+ * held keys repeat on the simulation clock (see {@link AutoShift}). Gravity advances
+ * in fixed point rows per step, carrying any fraction from step to step, so
+ * level timing never drifts. After every change an immutable snapshot is
+ * published for renderers. Each game is recorded as it is played, so it can
+ * be saved as a {@link Replay}.
+ *
+ * <p>The board belongs to the simulation thread once the loop has started;
+ * observers added to it are notified on that thread.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+public class SimulationLoop implements Runnable, Observer {
+
+    /**
+     * The length of one simulation step, in nanoseconds; sixty steps a second.
+     */
+    public static final long STEP = 1000000000L / 60;
+
+    /**
+     * The default delayed auto shift of held keys, in milliseconds.
+     */
+    public static final int DEFAULT_SHIFT_DELAY = 167;
+
+    /**
+     * The default auto repeat rate of held keys, in milliseconds.
+     */
+    public static final int DEFAULT_SHIFT_RATE = 33;
+
+    /**
+     * The default time a piece resting on the stack waits before it locks,
+     * in milliseconds.
+     */
+    public static final int DEFAULT_LOCK_DELAY = 500;
+
+    /**
+     * The inputs that repeat while their keys are held.
+     */
+    private static final GameCommand[] HELD_COMMANDS = {GameCommand.LEFT,
+        GameCommand.RIGHT, GameCommand.DOWN};
+
+    /**
+     * The number of steps the loop may fall behind before it stops catching up.
+     */
+    private static final int MAX_CATCH_UP = 5;
+
+    /**
+     * The number of nanoseconds in a millisecond.
+     */
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /**
+     * The board, level schedule, held keys and gravity of the current game.
+     */
+    private final Simulation mySimulation;
+
+    /**
+     * The source of each game's seed.
+     */
+    private final Random mySeeds;
+
+    /**
+     * The width of the game board.
+     */
+    private final int myBoardWidth;
+
+    /**
+     * The height of the game board.
+     */
+    private final int myBoardHeight;
+
+    /**
+     * The inputs waiting for the simulation thread.
+     */
+    private final Queue<InputEvent> myCommands;
+
+    /**
+     * The thread running the simulation.
+     */
+    private final Thread myThread;
+
+    /**
+     * The receiver of game events.
+     */
+    private volatile SimulationListener myListener;
+
+    /**
+     * The publisher handing snapshots to renderers and observers.
+     */
+    private final SnapshotPublisher myPublisher;
+
+    /**
+     * Whether gravity is suspended.
+     */
+    private volatile boolean myPaused;
+
+    /**
+     * The delayed auto shift requested for held keys, in nanoseconds.
+     */
+    private volatile long myShiftDelay;
+
+    /**
+     * The auto repeat rate requested for held keys, in nanoseconds.
+     */
+    private volatile long myShiftRate;
+
+    /**
+     * The lock delay requested for resting pieces, in nanoseconds.
+     */
+    private volatile long myLockDelay;
+
+    /**
+     * Whether a new game has been requested.
+     */
+    private volatile boolean myNewGameRequested;
+
+    /**
+     * Whether the loop should keep running.
+     */
+    private volatile boolean myRunning;
+
+    /**
+     * The number of snapshots published.
+     */
+    private long mySequence;
+
+    /**
+     * The number of steps run.
+     */
+    private long mySteps;
+
+    /**
+     * The recording of the current game.
+     */
+    private volatile ReplayRecorder myRecorder;
+
+    /**
+     * Whether the board changed since the last snapshot.
+     */
+    private boolean myChanged;
+
+    /**
+     * Whether the end of the current game has been reported.
+     */
+    private boolean myGameOverReported;
+
+    /**
+     * Constructs a loop for a new game on a board of the given size.
+     *
+     * @param the_width the block width of the game board
+     * @param the_height the block height of the game board
+     */
+    public SimulationLoop(final int the_width, final int the_height) {
+        this(the_width, the_height, new Random().nextLong());
+    }
+
+    /**
+     * Constructs a loop for a new game on a board of the given size whose
+     * games are seeded from a known seed, so the same inputs play the same games.
+     *
+     * @param the_width the block width of the game board
+     * @param the_height the block height of the game board
+     * @param the_seed the seed from which each game's seed is drawn
+     */
+    public SimulationLoop(final int the_width, final int the_height, final long the_seed) {
+        myBoardWidth = the_width;
+        myBoardHeight = the_height;
+        mySeeds = new Random(the_seed);
+        final long seed = mySeeds.nextLong();
+        mySimulation = new Simulation(the_width, the_height, seed);
+        myRecorder = new ReplayRecorder(the_width, the_height, seed);
+        mySimulation.getBoard().addObserver(this);
+        myCommands = new ConcurrentLinkedQueue<>();
+        setAutoShift(DEFAULT_SHIFT_DELAY, DEFAULT_SHIFT_RATE);
+        setLockDelay(DEFAULT_LOCK_DELAY);
+        myThread = new Thread(this, "simulation");
+        myThread.setDaemon(true);
+        myThread.setPriority(Thread.MAX_PRIORITY);
+        myPublisher = new SnapshotPublisher(new GameSnapshot(0, 0, mySimulation.getBoard(),
+                                                        mySimulation.getSchedule()));
+    }
+
+    /**
+     * Starts the simulation thread.
+     */
+    public void start() {
+        myRunning = true;
+        myThread.start();
+    }
+
+    /**
+     * Stops the simulation thread.
+     */
+    public void stop() {
+        myRunning = false;
+        LockSupport.unpark(myThread);
+    }
+
+    /**
+     * Queues a key press that is released straight away; safe from any thread.
+     *
+     * @param the_command the input to apply once
+     */
+    public void submit(final GameCommand the_command) {
+        enqueue(new InputEvent(the_command, true, true));
+    }
+
+    /**
+     * Queues a key going down; safe from any thread.
+     *
+     * @param the_command the input whose key went down
+     */
+    public void press(final GameCommand the_command) {
+        enqueue(new InputEvent(the_command, true, false));
+    }
+
+    /**
+     * Queues a key going up; safe from any thread.
+     *
+     * @param the_command the input whose key went up
+     */
+    public void release(final GameCommand the_command) {
+        enqueue(new InputEvent(the_command, false, false));
+    }
+
+    /**
+     * Sets the auto repeat of held movement keys.
+     *
+     * @param the_delay the delayed auto shift, in milliseconds
+     * @param the_rate the auto repeat rate, in milliseconds; zero slides to the wall
+     */
+    public void setAutoShift(final int the_delay, final int the_rate) {
+        myShiftDelay = the_delay * NANOS_PER_MILLI;
+        myShiftRate = the_rate * NANOS_PER_MILLI;
+    }
+
+    /**
+     * Sets the time a piece resting on the stack waits before it locks.
+     *
+     * @param the_delay the lock delay, in milliseconds; zero locks pieces as they land
+     */
+    public void setLockDelay(final int the_delay) {
+        myLockDelay = the_delay * NANOS_PER_MILLI;
+    }
+
+    /**
+     * Suspends or resumes gravity and input. Pausing releases every held
+     * key, since whatever takes the focus keeps its key releases from
+     * arriving; the releases are queued like any other input, so replays
+     * record them too.
+     *
+     * @param the_paused whether the game should be paused
+     */
+    public void setPaused(final boolean the_paused) {
+        myPaused = the_paused;
+        if (the_paused) {
+            for (final GameCommand command : HELD_COMMANDS) {
+                release(command);
+            }
+        }
+        LockSupport.unpark(myThread);
+    }
+
+    /**
+     * Requests that the current game be replaced by a new one.
+     */
+    public void newGame() {
+        myNewGameRequested = true;
+        LockSupport.unpark(myThread);
+    }
+
+    /**
+     * Sets the receiver of game events.
+     *
+     * @param the_listener the listener
+     */
+    public void setListener(final SimulationListener the_listener) {
+        myListener = the_listener;
+    }
+
+    /**
+     * Adds an observer to the board; it is notified on the simulation thread.
+     *
+     * @param the_observer the observer to add
+     */
+    public void addBoardObserver(final Observer the_observer) {
+        mySimulation.getBoard().addObserver(the_observer);
+    }
+
+    /**
+     * Returns a replay of the current game so far, or of the last game once
+     * it is over; safe from any thread.
+     *
+     * @return the replay
+     */
+    public Replay getReplay() {
+        return myRecorder.toReplay();
+    }
+
+    /**
+     * @return the most recently published snapshot of the game
+     */
+    public GameSnapshot getSnapshot() {
+        return myPublisher.getLatest();
+    }
+
+    /**
+     * @return the publisher of this game's snapshots, for readers on other threads
+     */
+    public SnapshotPublisher getPublisher() {
+        return myPublisher;
+    }
+
+    /**
+     * Runs fixed steps until stopped, applying queued inputs as they arrive.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        long nextStep = System.nanoTime() + STEP;
+        while (myRunning) {
+            applyCommands();
+            final long now = System.nanoTime();
+            if (now - nextStep >= 0) {
+                step();
+                nextStep += STEP;
+                if (now - nextStep > MAX_CATCH_UP * STEP) {
+                    nextStep = now + STEP;
+                }
+            }
+            publish();
+            final long wait = nextStep - System.nanoTime();
+            if (wait > 0 && myCommands.isEmpty() && !myNewGameRequested) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+    }
+
+    /**
+     * Adds an input to the queue and wakes the simulation thread.
+     *
+     * @param the_event the input
+     */
+    private void enqueue(final InputEvent the_event) {
+        myCommands.add(the_event);
+        LockSupport.unpark(myThread);
+    }
+
+    /**
+     * Records that the board changed.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void update(final Observable the_observable, final Object the_object) {
+        myChanged = true;
+    }
+
+    /**
+     * Starts a new game if requested, then applies every queued input.
+     */
+    private void applyCommands() {
+        if (myNewGameRequested) {
+            myNewGameRequested = false;
+            myCommands.clear();
+            myGameOverReported = false;
+            final long seed = mySeeds.nextLong();
+            myRecorder = new ReplayRecorder(myBoardWidth, myBoardHeight, seed);
+            mySimulation.newGame(seed);
+        }
+        InputEvent event = myCommands.poll();
+        while (event != null) {
+            if (mySimulation.apply(event, myPaused)) {
+                myRecorder.recordInput(mySimulation.getSteps(), event);
+            }
+            event = myCommands.poll();
+        }
+    }
+
+    /**
+     * Advances the game by one fixed step.
+     */
+    private void step() {
+        mySteps++;
+        if (!myPaused && !mySimulation.getBoard().isGameOver()) {
+            final long delay = myShiftDelay;
+            final long rate = myShiftRate;
+            final long lock = myLockDelay;
+            myRecorder.recordTimings(mySimulation.getSteps(), delay, rate, lock);
+            final boolean levelUp = mySimulation.step(delay, rate, lock);
+            myRecorder.recordStep(mySimulation);
+            if (levelUp) {
+                myChanged = true;
+                final SimulationListener listener = myListener;
+                if (listener != null) {
+                    listener.levelUp(mySimulation.getSchedule().getLevel());
+                }
+            }
+        }
+        if (mySimulation.getBoard().isGameOver() && !myGameOverReported) {
+            myGameOverReported = true;
+            //so the listener finds the final state in the latest snapshot
+            publish();
+            final SimulationListener listener = myListener;
+            if (listener != null) {
+                listener.gameOver();
+            }
+        }
+    }
+
+    /**
+     * Publishes a snapshot if the game changed since the last one.
+     */
+    private void publish() {
+        if (myChanged) {
+            myChanged = false;
+            mySequence++;
+            myPublisher.publish(new GameSnapshot(mySequence, mySteps,
+                                                mySimulation.getBoard(),
+                                                mySimulation.getSchedule()));
+            final SimulationListener listener = myListener;
+            if (listener != null) {
+                listener.framePublished();
+            }
+        }
+    }
+}
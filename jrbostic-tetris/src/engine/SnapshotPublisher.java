@@ -0,0 +1,98 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package engine;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands immutable snapshots from the single simulation thread to any number of
+ * readers. Publishing is one volatile write; reading is one volatile read, so
+ * renderers, spectators and telemetry see a consistent game state without
+ * locks and without copying, while the simulation runs at full speed. Readers
+ * that want every new state can wait for a snapshot newer than the last one
+ * they saw.
+ * 
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+public final class SnapshotPublisher {
+    
+    /**
+     * The threads waiting for a newer snapshot.
+     */
+    private final Queue<Thread> myWaiters;
+    
+    /**
+     * The most recently published snapshot.
+     */
+    private volatile GameSnapshot myLatest;
+    
+    /**
+     * Constructs a publisher holding an initial snapshot.
+     * 
+     * @param the_initial the snapshot readers see until the first publication
+     */
+    public SnapshotPublisher(final GameSnapshot the_initial) {
+        myWaiters = new ConcurrentLinkedQueue<>();
+        myLatest = the_initial;
+    }
+    
+    /**
+     * Publishes a new snapshot; called only by the simulation thread.
+     * 
+     * @param the_snapshot the snapshot, with a higher sequence than the last
+     */
+    void publish(final GameSnapshot the_snapshot) {
+        myLatest = the_snapshot;
+        if (!myWaiters.isEmpty()) {
+            for (Thread waiter : myWaiters) {
+                LockSupport.unpark(waiter);
+            }
+        }
+    }
+    
+    /**
+     * @return the most recently published snapshot
+     */
+    public GameSnapshot getLatest() {
+        return myLatest;
+    }
+    
+    /**
+     * Waits until a snapshot newer than the given sequence is published.
+     * 
+     * @param the_sequence the sequence of the last snapshot seen
+     * @param the_timeout the longest time to wait, in nanoseconds
+     * @return the latest snapshot, which is not newer if the wait timed out
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public GameSnapshot awaitNewer(final long the_sequence, final long the_timeout) 
+        throws InterruptedException {
+        GameSnapshot result = myLatest;
+        if (result.getSequence() <= the_sequence) {
+            final Thread waiter = Thread.currentThread();
+            final long deadline = System.nanoTime() + the_timeout;
+            myWaiters.add(waiter);
+            try {
+                //a snapshot published before this thread was listed woke no one
+                result = myLatest;
+                long remaining = the_timeout;
+                while (result.getSequence() <= the_sequence && remaining > 0) {
+                    LockSupport.parkNanos(this, remaining);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                    result = myLatest;
+                    remaining = deadline - System.nanoTime();
+                }
+            } finally {
+                myWaiters.remove(waiter);
+            }
+        }
+        return result;
+    }
+}
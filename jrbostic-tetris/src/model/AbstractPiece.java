@@ -80,6 +80,15 @@ public abstract class AbstractPiece implements Piece, Cloneable {
         myY--;
     }
 
+    /**
+     * Shifts the piece down by the given number of rows at once.
+     * 
+     * @param theRows the number of rows to move down
+     */
+    public final void moveDown(final int theRows) {
+        myY -= theRows;
+    }
+
     /**
      * {@inheritDoc}
      */
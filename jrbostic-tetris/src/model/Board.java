@@ -13,6 +13,11 @@ import java.util.Random;
 /**
  * A representation of a Tetris game board.
  * 
+ * <p>Boards of thousands of rows and columns are supported: rows are held in
+ * an array list alongside a bit per cell packed into words, a lock checks only
+ * the rows it touched, and a new piece appears a fixed distance above the
+ * stack rather than at the top of the board.
+ * 
  * @author Alan Fowler
  * @version Autumn 2013
  */
@@ -43,9 +48,6 @@ public final class Board extends Observable {
     /** The representation of the current piece's position in string output. */
     private static final String CURRENT_PIECE = "*";
 
-    /** The random number generator used for choosing new pieces. */
-    private static final Random RANDOM = new Random();
-
     /** The minimum size of a board. */
     private static final int MIN_SIZE = 5;
 
@@ -55,6 +57,15 @@ public final class Board extends Observable {
     /** The number of extra rows above the board to display in String output. */
     private static final int EXTRA_ROWS = 4;
 
+    /** The number of cells in each word of a packed row. */
+    private static final int WORD_BITS = Long.SIZE;
+
+    /**
+     * The most rows above the stack a new piece appears; on a standard board
+     * pieces always appear at the top.
+     */
+    private static final int SPAWN_HEIGHT = DEFAULT_HEIGHT;
+
     // instance fields
 
     /**
@@ -72,6 +83,17 @@ public final class Board extends Observable {
      */
     private final List<Block[]> myBlocks;
 
+    /**
+     * The occupied cells of each row of frozen blocks, a bit per column packed
+     * into words.
+     */
+    private final List<long[]> myOccupied;
+
+    /**
+     * The bits of the last word of a full row.
+     */
+    private long myLastWordMask;
+
     /**
      * The piece currently being moved on the board.
      */
@@ -92,6 +114,22 @@ public final class Board extends Observable {
      */
     private boolean myGameOver;
 
+    /**
+     * The random number generator used for choosing new pieces.
+     */
+    private final Random myRandom;
+
+    /**
+     * The height of the stack in each column: one more than the row of its
+     * highest frozen block, or zero for an empty column.
+     */
+    private int[] myColumnHeights;
+
+    /**
+     * The score and statistics of the current game.
+     */
+    private final GameStats myStats;
+
     /**
      * Constructs a Board using the specified dimensions.
      * 
@@ -101,9 +139,26 @@ public final class Board extends Observable {
      */
     public Board(final int theWidth, final int theHeight,
                  final List<Piece> thePieces) {
+        this(theWidth, theHeight, thePieces, new Random());
+    }
+
+    /**
+     * Constructs a Board using the specified dimensions and a private source
+     * of randomness, so that boards never share piece generation state.
+     * 
+     * @param theWidth the width to assign
+     * @param theHeight the height to assign
+     * @param thePieces the sequence of pieces to use; empty list indicates a random game
+     * @param theRandom the random number generator used for choosing new pieces
+     */
+    public Board(final int theWidth, final int theHeight,
+                 final List<Piece> thePieces, final Random theRandom) {
         super();
+        myRandom = theRandom;
         myPieces = new ArrayList<>();
-        myBlocks = new LinkedList<Block[]>();
+        myBlocks = new ArrayList<Block[]>();
+        myOccupied = new ArrayList<long[]>();
+        myStats = new GameStats();
         newGame(theWidth, theHeight, thePieces);
     }
 
@@ -131,6 +186,10 @@ public final class Board extends Observable {
         myWidth = theWidth;
         myHeight = theHeight;
         myBlocks.clear();
+        myOccupied.clear();
+        myLastWordMask = -1L >>> (WORD_BITS - 1 - (theWidth - 1) % WORD_BITS);
+        myColumnHeights = new int[theWidth];
+        myStats.reset();
         if (thePieces == null) {
             myPieces.clear();
         } else {
@@ -158,7 +217,9 @@ public final class Board extends Observable {
     }
 
     /**
-     * Returns the current frozen blocks on the board.
+     * Returns the current frozen blocks on the board. The row arrays are
+     * never modified once they are on the board; a row that changes is
+     * replaced by a modified copy, so rows may be shared with other threads.
      * 
      * @return the current frozen blocks on the board.
      */
@@ -175,6 +236,16 @@ public final class Board extends Observable {
         return myCurrentPiece;
     }
 
+    /**
+     * Returns the score and statistics of the current game, updated as each
+     * piece locks and before observers are told of the lock.
+     * 
+     * @return the statistics of the current game
+     */
+    public GameStats getStats() {
+        return myStats;
+    }
+
     /**
      * Attempts to move the current piece to the left.
      * 
@@ -232,6 +303,51 @@ public final class Board extends Observable {
         return canPass;
     }
 
+    /**
+     * Moves the current piece as far left as it can go in one move.
+     * 
+     * @return the number of columns the piece moved
+     */
+    public int slideLeft() {
+        final int distance = slideRoom(-1);
+        for (int i = 0; i < distance; i++) {
+            myCurrentPiece.moveLeft();
+        }
+        if (distance > 0) {
+            setChanged();
+            notifyObservers();
+        }
+        return distance;
+    }
+
+    /**
+     * Moves the current piece as far right as it can go in one move.
+     * 
+     * @return the number of columns the piece moved
+     */
+    public int slideRight() {
+        final int distance = slideRoom(1);
+        for (int i = 0; i < distance; i++) {
+            myCurrentPiece.moveRight();
+        }
+        if (distance > 0) {
+            setChanged();
+            notifyObservers();
+        }
+        return distance;
+    }
+
+    /**
+     * Returns the height of the stack in a column.
+     * 
+     * @param theX The x-coordinate of the column
+     * @return one more than the row of the highest frozen block in the column,
+     *         or zero if the column is empty
+     */
+    public int getColumnHeight(final int theX) {
+        return myColumnHeights[theX];
+    }
+
     /**
      * Attempts to move the current piece down.
      * 
@@ -267,10 +383,63 @@ public final class Board extends Observable {
      * Drops the current Piece all the way down.
      */
     public void hardDrop() {
-        boolean can_pass = true;
-        while (can_pass) {
-            can_pass = moveDown();
+        fall(getDropDistance());
+        freeze();
+    }
+
+    /**
+     * Returns the number of rows the current piece can fall before it rests
+     * on the floor or the stack. A block above the stack of its column rests
+     * on the top of that stack, so the column height map settles most blocks
+     * without looking at the rows; only a block under an overhang scans down.
+     * 
+     * @return the number of free rows below the current piece
+     */
+    public int getDropDistance() {
+        final int[][] blocks = ((AbstractPiece) myCurrentPiece).getBoardCoordinates();
+        int result = Integer.MAX_VALUE;
+
+        for (int i = 0; i < blocks.length; i++) {
+            final int x = blocks[i][0];
+            final int y = blocks[i][1];
+            int room;
+            if (y >= myColumnHeights[x]) {
+                room = y - myColumnHeights[x];
+            } else {
+                room = 0;
+                while (room < result && y - room > 0
+                       && blockAt(x, y - room - 1) == Block.EMPTY) {
+                    room++;
+                }
+            }
+            result = Math.min(result, room);
         }
+        return result;
+    }
+
+    /**
+     * Moves the current piece down by up to the given number of rows in one
+     * move, stopping where it comes to rest. Unlike {@link #moveDown()}, a
+     * piece that cannot fall is left where it is rather than frozen.
+     * 
+     * @param theRows the most rows to fall
+     * @return the number of rows the piece fell
+     */
+    public int fall(final int theRows) {
+        final int distance = Math.min(theRows, getDropDistance());
+        if (distance > 0) {
+            ((AbstractPiece) myCurrentPiece).moveDown(distance);
+            setChanged();
+            notifyObservers();
+        }
+        return distance;
+    }
+
+    /**
+     * Freezes the current piece where it is, as when its lock delay runs out.
+     */
+    public void lock() {
+        freeze();
     }
 
     /**
@@ -328,10 +497,15 @@ public final class Board extends Observable {
     }
 
     /**
-     * Initializes the current piece.
+     * Initializes the current piece, lowering it to no more than SPAWN_HEIGHT
+     * rows above the highest row of frozen blocks.
      */
     private void assignCurrentPiece() {
         myCurrentPiece = myNextPiece;
+        final int drop = myCurrentPiece.getY() - (myBlocks.size() + SPAWN_HEIGHT);
+        if (drop > 0) {
+            ((AbstractPiece) myCurrentPiece).moveDown(drop);
+        }
         setNextPiece();
     }
 
@@ -359,7 +533,7 @@ public final class Board extends Observable {
         final Block[] blocks = Block.values();
         Piece result;
 
-        switch (blocks[RANDOM.nextInt(blocks.length)]) {
+        switch (blocks[myRandom.nextInt(blocks.length)]) {
             case I:
                 result = new IPiece(theX, theY);
                 break;
@@ -418,18 +592,45 @@ public final class Board extends Observable {
     }
 
     /**
-     * Evaluates if the current piece occupies the provided position.
+     * Counts the columns the current piece can move sideways before it meets
+     * a wall or a frozen block. A block above the stack of a column cannot
+     * collide there, so the column height map settles most cells without
+     * looking at the rows.
+     * 
+     * @param theDirection -1 for left, 1 for right
+     * @return the number of free columns in that direction
+     */
+    private int slideRoom(final int theDirection) {
+        final int[][] blocks = ((AbstractPiece) myCurrentPiece).getBoardCoordinates();
+        int result = myWidth;
+
+        for (int i = 0; i < blocks.length; i++) {
+            final int y = blocks[i][1];
+            int room = 0;
+            int x = blocks[i][0] + theDirection;
+            while (room < result && x >= 0 && x < myWidth
+                   && (y >= myColumnHeights[x] || blockAt(x, y) == Block.EMPTY)) {
+                room++;
+                x += theDirection;
+            }
+            result = Math.min(result, room);
+        }
+        return result;
+    }
+
+    /**
+     * Evaluates if a piece occupies the provided position.
      * 
+     * @param thePiece The board coordinates of the piece's blocks
      * @param theX The x-coordinate to examine
      * @param theY The y-coordinate to examine
-     * @return true if the current piece occupies the position, false otherwise
+     * @return true if the piece occupies the position, false otherwise
      */
-    private boolean currentPieceAt(final int theX, final int theY) {
+    private static boolean pieceAt(final int[][] thePiece, final int theX, final int theY) {
         boolean result = false;
-        final int[][] blocks = ((AbstractPiece) myCurrentPiece).getBoardCoordinates();
 
-        for (int block = 0; block < blocks.length; block++) {
-            if (blocks[block][1] == theY && blocks[block][0] == theX) {
+        for (int block = 0; block < thePiece.length; block++) {
+            if (thePiece[block][1] == theY && thePiece[block][0] == theX) {
                 result = true;
             }
         }
@@ -453,11 +654,17 @@ public final class Board extends Observable {
                     new_row[i] = Block.EMPTY;
                 }
                 myBlocks.add(new_row);
+                myOccupied.add(new long[(myWidth + WORD_BITS - 1) / WORD_BITS]);
             }
-            final Block[] row = myBlocks.get(y);
+            // rows are copied on write so that row arrays handed out earlier
+            // stay a consistent picture of the board
+            final Block[] row = myBlocks.get(y).clone();
             row[x] = ((AbstractPiece) myCurrentPiece).getBlock();
+            myBlocks.set(y, row);
+            myOccupied.get(y)[x / WORD_BITS] |= 1L << x;
+            myColumnHeights[x] = Math.max(myColumnHeights[x], y + 1);
         }
-        clearLines();
+        clearLines(coordinates);
         if (myBlocks.size() > myHeight) {
             myGameOver = true;
         } else {
@@ -468,30 +675,74 @@ public final class Board extends Observable {
     }
 
     /**
-     * Checks if there are any lines that need to be cleared
-     * and removes them from the board.
+     * Checks if any of the rows the current piece was frozen into need to be
+     * cleared and removes them from the board, then counts the lock of the
+     * current piece in the game statistics. No other row can have filled up.
+     * 
+     * @param thePiece The board coordinates of the current piece's blocks
      */
-    private void clearLines() {
+    private void clearLines(final int[][] thePiece) {
         int linesClearedCount = 0;
-        for (int i = myBlocks.size() - 1; i >= 0; i--) {
-            boolean clear = true;
-            final Block[] blocks = myBlocks.get(i);
-
-            for (Block block : blocks) {
-                if (block == Block.EMPTY) {
-                    clear = false;
-                    break;
+        int row = Integer.MAX_VALUE;
+        while (true) {
+            // visit the piece's rows from the top, so removing one does not
+            // move those still to be checked
+            int next = -1;
+            for (int block = 0; block < thePiece.length; block++) {
+                if (thePiece[block][1] < row) {
+                    next = Math.max(next, thePiece[block][1]);
                 }
             }
-            if (clear) {
-                myBlocks.remove(i);
+            if (next < 0) {
+                break;
+            }
+            row = next;
+            if (isFull(myOccupied.get(row))) {
+                myBlocks.remove(row);
+                myOccupied.remove(row);
                 linesClearedCount++;
             }
         }
+        if (linesClearedCount > 0) {
+            measureColumnHeights();
+        }
+        int stackHeight = 0;
+        for (int column = 0; column < myWidth; column++) {
+            stackHeight = Math.max(stackHeight, myColumnHeights[column]);
+        }
+        myStats.pieceLocked(((AbstractPiece) myCurrentPiece).getBlock(),
+                            linesClearedCount, stackHeight);
         setChanged();
         notifyObservers(linesClearedCount);
     }
 
+    /**
+     * Evaluates if every cell of a packed row is occupied.
+     * 
+     * @param theRow The occupied cells of the row
+     * @return true if the row is full, false otherwise
+     */
+    private boolean isFull(final long[] theRow) {
+        boolean result = theRow[theRow.length - 1] == myLastWordMask;
+        for (int word = 0; result && word < theRow.length - 1; word++) {
+            result = theRow[word] == -1L;
+        }
+        return result;
+    }
+
+    /**
+     * Recomputes the column height map after rows have been removed.
+     */
+    private void measureColumnHeights() {
+        for (int column = 0; column < myWidth; column++) {
+            int height = Math.min(myColumnHeights[column], myBlocks.size());
+            while (height > 0 && myBlocks.get(height - 1)[column] == Block.EMPTY) {
+                height--;
+            }
+            myColumnHeights[column] = height;
+        }
+    }
+
     /**
      * Returns a string that represents the current state of the board.
      * 
@@ -500,16 +751,17 @@ public final class Board extends Observable {
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder();
+        final int[][] piece = ((AbstractPiece) myCurrentPiece).getBoardCoordinates();
 
         for (int i = myHeight + EXTRA_ROWS - 1; i > myHeight - 1; i--) {
             sb.append(EMPTY);
-            sb.append(getRowString(i));
+            appendRow(sb, i, piece);
             sb.append('\n');
         }
 
         for (int i = myHeight - 1; i >= 0; i--) {
             sb.append(WALL);
-            sb.append(getRowString(i));
+            appendRow(sb, i, piece);
             sb.append(WALL);
             sb.append('\n');
         }
@@ -522,35 +774,34 @@ public final class Board extends Observable {
     }
 
     /**
-     * Returns a string representing the blocks in the given row.
+     * Appends a string representing the blocks in the given row.
      * 
+     * @param theBuilder The builder to append to
      * @param theRow The row to represent
-     * @return The string representation
+     * @param thePiece The board coordinates of the current piece's blocks
      */
-    private String getRowString(final int theRow) {
-        final StringBuilder sb = new StringBuilder();
-
+    private void appendRow(final StringBuilder theBuilder, final int theRow,
+                           final int[][] thePiece) {
         if (myBlocks.size() - 1 < theRow) {
             for (int column = 0; column < myWidth; column++) {
-                if (currentPieceAt(column, theRow)) {
-                    sb.append(CURRENT_PIECE);
+                if (pieceAt(thePiece, column, theRow)) {
+                    theBuilder.append(CURRENT_PIECE);
                 } else {
-                    sb.append(EMPTY);
+                    theBuilder.append(EMPTY);
                 }
             }
         } else {
             final Block[] row_blocks = myBlocks.get(theRow);
 
             for (int column = 0; column < myWidth; column++) {
-                if (currentPieceAt(column, theRow)) {
-                    sb.append(CURRENT_PIECE);
+                if (pieceAt(thePiece, column, theRow)) {
+                    theBuilder.append(CURRENT_PIECE);
                 } else if (row_blocks[column] == Block.EMPTY) {
-                    sb.append(EMPTY);
+                    theBuilder.append(EMPTY);
                 } else {
-                    sb.append(FROZEN);
+                    theBuilder.append(FROZEN);
                 }
             }
         }
-        return sb.toString();
     }
 }
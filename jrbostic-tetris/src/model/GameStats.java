@@ -0,0 +1,194 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+/**
+ * The score and statistics of a single game, kept by its board as pieces lock
+ * and lines clear. Everything is held in counters and arrays made once, so a
+ * lock costs no allocation; the board resets them for every new game. Time is
+ * added by whoever steps the board, so a game replayed offscreen reports the
+ * same numbers as it did live.
+ *
+ * <p>Like the board, not thread safe: read it from the thread that moves the
+ * board, such as from an observer of the board.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+public final class GameStats {
+
+    /** Points scored per piece locked. */
+    public static final int SCORE_PER_PIECE = 10;
+
+    /** Points scored per line, multiplied by the lines cleared at once. */
+    public static final int SCORE_PER_LINE = 50;
+
+    /** The most lines one piece can clear. */
+    public static final int MAX_CLEAR = 4;
+
+    /** The number of locks remembered by the stack height timeline. */
+    public static final int TIMELINE_LENGTH = 1024;
+
+    /** The number of nanoseconds in a second. */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /** The pieces locked, by block type ordinal. */
+    private final int[] myPieceCounts = new int[Block.values().length];
+
+    /** The locks by the lines they cleared, from none to MAX_CLEAR. */
+    private final int[] myClears = new int[MAX_CLEAR + 1];
+
+    /** The highest stack height after each recent lock, as a ring. */
+    private final int[] myTimeline = new int[TIMELINE_LENGTH];
+
+    /** The points scored. */
+    private int myScore;
+
+    /** The lines cleared. */
+    private int myLines;
+
+    /** The pieces locked. */
+    private int myPieces;
+
+    /** The highest the stack has been after a lock. */
+    private int myMaxHeight;
+
+    /** The time played, in nanoseconds. */
+    private long myNanos;
+
+    /**
+     * Constructs the statistics of a game not yet played.
+     */
+    public GameStats() {
+        reset();
+    }
+
+    /**
+     * Clears every count for a new game.
+     */
+    public void reset() {
+        for (int i = 0; i < myPieceCounts.length; i++) {
+            myPieceCounts[i] = 0;
+        }
+        for (int i = 0; i < myClears.length; i++) {
+            myClears[i] = 0;
+        }
+        myScore = 0;
+        myLines = 0;
+        myPieces = 0;
+        myMaxHeight = 0;
+        myNanos = 0;
+    }
+
+    /**
+     * Counts a piece locking into the stack.
+     *
+     * @param theBlock the block type of the piece
+     * @param theLines the number of lines the lock cleared
+     * @param theHeight the height of the stack once the lines are cleared
+     */
+    void pieceLocked(final Block theBlock, final int theLines, final int theHeight) {
+        myPieceCounts[theBlock.ordinal()]++;
+        myClears[Math.min(theLines, MAX_CLEAR)]++;
+        myScore += SCORE_PER_PIECE + theLines * theLines * SCORE_PER_LINE;
+        myLines += theLines;
+        myTimeline[myPieces % TIMELINE_LENGTH] = theHeight;
+        myPieces++;
+        myMaxHeight = Math.max(myMaxHeight, theHeight);
+    }
+
+    /**
+     * Adds to the time played.
+     *
+     * @param theNanos the time, in nanoseconds
+     */
+    public void addTime(final long theNanos) {
+        myNanos += theNanos;
+    }
+
+    /**
+     * @return the points scored
+     */
+    public int getScore() {
+        return myScore;
+    }
+
+    /**
+     * @return the lines cleared
+     */
+    public int getLines() {
+        return myLines;
+    }
+
+    /**
+     * @return the pieces locked
+     */
+    public int getPieces() {
+        return myPieces;
+    }
+
+    /**
+     * @param theBlock a block type
+     * @return the pieces of that type locked
+     */
+    public int getPieceCount(final Block theBlock) {
+        return myPieceCounts[theBlock.ordinal()];
+    }
+
+    /**
+     * @param theLines a number of lines, from zero to MAX_CLEAR
+     * @return the locks that cleared that many lines at once
+     */
+    public int getClears(final int theLines) {
+        return myClears[theLines];
+    }
+
+    /**
+     * @return the time played, in nanoseconds
+     */
+    public long getNanos() {
+        return myNanos;
+    }
+
+    /**
+     * @return the pieces locked per second played, zero before any time
+     */
+    public double getPiecesPerSecond() {
+        double result = 0;
+        if (myNanos > 0) {
+            result = myPieces * NANOS_PER_SECOND / myNanos;
+        }
+        return result;
+    }
+
+    /**
+     * @return the highest the stack has been after a lock
+     */
+    public int getMaxHeight() {
+        return myMaxHeight;
+    }
+
+    /**
+     * @return the index of the oldest lock still in the height timeline
+     */
+    public int getTimelineStart() {
+        return Math.max(0, myPieces - TIMELINE_LENGTH);
+    }
+
+    /**
+     * Returns the stack height after a lock; only the last TIMELINE_LENGTH
+     * locks are remembered.
+     *
+     * @param theLock the index of the lock, from getTimelineStart() up to
+     *            getPieces()
+     * @return the highest column of the stack once that lock's lines cleared
+     */
+    public int getHeightAt(final int theLock) {
+        if (theLock < getTimelineStart() || theLock >= myPieces) {
+            throw new IndexOutOfBoundsException(String.valueOf(theLock));
+        }
+        return myTimeline[theLock % TIMELINE_LENGTH];
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+/**
+ * The gravity and level progression of a single game. Each gravity tick counts
+ * toward the current level; once a level has seen its quota of ticks the level
+ * advances and the delay between ticks shrinks to three quarters of its value.
+ *
+ * <p>The delay is kept in nanoseconds so that callers with a precise clock do
+ * not accumulate the rounding of whole milliseconds from level to level.
+ * Callers stepping frame by frame use the same curve as a gravity: rows per
+ * frame in fixed point, in 1/{@link #ONE_G}ths of a row, rounded once per
+ * level from the exact delay and capped at {@link #MAX_GRAVITY}, twenty rows
+ * a frame, which it reaches around level 26.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+public final class LevelSchedule {
+
+    /** The initial delay between gravity ticks, in milliseconds. */
+    public static final int START_DELAY = 1000;
+
+    /** A gravity of one row per frame. */
+    public static final int ONE_G = 256;
+
+    /** The fastest gravity, twenty rows per frame. */
+    public static final int MAX_GRAVITY = 20 * ONE_G;
+
+    /** The number of nanoseconds in a millisecond. */
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /** The quantifier used to meter the number of ticks in each level. */
+    private static final int FIRE_COUNT_QUANTIFIER = 60;
+
+    /** The factor applied to the delay at each level up. */
+    private static final double DELAY_DECREMENT = .75;
+
+    /** The length of a frame, in nanoseconds; sixty frames a second. */
+    private static final long FRAME_NANOS = 1000000000L / 60;
+
+    /** The delay between gravity ticks at level one, in nanoseconds. */
+    private final long myStartDelay;
+
+    /** The current delay between gravity ticks, in nanoseconds. */
+    private long myDelay;
+
+    /** The current gravity, in 1/ONE_G rows per frame. */
+    private int myGravity;
+
+    /** A count of gravity ticks on the current level. */
+    private int myTicks;
+
+    /** The current level. */
+    private int myLevel;
+
+    /**
+     * Constructs a schedule starting at the standard one second delay.
+     */
+    public LevelSchedule() {
+        this(START_DELAY * NANOS_PER_MILLI);
+    }
+
+    /**
+     * Constructs a schedule starting at the given delay.
+     *
+     * @param theStartDelay the delay between ticks at level one, in nanoseconds
+     */
+    public LevelSchedule(final long theStartDelay) {
+        if (theStartDelay <= 0) {
+            throw new IllegalArgumentException();
+        }
+        myStartDelay = theStartDelay;
+        reset();
+    }
+
+    /**
+     * Returns the schedule to level one.
+     */
+    public void reset() {
+        myDelay = myStartDelay;
+        myGravity = gravityFor(myDelay);
+        myTicks = 0;
+        myLevel = 1;
+    }
+
+    /**
+     * Counts one gravity tick, advancing the level when its quota is reached.
+     *
+     * @return true if this tick caused a level up; false otherwise
+     */
+    public boolean tick() {
+        myTicks++;
+        boolean levelUp = false;
+        if (myTicks == getTicksPerLevel()) {
+            myTicks = 0;
+            myLevel++;
+            myDelay = Math.max(1, (long) (myDelay * DELAY_DECREMENT));
+            myGravity = gravityFor(myDelay);
+            levelUp = true;
+        }
+        return levelUp;
+    }
+
+    /**
+     * @return the current level
+     */
+    public int getLevel() {
+        return myLevel;
+    }
+
+    /**
+     * @return the number of ticks counted on the current level
+     */
+    public int getTicks() {
+        return myTicks;
+    }
+
+    /**
+     * @return the number of ticks needed to complete the current level
+     */
+    public int getTicksPerLevel() {
+        return myLevel * FIRE_COUNT_QUANTIFIER;
+    }
+
+    /**
+     * @return the current delay between gravity ticks, in nanoseconds
+     */
+    public long getDelayNanos() {
+        return myDelay;
+    }
+
+    /**
+     * @return the current delay between gravity ticks, in whole milliseconds
+     */
+    public int getDelayMillis() {
+        return (int) Math.max(1, myDelay / NANOS_PER_MILLI);
+    }
+
+    /**
+     * @return the current gravity, in 1/ONE_G rows per frame
+     */
+    public int getGravity() {
+        return myGravity;
+    }
+
+    /**
+     * Converts a delay between ticks to a gravity.
+     *
+     * @param theDelay the delay between ticks, in nanoseconds
+     * @return the nearest gravity, at least one and at most MAX_GRAVITY
+     */
+    private static int gravityFor(final long theDelay) {
+        final long gravity = Math.round((double) ONE_G * FRAME_NANOS / theDelay);
+        return (int) Math.max(1, Math.min(MAX_GRAVITY, gravity));
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package scores;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The result of one finished game, as kept by a {@link ScoreStore}: who
+ * played it and in which mode, how it went, and the replay it can be watched
+ * from. Results are immutable.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+public final class GameResult {
+
+    /**
+     * The replay id of a game that was not recorded.
+     */
+    public static final long NO_REPLAY = 0;
+
+    /**
+     * The mode the game was played in, such as "marathon".
+     */
+    private final String myMode;
+
+    /**
+     * The name of the player.
+     */
+    private final String myPlayer;
+
+    /**
+     * The points scored.
+     */
+    private final int myScore;
+
+    /**
+     * The lines cleared.
+     */
+    private final int myLines;
+
+    /**
+     * The pieces locked.
+     */
+    private final int myPieces;
+
+    /**
+     * The level reached.
+     */
+    private final int myLevel;
+
+    /**
+     * The time the game lasted, in milliseconds.
+     */
+    private final long myDuration;
+
+    /**
+     * The id of the game's replay, NO_REPLAY if it has none.
+     */
+    private final long myReplayId;
+
+    /**
+     * The time the game ended, in milliseconds since the epoch.
+     */
+    private final long myTime;
+
+    /**
+     * Constructs a result.
+     *
+     * @param the_mode the mode the game was played in
+     * @param the_player the name of the player
+     * @param the_score the points scored
+     * @param the_lines the lines cleared
+     * @param the_pieces the pieces locked
+     * @param the_level the level reached
+     * @param the_duration the time the game lasted, in milliseconds
+     * @param the_replay_id the id of the game's replay, NO_REPLAY if it has none
+     * @param the_time the time the game ended, in milliseconds since the epoch
+     */
+    public GameResult(final String the_mode, final String the_player, final int the_score,
+                      final int the_lines, final int the_pieces, final int the_level,
+                      final long the_duration, final long the_replay_id,
+                      final long the_time) {
+        if (the_mode == null || the_player == null) {
+            throw new IllegalArgumentException();
+        }
+        myMode = the_mode;
+        myPlayer = the_player;
+        myScore = the_score;
+        myLines = the_lines;
+        myPieces = the_pieces;
+        myLevel = the_level;
+        myDuration = the_duration;
+        myReplayId = the_replay_id;
+        myTime = the_time;
+    }
+
+    /**
+     * Reads a result written by {@link #write}.
+     *
+     * @param the_in the input to read from
+     * @return the result
+     * @throws IOException if the input cannot be read
+     */
+    static GameResult read(final DataInput the_in) throws IOException {
+        return new GameResult(the_in.readUTF(), the_in.readUTF(), the_in.readInt(),
+                              the_in.readInt(), the_in.readInt(), the_in.readInt(),
+                              the_in.readLong(), the_in.readLong(), the_in.readLong());
+    }
+
+    /**
+     * Writes the result.
+     *
+     * @param the_out the output to write to
+     * @throws IOException if the output cannot be written
+     */
+    void write(final DataOutput the_out) throws IOException {
+        the_out.writeUTF(myMode);
+        the_out.writeUTF(myPlayer);
+        the_out.writeInt(myScore);
+        the_out.writeInt(myLines);
+        the_out.writeInt(myPieces);
+        the_out.writeInt(myLevel);
+        the_out.writeLong(myDuration);
+        the_out.writeLong(myReplayId);
+        the_out.writeLong(myTime);
+    }
+
+    /**
+     * @return the mode the game was played in
+     */
+    public String getMode() {
+        return myMode;
+    }
+
+    /**
+     * @return the name of the player
+     */
+    public String getPlayer() {
+        return myPlayer;
+    }
+
+    /**
+     * @return the points scored
+     */
+    public int getScore() {
+        return myScore;
+    }
+
+    /**
+     * @return the lines cleared
+     */
+    public int getLines() {
+        return myLines;
+    }
+
+    /**
+     * @return the pieces locked
+     */
+    public int getPieces() {
+        return myPieces;
+    }
+
+    /**
+     * @return the level reached
+     */
+    public int getLevel() {
+        return myLevel;
+    }
+
+    /**
+     * @return the time the game lasted, in milliseconds
+     */
+    public long getDuration() {
+        return myDuration;
+    }
+
+    /**
+     * @return the id of the game's replay, NO_REPLAY if it has none
+     */
+    public long getReplayId() {
+        return myReplayId;
+    }
+
+    /**
+     * @return the time the game ended, in milliseconds since the epoch
+     */
+    public long getTime() {
+        return myTime;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return myPlayer + " " + myScore + " (" + myLines + " lines, " + myPieces
+               + " pieces, level " + myLevel + ", " + myDuration / 1000 + "s)";
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package scores;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The file under a {@link ScoreStore}: a header, then results appended one
+ * after another, each framed by its length and followed by a CRC-32 of its
+ * bytes. A crash can only leave a torn record at the end, which is cut off
+ * when the log is next opened. The log is compacted by writing the results
+ * kept to a new file and moving it over the old one, so a crash during
+ * compaction leaves one whole log or the other.
+ *
+ * <p>Not thread safe; the store confines each log to one thread at a time.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+final class ScoreLog {
+
+    /**
+     * The first word of a score log.
+     */
+    private static final int MAGIC = 0x54534c31;
+
+    /**
+     * The number of bytes of the header.
+     */
+    private static final int HEADER_BYTES = Integer.SIZE / Byte.SIZE;
+
+    /**
+     * The number of bytes framing each record: its length before it, its
+     * checksum after.
+     */
+    private static final int FRAME_BYTES = 2 * Integer.SIZE / Byte.SIZE;
+
+    /**
+     * The longest record read; anything longer is corrupt.
+     */
+    private static final int MAX_RECORD = 1 << 16;
+
+    /**
+     * The file of the log.
+     */
+    private final File myFile;
+
+    /**
+     * The buffer records are encoded into before they are written.
+     */
+    private final ByteArrayOutputStream myBuffer = new ByteArrayOutputStream();
+
+    /**
+     * Writes records into the buffer.
+     */
+    private final DataOutputStream myOut = new DataOutputStream(myBuffer);
+
+    /**
+     * The buffer each record is encoded into before it is framed.
+     */
+    private final ByteArrayOutputStream myRecord = new ByteArrayOutputStream();
+
+    /**
+     * Writes a record into its buffer.
+     */
+    private final DataOutputStream myRecordOut = new DataOutputStream(myRecord);
+
+    /**
+     * The checksum of records as they are encoded.
+     */
+    private final CRC32 myChecksum = new CRC32();
+
+    /**
+     * The open file, positioned at its end.
+     */
+    private FileChannel myChannel;
+
+    /**
+     * The number of records in the file.
+     */
+    private int myRecords;
+
+    /**
+     * Opens a log, creating it if it does not exist.
+     *
+     * @param the_file the file of the log
+     * @throws IOException if the file cannot be opened or is not a score log
+     */
+    ScoreLog(final File the_file) throws IOException {
+        myFile = the_file;
+        myChannel = FileChannel.open(the_file.toPath(), StandardOpenOption.CREATE,
+                                     StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (myChannel.size() == 0) {
+            writeHeader(myChannel);
+        }
+    }
+
+    /**
+     * Reads every whole record in the log, cutting off a torn or corrupt
+     * tail. Called once, before anything is appended.
+     *
+     * @return the results in the log, oldest first
+     * @throws IOException if the file cannot be read or is not a score log
+     */
+    List<GameResult> recover() throws IOException {
+        final long size = myChannel.size();
+        final ByteBuffer bytes = ByteBuffer.allocate((int) Math.min(size, Integer.MAX_VALUE));
+        myChannel.position(0);
+        while (bytes.hasRemaining() && myChannel.read(bytes) >= 0) {
+            //read the whole file
+        }
+        bytes.flip();
+        if (bytes.remaining() < HEADER_BYTES || bytes.getInt() != MAGIC) {
+            throw new IOException(myFile + " is not a score log");
+        }
+        final List<GameResult> result = new ArrayList<GameResult>();
+        final CRC32 checksum = new CRC32();
+        int end = bytes.position();
+        while (bytes.remaining() >= FRAME_BYTES) {
+            final int length = bytes.getInt();
+            if (length <= 0 || length > MAX_RECORD
+                    || bytes.remaining() < length + FRAME_BYTES / 2) {
+                break;
+            }
+            checksum.reset();
+            checksum.update(bytes.array(), bytes.position(), length);
+            final int start = bytes.position();
+            bytes.position(start + length);
+            if (bytes.getInt() != (int) checksum.getValue()) {
+                break;
+            }
+            result.add(GameResult.read(new DataInputStream(
+                    new ByteArrayInputStream(bytes.array(), start, length))));
+            end = bytes.position();
+        }
+        if (end < size) {
+            System.err.println("score log " + myFile + ": dropped " + (size - end)
+                               + " bytes of torn or corrupt records");
+            myChannel.truncate(end);
+        }
+        myChannel.position(end);
+        myRecords = result.size();
+        return result;
+    }
+
+    /**
+     * Appends results in one write. They are not durable until {@link #sync}.
+     * If the write fails partway, the log is cut back to where it ended, so
+     * a retry never lands after a torn record that recovery would stop at.
+     *
+     * @param the_results the results to append
+     * @throws IOException if the file cannot be written
+     */
+    void append(final Collection<GameResult> the_results) throws IOException {
+        myBuffer.reset();
+        for (final GameResult result : the_results) {
+            encode(result);
+        }
+        final long end = myChannel.position();
+        try {
+            write(myChannel, myBuffer.toByteArray());
+        } catch (final IOException e) {
+            try {
+                myChannel.truncate(end);
+                myChannel.position(end);
+            } catch (final IOException cleanup) {
+                e.addSuppressed(cleanup);
+            }
+            throw e;
+        }
+        myRecords += the_results.size();
+    }
+
+    /**
+     * Forces everything appended onto the disk.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    void sync() throws IOException {
+        myChannel.force(false);
+    }
+
+    /**
+     * Replaces the log with one holding only the given results, through a
+     * temporary file moved over the log once it is on the disk.
+     *
+     * @param the_results the results to keep, oldest first
+     * @throws IOException if the new log cannot be written
+     */
+    void rewrite(final Collection<GameResult> the_results) throws IOException {
+        final File temporary = File.createTempFile("compact", ".tmp",
+                                                   myFile.getAbsoluteFile().getParentFile());
+        try {
+            try (FileChannel out = FileChannel.open(temporary.toPath(),
+                                                    StandardOpenOption.WRITE)) {
+                writeHeader(out);
+                myBuffer.reset();
+                for (final GameResult result : the_results) {
+                    encode(result);
+                }
+                write(out, myBuffer.toByteArray());
+                out.force(true);
+            }
+            myChannel.close();
+            Files.move(temporary.toPath(), myFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            temporary.delete();
+            if (!myChannel.isOpen()) {
+                myChannel = FileChannel.open(myFile.toPath(), StandardOpenOption.READ,
+                                             StandardOpenOption.WRITE);
+                myChannel.position(myChannel.size());
+            }
+        }
+        myRecords = the_results.size();
+    }
+
+    /**
+     * @return the number of records in the log
+     */
+    int getRecordCount() {
+        return myRecords;
+    }
+
+    /**
+     * Closes the file, forcing it onto the disk first.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            myChannel.close();
+        }
+    }
+
+    /**
+     * Encodes a record into the buffer: its length, its bytes and their
+     * checksum.
+     *
+     * @param the_result the result of the record
+     * @throws IOException never, as the buffers are in memory
+     */
+    private void encode(final GameResult the_result) throws IOException {
+        myRecord.reset();
+        the_result.write(myRecordOut);
+        myRecordOut.flush();
+        final byte[] bytes = myRecord.toByteArray();
+        myChecksum.reset();
+        myChecksum.update(bytes, 0, bytes.length);
+        myOut.writeInt(bytes.length);
+        myOut.write(bytes);
+        myOut.writeInt((int) myChecksum.getValue());
+        myOut.flush();
+    }
+
+    /**
+     * Writes the header of a new log.
+     *
+     * @param the_channel the empty file
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeHeader(final FileChannel the_channel) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).flip();
+        the_channel.write(header);
+    }
+
+    /**
+     * Writes bytes at the position of a file.
+     *
+     * @param the_channel the file
+     * @param the_bytes the bytes
+     * @throws IOException if the file cannot be written
+     */
+    private static void write(final FileChannel the_channel, final byte[] the_bytes)
+        throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(the_bytes);
+        while (buffer.hasRemaining()) {
+            the_channel.write(buffer);
+        }
+    }
+}
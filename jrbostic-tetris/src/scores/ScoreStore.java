@@ -0,0 +1,417 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package scores;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Keeps the results of finished games in a {@link ScoreLog} on disk and
+ * answers for the best scores of each mode and the latest games of each
+ * player. Recording a result only adds it to a lock-free queue; a writer
+ * thread appends whatever has queued up every {@link #FLUSH_MILLIS} in a
+ * single write, and forces the log onto the disk every {@link #SYNC_MILLIS},
+ * so a bot ladder finishing thousands of games a minute costs a few writes a
+ * second rather than a write and a sync per game.
+ *
+ * <p>The index keeps the best {@link #TOP_LIMIT} results of each mode, sorted,
+ * and the latest {@link #HISTORY_LIMIT} of each player; adding a result costs
+ * O(log n). Once the log holds more than twice what the index keeps, it is
+ * compacted down to the results kept. A result shows up in queries once its
+ * batch has been written. Safe to use from any thread.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+public final class ScoreStore implements Closeable {
+
+    /**
+     * The score log of the game, in the working directory.
+     */
+    public static final String DEFAULT_FILE = "scores.log";
+
+    /**
+     * The most results kept for each mode.
+     */
+    public static final int TOP_LIMIT = 100;
+
+    /**
+     * The most results kept for each player.
+     */
+    public static final int HISTORY_LIMIT = 100;
+
+    /**
+     * The longest a result waits to be written, in milliseconds.
+     */
+    public static final long FLUSH_MILLIS = 200;
+
+    /**
+     * The longest a written result waits to be forced onto the disk, in
+     * milliseconds.
+     */
+    public static final long SYNC_MILLIS = 1000;
+
+    /**
+     * The fewest records in a log worth compacting.
+     */
+    private static final int MIN_COMPACTION = 4096;
+
+    /**
+     * Orders the results of a mode from the best score down, the earliest
+     * first among equal scores.
+     */
+    private static final Comparator<Entry> BEST_FIRST = new Comparator<Entry>() {
+        @Override
+        public int compare(final Entry the_first, final Entry the_second) {
+            int result = Integer.compare(the_second.myResult.getScore(),
+                                         the_first.myResult.getScore());
+            if (result == 0) {
+                result = Long.compare(the_first.mySequence, the_second.mySequence);
+            }
+            return result;
+        }
+    };
+
+    /**
+     * The log, touched only while holding it.
+     */
+    private final ScoreLog myLog;
+
+    /**
+     * The results recorded but not yet written.
+     */
+    private final Queue<GameResult> myPending = new ConcurrentLinkedQueue<GameResult>();
+
+    /**
+     * The results of a write that failed, oldest first, written ahead of the
+     * queue on the next try; touched only while holding the log.
+     */
+    private final List<GameResult> myRetry = new ArrayList<GameResult>();
+
+    /**
+     * The best results of each mode, guarded by this store.
+     */
+    private final Map<String, NavigableSet<Entry>> myTop =
+            new HashMap<String, NavigableSet<Entry>>();
+
+    /**
+     * The latest results of each player, newest last, guarded by this store.
+     */
+    private final Map<String, Deque<Entry>> myHistory = new HashMap<String, Deque<Entry>>();
+
+    /**
+     * The writer thread.
+     */
+    private final Thread myWriter;
+
+    /**
+     * The number of results indexed, guarded by this store.
+     */
+    private long mySequence;
+
+    /**
+     * The number of places results hold in the index, counting a result once
+     * for its mode and once for its player; guarded by this store.
+     */
+    private int myIndexed;
+
+    /**
+     * Whether the store is closed.
+     */
+    private volatile boolean myClosed;
+
+    /**
+     * Opens a store, reading the results already in its log.
+     *
+     * @param the_file the file of the log, created if it does not exist
+     * @throws IOException if the log cannot be opened or read
+     */
+    public ScoreStore(final File the_file) throws IOException {
+        myLog = new ScoreLog(the_file);
+        try {
+            for (final GameResult result : myLog.recover()) {
+                index(result);
+            }
+        } catch (final IOException e) {
+            myLog.close();
+            throw e;
+        }
+        myWriter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, "score writer");
+        myWriter.setDaemon(true);
+        myWriter.start();
+    }
+
+    /**
+     * Records the result of a game; never blocks. Results recorded once the
+     * store is closed are dropped.
+     *
+     * @param the_result the result
+     */
+    public void record(final GameResult the_result) {
+        if (!myClosed) {
+            myPending.add(the_result);
+        }
+    }
+
+    /**
+     * Returns the best results of a mode.
+     *
+     * @param the_mode the mode
+     * @param the_count the most results wanted
+     * @return the results, best first
+     */
+    public synchronized List<GameResult> getTop(final String the_mode, final int the_count) {
+        final List<GameResult> result = new ArrayList<GameResult>();
+        final NavigableSet<Entry> top = myTop.get(the_mode);
+        if (top != null) {
+            final Iterator<Entry> entries = top.iterator();
+            while (result.size() < the_count && entries.hasNext()) {
+                result.add(entries.next().myResult);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the latest results of a player.
+     *
+     * @param the_player the name of the player
+     * @param the_count the most results wanted
+     * @return the results, newest first
+     */
+    public synchronized List<GameResult> getHistory(final String the_player,
+                                                    final int the_count) {
+        final List<GameResult> result = new ArrayList<GameResult>();
+        final Deque<Entry> history = myHistory.get(the_player);
+        if (history != null) {
+            final Iterator<Entry> entries = history.descendingIterator();
+            while (result.size() < the_count && entries.hasNext()) {
+                result.add(entries.next().myResult);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes every result recorded so far and forces the log onto the disk.
+     *
+     * @throws IOException if the log cannot be written
+     */
+    public void flush() throws IOException {
+        synchronized (myLog) {
+            drain();
+            myLog.sync();
+        }
+    }
+
+    /**
+     * Stops the writer thread, then writes and forces every result recorded
+     * so far and closes the log.
+     *
+     * @throws IOException if the log cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (myClosed) {
+            return;
+        }
+        myClosed = true;
+        LockSupport.unpark(myWriter);
+        boolean interrupted = false;
+        while (myWriter.isAlive()) {
+            try {
+                myWriter.join();
+            } catch (final InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (myLog) {
+            try {
+                drain();
+            } finally {
+                myLog.close();
+            }
+        }
+    }
+
+    /**
+     * Writes what has been recorded every FLUSH_MILLIS and forces it onto
+     * the disk every SYNC_MILLIS, until the store is closed. A failure is
+     * reported and the results kept for the next try.
+     */
+    private void write() {
+        final long flushNanos = TimeUnit.MILLISECONDS.toNanos(FLUSH_MILLIS);
+        final long syncNanos = TimeUnit.MILLISECONDS.toNanos(SYNC_MILLIS);
+        long lastSync = System.nanoTime();
+        boolean unsynced = false;
+        while (!myClosed) {
+            LockSupport.parkNanos(this, flushNanos);
+            try {
+                synchronized (myLog) {
+                    unsynced |= drain();
+                    if (unsynced && System.nanoTime() - lastSync >= syncNanos) {
+                        myLog.sync();
+                        lastSync = System.nanoTime();
+                        unsynced = false;
+                    }
+                }
+            } catch (final IOException e) {
+                System.err.println("cannot write scores: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Appends the results of a failed write, then the queued ones, to the
+     * log in one write and indexes them, compacting the log if it has grown
+     * well past what is indexed. Called holding the log.
+     *
+     * @return whether anything was written
+     * @throws IOException if the log cannot be written
+     */
+    private boolean drain() throws IOException {
+        final List<GameResult> batch = new ArrayList<GameResult>(myRetry);
+        myRetry.clear();
+        for (GameResult result = myPending.poll(); result != null; result = myPending.poll()) {
+            batch.add(result);
+        }
+        if (!batch.isEmpty()) {
+            try {
+                myLog.append(batch);
+            } catch (final IOException e) {
+                //keep the batch for the next try, ahead of anything recorded since
+                myRetry.addAll(batch);
+                throw e;
+            }
+            final List<GameResult> kept;
+            synchronized (this) {
+                for (final GameResult result : batch) {
+                    index(result);
+                }
+                kept = getKept();
+            }
+            if (kept != null) {
+                myLog.rewrite(kept);
+                myLog.sync();
+            }
+        }
+        return !batch.isEmpty();
+    }
+
+    /**
+     * Adds a result to the index, dropping what falls off the ends of its
+     * mode's top results and its player's history. Called holding this
+     * store.
+     *
+     * @param the_result the result
+     */
+    private void index(final GameResult the_result) {
+        final Entry entry = new Entry(the_result, mySequence++);
+        NavigableSet<Entry> top = myTop.get(the_result.getMode());
+        if (top == null) {
+            top = new TreeSet<Entry>(BEST_FIRST);
+            myTop.put(the_result.getMode(), top);
+        }
+        top.add(entry);
+        myIndexed++;
+        if (top.size() > TOP_LIMIT) {
+            top.pollLast();
+            myIndexed--;
+        }
+        Deque<Entry> history = myHistory.get(the_result.getPlayer());
+        if (history == null) {
+            history = new ArrayDeque<Entry>();
+            myHistory.put(the_result.getPlayer(), history);
+        }
+        history.addLast(entry);
+        myIndexed++;
+        if (history.size() > HISTORY_LIMIT) {
+            history.removeFirst();
+            myIndexed--;
+        }
+    }
+
+    /**
+     * Decides whether the log should be compacted. Called holding this store.
+     *
+     * @return the results the index keeps, oldest first, if the log holds
+     *         more than twice as many; null otherwise
+     */
+    private List<GameResult> getKept() {
+        List<GameResult> result = null;
+        final int records = myLog.getRecordCount();
+        //an entry can be both among the best and in a history, so this is an upper bound
+        if (records >= MIN_COMPACTION && records > 2 * myIndexed) {
+            final Map<Long, GameResult> kept = new TreeMap<Long, GameResult>();
+            for (final NavigableSet<Entry> top : myTop.values()) {
+                for (final Entry entry : top) {
+                    kept.put(entry.mySequence, entry.myResult);
+                }
+            }
+            for (final Deque<Entry> history : myHistory.values()) {
+                for (final Entry entry : history) {
+                    kept.put(entry.mySequence, entry.myResult);
+                }
+            }
+            result = new ArrayList<GameResult>(kept.values());
+        }
+        return result;
+    }
+
+    /**
+     * A result in the index, numbered in the order it was added.
+     *
+     * @author Jesse Bostic
+     * @version Autumn 2013
+     */
+    private static final class Entry {
+
+        /**
+         * The result.
+         */
+        private final GameResult myResult;
+
+        /**
+         * The position of the result in the order results were added.
+         */
+        private final long mySequence;
+
+        /**
+         * Constructs an entry.
+         *
+         * @param the_result the result
+         * @param the_sequence the position of the result in the order
+         *                     results were added
+         */
+        private Entry(final GameResult the_result, final long the_sequence) {
+            myResult = the_result;
+            mySequence = the_sequence;
+        }
+    }
+}
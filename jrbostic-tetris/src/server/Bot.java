@@ -0,0 +1,23 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package server;
+
+import model.Board;
+
+/**
+ * A player that drives a headless game session.
+ * 
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+public interface Bot {
+
+    /**
+     * Makes this bot's moves for one gravity tick of the given board.
+     * 
+     * @param the_board the board being played, never in a game over state
+     */
+    void act(Board the_board);
+}
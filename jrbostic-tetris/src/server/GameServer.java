@@ -0,0 +1,297 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package server;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import model.LevelSchedule;
+import scores.GameResult;
+import scores.ScoreStore;
+import tools.LatencyHistogram;
+import tools.TimingWheel;
+
+/**
+ * A headless server hosting many concurrent games in one JVM, for bot ladders
+ * and load tests. Every session is a lightweight task rescheduled at its own
+ * gravity delay on a hashed timing wheel, which hands all sessions due in the
+ * same tick to a small pool of threads in batches, so thousands of games cost
+ * no more threads than there are cores.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+public class GameServer {
+
+    /**
+     * The width of a standard game board.
+     */
+    public static final int DEFAULT_WIDTH = 10;
+
+    /**
+     * The height of a standard game board.
+     */
+    public static final int DEFAULT_HEIGHT = 20;
+
+    /**
+     * The number of nanoseconds in a millisecond.
+     */
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /**
+     * The number of milliseconds in a second.
+     */
+    private static final long MILLIS_PER_SECOND = 1000L;
+
+    /**
+     * The number of best results main prints.
+     */
+    private static final int TOP_PRINTED = 3;
+
+    /**
+     * The number of sessions run by main when none is given.
+     */
+    private static final int DEFAULT_SESSIONS = 1000;
+
+    /**
+     * The number of seconds main runs for when none is given.
+     */
+    private static final int DEFAULT_SECONDS = 30;
+
+    /**
+     * The resolution of the timing wheel, in nanoseconds.
+     */
+    private static final long WHEEL_TICK = 1000000L;
+
+    /**
+     * The number of slots on the timing wheel; a little over two seconds of ticks.
+     */
+    private static final int WHEEL_SLOTS = 2048;
+
+    /**
+     * The worker threads running session ticks.
+     */
+    private final ExecutorService myWorkers;
+
+    /**
+     * The timing wheel scheduling every session's ticks.
+     */
+    private final TimingWheel myWheel;
+
+    /**
+     * The sessions opened on this server.
+     */
+    private final List<GameSession> mySessions;
+
+    /**
+     * The store the results of sessions opened from now on are recorded in,
+     * null if they are not kept.
+     */
+    private ScoreStore myScores;
+
+    /**
+     * Constructs a server running ticks on the given number of threads.
+     *
+     * @param the_threads the number of worker threads
+     */
+    public GameServer(final int the_threads) {
+        myWorkers = Executors.newFixedThreadPool(the_threads, new WorkerFactory());
+        myWheel = new TimingWheel(WHEEL_TICK, WHEEL_SLOTS, myWorkers, the_threads);
+        mySessions = new ArrayList<>();
+    }
+
+    /**
+     * Constructs a server with one worker thread per core.
+     */
+    public GameServer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Opens and starts a new session.
+     *
+     * @param the_width the block width of the game board
+     * @param the_height the block height of the game board
+     * @param the_seed the seed for the session's pieces and bot
+     * @param the_start_delay the delay between ticks at level one, in nanoseconds
+     * @return the started session
+     */
+    public synchronized GameSession openSession(final int the_width, final int the_height,
+                                                final long the_seed,
+                                                final long the_start_delay) {
+        final GameSession session = new GameSession(mySessions.size(), the_width,
+                                                    the_height, the_seed,
+                                                    the_start_delay, myWheel);
+        session.setScoreStore(myScores);
+        mySessions.add(session);
+        session.start();
+        return session;
+    }
+
+    /**
+     * Sets the store the results of sessions opened from now on are recorded
+     * in; the store is shared by all of them.
+     *
+     * @param the_scores the store, null to keep no scores
+     */
+    public synchronized void setScoreStore(final ScoreStore the_scores) {
+        myScores = the_scores;
+    }
+
+    /**
+     * Stops every session and waits for running ticks to finish.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized void shutdown() throws InterruptedException {
+        for (GameSession session : mySessions) {
+            session.stop();
+        }
+        myWheel.stop();
+        myWorkers.shutdown();
+        myWorkers.awaitTermination(MILLIS_PER_SECOND, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Ignores the lateness of ticks due before the given time in every session.
+     *
+     * @param the_nano_time the time from which to record, in System.nanoTime() terms
+     */
+    public synchronized void measureFrom(final long the_nano_time) {
+        for (GameSession session : mySessions) {
+            session.measureFrom(the_nano_time);
+        }
+    }
+
+    /**
+     * @return the number of sessions opened on this server
+     */
+    public synchronized int getSessionCount() {
+        return mySessions.size();
+    }
+
+    /**
+     * @return the number of ticks run by all sessions
+     */
+    public synchronized long getTicks() {
+        long result = 0;
+        for (GameSession session : mySessions) {
+            result += session.getTicks();
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of games finished by all sessions
+     */
+    public synchronized long getGamesPlayed() {
+        long result = 0;
+        for (GameSession session : mySessions) {
+            result += session.getGamesPlayed();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the tick lateness of all sessions; call only after shutdown.
+     *
+     * @return the merged histogram of tick lateness
+     */
+    public synchronized LatencyHistogram getTickLatency() {
+        final LatencyHistogram result = new LatencyHistogram();
+        for (GameSession session : mySessions) {
+            result.merge(session.getTickLatency());
+        }
+        return result;
+    }
+
+    /**
+     * Runs the server headless: [sessions] [seconds] [start delay in ms]
+     * [score log].
+     *
+     * @param the_args the optional session count, duration, start delay and
+     *                 file to keep the results of games in
+     * @throws InterruptedException if interrupted while running
+     * @throws IOException if the score log cannot be opened or written
+     */
+    public static void main(final String[] the_args)
+        throws InterruptedException, IOException {
+        final int sessions = argument(the_args, 0, DEFAULT_SESSIONS);
+        final int seconds = argument(the_args, 1, DEFAULT_SECONDS);
+        final int delay = argument(the_args, 2, LevelSchedule.START_DELAY);
+
+        final GameServer server = new GameServer();
+        ScoreStore scores = null;
+        if (the_args.length > 3) {
+            scores = new ScoreStore(new File(the_args[3]));
+            server.setScoreStore(scores);
+        }
+        for (int i = 0; i < sessions; i++) {
+            server.openSession(DEFAULT_WIDTH, DEFAULT_HEIGHT, i, delay * NANOS_PER_MILLI);
+        }
+        Thread.sleep(seconds * MILLIS_PER_SECOND);
+        server.shutdown();
+
+        System.out.println(sessions + " sessions, " + server.getTicks() + " ticks, "
+                           + server.getGamesPlayed() + " games in " + seconds + "s");
+        System.out.println("tick lateness: " + server.getTickLatency());
+        if (scores != null) {
+            scores.close();
+            System.out.println("best " + GameSession.SCORE_MODE + " results:");
+            for (GameResult result : scores.getTop(GameSession.SCORE_MODE, TOP_PRINTED)) {
+                System.out.println("  " + result);
+            }
+        }
+    }
+
+    /**
+     * Parses an optional integer command line argument.
+     *
+     * @param the_args the command line arguments
+     * @param the_index the position of the argument
+     * @param the_default the value to use when the argument is absent
+     * @return the argument's value
+     */
+    private static int argument(final String[] the_args, final int the_index,
+                                final int the_default) {
+        int result = the_default;
+        if (the_args.length > the_index) {
+            result = Integer.parseInt(the_args[the_index]);
+        }
+        return result;
+    }
+
+    /**
+     * Creates the daemon worker threads of a server.
+     *
+     * @author Jesse Bostic
+     * @version Autumn 2013
+     */
+    private static class WorkerFactory implements ThreadFactory {
+
+        /**
+         * The number of threads created so far.
+         */
+        private final AtomicInteger myCount = new AtomicInteger();
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Thread newThread(final Runnable the_task) {
+            final Thread result = new Thread(the_task, "game-server-"
+                                             + myCount.incrementAndGet());
+            result.setDaemon(true);
+            return result;
+        }
+    }
+}
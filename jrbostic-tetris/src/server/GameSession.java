@@ -0,0 +1,258 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package server;
+
+import java.util.LinkedList;
+import java.util.Random;
+
+import model.Board;
+import model.GameStats;
+import model.LevelSchedule;
+import model.Piece;
+import scores.GameResult;
+import scores.ScoreStore;
+import tools.LatencyHistogram;
+import tools.TimingWheel;
+
+/**
+ * A single headless game hosted by a {@link GameServer}. The session owns its
+ * board, level schedule and bot outright and shares nothing with other
+ * sessions; its ticks run as short tasks on the server's timing wheel and
+ * never overlap, so no locking is needed. When a game ends the session starts a new
+ * one on the same board.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+public class GameSession implements Runnable {
+
+    /**
+     * The mode the scores of sessions are kept under.
+     */
+    public static final String SCORE_MODE = "ladder";
+
+    /**
+     * The number of nanoseconds in a millisecond.
+     */
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /**
+     * The identifier of this session within its server.
+     */
+    private final int myId;
+
+    /**
+     * The width of the game board.
+     */
+    private final int myBoardWidth;
+
+    /**
+     * The height of the game board.
+     */
+    private final int myBoardHeight;
+
+    /**
+     * The game board.
+     */
+    private final Board myBoard;
+
+    /**
+     * The gravity and level progression of the current game.
+     */
+    private final LevelSchedule mySchedule;
+
+    /**
+     * The player making moves in this session.
+     */
+    private final Bot myBot;
+
+    /**
+     * The timing wheel running this session's ticks.
+     */
+    private final TimingWheel myWheel;
+
+    /**
+     * The store finished games are recorded in, null if they are not kept.
+     */
+    private volatile ScoreStore myScores;
+
+    /**
+     * The pending tick of this session.
+     */
+    private volatile TimingWheel.Timeout myTimeout;
+
+    /**
+     * How late each tick ran relative to its deadline.
+     */
+    private final LatencyHistogram myTickLatency;
+
+    /**
+     * The deadline of the next tick, in System.nanoTime() terms.
+     */
+    private long myNextTick;
+
+    /**
+     * The number of ticks run.
+     */
+    private long myTicks;
+
+    /**
+     * The number of games finished.
+     */
+    private int myGamesPlayed;
+
+    /**
+     * The time from which tick lateness is recorded, in System.nanoTime() terms.
+     */
+    private volatile long myMeasureFrom;
+
+    /**
+     * Whether this session should keep scheduling ticks.
+     */
+    private volatile boolean myRunning;
+
+    /**
+     * Constructs a session.
+     *
+     * @param the_id the identifier of this session within its server
+     * @param the_width the block width of the game board
+     * @param the_height the block height of the game board
+     * @param the_seed the seed for this session's pieces and bot
+     * @param the_start_delay the delay between ticks at level one, in nanoseconds
+     * @param the_wheel the timing wheel that runs this session's ticks
+     */
+    public GameSession(final int the_id, final int the_width, final int the_height,
+                       final long the_seed, final long the_start_delay,
+                       final TimingWheel the_wheel) {
+        myId = the_id;
+        myBoardWidth = the_width;
+        myBoardHeight = the_height;
+        myBoard = new Board(the_width, the_height, new LinkedList<Piece>(),
+                            new Random(the_seed));
+        mySchedule = new LevelSchedule(the_start_delay);
+        myBot = new RandomBot(new Random(~the_seed));
+        myWheel = the_wheel;
+        myTickLatency = new LatencyHistogram();
+    }
+
+    /**
+     * Sets the store the result of each finished game is recorded in.
+     *
+     * @param the_scores the store, null to keep no scores
+     */
+    public void setScoreStore(final ScoreStore the_scores) {
+        myScores = the_scores;
+    }
+
+    /**
+     * Schedules the first tick of this session.
+     */
+    public void start() {
+        myRunning = true;
+        myNextTick = System.nanoTime() + mySchedule.getDelayNanos();
+        myMeasureFrom = myNextTick;
+        myTimeout = myWheel.schedule(this, mySchedule.getDelayNanos());
+    }
+
+    /**
+     * Ignores the lateness of ticks due before the given time, such as those
+     * run while the JIT is still warming up.
+     *
+     * @param the_nano_time the time from which to record, in System.nanoTime() terms
+     */
+    public void measureFrom(final long the_nano_time) {
+        myMeasureFrom = the_nano_time;
+    }
+
+    /**
+     * Stops scheduling ticks; a tick already running completes.
+     */
+    public void stop() {
+        myRunning = false;
+        myTimeout.cancel();
+    }
+
+    /**
+     * Runs one gravity tick and schedules the next one.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        if (myRunning) {
+            if (myNextTick - myMeasureFrom >= 0) {
+                myTickLatency.record(System.nanoTime() - myNextTick);
+            }
+            tick();
+            // the delay shrinks at each level up, so it is read fresh every tick
+            myNextTick += mySchedule.getDelayNanos();
+            myTimeout = myWheel.schedule(this, myNextTick - System.nanoTime());
+        }
+    }
+
+    /**
+     * Lets the bot move, applies gravity, and restarts the game once it is over.
+     */
+    private void tick() {
+        myTicks++;
+        myBot.act(myBoard);
+        if (!myBoard.isGameOver()) {
+            myBoard.getStats().addTime(mySchedule.getDelayNanos());
+            myBoard.step();
+            mySchedule.tick();
+        }
+        if (myBoard.isGameOver()) {
+            myGamesPlayed++;
+            recordResult();
+            myBoard.newGame(myBoardWidth, myBoardHeight, null);
+            mySchedule.reset();
+        }
+    }
+
+    /**
+     * Records the result of the game just finished, if scores are kept.
+     */
+    private void recordResult() {
+        final ScoreStore scores = myScores;
+        if (scores != null) {
+            final GameStats stats = myBoard.getStats();
+            scores.record(new GameResult(SCORE_MODE, "bot-" + myId, stats.getScore(),
+                                         stats.getLines(), stats.getPieces(),
+                                         mySchedule.getLevel(),
+                                         stats.getNanos() / NANOS_PER_MILLI,
+                                         GameResult.NO_REPLAY, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * @return the identifier of this session within its server
+     */
+    public int getId() {
+        return myId;
+    }
+
+    /**
+     * @return the number of ticks run
+     */
+    public long getTicks() {
+        return myTicks;
+    }
+
+    /**
+     * @return the number of games finished
+     */
+    public int getGamesPlayed() {
+        return myGamesPlayed;
+    }
+
+    /**
+     * Returns how late each tick ran; only meaningful once the session is stopped.
+     *
+     * @return the histogram of tick lateness
+     */
+    public LatencyHistogram getTickLatency() {
+        return myTickLatency;
+    }
+}
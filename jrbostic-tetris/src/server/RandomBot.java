@@ -0,0 +1,80 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package server;
+
+import java.util.Random;
+
+import model.Board;
+
+/**
+ * A bot that makes one random move per gravity tick, used to load the server.
+ * 
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+public class RandomBot implements Bot {
+    
+    /**
+     * The number of different moves this bot chooses between.
+     */
+    private static final int MOVES = 8;
+    
+    /**
+     * Move left.
+     */
+    private static final int LEFT = 0;
+    
+    /**
+     * Move right.
+     */
+    private static final int RIGHT = 1;
+    
+    /**
+     * Rotate.
+     */
+    private static final int ROTATE = 2;
+    
+    /**
+     * Hard drop.
+     */
+    private static final int DROP = 3;
+    
+    /**
+     * The random number generator private to this bot.
+     */
+    private final Random myRandom;
+    
+    /**
+     * Constructs a bot using its own random number generator.
+     * 
+     * @param the_random the random number generator used to choose moves
+     */
+    public RandomBot(final Random the_random) {
+        myRandom = the_random;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void act(final Board the_board) {
+        switch (myRandom.nextInt(MOVES)) {
+            case LEFT:
+                the_board.moveLeft();
+                break;
+            case RIGHT:
+                the_board.moveRight();
+                break;
+            case ROTATE:
+                the_board.rotate();
+                break;
+            case DROP:
+                the_board.hardDrop();
+                break;
+            default: // let gravity do the work
+                break;
+        }
+    }
+}
@@ -0,0 +1,532 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package terminal;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import engine.GameSnapshot;
+import model.Block;
+
+/**
+ * Draws game snapshots on an ANSI terminal. The screen is kept as a grid of
+ * character cells; each frame is laid out into a second grid, and only the
+ * cells that differ from the last frame are sent, with a cursor move before
+ * each run of changes and a color change only where the color differs. A
+ * falling piece therefore costs a few dozen bytes a frame rather than a whole
+ * board, which keeps play smooth over slow SSH links. Board cells are two
+ * columns wide and drawn as colored spaces in the xterm 256-color palette.
+ * Not thread safe; one thread draws.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+final class AnsiRenderer {
+
+    /**
+     * The escape character.
+     */
+    private static final byte ESC = 27;
+
+    /**
+     * The position in a cell of its color, stored plus one so 0 is the
+     * terminal's default color.
+     */
+    private static final int COLOR_SHIFT = 16;
+
+    /**
+     * The bits of a cell holding its character.
+     */
+    private static final int GLYPH_MASK = 0xFFFF;
+
+    /**
+     * A cell holding a space in the default color.
+     */
+    private static final int BLANK = ' ';
+
+    /**
+     * The first color of the xterm 6x6x6 color cube.
+     */
+    private static final int CUBE_START = 16;
+
+    /**
+     * The number of levels of each primary in the color cube.
+     */
+    private static final int CUBE_LEVELS = 6;
+
+    /**
+     * The lowest intensity nearest the cube's second level.
+     */
+    private static final int SECOND_LEVEL = 48;
+
+    /**
+     * The lowest intensity nearest the cube's third level.
+     */
+    private static final int THIRD_LEVEL = 115;
+
+    /**
+     * The intensity below the cube's first level at which the upper levels,
+     * 40 apart, begin.
+     */
+    private static final int LEVEL_OFFSET = 35;
+
+    /**
+     * The intensity between the cube's upper levels.
+     */
+    private static final int LEVEL_STEP = 40;
+
+    /**
+     * The column of the side panel, past the board.
+     */
+    private static final int PANEL_GAP = 3;
+
+    /**
+     * The width of the level progress bar.
+     */
+    private static final int PROGRESS_WIDTH = 10;
+
+    /**
+     * The first row of the key help.
+     */
+    private static final int HELP_ROW = 8;
+
+    /**
+     * The key help shown beside the board.
+     */
+    private static final String[] HELP = {"arrows/wasd  move",
+                                          "up/w    rotate",
+                                          "space   drop",
+                                          "p pause  n new",
+                                          "q quit"};
+
+    /**
+     * The background of each block type in the palette, indexed by ordinal.
+     */
+    private static final int[] BLOCK_COLORS = blockColors(false);
+
+    /**
+     * The background of each frozen block type, a shade darker.
+     */
+    private static final int[] FROZEN_COLORS = blockColors(true);
+
+    /**
+     * The stream the terminal reads.
+     */
+    private final OutputStream myOut;
+
+    /**
+     * The block width of the game board.
+     */
+    private final int myBoardWidth;
+
+    /**
+     * The block height of the game board.
+     */
+    private final int myBoardHeight;
+
+    /**
+     * The number of columns drawn.
+     */
+    private final int myColumns;
+
+    /**
+     * The cells on screen, row by row.
+     */
+    private final int[] myShown;
+
+    /**
+     * The cells of the frame being laid out, row by row.
+     */
+    private final int[] myNext;
+
+    /**
+     * The bytes of the frame being sent.
+     */
+    private byte[] myBuffer;
+
+    /**
+     * The number of bytes of the frame being sent.
+     */
+    private int myLength;
+
+    /**
+     * The row of the terminal's cursor, -1 if unknown.
+     */
+    private int myCursorRow;
+
+    /**
+     * The column of the terminal's cursor.
+     */
+    private int myCursorColumn;
+
+    /**
+     * The color the terminal is drawing in, stored like a cell's.
+     */
+    private int myColor;
+
+    /**
+     * Whether the screen must be cleared and drawn whole.
+     */
+    private boolean myInvalid;
+
+    /**
+     * The number of bytes sent to the terminal.
+     */
+    private long myBytesWritten;
+
+    /**
+     * Constructs a renderer for a board.
+     *
+     * @param the_out the stream the terminal reads
+     * @param the_board_width the block width of the game board
+     * @param the_board_height the block height of the game board
+     */
+    AnsiRenderer(final OutputStream the_out, final int the_board_width,
+                 final int the_board_height) {
+        myOut = the_out;
+        myBoardWidth = the_board_width;
+        myBoardHeight = the_board_height;
+        int helpWidth = 0;
+        for (String line : HELP) {
+            helpWidth = Math.max(helpWidth, line.length());
+        }
+        myColumns = 2 * the_board_width + 2 + PANEL_GAP + helpWidth;
+        myShown = new int[myColumns * getRows()];
+        myNext = new int[myShown.length];
+        myBuffer = new byte[myShown.length * 2];
+        myInvalid = true;
+    }
+
+    /**
+     * Finds the palette colors of the block types.
+     *
+     * @param the_dark whether to take the darker shade
+     * @return the colors stored like a cell's, indexed by ordinal
+     */
+    private static int[] blockColors(final boolean the_dark) {
+        final Block[] blocks = Block.values();
+        final int[] result = new int[blocks.length];
+        for (int i = 0; i < blocks.length; i++) {
+            Color color = blocks[i].getColor();
+            if (the_dark && blocks[i] != Block.EMPTY) {
+                color = color.darker();
+            }
+            result[i] = CUBE_START + CUBE_LEVELS * CUBE_LEVELS * toLevel(color.getRed())
+                        + CUBE_LEVELS * toLevel(color.getGreen()) + toLevel(color.getBlue())
+                        + 1;
+        }
+        return result;
+    }
+
+    /**
+     * Finds the nearest level of the color cube to a primary's intensity;
+     * the cube's levels are 0, 95, 135, 175, 215 and 255.
+     *
+     * @param the_value the intensity, 0 to 255
+     * @return the level, 0 to 5
+     */
+    private static int toLevel(final int the_value) {
+        final int result;
+        if (the_value < SECOND_LEVEL) {
+            result = 0;
+        } else if (the_value < THIRD_LEVEL) {
+            result = 1;
+        } else {
+            result = (the_value - LEVEL_OFFSET) / LEVEL_STEP;
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of rows drawn
+     */
+    int getRows() {
+        return myBoardHeight + 1;
+    }
+
+    /**
+     * @return the number of bytes sent to the terminal
+     */
+    long getBytesWritten() {
+        return myBytesWritten;
+    }
+
+    /**
+     * Makes the next frame clear the screen and draw every cell, as after
+     * the terminal was resized or written over.
+     */
+    void invalidate() {
+        myInvalid = true;
+    }
+
+    /**
+     * Draws a frame, sending only the cells that changed.
+     *
+     * @param the_snapshot the state of the game
+     * @param the_paused whether the game is paused
+     * @throws IOException if the terminal cannot be written
+     */
+    void draw(final GameSnapshot the_snapshot, final boolean the_paused) throws IOException {
+        layOut(the_snapshot, the_paused);
+        myLength = 0;
+        if (myInvalid) {
+            myInvalid = false;
+            //reset colors, clear, hide the cursor
+            escape();
+            append("0m");
+            escape();
+            append("2J");
+            escape();
+            append("?25l");
+            Arrays.fill(myShown, BLANK);
+            myColor = 0;
+            myCursorRow = -1;
+        }
+        for (int row = 0; row < getRows(); row++) {
+            final int start = row * myColumns;
+            for (int column = 0; column < myColumns; column++) {
+                final int cell = myNext[start + column];
+                if (cell != myShown[start + column]) {
+                    moveTo(row, column);
+                    final int color = cell >>> COLOR_SHIFT;
+                    if (color != myColor) {
+                        setColor(color);
+                    }
+                    append((byte) (cell & GLYPH_MASK));
+                    myCursorColumn++;
+                    myShown[start + column] = cell;
+                }
+            }
+        }
+        if (myLength > 0) {
+            myOut.write(myBuffer, 0, myLength);
+            myOut.flush();
+            myBytesWritten += myLength;
+        }
+    }
+
+    /**
+     * Moves the cursor below the drawing and restores the terminal's colors
+     * and cursor.
+     *
+     * @throws IOException if the terminal cannot be written
+     */
+    void close() throws IOException {
+        myLength = 0;
+        escape();
+        append("0m");
+        escape();
+        appendNumber(getRows() + 1);
+        append(";1H");
+        escape();
+        append("?25h");
+        myOut.write(myBuffer, 0, myLength);
+        myOut.flush();
+    }
+
+    /**
+     * Lays out a frame in the next grid.
+     *
+     * @param the_snapshot the state of the game
+     * @param the_paused whether the game is paused
+     */
+    private void layOut(final GameSnapshot the_snapshot, final boolean the_paused) {
+        Arrays.fill(myNext, BLANK);
+        final int right = 2 * myBoardWidth + 1;
+        for (int row = 0; row < myBoardHeight; row++) {
+            final int screenRow = myBoardHeight - 1 - row;
+            put(screenRow, 0, '|', 0);
+            put(screenRow, right, '|', 0);
+            for (int column = 0; column < myBoardWidth; column++) {
+                Block block = Block.EMPTY;
+                if (row < the_snapshot.getRowCount()) {
+                    block = the_snapshot.getBlock(column, row);
+                }
+                putCell(screenRow, column, FROZEN_COLORS[block.ordinal()]);
+            }
+        }
+        final int pieceColor = BLOCK_COLORS[the_snapshot.getPieceBlock().ordinal()];
+        for (int i = 0; i < the_snapshot.getPieceSize(); i++) {
+            final int row = the_snapshot.getPieceCoordinate(i, 1);
+            if (row >= 0 && row < myBoardHeight) {
+                putCell(myBoardHeight - 1 - row, the_snapshot.getPieceCoordinate(i, 0),
+                        pieceColor);
+            }
+        }
+        put(myBoardHeight, 0, '+', 0);
+        for (int column = 1; column < right; column++) {
+            put(myBoardHeight, column, '-', 0);
+        }
+        put(myBoardHeight, right, '+', 0);
+
+        final int panel = right + 1 + PANEL_GAP;
+        putNumber(1, putText(1, panel, "SCORE "), the_snapshot.getScore());
+        putNumber(2, putText(2, panel, "LEVEL "), the_snapshot.getLevel());
+        putNumber(3, putText(3, panel, "LINES "), the_snapshot.getLines());
+        put(4, panel, '[', 0);
+        final int filled = PROGRESS_WIDTH * the_snapshot.getLevelTicks()
+                           / Math.max(1, the_snapshot.getTicksPerLevel());
+        for (int i = 0; i < PROGRESS_WIDTH; i++) {
+            put(4, panel + 1 + i, i < filled ? '#' : '.', 0);
+        }
+        put(4, panel + 1 + PROGRESS_WIDTH, ']', 0);
+        if (the_snapshot.isGameOver()) {
+            putText(6, panel, "GAME OVER");
+        } else if (the_paused) {
+            putText(6, panel, "PAUSED");
+        }
+        for (int i = 0; i < HELP.length; i++) {
+            putText(HELP_ROW + i, panel, HELP[i]);
+        }
+    }
+
+    /**
+     * Lays out a board cell as two colored spaces.
+     *
+     * @param the_row the screen row
+     * @param the_column the board column
+     * @param the_color the color, stored like a cell's
+     */
+    private void putCell(final int the_row, final int the_column, final int the_color) {
+        put(the_row, 1 + 2 * the_column, ' ', the_color);
+        put(the_row, 2 + 2 * the_column, ' ', the_color);
+    }
+
+    /**
+     * Lays out a character, if it is on the grid.
+     *
+     * @param the_row the screen row
+     * @param the_column the screen column
+     * @param the_glyph the character
+     * @param the_color the color, stored like a cell's
+     */
+    private void put(final int the_row, final int the_column, final char the_glyph,
+                     final int the_color) {
+        if (the_row < getRows() && the_column >= 0 && the_column < myColumns) {
+            myNext[the_row * myColumns + the_column] = the_color << COLOR_SHIFT | the_glyph;
+        }
+    }
+
+    /**
+     * Lays out text in the default color.
+     *
+     * @param the_row the screen row
+     * @param the_column the screen column of the first character
+     * @param the_text the text
+     * @return the column after the text
+     */
+    private int putText(final int the_row, final int the_column, final String the_text) {
+        for (int i = 0; i < the_text.length(); i++) {
+            put(the_row, the_column + i, the_text.charAt(i), 0);
+        }
+        return the_column + the_text.length();
+    }
+
+    /**
+     * Lays out a number in the default color without allocating.
+     *
+     * @param the_row the screen row
+     * @param the_column the screen column of the first digit
+     * @param the_value the number, not negative
+     */
+    private void putNumber(final int the_row, final int the_column, final int the_value) {
+        int digits = 1;
+        for (int rest = the_value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        int rest = the_value;
+        for (int i = digits - 1; i >= 0; i--) {
+            put(the_row, the_column + i, (char) ('0' + rest % 10), 0);
+            rest /= 10;
+        }
+    }
+
+    /**
+     * Moves the cursor to a cell, by the shortest sequence.
+     *
+     * @param the_row the screen row
+     * @param the_column the screen column
+     */
+    private void moveTo(final int the_row, final int the_column) {
+        if (the_row == myCursorRow && the_column == myCursorColumn) {
+            return;
+        }
+        escape();
+        if (the_row == myCursorRow && the_column > myCursorColumn) {
+            appendNumber(the_column - myCursorColumn);
+            append((byte) 'C');
+        } else {
+            appendNumber(the_row + 1);
+            append((byte) ';');
+            appendNumber(the_column + 1);
+            append((byte) 'H');
+        }
+        myCursorRow = the_row;
+        myCursorColumn = the_column;
+    }
+
+    /**
+     * Switches the background color.
+     *
+     * @param the_color the color, stored like a cell's
+     */
+    private void setColor(final int the_color) {
+        escape();
+        if (the_color == 0) {
+            append((byte) 'm');
+        } else {
+            append("48;5;");
+            appendNumber(the_color - 1);
+            append((byte) 'm');
+        }
+        myColor = the_color;
+    }
+
+    /**
+     * Starts a control sequence.
+     */
+    private void escape() {
+        append(ESC);
+        append((byte) '[');
+    }
+
+    /**
+     * Adds ASCII text to the frame being sent.
+     *
+     * @param the_text the text
+     */
+    private void append(final String the_text) {
+        for (int i = 0; i < the_text.length(); i++) {
+            append((byte) the_text.charAt(i));
+        }
+    }
+
+    /**
+     * Adds a number to the frame being sent.
+     *
+     * @param the_value the number, not negative
+     */
+    private void appendNumber(final int the_value) {
+        if (the_value >= 10) {
+            appendNumber(the_value / 10);
+        }
+        append((byte) ('0' + the_value % 10));
+    }
+
+    /**
+     * Adds a byte to the frame being sent.
+     *
+     * @param the_byte the byte
+     */
+    private void append(final byte the_byte) {
+        if (myLength == myBuffer.length) {
+            myBuffer = Arrays.copyOf(myBuffer, 2 * myLength);
+        }
+        myBuffer[myLength] = the_byte;
+        myLength++;
+    }
+}
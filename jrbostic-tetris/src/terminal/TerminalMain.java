@@ -0,0 +1,434 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package terminal;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.locks.LockSupport;
+
+import engine.GameCommand;
+import engine.GameSnapshot;
+import engine.Replay;
+import engine.ReplayPlayer;
+import engine.SimulationListener;
+import engine.SimulationLoop;
+
+/**
+ * Plays the game in a terminal, for servers with no display and play over
+ * SSH: {@code java -cp bin terminal.TerminalMain}. With a replay file as the
+ * argument, the replay is shown at game speed instead. The terminal is put
+ * in unbuffered, unechoed mode with stty for the length of the game. A
+ * terminal reports no key releases, so every key is a tap and holding one
+ * repeats at the terminal's own key repeat rate.
+ *
+ * <p>Frames are drawn on their own thread as the simulation publishes them,
+ * at most -Dtetris.fps times a second (60 by default), and only the cells
+ * that changed are sent; see {@link AnsiRenderer}.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+public final class TerminalMain {
+
+    /**
+     * The block width of the game board.
+     */
+    private static final int WIDTH = 10;
+
+    /**
+     * The block height of the game board.
+     */
+    private static final int HEIGHT = 20;
+
+    /**
+     * The default number of frames drawn a second, at most.
+     */
+    private static final int DEFAULT_FPS = 60;
+
+    /**
+     * The escape character.
+     */
+    private static final int ESC = 27;
+
+    /**
+     * The character sent by Ctrl-C when the terminal does not raise a signal.
+     */
+    private static final int INTERRUPT = 3;
+
+    /**
+     * The character redrawing the screen, Ctrl-L.
+     */
+    private static final int REDRAW = 12;
+
+    /**
+     * The number of nanoseconds in a second.
+     */
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    /**
+     * The renderer of the terminal screen, used only by the drawing thread.
+     */
+    private final AnsiRenderer myRenderer;
+
+    /**
+     * The shortest time between frames, in nanoseconds.
+     */
+    private final long myFrameInterval;
+
+    /**
+     * The game, when playing rather than watching a replay.
+     */
+    private SimulationLoop myLoop;
+
+    /**
+     * The thread drawing frames.
+     */
+    private Thread myDrawer;
+
+    /**
+     * Whether a frame is waiting to be drawn.
+     */
+    private volatile boolean myFrameWaiting;
+
+    /**
+     * Whether the whole screen should be redrawn.
+     */
+    private volatile boolean myRedraw;
+
+    /**
+     * Whether the game is paused.
+     */
+    private volatile boolean myPaused;
+
+    /**
+     * Whether the front end is running.
+     */
+    private volatile boolean myRunning;
+
+    /**
+     * Sets up the terminal front end.
+     *
+     * @param the_out the stream the terminal reads
+     */
+    private TerminalMain(final OutputStream the_out) {
+        myRenderer = new AnsiRenderer(the_out, WIDTH, HEIGHT);
+        myFrameInterval = NANOS_PER_SECOND / Math.max(1, Integer.getInteger("tetris.fps",
+                                                                            DEFAULT_FPS));
+        myRunning = true;
+    }
+
+    /**
+     * Plays a game, or shows a replay file.
+     *
+     * @param the_args an optional replay file to show
+     * @throws Exception if the replay cannot be read or the terminal cannot be written
+     */
+    public static void main(final String[] the_args) throws Exception {
+        final OutputStream out = new FileOutputStream(FileDescriptor.out);
+        final TerminalMain main = new TerminalMain(out);
+        final String settings = stty("-g");
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                main.stop(settings);
+            }
+        }));
+        if (settings != null) {
+            stty("-icanon -echo min 1");
+        }
+
+        if (the_args.length > 0) {
+            final Replay replay;
+            try (InputStream in = new BufferedInputStream(new FileInputStream(the_args[0]))) {
+                replay = Replay.read(in);
+            }
+            main.watch(replay);
+        } else {
+            main.play();
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Runs stty on the controlling terminal.
+     *
+     * @param the_arguments the arguments to stty
+     * @return what stty printed, trimmed, or null if it failed or there is no terminal
+     */
+    private static String stty(final String the_arguments) {
+        String result = null;
+        try {
+            final Process process = new ProcessBuilder("sh", "-c",
+                                                       "stty " + the_arguments + " < /dev/tty")
+                    .redirectErrorStream(true).start();
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            final InputStream in = process.getInputStream();
+            for (int read = in.read(); read >= 0; read = in.read()) {
+                output.write(read);
+            }
+            if (process.waitFor() == 0) {
+                result = new String(output.toByteArray(), Charset.defaultCharset()).trim();
+            }
+        } catch (final IOException e) {
+            result = null;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return result;
+    }
+
+    /**
+     * Plays a game, reading keys until quit.
+     *
+     * @throws IOException if the keyboard cannot be read
+     */
+    private void play() throws IOException {
+        myLoop = new SimulationLoop(WIDTH, HEIGHT);
+        startDrawing();
+        myLoop.setListener(new SimulationListener() {
+            @Override
+            public void framePublished() {
+                requestFrame();
+            }
+
+            @Override
+            public void levelUp(final int the_level) {
+                //the level is drawn with every frame
+            }
+
+            @Override
+            public void gameOver() {
+                requestFrame();
+            }
+        });
+        myLoop.start();
+        requestFrame();
+        readKeys(System.in);
+    }
+
+    /**
+     * Shows a replay at game speed, then waits for quit.
+     *
+     * @param the_replay the replay to show
+     * @throws IOException if the keyboard cannot be read
+     */
+    private void watch(final Replay the_replay) throws IOException {
+        final ReplayPlayer player = new ReplayPlayer(the_replay);
+        myDrawer = Thread.currentThread();
+        final Thread keys = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    readKeys(System.in);
+                } catch (final IOException e) {
+                    myRunning = false;
+                }
+            }
+        }, "keyboard");
+        keys.setDaemon(true);
+        keys.start();
+
+        long nextStep = System.nanoTime();
+        long nextFrame = nextStep;
+        while (myRunning) {
+            if (!myPaused && !player.isFinished()) {
+                player.step();
+            }
+            final long now = System.nanoTime();
+            if (now - nextFrame >= 0) {
+                draw(player.getSnapshot());
+                nextFrame = now + myFrameInterval;
+            }
+            nextStep += SimulationLoop.STEP;
+            final long wait = nextStep - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+    }
+
+    /**
+     * Starts the thread drawing frames as they are requested.
+     */
+    private void startDrawing() {
+        myDrawer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long nextFrame = System.nanoTime();
+                while (myRunning) {
+                    if (myFrameWaiting) {
+                        final long wait = nextFrame - System.nanoTime();
+                        if (wait > 0) {
+                            LockSupport.parkNanos(wait);
+                            continue;
+                        }
+                        myFrameWaiting = false;
+                        try {
+                            draw(myLoop.getSnapshot());
+                        } catch (final IOException e) {
+                            myRunning = false;
+                        }
+                        nextFrame = System.nanoTime() + myFrameInterval;
+                    } else {
+                        LockSupport.park(this);
+                    }
+                }
+            }
+        }, "terminal");
+        myDrawer.setDaemon(true);
+        myDrawer.start();
+    }
+
+    /**
+     * Asks the drawing thread for a frame; safe from any thread.
+     */
+    private void requestFrame() {
+        myFrameWaiting = true;
+        LockSupport.unpark(myDrawer);
+    }
+
+    /**
+     * Draws a frame; called only on the drawing thread, but never while the
+     * terminal is being restored.
+     *
+     * @param the_snapshot the state of the game
+     * @throws IOException if the terminal cannot be written
+     */
+    private void draw(final GameSnapshot the_snapshot) throws IOException {
+        synchronized (myRenderer) {
+            if (myRedraw) {
+                myRedraw = false;
+                myRenderer.invalidate();
+            }
+            if (myRunning) {
+                myRenderer.draw(the_snapshot, myPaused);
+            }
+        }
+    }
+
+    /**
+     * Reads keys until quit or the end of input, applying each to the game.
+     *
+     * @param the_in the keyboard
+     * @throws IOException if the keyboard cannot be read
+     */
+    private void readKeys(final InputStream the_in) throws IOException {
+        int key = the_in.read();
+        while (myRunning && key >= 0 && key != 'q' && key != INTERRUPT) {
+            if (key == ESC) {
+                //arrow keys arrive as ESC [ A..D, or ESC O A..D
+                key = the_in.read();
+                if (key == '[' || key == 'O') {
+                    key = the_in.read();
+                    switch (key) {
+                        case 'A':
+                            submit(GameCommand.ROTATE);
+                            break;
+                        case 'B':
+                            submit(GameCommand.DOWN);
+                            break;
+                        case 'C':
+                            submit(GameCommand.RIGHT);
+                            break;
+                        case 'D':
+                            submit(GameCommand.LEFT);
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            } else {
+                applyKey(key);
+            }
+            key = the_in.read();
+        }
+        myRunning = false;
+    }
+
+    /**
+     * Applies a key other than an arrow key.
+     *
+     * @param the_key the character read
+     */
+    private void applyKey(final int the_key) {
+        switch (the_key) {
+            case 'a':
+                submit(GameCommand.LEFT);
+                break;
+            case 'd':
+                submit(GameCommand.RIGHT);
+                break;
+            case 's':
+                submit(GameCommand.DOWN);
+                break;
+            case 'w':
+                submit(GameCommand.ROTATE);
+                break;
+            case ' ':
+                submit(GameCommand.DROP);
+                break;
+            case 'p':
+                myPaused = !myPaused;
+                if (myLoop != null) {
+                    myLoop.setPaused(myPaused);
+                }
+                requestFrame();
+                break;
+            case 'n':
+                if (myLoop != null) {
+                    myPaused = false;
+                    myLoop.setPaused(false);
+                    myLoop.newGame();
+                }
+                break;
+            case REDRAW:
+                myRedraw = true;
+                requestFrame();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Passes a key to the game, when playing.
+     *
+     * @param the_command the input
+     */
+    private void submit(final GameCommand the_command) {
+        if (myLoop != null) {
+            myLoop.submit(the_command);
+        }
+    }
+
+    /**
+     * Restores the terminal on the way out.
+     *
+     * @param the_settings the terminal settings to restore, null if unknown
+     */
+    private void stop(final String the_settings) {
+        myRunning = false;
+        if (myLoop != null) {
+            myLoop.stop();
+        }
+        synchronized (myRenderer) {
+            try {
+                myRenderer.close();
+            } catch (final IOException e) {
+                //the terminal has gone away
+            }
+        }
+        if (the_settings != null) {
+            stty(the_settings);
+        }
+    }
+}
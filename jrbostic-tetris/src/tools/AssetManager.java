@@ -0,0 +1,263 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package tools;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+
+/**
+ * Loads the game's images once and shares them, along with every scaled
+ * copy asked for. Images are found on the class path, falling back to a
+ * path relative to the working directory as when run from the project
+ * folder. Each image or scaled copy is made by the first thread to ask for
+ * it while any other asking at the same time waits for that one, so
+ * {@link #preload} on a background thread never duplicates work done on the
+ * event dispatch thread. Safe to use from any thread.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+public final class AssetManager {
+
+    /**
+     * The background tile of the game panels.
+     */
+    public static final String BACKGROUND = "images/tetris.jpg";
+
+    /**
+     * The logo shown on dialogs.
+     */
+    public static final String LOGO = "images/tetris.png";
+
+    /**
+     * The icon of the game frame.
+     */
+    public static final String ICON = "images/icon.png";
+
+    /**
+     * The images and scaled copies made or being made, by name and size.
+     */
+    private static final ConcurrentMap<String, FutureTask<BufferedImage>> IMAGES =
+            new ConcurrentHashMap<String, FutureTask<BufferedImage>>();
+
+    /**
+     * Constructor to ensure uninstantiability.
+     */
+    private AssetManager() {
+        //ensure uninstantiability
+    }
+
+    /**
+     * Finds a resource on the class path, or else relative to the working
+     * directory.
+     *
+     * @param the_name the path of the resource, such as "images/icon.png"
+     * @return the location of the resource, null if it is in neither place
+     */
+    public static URL getResource(final String the_name) {
+        URL result = AssetManager.class.getClassLoader().getResource(the_name);
+        final File file = new File(the_name);
+        if (result == null && file.isFile()) {
+            try {
+                result = file.toURI().toURL();
+            } catch (final MalformedURLException e) {
+                result = null;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns an image, loading it if it has not been.
+     *
+     * @param the_name the path of the image
+     * @return the image, empty if it cannot be read
+     */
+    public static BufferedImage getImage(final String the_name) {
+        return get(the_name, new Callable<BufferedImage>() {
+            @Override
+            public BufferedImage call() {
+                return load(the_name);
+            }
+        });
+    }
+
+    /**
+     * Returns an image scaled to a size, scaling it if it has not been.
+     *
+     * @param the_name the path of the image
+     * @param the_width the width wanted
+     * @param the_height the height wanted
+     * @return the scaled image
+     */
+    public static BufferedImage getScaledImage(final String the_name, final int the_width,
+                                               final int the_height) {
+        final String key = the_name + '@' + the_width + 'x' + the_height;
+        return get(key, new Callable<BufferedImage>() {
+            @Override
+            public BufferedImage call() {
+                return scale(getImage(the_name), the_width, the_height);
+            }
+        });
+    }
+
+    /**
+     * Returns a square image scaled to a size as an icon for a dialog.
+     *
+     * @param the_name the path of the image
+     * @param the_size the width and height wanted
+     * @return the icon
+     */
+    public static ImageIcon getIcon(final String the_name, final int the_size) {
+        return new ImageIcon(getScaledImage(the_name, the_size, the_size));
+    }
+
+    /**
+     * Loads an image and square copies of it on a background thread, so they
+     * are ready before they are first asked for.
+     *
+     * @param the_name the path of the image
+     * @param the_sizes the widths and heights of the square copies wanted
+     */
+    public static void preload(final String the_name, final int... the_sizes) {
+        final Thread loader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                getImage(the_name);
+                for (final int size : the_sizes) {
+                    getScaledImage(the_name, size, size);
+                }
+            }
+        }, "asset preload");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Returns an image from the cache, making it on this thread if no other
+     * thread has started to.
+     *
+     * @param the_key the key of the image
+     * @param the_maker makes the image
+     * @return the image
+     */
+    private static BufferedImage get(final String the_key,
+                                     final Callable<BufferedImage> the_maker) {
+        FutureTask<BufferedImage> task = IMAGES.get(the_key);
+        if (task == null) {
+            final FutureTask<BufferedImage> made = new FutureTask<BufferedImage>(the_maker);
+            task = IMAGES.putIfAbsent(the_key, made);
+            if (task == null) {
+                task = made;
+                made.run();
+            }
+        }
+        boolean interrupted = false;
+        BufferedImage result = null;
+        while (result == null) {
+            try {
+                result = task.get();
+            } catch (final InterruptedException e) {
+                interrupted = true;
+            } catch (final ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return result;
+    }
+
+    /**
+     * Reads an image into integer pixels, which draw fastest.
+     *
+     * @param the_name the path of the image
+     * @return the image, a single clear pixel if it cannot be read
+     */
+    private static BufferedImage load(final String the_name) {
+        BufferedImage read = null;
+        final URL url = getResource(the_name);
+        if (url == null) {
+            System.err.println("missing image " + the_name);
+        } else {
+            try {
+                read = ImageIO.read(url);
+            } catch (final IOException e) {
+                System.err.println("cannot read " + the_name + ": " + e.getMessage());
+            }
+        }
+        final BufferedImage result;
+        if (read == null) {
+            result = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        } else {
+            result = new BufferedImage(read.getWidth(), read.getHeight(), typeOf(read));
+            final Graphics2D g2d = result.createGraphics();
+            g2d.drawImage(read, 0, 0, null);
+            g2d.dispose();
+        }
+        return result;
+    }
+
+    /**
+     * @param the_image an image
+     * @return the integer pixel type holding the image, with alpha only if
+     *         the image has transparency
+     */
+    private static int typeOf(final BufferedImage the_image) {
+        final int result;
+        if (the_image.getTransparency() == Transparency.OPAQUE) {
+            result = BufferedImage.TYPE_INT_RGB;
+        } else {
+            result = BufferedImage.TYPE_INT_ARGB;
+        }
+        return result;
+    }
+
+    /**
+     * Scales an image smoothly, halving its size in steps while it is more
+     * than twice the size wanted so that bilinear filtering does not skip
+     * pixels. This is far faster than area averaging, and looks the same at
+     * icon sizes.
+     *
+     * @param the_image the image
+     * @param the_width the width wanted
+     * @param the_height the height wanted
+     * @return the scaled image
+     */
+    private static BufferedImage scale(final BufferedImage the_image, final int the_width,
+                                       final int the_height) {
+        final int type = typeOf(the_image);
+        final int width = Math.max(1, the_width);
+        final int height = Math.max(1, the_height);
+        BufferedImage result = the_image;
+        do {
+            final int stepWidth = Math.max(width, result.getWidth() / 2);
+            final int stepHeight = Math.max(height, result.getHeight() / 2);
+            final BufferedImage step = new BufferedImage(stepWidth, stepHeight, type);
+            final Graphics2D g2d = step.createGraphics();
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                                 RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2d.drawImage(result, 0, 0, stepWidth, stepHeight, null);
+            g2d.dispose();
+            result = step;
+        } while (result.getWidth() != width || result.getHeight() != height);
+        return result;
+    }
+}
@@ -0,0 +1,397 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package tools;
+
+import java.io.File;
+import java.nio.ShortBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * Plays all sound of the game on one line from its own thread, so no other
+ * thread ever waits on the sound device. Other threads hand it commands
+ * through a lock-free queue; the audio thread runs them between chunks and
+ * mixes looping level music with up to {@link #VOICES} effects. Every sound
+ * is read from the samples {@link PcmCache} maps, a chunk at a time, so no
+ * sound is ever copied whole onto the heap. Changing track can crossfade
+ * from the old one to the new.
+ *
+ * <p>Apart from {@link #post} and {@link #close}, every method must be called
+ * on the audio thread, that is, from a posted command.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+final class AudioMixer implements Runnable {
+
+    /**
+     * The most effects played at once; the oldest is cut to start another.
+     */
+    static final int VOICES = 8;
+
+    /**
+     * The number of frames mixed and written at once, about 46 ms.
+     */
+    private static final int CHUNK_FRAMES = 2048;
+
+    /**
+     * The number of frames the line buffers, about 186 ms.
+     */
+    private static final int LINE_FRAMES = 4 * CHUNK_FRAMES;
+
+    /**
+     * The time the line takes to play its buffer, in nanoseconds.
+     */
+    private static final long LINE_NANOS =
+            (long) (LINE_FRAMES * 1e9 / PcmReader.SAMPLE_RATE);
+
+    /**
+     * The number of frames a crossfade lasts, one second.
+     */
+    private static final int FADE_FRAMES = (int) PcmReader.SAMPLE_RATE;
+
+    /**
+     * The number of bytes in a frame of the line.
+     */
+    private static final int FRAME_BYTES = PcmReader.CHANNELS * PcmReader.SAMPLE_BYTES;
+
+    /**
+     * The bits in a byte.
+     */
+    private static final int BYTE_MASK = 0xFF;
+
+    /**
+     * The commands waiting for the audio thread.
+     */
+    private final Queue<Runnable> myCommands = new ConcurrentLinkedQueue<Runnable>();
+
+    /**
+     * The player told when there is no line to play on.
+     */
+    private final MusicPlayer myPlayer;
+
+    /**
+     * The audio thread.
+     */
+    private final Thread myThread;
+
+    /**
+     * The chunk being mixed, before clamping.
+     */
+    private final int[] myMix = new int[CHUNK_FRAMES * PcmReader.CHANNELS];
+
+    /**
+     * The mixed chunk, as written to the line.
+     */
+    private final byte[] myBytes = new byte[CHUNK_FRAMES * FRAME_BYTES];
+
+    /**
+     * The samples of the effects playing, null where a voice is free.
+     */
+    private final ShortBuffer[] myVoices = new ShortBuffer[VOICES];
+
+    /**
+     * The position in its samples of each effect playing.
+     */
+    private final int[] myVoicePositions = new int[VOICES];
+
+    /**
+     * The voice used longest ago.
+     */
+    private int myNextVoice;
+
+    /**
+     * Whether the audio thread is to end.
+     */
+    private volatile boolean myClosed;
+
+    /**
+     * The line played on, opened when there is first something to play.
+     */
+    private SourceDataLine myLine;
+
+    /**
+     * Whether the music is playing.
+     */
+    private boolean myMusicPlaying;
+
+    /**
+     * The samples of the track playing, null if it could not be opened.
+     */
+    private ShortBuffer myCurrent;
+
+    /**
+     * The position in its samples of the track playing.
+     */
+    private int myCurrentPosition;
+
+    /**
+     * The file of the track playing, null if none has been played.
+     */
+    private File myCurrentFile;
+
+    /**
+     * The samples of the track fading out, null if none is.
+     */
+    private ShortBuffer myFading;
+
+    /**
+     * The position in its samples of the track fading out.
+     */
+    private int myFadingPosition;
+
+    /**
+     * The number of frames of the crossfade played so far.
+     */
+    private int myFadePosition;
+
+    /**
+     * Starts the audio thread, silent until something is played.
+     *
+     * @param the_player the player told when there is no line to play on
+     */
+    AudioMixer(final MusicPlayer the_player) {
+        myPlayer = the_player;
+        myThread = new Thread(this, "audio");
+        myThread.setDaemon(true);
+        myThread.start();
+    }
+
+    /**
+     * Hands a command to the audio thread; safe from any thread and never
+     * blocks.
+     *
+     * @param the_command the command, run on the audio thread
+     */
+    void post(final Runnable the_command) {
+        myCommands.add(the_command);
+        LockSupport.unpark(myThread);
+    }
+
+    /**
+     * Ends the audio thread once it has run the commands already posted;
+     * safe from any thread.
+     */
+    void close() {
+        myClosed = true;
+        LockSupport.unpark(myThread);
+    }
+
+    /**
+     * Plays a track, continuing from where it stopped if it is the track
+     * played last.
+     *
+     * @param the_file the file of the track
+     * @param the_samples the samples of the track, null to play silence
+     * @param the_crossfade whether to fade from the track playing, if any,
+     *                      rather than cut to the new one
+     */
+    void playMusic(final File the_file, final ShortBuffer the_samples,
+                   final boolean the_crossfade) {
+        if (!the_file.equals(myCurrentFile)) {
+            if (the_crossfade && myMusicPlaying && myCurrent != null) {
+                myFading = myCurrent;
+                myFadingPosition = myCurrentPosition;
+                myFadePosition = 0;
+            } else {
+                myFading = null;
+            }
+            myCurrentFile = the_file;
+            myCurrent = the_samples;
+            myCurrentPosition = 0;
+        }
+        myMusicPlaying = true;
+    }
+
+    /**
+     * Stops the music where it is, dropping what the line still holds so it
+     * falls silent at once.
+     */
+    void stopMusic() {
+        if (myMusicPlaying && myLine != null) {
+            myLine.flush();
+        }
+        myMusicPlaying = false;
+    }
+
+    /**
+     * Plays an effect over whatever else is playing.
+     *
+     * @param the_samples the interleaved stereo samples of the effect
+     */
+    void playEffect(final ShortBuffer the_samples) {
+        int voice = myNextVoice;
+        for (int i = 0; i < VOICES; i++) {
+            if (myVoices[i] == null) {
+                voice = i;
+                break;
+            }
+        }
+        myVoices[voice] = the_samples;
+        myVoicePositions[voice] = 0;
+        myNextVoice = (voice + 1) % VOICES;
+    }
+
+    /**
+     * Stops every effect.
+     */
+    void stopEffects() {
+        for (int i = 0; i < VOICES; i++) {
+            myVoices[i] = null;
+        }
+    }
+
+    /**
+     * Runs commands as they arrive and mixes chunks while anything is
+     * playing. The line is stopped once it has played out its buffer with
+     * nothing more to play.
+     */
+    @Override
+    public void run() {
+        try {
+            while (!myClosed) {
+                runCommands();
+                if (isPlaying()) {
+                    if (myLine == null && !openLine()) {
+                        break;
+                    }
+                    if (!myLine.isRunning()) {
+                        myLine.start();
+                    }
+                    mix();
+                    myLine.write(myBytes, 0, myBytes.length);
+                } else if (myLine != null && myLine.isRunning()) {
+                    LockSupport.parkNanos(this, LINE_NANOS);
+                    if (myCommands.isEmpty()) {
+                        myLine.stop();
+                    }
+                } else {
+                    LockSupport.park(this);
+                }
+            }
+            runCommands();
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Runs every command waiting.
+     */
+    private void runCommands() {
+        Runnable command = myCommands.poll();
+        while (command != null) {
+            command.run();
+            command = myCommands.poll();
+        }
+    }
+
+    /**
+     * @return whether there is music or an effect to play
+     */
+    private boolean isPlaying() {
+        boolean result = myMusicPlaying;
+        for (int i = 0; i < VOICES && !result; i++) {
+            result = myVoices[i] != null;
+        }
+        return result;
+    }
+
+    /**
+     * Opens the line, telling the player if there is none.
+     *
+     * @return whether the line was opened
+     */
+    private boolean openLine() {
+        try {
+            final SourceDataLine line = AudioSystem.getSourceDataLine(PcmReader.LINE_FORMAT);
+            line.open(PcmReader.LINE_FORMAT, LINE_FRAMES * FRAME_BYTES);
+            myLine = line;
+        } catch (final LineUnavailableException e) {
+            myPlayer.unavailable(e);
+        } catch (final IllegalArgumentException e) {
+            myPlayer.unavailable(e);
+        }
+        return myLine != null;
+    }
+
+    /**
+     * Mixes the next chunk of the music and the effects into the line
+     * buffer.
+     */
+    private void mix() {
+        for (int i = 0; i < myMix.length; i++) {
+            myMix[i] = 0;
+        }
+        if (myMusicPlaying) {
+            mixMusic();
+        }
+        for (int voice = 0; voice < VOICES; voice++) {
+            final ShortBuffer samples = myVoices[voice];
+            if (samples != null) {
+                final int start = myVoicePositions[voice];
+                final int length = Math.min(myMix.length, samples.limit() - start);
+                for (int i = 0; i < length; i++) {
+                    myMix[i] += samples.get(start + i);
+                }
+                myVoicePositions[voice] = start + length;
+                if (start + length >= samples.limit()) {
+                    myVoices[voice] = null;
+                }
+            }
+        }
+        for (int i = 0; i < myMix.length; i++) {
+            final int clamped = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, myMix[i]));
+            myBytes[i * PcmReader.SAMPLE_BYTES] = (byte) (clamped & BYTE_MASK);
+            myBytes[i * PcmReader.SAMPLE_BYTES + 1] = (byte) (clamped >> Byte.SIZE);
+        }
+    }
+
+    /**
+     * Mixes the next chunk of the current track and any track fading out,
+     * each starting over at its end; a missing track is silence.
+     */
+    private void mixMusic() {
+        if (myCurrent != null && myCurrent.limit() > 0) {
+            for (int i = 0; i < myMix.length; i++) {
+                float gain = 1;
+                if (myFading != null) {
+                    gain = Math.min(1, (myFadePosition + i / PcmReader.CHANNELS)
+                                       / (float) FADE_FRAMES);
+                }
+                myMix[i] = (int) (gain * myCurrent.get(myCurrentPosition));
+                myCurrentPosition = (myCurrentPosition + 1) % myCurrent.limit();
+            }
+        }
+        if (myFading != null && myFading.limit() > 0) {
+            for (int i = 0; i < myMix.length; i++) {
+                final float gain = Math.max(0, 1 - (myFadePosition + i / PcmReader.CHANNELS)
+                                                   / (float) FADE_FRAMES);
+                myMix[i] += (int) (gain * myFading.get(myFadingPosition));
+                myFadingPosition = (myFadingPosition + 1) % myFading.limit();
+            }
+        }
+        if (myFading != null) {
+            myFadePosition += CHUNK_FRAMES;
+            if (myFadePosition >= FADE_FRAMES) {
+                myFading = null;
+            }
+        }
+    }
+
+    /**
+     * Closes the line as the audio thread ends.
+     */
+    private void release() {
+        if (myLine != null) {
+            myLine.close();
+        }
+    }
+}
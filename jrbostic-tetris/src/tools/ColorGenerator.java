@@ -8,7 +8,9 @@ import java.awt.Color;
 import java.util.Random;
 
 /**
- * A static color generator class.
+ * A static color generator class.  Besides fresh random colors it offers a
+ * fixed palette that cycles smoothly around the color wheel, for animations
+ * that step through colors without creating any.
  * 
  * @author Jesse Bostic
  * @version Autumn 2013
@@ -25,6 +27,21 @@ public final class ColorGenerator {
      */
     private static final int MAX_VAL = 256;
     
+    /**
+     * The number of colors in the palette.
+     */
+    public static final int PALETTE_SIZE = 32;
+    
+    /**
+     * The lowest alpha of a palette color.
+     */
+    private static final int MIN_ALPHA = 96;
+    
+    /**
+     * The palette, computed once.
+     */
+    private static final Color[] PALETTE = createPalette();
+    
     /**
      * Constructor ensuring uninstantiablity.
      */
@@ -44,4 +61,34 @@ public final class ColorGenerator {
         final int alpha = RAND.nextInt(MAX_VAL);
         return new Color(red, green, blue, alpha);
     }
+    
+    /**
+     * Returns a color of the palette; neighboring indexes hold neighboring
+     * hues and the last color leads back to the first, so stepping through
+     * the indexes cycles smoothly.
+     * 
+     * @param the_index the index of the color, taken modulo the palette size
+     * @return the palette color
+     */
+    public static Color getPaletteColor(final int the_index) {
+        return PALETTE[(the_index % PALETTE_SIZE + PALETTE_SIZE) % PALETTE_SIZE];
+    }
+    
+    /**
+     * Computes the palette: one turn of the color wheel with the alpha rising
+     * and falling once along the way.
+     * 
+     * @return the palette colors
+     */
+    private static Color[] createPalette() {
+        final Color[] result = new Color[PALETTE_SIZE];
+        for (int i = 0; i < PALETTE_SIZE; i++) {
+            final double turn = (double) i / PALETTE_SIZE;
+            final Color hue = Color.getHSBColor((float) turn, 1f, 1f);
+            final int alpha = MIN_ALPHA + (int) ((MAX_VAL - 1 - MIN_ALPHA) 
+                              * (1 - Math.cos(2 * Math.PI * turn)) / 2);
+            result[i] = new Color(hue.getRed(), hue.getGreen(), hue.getBlue(), alpha);
+        }
+        return result;
+    }
 }
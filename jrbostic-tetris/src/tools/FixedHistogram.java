@@ -0,0 +1,131 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package tools;
+
+/**
+ * A histogram of integer values in equal-width buckets over a fixed range,
+ * with a count of the values below it and another of those above. Recording
+ * is a division and an increment. Each histogram is meant to have a single
+ * writer and be merged into a total, of the same range and buckets, once its
+ * writer is done.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+public class FixedHistogram {
+
+    /**
+     * The smallest value of the first bucket.
+     */
+    private final long myStart;
+
+    /**
+     * The number of values in each bucket.
+     */
+    private final long myWidth;
+
+    /**
+     * The count of values recorded in each bucket.
+     */
+    private final long[] myCounts;
+
+    /**
+     * The count of values below the first bucket.
+     */
+    private long myUnderflow;
+
+    /**
+     * The count of values above the last bucket.
+     */
+    private long myOverflow;
+
+    /**
+     * Constructs an empty histogram.
+     *
+     * @param the_start the smallest value of the first bucket
+     * @param the_width the number of values in each bucket
+     * @param the_buckets the number of buckets
+     */
+    public FixedHistogram(final long the_start, final long the_width, final int the_buckets) {
+        if (the_width <= 0 || the_buckets <= 0) {
+            throw new IllegalArgumentException();
+        }
+        myStart = the_start;
+        myWidth = the_width;
+        myCounts = new long[the_buckets];
+    }
+
+    /**
+     * Records a value.
+     *
+     * @param the_value the value
+     */
+    public void record(final long the_value) {
+        if (the_value < myStart) {
+            myUnderflow++;
+        } else {
+            final long bucket = (the_value - myStart) / myWidth;
+            if (bucket < myCounts.length) {
+                myCounts[(int) bucket]++;
+            } else {
+                myOverflow++;
+            }
+        }
+    }
+
+    /**
+     * Adds every value recorded by another histogram to this one.
+     *
+     * @param the_other a histogram of the same range and buckets
+     */
+    public void merge(final FixedHistogram the_other) {
+        if (the_other.myStart != myStart || the_other.myWidth != myWidth
+                || the_other.myCounts.length != myCounts.length) {
+            throw new IllegalArgumentException("histograms differ in buckets");
+        }
+        for (int i = 0; i < myCounts.length; i++) {
+            myCounts[i] += the_other.myCounts[i];
+        }
+        myUnderflow += the_other.myUnderflow;
+        myOverflow += the_other.myOverflow;
+    }
+
+    /**
+     * @return the number of buckets
+     */
+    public int getBucketCount() {
+        return myCounts.length;
+    }
+
+    /**
+     * @param the_bucket the index of a bucket
+     * @return the smallest value counted in the bucket
+     */
+    public long getBucketStart(final int the_bucket) {
+        return myStart + the_bucket * myWidth;
+    }
+
+    /**
+     * @param the_bucket the index of a bucket
+     * @return the count of values recorded in the bucket
+     */
+    public long getCount(final int the_bucket) {
+        return myCounts[the_bucket];
+    }
+
+    /**
+     * @return the count of values below the first bucket
+     */
+    public long getUnderflow() {
+        return myUnderflow;
+    }
+
+    /**
+     * @return the count of values above the last bucket
+     */
+    public long getOverflow() {
+        return myOverflow;
+    }
+}
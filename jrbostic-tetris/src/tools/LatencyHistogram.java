@@ -0,0 +1,222 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package tools;
+
+/**
+ * A log-linear histogram of latencies recorded with microsecond resolution.
+ * Recording is a couple of shifts and an array increment, so it can sit on hot
+ * paths; each histogram is meant to have a single writer and be merged into a
+ * total once its writer is done.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+public class LatencyHistogram {
+
+    /**
+     * The number of bits of precision kept within each power of two.
+     */
+    private static final int SUB_BUCKET_BITS = 5;
+
+    /**
+     * The number of buckets within each power of two.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The total number of buckets, enough to cover any positive long.
+     */
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    /**
+     * The number of nanoseconds in a microsecond.
+     */
+    private static final long NANOS_PER_MICRO = 1000L;
+
+    /**
+     * The number of microseconds in a millisecond, as a double.
+     */
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    /**
+     * The count of values recorded in each bucket.
+     */
+    private final long[] myCounts;
+
+    /**
+     * The number of values recorded.
+     */
+    private long myTotal;
+
+    /**
+     * The sum of the recorded values in microseconds.
+     */
+    private double mySum;
+
+    /**
+     * The sum of the squares of the recorded values in microseconds.
+     */
+    private double mySumOfSquares;
+
+    /**
+     * The largest value recorded in microseconds.
+     */
+    private long myMax;
+
+    /**
+     * Constructs an empty histogram.
+     */
+    public LatencyHistogram() {
+        myCounts = new long[BUCKETS];
+    }
+
+    /**
+     * Records a single latency. Negative values count as zero.
+     *
+     * @param the_nanos the latency in nanoseconds
+     */
+    public void record(final long the_nanos) {
+        final long micros = Math.max(0, the_nanos / NANOS_PER_MICRO);
+        myCounts[indexFor(micros)]++;
+        myTotal++;
+        mySum += micros;
+        mySumOfSquares += (double) micros * micros;
+        if (micros > myMax) {
+            myMax = micros;
+        }
+    }
+
+    /**
+     * Adds every value recorded by another histogram to this one.
+     *
+     * @param the_other the histogram to merge in
+     */
+    public void merge(final LatencyHistogram the_other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            myCounts[i] += the_other.myCounts[i];
+        }
+        myTotal += the_other.myTotal;
+        mySum += the_other.mySum;
+        mySumOfSquares += the_other.mySumOfSquares;
+        myMax = Math.max(myMax, the_other.myMax);
+    }
+
+    /**
+     * Discards every recorded value.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            myCounts[i] = 0;
+        }
+        myTotal = 0;
+        mySum = 0;
+        mySumOfSquares = 0;
+        myMax = 0;
+    }
+
+    /**
+     * @return the number of values recorded
+     */
+    public long getCount() {
+        return myTotal;
+    }
+
+    /**
+     * @return the mean of the recorded values in milliseconds
+     */
+    public double getMean() {
+        double result = 0;
+        if (myTotal > 0) {
+            result = mySum / myTotal / MICROS_PER_MILLI;
+        }
+        return result;
+    }
+
+    /**
+     * @return the standard deviation of the recorded values in milliseconds
+     */
+    public double getStandardDeviation() {
+        double result = 0;
+        if (myTotal > 0) {
+            final double mean = mySum / myTotal;
+            final double variance = Math.max(0, mySumOfSquares / myTotal - mean * mean);
+            result = Math.sqrt(variance) / MICROS_PER_MILLI;
+        }
+        return result;
+    }
+
+    /**
+     * @return the largest recorded value in milliseconds
+     */
+    public double getMax() {
+        return myMax / MICROS_PER_MILLI;
+    }
+
+    /**
+     * Returns the value below which the given fraction of recorded values fall.
+     *
+     * @param the_fraction the fraction of values, between 0 and 1
+     * @return the percentile in milliseconds, accurate to about three percent
+     */
+    public double getPercentile(final double the_fraction) {
+        final long rank = (long) Math.ceil(the_fraction * myTotal);
+        long seen = 0;
+        long result = 0;
+        for (int i = 0; i < BUCKETS && myTotal > 0; i++) {
+            seen += myCounts[i];
+            if (seen >= rank && myCounts[i] > 0) {
+                result = Math.min(myMax, upperBound(i));
+                break;
+            }
+        }
+        return result / MICROS_PER_MILLI;
+    }
+
+    /**
+     * Returns a one line summary of this histogram.
+     *
+     * @return a summary with count, mean, percentiles and max in milliseconds
+     */
+    @Override
+    public String toString() {
+        return String.format("n=%d mean=%.3fms sd=%.3fms p50=%.3fms p99=%.3fms "
+                             + "p99.9=%.3fms max=%.3fms", myTotal, getMean(),
+                             getStandardDeviation(), getPercentile(.5),
+                             getPercentile(.99), getPercentile(.999), getMax());
+    }
+
+    /**
+     * Returns the bucket holding the given value.
+     *
+     * @param the_value a non-negative value
+     * @return the index of its bucket
+     */
+    private static int indexFor(final long the_value) {
+        int result = (int) the_value;
+        if (the_value >= SUB_BUCKETS) {
+            final int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(the_value)
+                              - SUB_BUCKET_BITS;
+            final int sub = (int) (the_value >>> shift) & (SUB_BUCKETS - 1);
+            result = (shift + 1) * SUB_BUCKETS + sub;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the largest value held by the given bucket.
+     *
+     * @param the_index the index of a bucket
+     * @return the largest value that maps to it
+     */
+    private static long upperBound(final int the_index) {
+        long result = the_index;
+        if (the_index >= SUB_BUCKETS) {
+            final int shift = the_index / SUB_BUCKETS - 1;
+            final long sub = the_index % SUB_BUCKETS;
+            result = ((SUB_BUCKETS + sub + 1) << shift) - 1;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package tools;
+
+/**
+ * The count, mean, variance and range of a stream of values, kept with
+ * Welford's update so that the variance stays accurate over millions of
+ * values of similar size. Each instance is meant to have a single writer;
+ * instances are merged with Chan's formula once their writers are done.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+public class Moments {
+
+    /**
+     * The number of values recorded.
+     */
+    private long myCount;
+
+    /**
+     * The mean of the values recorded.
+     */
+    private double myMean;
+
+    /**
+     * The sum of the squared differences of the values from their mean.
+     */
+    private double mySquares;
+
+    /**
+     * The smallest value recorded.
+     */
+    private double myMin = Double.POSITIVE_INFINITY;
+
+    /**
+     * The largest value recorded.
+     */
+    private double myMax = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Records a value.
+     *
+     * @param the_value the value
+     */
+    public void record(final double the_value) {
+        myCount++;
+        final double delta = the_value - myMean;
+        myMean += delta / myCount;
+        mySquares += delta * (the_value - myMean);
+        myMin = Math.min(myMin, the_value);
+        myMax = Math.max(myMax, the_value);
+    }
+
+    /**
+     * Adds every value recorded by another instance to this one.
+     *
+     * @param the_other the moments to merge in
+     */
+    public void merge(final Moments the_other) {
+        if (the_other.myCount > 0) {
+            final long count = myCount + the_other.myCount;
+            final double delta = the_other.myMean - myMean;
+            myMean += delta * the_other.myCount / count;
+            mySquares += the_other.mySquares
+                         + delta * delta * ((double) myCount * the_other.myCount / count);
+            myCount = count;
+            myMin = Math.min(myMin, the_other.myMin);
+            myMax = Math.max(myMax, the_other.myMax);
+        }
+    }
+
+    /**
+     * @return the number of values recorded
+     */
+    public long getCount() {
+        return myCount;
+    }
+
+    /**
+     * @return the mean of the values recorded, zero if there are none
+     */
+    public double getMean() {
+        return myMean;
+    }
+
+    /**
+     * @return the population variance of the values recorded, zero if there
+     *         are none
+     */
+    public double getVariance() {
+        double result = 0;
+        if (myCount > 0) {
+            result = mySquares / myCount;
+        }
+        return result;
+    }
+
+    /**
+     * @return the population standard deviation of the values recorded
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * @return the smallest value recorded, zero if there are none
+     */
+    public double getMin() {
+        double result = 0;
+        if (myCount > 0) {
+            result = myMin;
+        }
+        return result;
+    }
+
+    /**
+     * @return the largest value recorded, zero if there are none
+     */
+    public double getMax() {
+        double result = 0;
+        if (myCount > 0) {
+            result = myMax;
+        }
+        return result;
+    }
+
+    /**
+     * Returns a one line summary.
+     *
+     * @return the count, mean, standard deviation and range
+     */
+    @Override
+    public String toString() {
+        return String.format("n=%d mean=%.3f sd=%.3f min=%.3f max=%.3f", myCount, getMean(),
+                             getStandardDeviation(), getMin(), getMax());
+    }
+}
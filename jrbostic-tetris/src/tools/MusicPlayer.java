@@ -6,16 +6,21 @@ package tools;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ShortBuffer;
 
-import javax.sound.sampled.AudioInputStream;
-import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.Clip;
-import javax.sound.sampled.LineUnavailableException;
 import javax.sound.sampled.UnsupportedAudioFileException;
 
 /**
  * Class that implements and controls audio features.
  * 
+ * <p>Every public method only posts a command to the audio thread of an
+ * {@link AudioMixer} and returns at once, so the event dispatch thread never
+ * waits on the sound device. The player's state is touched only on that
+ * thread. Every sound is transcoded once into a {@link PcmCache} in the
+ * background as the player is constructed, the intro first, and played from
+ * the mapped cache; level music crossfades into the next track on a level
+ * up. Where there is no sound device, the player stays silent.
+ * 
  * @author Jesse Bostic
  * @version Autumn 2013
  */
@@ -24,8 +29,8 @@ public class MusicPlayer {
     /**
      * Array of audio file paths for each level.
      */
-    private static final String[] MUSIC_FILES = {"audio/music1.wav", "audio/music2.wav", 
-        "audio/music3.wav", "audio/music4.wav", "audio/music5.aif", "audio/music6.wav", 
+    private static final String[] MUSIC_FILES = {"audio/music1.wav", "audio/music2.wav",
+        "audio/music3.wav", "audio/music4.wav", "audio/music5.aif", "audio/music6.wav",
         "audio/music7.wav", "audio/music8.wav"};
     
     /**
@@ -49,14 +54,14 @@ public class MusicPlayer {
     private final File myGameOver = new File("audio/fail.wav");
     
     /**
-     * The audio input stream.
+     * The mixer playing all sound.
      */
-    private AudioInputStream myStream;
+    private final AudioMixer myMixer;
     
     /**
-     * The current selected clip.
+     * The transcoded sounds.
      */
-    private Clip myClip;
+    private final PcmCache myCache;
     
     /**
      * The file object representing current level music.
@@ -69,43 +74,83 @@ public class MusicPlayer {
     private int myCurrentClip;
     
     /**
-     * Whether sound should be looped.
+     * Whether the intro is still to be played once loaded.
      */
-    private boolean mySameLevel;
+    private boolean myIntroDue;
     
     /**
      * Whether sound is currently enabled.
      */
     private boolean myIsEnabled;
     
+    /**
+     * Whether there is a sound device to play on.
+     */
+    private volatile boolean myIsAvailable;
+    
     /**
      * Constructor for music player object.
      */
     public MusicPlayer() {
-        myStream = null;
-        myClip = null;
+        myCache = new PcmCache(new File(PcmCache.DIRECTORY));
         myCurrentClip = 0;
         myLevelSound = new File(MUSIC_FILES[myCurrentClip]);
         myIsEnabled = true;
-        playIntro();
+        myIsAvailable = true;
+        myIntroDue = true;
+        myMixer = new AudioMixer(this);
+        preload();
+    }
+    
+    /**
+     * Caches the sounds on a background thread, playing the intro as soon as
+     * it is ready and then caching the effects and the first level music
+     * before the rest.
+     */
+    private void preload() {
+        final Thread loader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                sound(myStartClip);
+                myMixer.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        playIntro();
+                    }
+                });
+                myCache.prepareAll(myPause, myLevelUp, myGameOver, new File(MUSIC_FILES[0]));
+            }
+        }, "audio preload");
+        loader.setDaemon(true);
+        loader.start();
     }
     
     /**
      * Method for first time use of player.
      */
     public void start() {
-        pause();
-        mySameLevel = true;
-        playCurrent();   
+        post(new Runnable() {
+            @Override
+            public void run() {
+                myIntroDue = false;
+                stopAll();
+                playEffect(myPause);
+                playCurrent();
+            }
+        });
     }
     
     /**
      * Play game over sound.
      */
     public void gameOver() {
-        myClip.stop();
-        mySameLevel = false;
-        playMusic(myGameOver);
+        post(new Runnable() {
+            @Override
+            public void run() {
+                stopAll();
+                playEffect(myGameOver);
+            }
+        });
     }
     
     /**
@@ -114,91 +159,163 @@ public class MusicPlayer {
      * @param the_enabler true if player enabled, false otherwise
      */
     public void setEnabled(final boolean the_enabler) {
-        myIsEnabled = the_enabler;
-        if (!the_enabler) {
-            myClip.stop();
-        } 
+        post(new Runnable() {
+            @Override
+            public void run() {
+                myIsEnabled = the_enabler;
+                if (!the_enabler) {
+                    stopAll();
+                }
+            }
+        });
     }
     
     /**
      * Reset player to initial state.
      */
     public void reset() {
-        myClip.stop();
-        myCurrentClip = 0;
-        myLevelSound = new File(MUSIC_FILES[myCurrentClip]);
-    }
-    
-    /**
-     * Play the intro sound.
-     */
-    private void playIntro() {
-        playMusic(myStartClip);
+        post(new Runnable() {
+            @Override
+            public void run() {
+                stopAll();
+                myCurrentClip = 0;
+                myLevelSound = new File(MUSIC_FILES[myCurrentClip]);
+            }
+        });
     }
     
     /**
      * Play pause sound and halt other audio.
      */
     public void pause() {
-        mySameLevel = false;
-        myClip.stop();
-        playMusic(myPause);
+        post(new Runnable() {
+            @Override
+            public void run() {
+                stopAll();
+                playEffect(myPause);
+            }
+        });
     }
     
     /**
      * Resume prior audio state.
      */
     public void resume() {
-        mySameLevel = true;
-        myClip.stop();
-        playCurrent();
+        post(new Runnable() {
+            @Override
+            public void run() {
+                stopAll();
+                playCurrent();
+            }
+        });
     }
     
     /**
-     * Plays currently selected level music.
+     * Transitions player into next level state, crossfading the music
+     * under the level up sound.
      */
-    private void playCurrent() {
-        playMusic(myLevelSound);
+    public void levelUp() {
+        post(new Runnable() {
+            @Override
+            public void run() {
+                if (myCurrentClip < MUSIC_FILES.length - 1) {
+                    myMixer.stopEffects();
+                    playEffect(myLevelUp);
+                    myCurrentClip++;
+                    myLevelSound = new File(MUSIC_FILES[myCurrentClip]);
+                    if (myIsEnabled) {
+                        myMixer.playMusic(myLevelSound, sound(myLevelSound), true);
+                    }
+                } else {
+                    playCurrent();
+                }
+            }
+        });
     }
     
     /**
-     * Transitions player into next level state.
+     * Hands a command to the audio thread, unless there is no sound device.
+     * 
+     * @param the_command the command
      */
-    public void levelUp() {
-        if (myCurrentClip < MUSIC_FILES.length - 1) {
-            mySameLevel = false;
-            myClip.stop();
-            playMusic(myLevelUp);
-            myCurrentClip++;
-            myLevelSound = new File(MUSIC_FILES[myCurrentClip]);
+    private void post(final Runnable the_command) {
+        if (myIsAvailable) {
+            myMixer.post(the_command);
+        }
+    }
+    
+    /**
+     * Play the intro sound, unless the game has started.
+     */
+    private void playIntro() {
+        if (myIntroDue) {
+            myIntroDue = false;
+            playEffect(myStartClip);
         }
-        mySameLevel = true;
-        playCurrent();
     }
     
     /**
-     * Plays music contained in passed file.
+     * Plays currently selected level music, from where it was stopped if it
+     * was playing before.
+     */
+    private void playCurrent() {
+        if (myIsEnabled) {
+            myMixer.playMusic(myLevelSound, sound(myLevelSound), false);
+        }
+    }
+    
+    /**
+     * Stops the music and the effects.
+     */
+    private void stopAll() {
+        myMixer.stopMusic();
+        myMixer.stopEffects();
+    }
+    
+    /**
+     * Plays an effect from its start.
      * 
      * @param the_file the audio file to play
      */
-    private void playMusic(final File the_file) {
+    private void playEffect(final File the_file) {
         if (myIsEnabled) {
-            try {
-                myStream = AudioSystem.getAudioInputStream(the_file);
-                myClip = AudioSystem.getClip();
-                myClip.open(myStream);
-                if (mySameLevel) {
-                    myClip.loop(Clip.LOOP_CONTINUOUSLY);
-                }
-                myClip.start();
-            } catch (final IOException exception) {
-                exception.printStackTrace();
-            } catch (final UnsupportedAudioFileException exception) {
-                exception.printStackTrace();
-            } catch (final LineUnavailableException exception) {
-                exception.printStackTrace();
+            final ShortBuffer samples = sound(the_file);
+            if (samples != null) {
+                myMixer.playEffect(samples);
             }
         }
-    } 
+    }
+    
+    /**
+     * Returns the samples of a sound, transcoding it if it is not cached.
+     * 
+     * @param the_file the audio file
+     * @return the samples, null if the file cannot be read
+     */
+    private ShortBuffer sound(final File the_file) {
+        ShortBuffer result = null;
+        try {
+            result = myCache.get(the_file);
+        } catch (final IOException exception) {
+            System.err.println("cannot play " + the_file + ": " + exception.getMessage());
+        } catch (final UnsupportedAudioFileException exception) {
+            System.err.println("cannot play " + the_file + ": " + exception.getMessage());
+        }
+        return result;
+    }
+    
+    /**
+     * Silences the player for good when no line can be opened, as on a
+     * machine without a sound device; called on the audio thread.
+     * 
+     * @param the_cause the failure to open a line
+     */
+    void unavailable(final Exception the_cause) {
+        if (myIsAvailable) {
+            myIsAvailable = false;
+            myMixer.close();
+            System.err.println("sound disabled: " + the_cause.getMessage());
+        }
+    }
     
 }
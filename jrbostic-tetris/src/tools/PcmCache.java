@@ -0,0 +1,329 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package tools;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * A disk cache of sound files transcoded into the format of the line, 16-bit
+ * little-endian stereo, which playback maps into memory. A sound is parsed
+ * and converted only the first time it is seen; after that, starting it costs
+ * a page-in. Each cache file is named for a hash of the contents of its
+ * source, so an edited asset is transcoded again and a stale one is pruned
+ * by {@link #prepareAll}. Safe to use from any thread: a sound is hashed and
+ * transcoded by the first thread to ask for it, holding no lock, so a thread
+ * waits only for a sound it asked for itself, never for another one.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+final class PcmCache {
+
+    /**
+     * The directory of the cache, beside the audio directory.
+     */
+    static final String DIRECTORY = "audio-cache";
+
+    /**
+     * The version of the cache format, part of every cache file name so
+     * that a change of format transcodes everything again.
+     */
+    private static final String VERSION = "v1-";
+
+    /**
+     * The extension of cache files.
+     */
+    private static final String EXTENSION = ".pcm";
+
+    /**
+     * The extensions of the sound files transcoded.
+     */
+    private static final String[] SOURCES = {".wav", ".aif", ".aiff", ".au"};
+
+    /**
+     * The number of frames transcoded at once.
+     */
+    private static final int CHUNK_FRAMES = 4096;
+
+    /**
+     * The number of bytes hashed at once.
+     */
+    private static final int HASH_BUFFER = 1 << 16;
+
+    /**
+     * The digits of a hash written in hexadecimal.
+     */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * The directory holding the cache files.
+     */
+    private final File myDirectory;
+
+    /**
+     * The mapped samples of every sound used or being cached, by source file.
+     */
+    private final ConcurrentMap<File, FutureTask<ShortBuffer>> mySounds =
+            new ConcurrentHashMap<File, FutureTask<ShortBuffer>>();
+
+    /**
+     * The name of the cache file of every sound used so far, by source file.
+     */
+    private final ConcurrentMap<File, String> myNames = new ConcurrentHashMap<File, String>();
+
+    /**
+     * Opens the cache in a directory, or in the temporary directory if that
+     * one cannot be written.
+     *
+     * @param the_directory the directory of the cache files
+     */
+    PcmCache(final File the_directory) {
+        File directory = the_directory;
+        if (!directory.isDirectory() && !directory.mkdirs() || !directory.canWrite()) {
+            directory = new File(System.getProperty("java.io.tmpdir"), "tetris-" + DIRECTORY);
+            directory.mkdirs();
+        }
+        myDirectory = directory;
+    }
+
+    /**
+     * Returns the samples of a sound, transcoding it first if it is not
+     * cached, or waiting for the thread already doing so. The buffer is
+     * shared, so it is read only by absolute index. A sound that fails is
+     * tried again the next time it is asked for.
+     *
+     * @param the_source the sound file
+     * @return the interleaved stereo samples of the file, mapped from the cache
+     * @throws IOException if the file or the cache cannot be read or written
+     * @throws UnsupportedAudioFileException if the file cannot be converted to 16-bit PCM
+     */
+    ShortBuffer get(final File the_source) throws IOException, UnsupportedAudioFileException {
+        FutureTask<ShortBuffer> task = mySounds.get(the_source);
+        if (task == null) {
+            final FutureTask<ShortBuffer> made =
+                    new FutureTask<ShortBuffer>(new Callable<ShortBuffer>() {
+                        @Override
+                        public ShortBuffer call()
+                            throws IOException, UnsupportedAudioFileException {
+                            return load(the_source);
+                        }
+                    });
+            task = mySounds.putIfAbsent(the_source, made);
+            if (task == null) {
+                task = made;
+                made.run();
+            }
+        }
+        boolean interrupted = false;
+        ShortBuffer result = null;
+        try {
+            while (result == null) {
+                try {
+                    result = task.get();
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                } catch (final ExecutionException e) {
+                    mySounds.remove(the_source, task);
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    } else if (cause instanceof UnsupportedAudioFileException) {
+                        throw (UnsupportedAudioFileException) cause;
+                    }
+                    throw new IllegalStateException(cause);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Maps the cache file of a sound, transcoding the sound first if it has
+     * none.
+     *
+     * @param the_source the sound file
+     * @return the interleaved stereo samples of the file, mapped from the cache
+     * @throws IOException if the file or the cache cannot be read or written
+     * @throws UnsupportedAudioFileException if the file cannot be converted to 16-bit PCM
+     */
+    private ShortBuffer load(final File the_source)
+        throws IOException, UnsupportedAudioFileException {
+        final String name = VERSION + hash(the_source) + EXTENSION;
+        final File cached = new File(myDirectory, name);
+        if (!cached.isFile()) {
+            transcode(the_source, cached);
+        }
+        final ShortBuffer result;
+        try (FileChannel channel = FileChannel.open(cached.toPath(),
+                                                    StandardOpenOption.READ)) {
+            result = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    .order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+        }
+        myNames.put(the_source, name);
+        return result;
+    }
+
+    /**
+     * Caches the given sounds first, then every other sound file in their
+     * directories, and deletes the cache files of sounds no longer there.
+     * Sounds that cannot be cached are reported and skipped.
+     *
+     * @param the_first the sounds wanted soonest, in order
+     */
+    void prepareAll(final File... the_first) {
+        final Set<File> sources = new HashSet<File>();
+        for (final File first : the_first) {
+            if (prepare(first)) {
+                sources.add(first);
+            }
+            final File[] siblings = first.getAbsoluteFile().getParentFile().listFiles();
+            if (siblings != null) {
+                for (final File sibling : siblings) {
+                    if (isSound(sibling)) {
+                        sources.add(new File(first.getParentFile(), sibling.getName()));
+                    }
+                }
+            }
+        }
+        boolean complete = true;
+        for (final File source : sources) {
+            complete &= prepare(source);
+        }
+        final Set<String> used = new HashSet<String>(myNames.values());
+        final File[] cached = myDirectory.listFiles();
+        if (cached != null && complete) {
+            for (final File file : cached) {
+                if (file.getName().endsWith(EXTENSION) && !used.contains(file.getName())) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Caches a sound if it exists, reporting a failure.
+     *
+     * @param the_source the sound file
+     * @return whether the sound is cached
+     */
+    private boolean prepare(final File the_source) {
+        boolean result = false;
+        if (the_source.isFile()) {
+            try {
+                get(the_source);
+                result = true;
+            } catch (final IOException e) {
+                System.err.println("cannot cache " + the_source + ": " + e.getMessage());
+            } catch (final UnsupportedAudioFileException e) {
+                System.err.println("cannot cache " + the_source + ": " + e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param the_file a file
+     * @return whether the file has the extension of a sound file
+     */
+    private static boolean isSound(final File the_file) {
+        boolean result = false;
+        final String name = the_file.getName().toLowerCase();
+        for (final String extension : SOURCES) {
+            result |= name.endsWith(extension);
+        }
+        return result && the_file.isFile();
+    }
+
+    /**
+     * Writes the samples of a sound file to a cache file, through a
+     * temporary file so a half-written cache file is never seen.
+     *
+     * @param the_source the sound file
+     * @param the_target the cache file
+     * @throws IOException if the file cannot be read or the cache written
+     * @throws UnsupportedAudioFileException if the file cannot be converted to 16-bit PCM
+     */
+    private static void transcode(final File the_source, final File the_target)
+        throws IOException, UnsupportedAudioFileException {
+        final PcmReader reader = new PcmReader(the_source, CHUNK_FRAMES);
+        final File temporary = File.createTempFile("transcode", ".tmp",
+                                                   the_target.getParentFile());
+        try {
+            final short[] samples = new short[CHUNK_FRAMES * PcmReader.CHANNELS];
+            final ByteBuffer bytes = ByteBuffer.allocate(samples.length * PcmReader.SAMPLE_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            try (FileChannel out = FileChannel.open(temporary.toPath(),
+                                                    StandardOpenOption.WRITE)) {
+                int read = CHUNK_FRAMES;
+                while (read == CHUNK_FRAMES) {
+                    read = reader.read(samples, CHUNK_FRAMES);
+                    bytes.clear();
+                    bytes.asShortBuffer().put(samples, 0, read * PcmReader.CHANNELS);
+                    bytes.limit(read * PcmReader.CHANNELS * PcmReader.SAMPLE_BYTES);
+                    while (bytes.hasRemaining()) {
+                        out.write(bytes);
+                    }
+                }
+            }
+            Files.move(temporary.toPath(), the_target.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            reader.close();
+            temporary.delete();
+        }
+    }
+
+    /**
+     * Hashes the contents of a file.
+     *
+     * @param the_file the file
+     * @return the SHA-1 hash of the file in hexadecimal
+     * @throws IOException if the file cannot be read
+     */
+    private static String hash(final File the_file) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream in = new FileInputStream(the_file)) {
+            final byte[] buffer = new byte[HASH_BUFFER];
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        final StringBuilder result = new StringBuilder();
+        for (final byte b : digest.digest()) {
+            result.append(HEX[b >> 4 & 0xF]).append(HEX[b & 0xF]);
+        }
+        return result.toString();
+    }
+}
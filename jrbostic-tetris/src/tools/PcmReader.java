@@ -0,0 +1,175 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package tools;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * Reads a sound file a chunk at a time as interleaved 16-bit stereo samples
+ * at {@link #SAMPLE_RATE}, whatever its byte order or channel count, so files
+ * can be converted without decoding them whole. Not thread safe.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+final class PcmReader {
+
+    /**
+     * The sample rate of every sound played.
+     */
+    static final float SAMPLE_RATE = 44100;
+
+    /**
+     * The number of channels of every sound played.
+     */
+    static final int CHANNELS = 2;
+
+    /**
+     * The number of bytes in a sample.
+     */
+    static final int SAMPLE_BYTES = 2;
+
+    /**
+     * The format of the line sounds are played on: signed 16-bit
+     * little-endian stereo.
+     */
+    static final AudioFormat LINE_FORMAT =
+            new AudioFormat(SAMPLE_RATE, Byte.SIZE * SAMPLE_BYTES, CHANNELS, true, false);
+
+    /**
+     * The bits in a byte.
+     */
+    private static final int BYTE_MASK = 0xFF;
+
+    /**
+     * The sound file.
+     */
+    private final File myFile;
+
+    /**
+     * The samples of the file as read, before any channel conversion.
+     */
+    private final byte[] myBytes;
+
+    /**
+     * The open stream of the file, null once it has ended.
+     */
+    private AudioInputStream myStream;
+
+    /**
+     * The number of channels of the file.
+     */
+    private int myChannels;
+
+    /**
+     * Opens a sound file.
+     *
+     * @param the_file the sound file
+     * @param the_chunk_frames the most frames read at once
+     * @throws IOException if the file cannot be read
+     * @throws UnsupportedAudioFileException if the file cannot be converted to 16-bit PCM
+     */
+    PcmReader(final File the_file, final int the_chunk_frames)
+        throws IOException, UnsupportedAudioFileException {
+        myFile = the_file;
+        myBytes = new byte[the_chunk_frames * CHANNELS * SAMPLE_BYTES];
+        open();
+    }
+
+    /**
+     * Opens the file from its start, converted to signed 16-bit
+     * little-endian samples.
+     *
+     * @throws IOException if the file cannot be read
+     * @throws UnsupportedAudioFileException if the file cannot be converted
+     */
+    private void open() throws IOException, UnsupportedAudioFileException {
+        final AudioInputStream source = AudioSystem.getAudioInputStream(myFile);
+        final AudioFormat format = source.getFormat();
+        myChannels = Math.min(CHANNELS, format.getChannels());
+        final AudioFormat target = new AudioFormat(SAMPLE_RATE, Byte.SIZE * SAMPLE_BYTES,
+                                                   format.getChannels(), true, false);
+        try {
+            myStream = AudioSystem.getAudioInputStream(target, source);
+        } catch (final IllegalArgumentException e) {
+            source.close();
+            throw new UnsupportedAudioFileException(myFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads frames.
+     *
+     * @param the_samples the array to fill with interleaved stereo samples
+     * @param the_count the number of frames wanted, at most the chunk size
+     * @return the number of frames read, fewer than wanted only at the end
+     *         of the file
+     * @throws IOException if the file cannot be read
+     */
+    int read(final short[] the_samples, final int the_count) throws IOException {
+        int frames = 0;
+        while (frames < the_count && myStream != null) {
+            final int frameBytes = myChannels * SAMPLE_BYTES;
+            final int wanted = (the_count - frames) * frameBytes;
+            int length = 0;
+            int read = 0;
+            while (length < wanted && read >= 0) {
+                read = myStream.read(myBytes, length, wanted - length);
+                if (read > 0) {
+                    length += read;
+                }
+            }
+            final int got = length / frameBytes;
+            convert(got, the_samples, frames * CHANNELS);
+            frames += got;
+            if (read < 0) {
+                myStream.close();
+                myStream = null;
+            }
+        }
+        return frames;
+    }
+
+    /**
+     * Converts frames read into stereo samples.
+     *
+     * @param the_frames the number of frames in the byte buffer
+     * @param the_samples the array of samples to fill
+     * @param the_offset the position of the first sample to fill
+     */
+    private void convert(final int the_frames, final short[] the_samples, final int the_offset) {
+        final int stride = myChannels * SAMPLE_BYTES;
+        for (int i = 0; i < the_frames; i++) {
+            final int at = i * stride;
+            final short left = (short) ((myBytes[at] & BYTE_MASK) | myBytes[at + 1] << Byte.SIZE);
+            short right = left;
+            if (myChannels > 1) {
+                right = (short) ((myBytes[at + 2] & BYTE_MASK) | myBytes[at + 3] << Byte.SIZE);
+            }
+            the_samples[the_offset + i * CHANNELS] = left;
+            the_samples[the_offset + i * CHANNELS + 1] = right;
+        }
+    }
+
+    /**
+     * Closes the file.
+     */
+    void close() {
+        if (myStream != null) {
+            try {
+                myStream.close();
+            } catch (final IOException e) {
+                //nothing more is read from it
+            }
+            myStream = null;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package tools;
+
+/**
+ * A mergeable sketch of the distribution of non-negative integer values that
+ * answers quantiles to within a relative error of {@link #RELATIVE_ERROR}.
+ * Values below 2^{@link #PRECISION_BITS} are counted exactly and larger ones
+ * in log-linear buckets, the same layout as {@link LatencyHistogram} at a
+ * finer precision, so its size is fixed however many values are recorded
+ * and merging two sketches is exact. Each sketch is meant to have a single
+ * writer and be merged into a total once its writer is done.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+public class QuantileSketch {
+
+    /**
+     * The number of bits of precision kept within each power of two.
+     */
+    public static final int PRECISION_BITS = 7;
+
+    /**
+     * The largest error of a quantile, relative to its value.
+     */
+    public static final double RELATIVE_ERROR = 1.0 / (1 << PRECISION_BITS);
+
+    /**
+     * The number of buckets within each power of two.
+     */
+    private static final int SUB_BUCKETS = 1 << PRECISION_BITS;
+
+    /**
+     * The total number of buckets, enough to cover any non-negative long.
+     */
+    private static final int BUCKETS = (Long.SIZE - PRECISION_BITS) * SUB_BUCKETS;
+
+    /**
+     * The count of values recorded in each bucket.
+     */
+    private final long[] myCounts = new long[BUCKETS];
+
+    /**
+     * The number of values recorded.
+     */
+    private long myTotal;
+
+    /**
+     * The smallest value recorded.
+     */
+    private long myMin = Long.MAX_VALUE;
+
+    /**
+     * The largest value recorded.
+     */
+    private long myMax;
+
+    /**
+     * Records a value. Negative values count as zero.
+     *
+     * @param the_value the value
+     */
+    public void record(final long the_value) {
+        final long value = Math.max(0, the_value);
+        myCounts[indexFor(value)]++;
+        myTotal++;
+        myMin = Math.min(myMin, value);
+        myMax = Math.max(myMax, value);
+    }
+
+    /**
+     * Adds every value recorded by another sketch to this one.
+     *
+     * @param the_other the sketch to merge in
+     */
+    public void merge(final QuantileSketch the_other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            myCounts[i] += the_other.myCounts[i];
+        }
+        myTotal += the_other.myTotal;
+        myMin = Math.min(myMin, the_other.myMin);
+        myMax = Math.max(myMax, the_other.myMax);
+    }
+
+    /**
+     * @return the number of values recorded
+     */
+    public long getCount() {
+        return myTotal;
+    }
+
+    /**
+     * @return the smallest value recorded, zero if there are none
+     */
+    public long getMin() {
+        long result = 0;
+        if (myTotal > 0) {
+            result = myMin;
+        }
+        return result;
+    }
+
+    /**
+     * @return the largest value recorded
+     */
+    public long getMax() {
+        return myMax;
+    }
+
+    /**
+     * Returns the value at or below which the given fraction of recorded
+     * values fall.
+     *
+     * @param the_fraction the fraction of values, between 0 and 1
+     * @return the quantile, zero if nothing is recorded
+     */
+    public long getQuantile(final double the_fraction) {
+        final long rank = Math.max(1, (long) Math.ceil(the_fraction * myTotal));
+        long seen = 0;
+        long result = 0;
+        for (int i = 0; i < BUCKETS && myTotal > 0; i++) {
+            seen += myCounts[i];
+            if (seen >= rank && myCounts[i] > 0) {
+                result = Math.max(myMin, Math.min(myMax, upperBound(i)));
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the bucket holding the given value.
+     *
+     * @param the_value a non-negative value
+     * @return the index of its bucket
+     */
+    private static int indexFor(final long the_value) {
+        int result = (int) the_value;
+        if (the_value >= SUB_BUCKETS) {
+            final int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(the_value)
+                              - PRECISION_BITS;
+            final int sub = (int) (the_value >>> shift) & (SUB_BUCKETS - 1);
+            result = (shift + 1) * SUB_BUCKETS + sub;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the largest value held by the given bucket.
+     *
+     * @param the_index the index of a bucket
+     * @return the largest value that maps to it
+     */
+    private static long upperBound(final int the_index) {
+        long result = the_index;
+        if (the_index >= SUB_BUCKETS) {
+            final int shift = the_index / SUB_BUCKETS - 1;
+            final long sub = the_index % SUB_BUCKETS;
+            result = ((SUB_BUCKETS + sub + 1) << shift) - 1;
+            if (result < 0) {
+                //the last bucket reaches past the largest long
+                result = Long.MAX_VALUE;
+            }
+        }
+        return result;
+    }
+}
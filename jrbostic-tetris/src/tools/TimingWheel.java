@@ -0,0 +1,399 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package tools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hashed timing wheel for scheduling large numbers of one-shot tasks, such as
+ * the gravity ticks of thousands of game sessions. Scheduling and cancelling
+ * are O(1); a single thread advances the wheel one slot per tick and hands
+ * everything due in that slot to a worker pool in a few batches, instead of
+ * one hand-off per task.
+ *
+ * <p>Tasks run no earlier than their deadline and, load permitting, within
+ * one tick after it. Delays longer than a full turn of the wheel are kept in
+ * their slot with a count of the turns still to wait, so a shrinking delay
+ * simply lands in a nearer slot the next time it is scheduled.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+public class TimingWheel {
+
+    /**
+     * Timeout state before it has expired or been cancelled.
+     */
+    private static final int PENDING = 0;
+
+    /**
+     * Timeout state once handed to the worker pool.
+     */
+    private static final int EXPIRED = 1;
+
+    /**
+     * Timeout state once cancelled.
+     */
+    private static final int CANCELLED = 2;
+
+    /**
+     * The slots of the wheel.
+     */
+    private final Slot[] myWheel;
+
+    /**
+     * The mask selecting a slot from a tick count.
+     */
+    private final int myMask;
+
+    /**
+     * The duration of one tick, in nanoseconds.
+     */
+    private final long myTickDuration;
+
+    /**
+     * The pool that runs expired tasks.
+     */
+    private final Executor myWorkers;
+
+    /**
+     * The number of batches the tasks of one slot are split into.
+     */
+    private final int myBatches;
+
+    /**
+     * Timeouts scheduled but not yet placed in a slot.
+     */
+    private final Queue<Timeout> myAdditions;
+
+    /**
+     * Timeouts cancelled but not yet removed from their slot.
+     */
+    private final Queue<Timeout> myCancellations;
+
+    /**
+     * The thread advancing the wheel.
+     */
+    private final Thread myThread;
+
+    /**
+     * The time the wheel started, in System.nanoTime() terms.
+     */
+    private final long myStartTime;
+
+    /**
+     * The number of ticks the wheel has advanced; touched only by its thread.
+     */
+    private long myTick;
+
+    /**
+     * Whether the wheel should keep advancing.
+     */
+    private volatile boolean myRunning;
+
+    /**
+     * Constructs and starts a timing wheel.
+     *
+     * @param the_tick_duration the duration of one tick, in nanoseconds
+     * @param the_slots the number of slots, rounded up to a power of two
+     * @param the_workers the pool that runs expired tasks
+     * @param the_batches the number of batches each slot's tasks are split into
+     */
+    public TimingWheel(final long the_tick_duration, final int the_slots,
+                       final Executor the_workers, final int the_batches) {
+        if (the_tick_duration <= 0 || the_slots <= 0 || the_batches <= 0) {
+            throw new IllegalArgumentException();
+        }
+        final int slots = Integer.highestOneBit(the_slots - 1) << 1;
+        myWheel = new Slot[Math.max(1, slots)];
+        for (int i = 0; i < myWheel.length; i++) {
+            myWheel[i] = new Slot();
+        }
+        myMask = myWheel.length - 1;
+        myTickDuration = the_tick_duration;
+        myWorkers = the_workers;
+        myBatches = the_batches;
+        myAdditions = new ConcurrentLinkedQueue<>();
+        myCancellations = new ConcurrentLinkedQueue<>();
+        myStartTime = System.nanoTime();
+        myRunning = true;
+        myThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                advance();
+            }
+        }, "timing-wheel");
+        myThread.setDaemon(true);
+        myThread.start();
+    }
+
+    /**
+     * Schedules a task to run once after the given delay; safe from any thread.
+     *
+     * @param the_task the task to run
+     * @param the_delay the delay in nanoseconds
+     * @return the handle used to cancel the task
+     */
+    public Timeout schedule(final Runnable the_task, final long the_delay) {
+        final Timeout result = new Timeout(the_task,
+                                           System.nanoTime() - myStartTime
+                                           + Math.max(0, the_delay));
+        myAdditions.add(result);
+        return result;
+    }
+
+    /**
+     * Stops advancing the wheel; tasks not yet expired never run.
+     */
+    public void stop() {
+        myRunning = false;
+        LockSupport.unpark(myThread);
+    }
+
+    /**
+     * Advances the wheel one slot per tick until stopped.
+     */
+    private void advance() {
+        while (myRunning) {
+            final long deadline = waitForNextTick();
+            if (!myRunning) {
+                break;
+            }
+            removeCancelled();
+            placeAdditions();
+            dispatch(myWheel[(int) (myTick & myMask)].expire(deadline));
+            myTick++;
+        }
+    }
+
+    /**
+     * Sleeps until the end of the current tick.
+     *
+     * @return the time at the end of the current tick, relative to the start
+     */
+    private long waitForNextTick() {
+        final long deadline = (myTick + 1) * myTickDuration;
+        long remaining = deadline - (System.nanoTime() - myStartTime);
+        while (remaining > 0 && myRunning) {
+            LockSupport.parkNanos(remaining);
+            remaining = deadline - (System.nanoTime() - myStartTime);
+        }
+        return deadline;
+    }
+
+    /**
+     * Unlinks cancelled timeouts from their slots.
+     */
+    private void removeCancelled() {
+        Timeout timeout = myCancellations.poll();
+        while (timeout != null) {
+            if (timeout.mySlot != null) {
+                timeout.mySlot.remove(timeout);
+            }
+            timeout = myCancellations.poll();
+        }
+    }
+
+    /**
+     * Places newly scheduled timeouts in the slot of their deadline.
+     */
+    private void placeAdditions() {
+        Timeout timeout = myAdditions.poll();
+        while (timeout != null) {
+            if (timeout.myState.get() == PENDING) {
+                final long ticks = timeout.myDeadline / myTickDuration;
+                timeout.myRounds = (ticks - myTick) / myWheel.length;
+                myWheel[(int) (Math.max(ticks, myTick) & myMask)].add(timeout);
+            }
+            timeout = myAdditions.poll();
+        }
+    }
+
+    /**
+     * Hands expired timeouts to the worker pool in evenly sized batches.
+     *
+     * @param the_expired the timeouts that expired in the current slot
+     */
+    private void dispatch(final List<Timeout> the_expired) {
+        final int size = the_expired.size();
+        final int batches = Math.min(myBatches, size);
+        for (int batch = 0; batch < batches; batch++) {
+            final List<Timeout> tasks = the_expired.subList(batch * size / batches,
+                                                            (batch + 1) * size / batches);
+            myWorkers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (Timeout timeout : tasks) {
+                        try {
+                            timeout.myTask.run();
+                        } catch (final RuntimeException exception) {
+                            exception.printStackTrace();
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * A scheduled task that can be cancelled until it expires.
+     *
+     * @author Jesse Bostic
+     * @version Autumn 2013
+     */
+    public final class Timeout {
+
+        /**
+         * The task to run.
+         */
+        private final Runnable myTask;
+
+        /**
+         * The deadline, in nanoseconds relative to the start of the wheel.
+         */
+        private final long myDeadline;
+
+        /**
+         * Whether this timeout is pending, expired or cancelled.
+         */
+        private final AtomicInteger myState;
+
+        /**
+         * The number of full turns of the wheel still to wait.
+         */
+        private long myRounds;
+
+        /**
+         * The slot holding this timeout, if any.
+         */
+        private Slot mySlot;
+
+        /**
+         * The previous timeout in the same slot.
+         */
+        private Timeout myPrevious;
+
+        /**
+         * The next timeout in the same slot.
+         */
+        private Timeout myNext;
+
+        /**
+         * Constructs a pending timeout.
+         *
+         * @param the_task the task to run
+         * @param the_deadline the deadline relative to the start of the wheel
+         */
+        private Timeout(final Runnable the_task, final long the_deadline) {
+            myTask = the_task;
+            myDeadline = the_deadline;
+            myState = new AtomicInteger(PENDING);
+        }
+
+        /**
+         * Prevents the task from running if it has not expired yet.
+         *
+         * @return true if the task was cancelled; false if it already expired
+         */
+        public boolean cancel() {
+            final boolean result = myState.compareAndSet(PENDING, CANCELLED);
+            if (result) {
+                myCancellations.add(this);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * A slot of the wheel holding a doubly linked list of timeouts; touched
+     * only by the wheel's thread.
+     *
+     * @author Jesse Bostic
+     * @version Autumn 2013
+     */
+    private static final class Slot {
+
+        /**
+         * The first timeout in this slot.
+         */
+        private Timeout myHead;
+
+        /**
+         * The last timeout in this slot.
+         */
+        private Timeout myTail;
+
+        /**
+         * Appends a timeout to this slot.
+         *
+         * @param the_timeout the timeout to add
+         */
+        private void add(final Timeout the_timeout) {
+            the_timeout.mySlot = this;
+            if (myHead == null) {
+                myHead = the_timeout;
+            } else {
+                myTail.myNext = the_timeout;
+                the_timeout.myPrevious = myTail;
+            }
+            myTail = the_timeout;
+        }
+
+        /**
+         * Unlinks a timeout from this slot.
+         *
+         * @param the_timeout the timeout to remove
+         * @return the timeout that followed the removed one
+         */
+        private Timeout remove(final Timeout the_timeout) {
+            final Timeout next = the_timeout.myNext;
+            if (the_timeout.myPrevious == null) {
+                myHead = next;
+            } else {
+                the_timeout.myPrevious.myNext = next;
+            }
+            if (next == null) {
+                myTail = the_timeout.myPrevious;
+            } else {
+                next.myPrevious = the_timeout.myPrevious;
+            }
+            the_timeout.myPrevious = null;
+            the_timeout.myNext = null;
+            the_timeout.mySlot = null;
+            return next;
+        }
+
+        /**
+         * Removes and returns every timeout in this slot due by the deadline,
+         * counting down the turns of those that are not.
+         *
+         * @param the_deadline the end of the current tick, relative to the start
+         * @return the expired timeouts
+         */
+        private List<Timeout> expire(final long the_deadline) {
+            final List<Timeout> result = new ArrayList<>();
+            Timeout timeout = myHead;
+            while (timeout != null) {
+                if (timeout.myRounds <= 0 && timeout.myDeadline <= the_deadline) {
+                    final Timeout expired = timeout;
+                    timeout = remove(expired);
+                    if (expired.myState.compareAndSet(PENDING, EXPIRED)) {
+                        result.add(expired);
+                    }
+                } else {
+                    timeout.myRounds--;
+                    timeout = timeout.myNext;
+                }
+            }
+            return result;
+        }
+    }
+}
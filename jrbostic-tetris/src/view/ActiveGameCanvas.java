@@ -0,0 +1,321 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package view;
+
+import java.awt.Canvas;
+import java.awt.DisplayMode;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+import java.util.concurrent.locks.LockSupport;
+
+import engine.GameSnapshot;
+import engine.SimulationLoop;
+
+/**
+ * Draws the game board by active rendering, enabled with
+ * -Dtetris.active=true: a render thread draws every frame into a page
+ * flipping BufferStrategy at the display's refresh rate instead of waiting
+ * for Swing to coalesce repaint requests on the EDT. The current piece glides
+ * between the cells of successive snapshots over one simulation step, which
+ * keeps movement smooth on displays faster than the simulation.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+@SuppressWarnings("serial")
+class ActiveGameCanvas extends Canvas implements Runnable {
+
+    /**
+     * The refresh rate assumed when the display does not report one.
+     */
+    private static final int DEFAULT_REFRESH_RATE = 60;
+
+    /**
+     * The number of nanoseconds in a second.
+     */
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    /**
+     * The renderer drawing the board.
+     */
+    private final BoardRenderer myRenderer;
+
+    /**
+     * The simulation whose snapshots are drawn.
+     */
+    private final SimulationLoop mySimulation;
+
+    /**
+     * The frame timing, or null when the overlay is off.
+     */
+    private final FrameStats myStats;
+
+    /**
+     * The area drawn each frame, reused on every frame.
+     */
+    private final Rectangle myClip;
+
+    /**
+     * The thread drawing frames, while displayable.
+     */
+    private Thread myThread;
+
+    /**
+     * Whether the render thread should keep running.
+     */
+    private volatile boolean myRunning;
+
+    /**
+     * Whether the game has been started.
+     */
+    private volatile boolean myStarted;
+
+    /**
+     * Whether the game is paused.
+     */
+    private volatile boolean myPaused;
+
+    /**
+     * The snapshot drawn by the last frame.
+     */
+    private GameSnapshot myShown;
+
+    /**
+     * The time the drawn snapshot first appeared.
+     */
+    private long myShownSince;
+
+    /**
+     * The columns the current piece moved by in the drawn snapshot.
+     */
+    private int myMoveX;
+
+    /**
+     * The rows the current piece moved by in the drawn snapshot.
+     */
+    private int myMoveY;
+
+    /**
+     * Constructs a canvas drawing a simulation's snapshots.
+     *
+     * @param the_renderer the renderer drawing the board
+     * @param the_simulation the simulation whose snapshots are drawn
+     */
+    ActiveGameCanvas(final BoardRenderer the_renderer,
+                     final SimulationLoop the_simulation) {
+        myRenderer = the_renderer;
+        mySimulation = the_simulation;
+        myClip = new Rectangle();
+        if (FrameStats.ENABLED) {
+            myStats = new FrameStats("active");
+        } else {
+            myStats = null;
+        }
+        setIgnoreRepaint(true);
+        setFocusable(false);
+    }
+
+    /**
+     * Sets whether the game has been started.
+     *
+     * @param the_started whether the game has been started
+     */
+    void setStarted(final boolean the_started) {
+        myStarted = the_started;
+    }
+
+    /**
+     * Sets whether the game is paused.
+     *
+     * @param the_paused whether the game is paused
+     */
+    void setPaused(final boolean the_paused) {
+        myPaused = the_paused;
+    }
+
+    /**
+     * Creates the buffer strategy and starts the render thread once the
+     * canvas can be displayed.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        createBufferStrategy(2);
+        myRunning = true;
+        myThread = new Thread(this, "render");
+        myThread.setDaemon(true);
+        myThread.start();
+    }
+
+    /**
+     * Stops the render thread before the canvas loses its peer.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeNotify() {
+        myRunning = false;
+        if (myThread != null) {
+            LockSupport.unpark(myThread);
+            try {
+                myThread.join();
+            } catch (final InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+            myThread = null;
+        }
+        super.removeNotify();
+    }
+
+    /**
+     * Does nothing; frames are drawn by the render thread.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void paint(final Graphics the_graphic) {
+        //drawn actively
+    }
+
+    /**
+     * Does nothing; frames are drawn by the render thread.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void update(final Graphics the_graphic) {
+        //drawn actively
+    }
+
+    /**
+     * Draws a frame every refresh period until the canvas is removed.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        final BufferStrategy strategy = getBufferStrategy();
+        final long period = NANOS_PER_SECOND / getRefreshRate();
+        long nextFrame = System.nanoTime();
+        while (myRunning) {
+            final GameSnapshot snapshot = mySimulation.getSnapshot();
+            do {
+                do {
+                    final Graphics2D g2d = (Graphics2D) strategy.getDrawGraphics();
+                    try {
+                        drawFrame(g2d, snapshot);
+                    } finally {
+                        g2d.dispose();
+                    }
+                } while (strategy.contentsRestored() && myRunning);
+                strategy.show();
+            } while (strategy.contentsLost() && myRunning);
+            Toolkit.getDefaultToolkit().sync();
+            if (myStats != null) {
+                myStats.frameShown(snapshot);
+            }
+
+            nextFrame += period;
+            final long now = System.nanoTime();
+            if (now - nextFrame > period) {
+                //fell behind; pace from now rather than rushing to catch up
+                nextFrame = now + period;
+            }
+            long wait = nextFrame - now;
+            while (wait > 0 && myRunning) {
+                LockSupport.parkNanos(wait);
+                wait = nextFrame - System.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * Draws one frame of the game.
+     *
+     * @param the_graphic the graphics2D object to be drawn on
+     * @param the_snapshot the state of the game to draw
+     */
+    private void drawFrame(final Graphics2D the_graphic, final GameSnapshot the_snapshot) {
+        myClip.setBounds(0, 0, getWidth(), getHeight());
+        myRenderer.drawBackground(the_graphic, getWidth(), getHeight(), myClip);
+        if (myPaused) {
+            myRenderer.drawPaused(the_graphic);
+        } else if (myStarted) {
+            final long now = System.nanoTime();
+            if (the_snapshot != myShown) {
+                trackMove(myShown, the_snapshot);
+                myShown = the_snapshot;
+                myShownSince = now;
+            }
+            //glide from the previous cell to the current one over one step
+            final double remaining =
+                    1 - Math.min(1, (double) (now - myShownSince) / SimulationLoop.STEP);
+            final int scale = myRenderer.getLayout().getScale();
+            myRenderer.drawGame(the_graphic, the_snapshot, myClip,
+                                (int) Math.round(-myMoveX * scale * remaining),
+                                (int) Math.round(myMoveY * scale * remaining));
+            Startup.frameShown();
+        }
+        if (myStats != null) {
+            myStats.draw(the_graphic, 2, 0);
+        }
+    }
+
+    /**
+     * Works out whether the current piece moved a single cell between two
+     * snapshots, which is drawn as a glide; anything else is drawn as a jump.
+     *
+     * @param the_previous the snapshot drawn before, or null
+     * @param the_current the snapshot about to be drawn
+     */
+    private void trackMove(final GameSnapshot the_previous, final GameSnapshot the_current) {
+        myMoveX = 0;
+        myMoveY = 0;
+        if (the_previous == null
+                || the_previous.getPieceBlock() != the_current.getPieceBlock()
+                || the_previous.getPieceSize() != the_current.getPieceSize()
+                || the_current.getPieceSize() == 0) {
+            return;
+        }
+        final int moveX = the_current.getPieceCoordinate(0, 0)
+                          - the_previous.getPieceCoordinate(0, 0);
+        final int moveY = the_current.getPieceCoordinate(0, 1)
+                          - the_previous.getPieceCoordinate(0, 1);
+        if (Math.abs(moveX) + Math.abs(moveY) != 1) {
+            return;
+        }
+        for (int i = 1; i < the_current.getPieceSize(); i++) {
+            if (the_current.getPieceCoordinate(i, 0) - the_previous.getPieceCoordinate(i, 0)
+                    != moveX
+                    || the_current.getPieceCoordinate(i, 1)
+                    - the_previous.getPieceCoordinate(i, 1) != moveY) {
+                return;
+            }
+        }
+        myMoveX = moveX;
+        myMoveY = moveY;
+    }
+
+    /**
+     * @return the refresh rate of the display showing this canvas, in hertz
+     */
+    private int getRefreshRate() {
+        int result = DEFAULT_REFRESH_RATE;
+        final GraphicsConfiguration configuration = getGraphicsConfiguration();
+        if (configuration != null) {
+            final DisplayMode mode = configuration.getDevice().getDisplayMode();
+            if (mode != null && mode.getRefreshRate() != DisplayMode.REFRESH_RATE_UNKNOWN) {
+                result = mode.getRefreshRate();
+            }
+        }
+        return result;
+    }
+}
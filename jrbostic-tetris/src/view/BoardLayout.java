@@ -0,0 +1,408 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package view;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+
+import engine.GameSnapshot;
+
+/**
+ * The geometry of the game board at one size: every rectangle and text
+ * position the board is drawn with, worked out once per resize instead of
+ * on every paint. Layouts are immutable and may be shared between threads;
+ * the rectangles and points they return must not be modified.
+ *
+ * <p>A board larger than the standard one is shown through a viewport of
+ * the standard size that follows the current piece, so drawing costs the
+ * same however large the board is. Cells are addressed relative to the
+ * viewport; {@link #getFirstColumn} and {@link #getFirstRow} give the board
+ * cell at its bottom left for a snapshot.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+final class BoardLayout {
+
+    /**
+     * The most columns shown at once.
+     */
+    static final int VIEW_COLUMNS = 10;
+
+    /**
+     * The most rows shown at once, not counting the row above the board.
+     */
+    static final int VIEW_ROWS = 20;
+
+    /**
+     * The margin between left and top margins of panel and board.
+     */
+    private static final int BOARD_COORD_ADJUST = 10;
+
+    /**
+     * Double representing 33 percent.
+     */
+    private static final double PERCENT_33 = .33;
+
+    /**
+     * Three pixels.
+     */
+    private static final int THREE_PIXELS = 3;
+
+    /**
+     * Four pixels.
+     */
+    private static final int FOUR_PIXELS = 4;
+
+    /**
+     * Five pixels.
+     */
+    private static final int FIVE_PIXELS = 5;
+
+    /**
+     * Nine pixels.
+     */
+    private static final int NINE_PIXELS = 9;
+
+    /**
+     * Ten pixels.
+     */
+    private static final int TEN_PIXELS = 3;
+
+    /**
+     * The width of the surface drawn on, 0 if not yet known.
+     */
+    private final int myWidth;
+
+    /**
+     * The height of the surface drawn on, 0 if not yet known.
+     */
+    private final int myHeight;
+
+    /**
+     * The width and height of a cell.
+     */
+    private final int myScale;
+
+    /**
+     * The number of device pixels per user space unit.
+     */
+    private final double myDeviceScale;
+
+    /**
+     * The block width of game board.
+     */
+    private final int myBoardWidth;
+
+    /**
+     * The block height of game board.
+     */
+    private final int myBoardHeight;
+
+    /**
+     * The number of columns shown.
+     */
+    private final int myViewColumns;
+
+    /**
+     * The number of rows shown, not counting the row above the board.
+     */
+    private final int myViewRows;
+
+    /**
+     * The rounded frame around the board.
+     */
+    private final Rectangle myFrame;
+
+    /**
+     * The black area the blocks are drawn on.
+     */
+    private final Rectangle myWell;
+
+    /**
+     * The level progress bar.
+     */
+    private final Rectangle myLevelBar;
+
+    /**
+     * The area below the board holding the level display.
+     */
+    private final Rectangle myLevelArea;
+
+    /**
+     * The baseline start of the level text.
+     */
+    private final Point myLevelText;
+
+    /**
+     * The baseline start of the paused message.
+     */
+    private final Point myPausedText;
+
+    /**
+     * Lays out a board.
+     *
+     * @param the_board_width the block width of game board
+     * @param the_board_height the block height of game board
+     * @param the_width the width of the surface drawn on, 0 if not yet known
+     * @param the_height the height of the surface drawn on, 0 if not yet known
+     * @param the_scale the width and height of a cell
+     * @param the_device_scale the number of device pixels per user space unit
+     */
+    BoardLayout(final int the_board_width, final int the_board_height, final int the_width,
+                final int the_height, final int the_scale, final double the_device_scale) {
+        myWidth = the_width;
+        myHeight = the_height;
+        myScale = the_scale;
+        myDeviceScale = the_device_scale;
+        myBoardWidth = the_board_width;
+        myBoardHeight = the_board_height;
+        myViewColumns = Math.min(the_board_width, VIEW_COLUMNS);
+        myViewRows = Math.min(the_board_height, VIEW_ROWS);
+
+        myFrame = new Rectangle(BOARD_COORD_ADJUST - FOUR_PIXELS, BOARD_COORD_ADJUST,
+                                myViewColumns * the_scale + NINE_PIXELS,
+                                (myViewRows + 1) * the_scale + FIVE_PIXELS);
+        myWell = new Rectangle(BOARD_COORD_ADJUST, BOARD_COORD_ADJUST,
+                               myViewColumns * the_scale + 1,
+                               (myViewRows + 1) * the_scale + 1);
+        final int levelLeft = BOARD_COORD_ADJUST * (int) (the_scale * PERCENT_33);
+        myLevelBar = new Rectangle(levelLeft - 2, 2 * (BOARD_COORD_ADJUST + 1)
+                                   + (myViewRows + 1) * the_scale,
+                                   FOUR_PIXELS * (the_scale + 1), the_scale + 2);
+        final int levelTop = 2 * BOARD_COORD_ADJUST + (myViewRows + 1) * the_scale;
+        myLevelArea = new Rectangle(0, levelTop,
+                                    2 * BOARD_COORD_ADJUST + myViewColumns * the_scale,
+                                    Math.max(0, the_height - levelTop));
+        myLevelText = new Point(levelLeft, 2 * BOARD_COORD_ADJUST
+                                + myViewRows * the_scale + 2 * the_scale);
+        myPausedText = new Point(the_scale * THREE_PIXELS,
+                                 the_scale * THREE_PIXELS * TEN_PIXELS);
+    }
+
+    /**
+     * Query as to whether this layout was made for a surface size.
+     *
+     * @param the_width the width of the surface
+     * @param the_height the height of the surface
+     * @return true if the layout fits the size
+     */
+    boolean fits(final int the_width, final int the_height) {
+        return myWidth == the_width && myHeight == the_height;
+    }
+
+    /**
+     * @return true if the size of the surface was known when laid out
+     */
+    boolean isSized() {
+        return myWidth > 0 && myHeight > 0;
+    }
+
+    /**
+     * @return the width of the surface drawn on
+     */
+    int getWidth() {
+        return myWidth;
+    }
+
+    /**
+     * @return the height of the surface drawn on
+     */
+    int getHeight() {
+        return myHeight;
+    }
+
+    /**
+     * @return the width and height of a cell
+     */
+    int getScale() {
+        return myScale;
+    }
+
+    /**
+     * @return the number of device pixels per user space unit
+     */
+    double getDeviceScale() {
+        return myDeviceScale;
+    }
+
+    /**
+     * @return the rounded frame around the board
+     */
+    Rectangle getFrame() {
+        return myFrame;
+    }
+
+    /**
+     * @return the black area the blocks are drawn on
+     */
+    Rectangle getWell() {
+        return myWell;
+    }
+
+    /**
+     * @return the level progress bar
+     */
+    Rectangle getLevelBar() {
+        return myLevelBar;
+    }
+
+    /**
+     * @return the baseline start of the level text
+     */
+    Point getLevelText() {
+        return myLevelText;
+    }
+
+    /**
+     * @return the baseline start of the paused message
+     */
+    Point getPausedText() {
+        return myPausedText;
+    }
+
+    /**
+     * @return the number of columns shown
+     */
+    int getViewColumns() {
+        return myViewColumns;
+    }
+
+    /**
+     * @return the number of rows shown, not counting the row above the board
+     */
+    int getViewRows() {
+        return myViewRows;
+    }
+
+    /**
+     * @return true if the viewport shows the top of the board, where the
+     *         overflow line is drawn
+     */
+    boolean isTopShown() {
+        return myViewRows == myBoardHeight;
+    }
+
+    /**
+     * Returns the board column shown leftmost in the viewport: the one that
+     * centers the current piece, kept within the board.
+     *
+     * @param the_snapshot the state of the game drawn
+     * @return the column, zero when the whole width is shown
+     */
+    int getFirstColumn(final GameSnapshot the_snapshot) {
+        int left = Integer.MAX_VALUE;
+        for (int i = 0; i < the_snapshot.getPieceSize(); i++) {
+            left = Math.min(left, the_snapshot.getPieceCoordinate(i, 0));
+        }
+        return clamp(left + 2 - myViewColumns / 2, myBoardWidth - myViewColumns);
+    }
+
+    /**
+     * Returns the board row shown lowest in the viewport: the one that puts
+     * the top of the current piece in the top row of the board shown, kept
+     * within the board.
+     *
+     * @param the_snapshot the state of the game drawn
+     * @return the row, zero when the whole height is shown
+     */
+    int getFirstRow(final GameSnapshot the_snapshot) {
+        int top = 0;
+        for (int i = 0; i < the_snapshot.getPieceSize(); i++) {
+            top = Math.max(top, the_snapshot.getPieceCoordinate(i, 1));
+        }
+        return clamp(top + 1 - myViewRows, myBoardHeight - myViewRows);
+    }
+
+    /**
+     * Limits a viewport origin to the board.
+     *
+     * @param the_value the origin wanted
+     * @param the_max the largest origin that keeps the viewport on the board
+     * @return the origin, between zero and the largest
+     */
+    private static int clamp(final int the_value, final int the_max) {
+        return Math.max(0, Math.min(the_max, the_value));
+    }
+
+    /**
+     * @return the height of the overflow line
+     */
+    int getOverflowY() {
+        return BOARD_COORD_ADJUST + myScale;
+    }
+
+    /**
+     * Returns the left edge of a column of the viewport.
+     *
+     * @param the_column the column, from the left
+     * @return the left edge
+     */
+    int getCellX(final int the_column) {
+        return BOARD_COORD_ADJUST + the_column * myScale;
+    }
+
+    /**
+     * Returns the top edge of a row of the viewport.
+     *
+     * @param the_row the row, from the bottom
+     * @return the top edge
+     */
+    int getCellY(final int the_row) {
+        return BOARD_COORD_ADJUST + (myViewRows - the_row) * myScale;
+    }
+
+    /**
+     * Sets a rectangle to the area covered by a run of viewport cells in one row,
+     * including the antialiased edges of their sprites.
+     *
+     * @param the_column the leftmost column
+     * @param the_row the row, from the bottom
+     * @param the_count the number of cells
+     * @param the_bounds the rectangle to set
+     */
+    void getCellBounds(final int the_column, final int the_row, final int the_count,
+                       final Rectangle the_bounds) {
+        the_bounds.setBounds(getCellX(the_column) + SpriteCache.OFFSET,
+                             getCellY(the_row) + SpriteCache.OFFSET,
+                             the_count * myScale + 2, myScale + 2);
+    }
+
+    /**
+     * Sets a rectangle to the area covered by the level display.
+     *
+     * @param the_bounds the rectangle to set
+     */
+    void getLevelBounds(final Rectangle the_bounds) {
+        the_bounds.setBounds(myLevelArea);
+    }
+
+    /**
+     * Query as to whether a viewport row overlaps the area being drawn.
+     *
+     * @param the_row the row, from the bottom
+     * @param the_offset the vertical pixel offset of the row
+     * @param the_clip the area being drawn
+     * @return true if any of the row's sprites would be visible
+     */
+    boolean isRowInClip(final int the_row, final int the_offset, final Rectangle the_clip) {
+        final int top = getCellY(the_row) + SpriteCache.OFFSET + the_offset;
+        return top < the_clip.y + the_clip.height && top + myScale + 2 > the_clip.y;
+    }
+
+    /**
+     * Query as to whether a viewport column overlaps the area being drawn.
+     *
+     * @param the_column the column, from the left
+     * @param the_offset the horizontal pixel offset of the column
+     * @param the_clip the area being drawn
+     * @return true if any of the column's sprites would be visible
+     */
+    boolean isColumnInClip(final int the_column, final int the_offset,
+                           final Rectangle the_clip) {
+        final int left = getCellX(the_column) + SpriteCache.OFFSET + the_offset;
+        return left < the_clip.x + the_clip.width && left + myScale + 2 > the_clip.x;
+    }
+}
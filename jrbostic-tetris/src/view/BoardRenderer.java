@@ -0,0 +1,609 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package view;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import engine.GameSnapshot;
+import model.Block;
+import tools.AssetManager;
+import tools.ColorGenerator;
+
+/**
+ * Draws a game board from snapshots onto any Graphics2D, so the same drawing
+ * serves the Swing panel, the active rendering canvas and offscreen images.
+ * The layout and display options may be set from any thread; drawing itself
+ * must stay on one thread at a time.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+class BoardRenderer {
+
+    /**
+     * The color of play grid.
+     */
+    private static final Color GRID_COLOR = new Color(255, 255, 255, 25);
+
+    /**
+     * The color of overflow line (game over marker).
+     */
+    private static final Color OVERFLOW_LINE_COLOR = new Color(255, 255, 255, 50);
+
+    /**
+     * The color around edges of board and level display.
+     */
+    private static final Color BOARD_EDGE_COLOR = new Color(0, 0, 0, 175);
+
+    /**
+     * The board frame color for each holiday palette color.
+     */
+    private static final Color[] HOLIDAY_FRAME_COLORS = createHolidayFrameColors();
+
+    /**
+     * The time each holiday palette color is shown for, in nanoseconds.
+     */
+    private static final long HOLIDAY_STEP = 40000000L;
+
+    /**
+     * The rounding of blocks.
+     */
+    private static final int BLOCK_ROUNDING = 5;
+
+    /**
+     * The rounding of frames for board and level display.
+     */
+    private static final int FRAME_ROUNDING = 5;
+
+    /**
+     * Five pixels.
+     */
+    private static final int FIVE_PIXELS = 5;
+
+    /**
+     * The width of game board.
+     */
+    private final int myBoardWidth;
+
+    /**
+     * The height of game board.
+     */
+    private final int myBoardHeight;
+
+    /**
+     * The cache of pre-rendered blocks.
+     */
+    private final SpriteCache mySpriteCache;
+
+    /**
+     * The color behind the tiled background.
+     */
+    private final Color myBackgroundColor;
+
+    /**
+     * The holiday palette offset of each board cell, so neighbors differ.
+     */
+    private final int[] myHolidayPhases;
+
+    /**
+     * The layout the board should be drawn with.
+     */
+    private volatile BoardLayout myLayout;
+
+    /**
+     * Holds whether grid is enabled.
+     */
+    private volatile boolean myGridEnabled;
+
+    /**
+     * Holds whether holiday mode enabled.
+     */
+    private volatile boolean myHolidayEnabled;
+
+    /**
+     * The level display, reused for every frame.
+     */
+    private final TextLabel myLevelLabel;
+
+    /**
+     * The layout the cached images were drawn for.
+     */
+    private BoardLayout myRenderedLayout;
+
+    /**
+     * The sprites of frozen blocks at the rendered scale, null until needed.
+     */
+    private BufferedImage[] myFrozenSprites;
+
+    /**
+     * The sprites of current piece blocks at the rendered scale, null until needed.
+     */
+    private BufferedImage[] myPieceSprites;
+
+    /**
+     * The sprites of holiday palette colors at the rendered scale, null until needed.
+     */
+    private BufferedImage[] myHolidaySprites;
+
+    /**
+     * The tiled background, board frame and overflow line of the rendered
+     * layout, null until needed.
+     */
+    private BufferedImage myBackground;
+
+    /**
+     * The font of the paused message at the rendered scale.
+     */
+    private Font myPausedFont;
+
+    /**
+     * The font of the level display at the rendered scale.
+     */
+    private Font myLevelFont;
+
+    /**
+     * The fill of the level progress bar at the rendered scale.
+     */
+    private GradientPaint myLevelPaint;
+
+    /**
+     * The level display with an empty bar at the rendered scale, null until
+     * needed.
+     */
+    private BufferedImage myLevelFrame;
+
+    /**
+     * The level display with a full bar at the rendered scale, null until
+     * needed; the filled part of the bar is cut from it.
+     */
+    private BufferedImage myLevelFull;
+
+    /**
+     * Constructs a renderer for a board. Until a layout is set, the board is
+     * laid out for whatever surface it is first drawn on.
+     *
+     * @param the_width the block width of game board
+     * @param the_height the block height of game board
+     * @param the_sprites the cache of pre-rendered blocks
+     * @param the_background the color behind the tiled background
+     */
+    BoardRenderer(final int the_width, final int the_height, final SpriteCache the_sprites,
+                  final Color the_background) {
+        myBoardWidth = the_width;
+        myBoardHeight = the_height;
+        mySpriteCache = the_sprites;
+        myBackgroundColor = the_background;
+        myLevelLabel = new TextLabel("LEVEL ");
+        myLayout = new BoardLayout(the_width, the_height, 0, 0,
+                                   Math.min(the_height, BoardLayout.VIEW_ROWS), 1);
+        myHolidayPhases = new int[Math.min(the_width, BoardLayout.VIEW_COLUMNS)
+                                  * Math.min(the_height, BoardLayout.VIEW_ROWS)];
+        final Random random = new Random();
+        for (int i = 0; i < myHolidayPhases.length; i++) {
+            myHolidayPhases[i] = random.nextInt(ColorGenerator.PALETTE_SIZE);
+        }
+    }
+
+    /**
+     * Brightens each holiday palette color for the board frame.
+     *
+     * @return the frame colors, indexed like the palette
+     */
+    private static Color[] createHolidayFrameColors() {
+        final Color[] result = new Color[ColorGenerator.PALETTE_SIZE];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ColorGenerator.getPaletteColor(i).brighter();
+        }
+        return result;
+    }
+
+    /**
+     * Lays the board out for a surface; cached images are redrawn on the next frame.
+     *
+     * @param the_width the width of the surface drawn on
+     * @param the_height the height of the surface drawn on
+     * @param the_scale the width and height of a cell
+     * @param the_device_scale the number of device pixels per user space unit
+     */
+    void setLayout(final int the_width, final int the_height, final int the_scale,
+                   final double the_device_scale) {
+        myLayout = new BoardLayout(myBoardWidth, myBoardHeight, the_width, the_height,
+                                   the_scale, the_device_scale);
+    }
+
+    /**
+     * @return the layout the board is drawn with
+     */
+    BoardLayout getLayout() {
+        return myLayout;
+    }
+
+    /**
+     * Method to enable/disable grid.
+     *
+     * @param the_enabler whether grid should be enabled
+     */
+    void setGridEnabled(final boolean the_enabler) {
+        myGridEnabled = the_enabler;
+    }
+
+    /**
+     * Method to enable/disable holiday mode.
+     *
+     * @param the_enabler whether holiday mode should be enabled
+     */
+    void setHolidayEnabled(final boolean the_enabler) {
+        myHolidayEnabled = the_enabler;
+    }
+
+    /**
+     * @return whether holiday mode is enabled
+     */
+    boolean isHolidayEnabled() {
+        return myHolidayEnabled;
+    }
+
+    /**
+     * Draws the part of the background layer under the clip, rebuilding the
+     * layer first if the layout changed. While a resize is waiting to be laid
+     * out, the last layer is stretched over the surface instead.
+     *
+     * @param the_graphic the graphics2D object to be drawn on
+     * @param the_width the width of the surface drawn on
+     * @param the_height the height of the surface drawn on
+     * @param the_clip the area being drawn
+     */
+    void drawBackground(final Graphics2D the_graphic, final int the_width,
+                        final int the_height, final Rectangle the_clip) {
+        BoardLayout layout = myLayout;
+        if (!layout.isSized()) {
+            setLayout(the_width, the_height, layout.getScale(), layout.getDeviceScale());
+            layout = myLayout;
+        }
+        validate(layout);
+        if (myBackground == null) {
+            myBackground = createBackground(layout);
+        }
+        if (layout.fits(the_width, the_height)) {
+            final double deviceScale = layout.getDeviceScale();
+            the_graphic.drawImage(myBackground, the_clip.x, the_clip.y,
+                                  the_clip.x + the_clip.width, the_clip.y + the_clip.height,
+                                  toPixels(the_clip.x, deviceScale),
+                                  toPixels(the_clip.y, deviceScale),
+                                  toPixels(the_clip.x + the_clip.width, deviceScale),
+                                  toPixels(the_clip.y + the_clip.height, deviceScale), null);
+        } else {
+            the_graphic.drawImage(myBackground, 0, 0, the_width, the_height, null);
+        }
+        the_graphic.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                                     RenderingHints.VALUE_ANTIALIAS_ON);
+        if (myHolidayEnabled) {
+            drawBoardFrame(the_graphic, layout, HOLIDAY_FRAME_COLORS[getHolidayTick()
+                                                             % HOLIDAY_FRAME_COLORS.length]);
+        }
+    }
+
+    /**
+     * Draws the paused message on the board.
+     *
+     * @param the_graphic the graphics2D object to be drawn on
+     */
+    void drawPaused(final Graphics2D the_graphic) {
+        final Point text = myRenderedLayout.getPausedText();
+        the_graphic.setFont(myPausedFont);
+        the_graphic.setColor(Color.WHITE);
+        the_graphic.drawString("*PAUSED*", text.x, text.y);
+    }
+
+    /**
+     * Draws frozen blocks, current block, level display and grid, visiting
+     * only the rows and columns in the viewport and skipping cells outside
+     * the clip.
+     *
+     * @param the_graphic the graphics2D object to be drawn on
+     * @param the_snapshot the state of the game to draw
+     * @param the_clip the area being drawn
+     * @param the_offset_x the horizontal pixel offset of the current piece
+     * @param the_offset_y the vertical pixel offset of the current piece
+     */
+    void drawGame(final Graphics2D the_graphic, final GameSnapshot the_snapshot,
+                  final Rectangle the_clip, final int the_offset_x, final int the_offset_y) {
+        final BoardLayout layout = myRenderedLayout;
+        final boolean holiday = myHolidayEnabled;
+        final int tick;
+        if (holiday) {
+            if (myHolidaySprites == null) {
+                myHolidaySprites = mySpriteCache.getHolidaySprites(layout.getScale(),
+                                                                   BLOCK_ROUNDING,
+                                                                   layout.getDeviceScale());
+            }
+            tick = getHolidayTick();
+        } else {
+            tick = 0;
+        }
+
+        //draw frozen blocks
+        final int firstColumn = layout.getFirstColumn(the_snapshot);
+        final int firstRow = layout.getFirstRow(the_snapshot);
+        final int endColumn = firstColumn + layout.getViewColumns();
+        final int endRow = Math.min(the_snapshot.getRowCount(),
+                                    firstRow + layout.getViewRows() + 1);
+        for (int row = firstRow; row < endRow; row++) {
+            if (!layout.isRowInClip(row - firstRow, 0, the_clip)) {
+                continue;
+            }
+            final Block[] blocks = the_snapshot.getRow(row);
+            for (int column = firstColumn; column < endColumn; column++) {
+                final Block block = blocks[column];
+                if (block == Block.EMPTY
+                        || !layout.isColumnInClip(column - firstColumn, 0, the_clip)) {
+                    continue;
+                }
+                if (holiday) {
+                    drawSprite(the_graphic, layout, getHolidaySprite(tick, column, row),
+                               column - firstColumn, row - firstRow, 0, 0);
+                } else {
+                    drawSprite(the_graphic, layout, myFrozenSprites[block.ordinal()],
+                               column - firstColumn, row - firstRow, 0, 0);
+                }
+            }
+        }
+
+        //draw current block
+        final BufferedImage currentSprite =
+                myPieceSprites[the_snapshot.getPieceBlock().ordinal()];
+
+        for (int i = 0; i < the_snapshot.getPieceSize(); i++) {
+            final int x = the_snapshot.getPieceCoordinate(i, 0);
+            final int y = the_snapshot.getPieceCoordinate(i, 1);
+            if (x < firstColumn || x >= endColumn || y < firstRow
+                    || !layout.isRowInClip(y - firstRow, the_offset_y, the_clip)
+                    || !layout.isColumnInClip(x - firstColumn, the_offset_x, the_clip)) {
+                continue;
+            }
+            if (holiday) {
+                drawSprite(the_graphic, layout, getHolidaySprite(tick, x, y), x - firstColumn,
+                           y - firstRow, the_offset_x, the_offset_y);
+            } else {
+                drawSprite(the_graphic, layout, currentSprite, x - firstColumn, y - firstRow,
+                           the_offset_x, the_offset_y);
+            }
+        }
+
+        //draw current level
+        final Rectangle bar = layout.getLevelBar();
+        final int fill = Math.max(0, Math.min(bar.width, (int) (bar.width
+                * ((double) the_snapshot.getLevelTicks() / the_snapshot.getTicksPerLevel()))));
+        if (myLevelFrame == null) {
+            myLevelFrame = createLevelBar(false);
+            myLevelFull = createLevelBar(true);
+        }
+        SpriteCache.drawLayer(the_graphic, myLevelFrame, bar.x - 1, bar.y - 1,
+                              bar.width + 3, bar.height + 3);
+        if (fill > 0) {
+            final int sourceFill = (int) Math.round((fill + 1) * myLevelFull.getWidth()
+                                                    / (double) (bar.width + 3));
+            the_graphic.drawImage(myLevelFull, bar.x - 1, bar.y - 1, bar.x + fill,
+                                  bar.y + bar.height + 2, 0, 0, sourceFill,
+                                  myLevelFull.getHeight(), null);
+        }
+
+        final Point text = layout.getLevelText();
+        the_graphic.setFont(myLevelFont);
+        the_graphic.setColor(Color.WHITE);
+        myLevelLabel.setValue(the_snapshot.getLevel());
+        myLevelLabel.draw(the_graphic, text.x, text.y);
+
+        //draw grid
+        if (myGridEnabled) {
+            final Rectangle well = layout.getWell();
+            the_graphic.setColor(GRID_COLOR);
+            for (int i = 1; i < layout.getViewColumns(); i++) {
+                the_graphic.drawLine(layout.getCellX(i), well.y, layout.getCellX(i),
+                                     well.y + well.height - 1);
+            }
+            for (int i = 0; i < layout.getViewRows(); i++) {
+                the_graphic.drawLine(well.x, layout.getCellY(i), well.x + well.width - 1,
+                                     layout.getCellY(i));
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the cached images, fonts and paints if the layout changed since
+     * they were made; nothing is allocated while the layout stays the same.
+     *
+     * @param the_layout the layout about to be drawn
+     */
+    private void validate(final BoardLayout the_layout) {
+        final BoardLayout rendered = myRenderedLayout;
+        if (the_layout == rendered) {
+            return;
+        }
+        myRenderedLayout = the_layout;
+        myBackground = null;
+        final int scale = the_layout.getScale();
+        final double deviceScale = the_layout.getDeviceScale();
+        if (rendered == null || rendered.getScale() != scale
+                || rendered.getDeviceScale() != deviceScale) {
+            myFrozenSprites = mySpriteCache.getSprites(scale, BLOCK_ROUNDING, true,
+                                                       deviceScale);
+            myPieceSprites = mySpriteCache.getSprites(scale, BLOCK_ROUNDING, false,
+                                                      deviceScale);
+            myHolidaySprites = null;
+            myPausedFont = new Font("Paused Font", Font.ITALIC, scale);
+            myLevelFont = new Font("Level Font", Font.BOLD, scale);
+            final Rectangle bar = the_layout.getLevelBar();
+            myLevelPaint = new GradientPaint(bar.x, bar.y, Color.GREEN.darker(),
+                                             bar.x + bar.width, bar.y + bar.height,
+                                             Color.RED.brighter());
+            myLevelFrame = null;
+            myLevelFull = null;
+        }
+    }
+
+    /**
+     * Composes the level display at the rendered scale with its bar empty or
+     * full; a partly filled bar is the empty one with the left of the full
+     * one drawn over it.
+     *
+     * @param the_full whether the bar is full
+     * @return the level display, drawn one pixel above and left of the bar
+     */
+    private BufferedImage createLevelBar(final boolean the_full) {
+        final Rectangle bar = myRenderedLayout.getLevelBar();
+        final double deviceScale = myRenderedLayout.getDeviceScale();
+        final BufferedImage result = SpriteCache.createLayer(bar.width + 3, bar.height + 3,
+                                                             deviceScale,
+                                                             Transparency.TRANSLUCENT);
+        final Graphics2D g2d = result.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                             RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.scale(deviceScale, deviceScale);
+        //keep the bar's own coordinates so the gradient lines up
+        g2d.translate(1 - bar.x, 1 - bar.y);
+        g2d.setColor(BOARD_EDGE_COLOR);
+        g2d.fillRoundRect(bar.x, bar.y, bar.width, bar.height,
+                          FRAME_ROUNDING, FRAME_ROUNDING);
+        if (the_full) {
+            g2d.setPaint(myLevelPaint);
+            g2d.fillRoundRect(bar.x, bar.y, bar.width, bar.height,
+                              FRAME_ROUNDING, FRAME_ROUNDING);
+        }
+        g2d.setColor(Color.WHITE);
+        g2d.drawRoundRect(bar.x, bar.y, bar.width, bar.height,
+                          FRAME_ROUNDING, FRAME_ROUNDING);
+        g2d.dispose();
+        return result;
+    }
+
+    /**
+     * Pre-composes the parts of the board that only change with its layout:
+     * the tiled background, the board frame and the overflow line.
+     *
+     * @param the_layout the layout to draw
+     * @return the background layer
+     */
+    private BufferedImage createBackground(final BoardLayout the_layout) {
+        final int width = Math.max(1, the_layout.getWidth());
+        final int height = Math.max(1, the_layout.getHeight());
+        final BufferedImage result = SpriteCache.createLayer(width, height,
+                                                             the_layout.getDeviceScale(),
+                                                             Transparency.OPAQUE);
+        final Graphics2D g2d = result.createGraphics();
+        g2d.scale(the_layout.getDeviceScale(), the_layout.getDeviceScale());
+        g2d.setColor(myBackgroundColor);
+        g2d.fillRect(0, 0, width, height);
+
+        //draw tiled background
+        final BufferedImage background = AssetManager.getImage(AssetManager.BACKGROUND);
+        final int imageWidth = background.getWidth();
+        final int imageHeight = background.getHeight();
+        for (int i = 0; i * imageWidth < width; i++) {
+            for (int j = 0; j * imageHeight < height; j++) {
+                g2d.drawImage(background, i * imageWidth, j * imageHeight, null);
+            }
+        }
+
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                             RenderingHints.VALUE_ANTIALIAS_ON);
+        drawBoardFrame(g2d, the_layout, BOARD_EDGE_COLOR);
+        g2d.dispose();
+        return result;
+    }
+
+    /**
+     * Draws the board's frame, its black background and the overflow line.
+     *
+     * @param the_graphic the graphics2D object to be drawn on
+     * @param the_layout the layout to draw
+     * @param the_edge_color the color of the frame
+     */
+    private void drawBoardFrame(final Graphics2D the_graphic, final BoardLayout the_layout,
+                                final Color the_edge_color) {
+        final Rectangle frame = the_layout.getFrame();
+        final Rectangle well = the_layout.getWell();
+        the_graphic.setColor(the_edge_color);
+        the_graphic.fillRoundRect(frame.x, frame.y, frame.width, frame.height,
+                                  FRAME_ROUNDING, FRAME_ROUNDING);
+        the_graphic.setColor(Color.BLACK);
+        the_graphic.fillRect(well.x, well.y, well.width, well.height);
+
+        //draw overflow, unless the viewport scrolls below the top of the board
+        if (the_layout.isTopShown()) {
+            the_graphic.setColor(OVERFLOW_LINE_COLOR);
+            final int overflow = the_layout.getOverflowY();
+            for (int i = 0; i < the_layout.getViewColumns(); i++) {
+                the_graphic.drawLine(the_layout.getCellX(i) + FIVE_PIXELS, overflow,
+                                     the_layout.getCellX(i + 1) - FIVE_PIXELS, overflow);
+            }
+        }
+    }
+
+    /**
+     * Blits a pre-rendered block into a board cell.
+     *
+     * @param the_graphic the graphics2D object to be drawn on
+     * @param the_layout the layout to draw
+     * @param the_sprite the block image
+     * @param the_x the column of the cell
+     * @param the_y the row of the cell, from the bottom
+     * @param the_offset_x the horizontal pixel offset
+     * @param the_offset_y the vertical pixel offset
+     */
+    private static void drawSprite(final Graphics2D the_graphic, final BoardLayout the_layout,
+                                   final BufferedImage the_sprite, final int the_x,
+                                   final int the_y, final int the_offset_x,
+                                   final int the_offset_y) {
+        SpriteCache.drawLayer(the_graphic, the_sprite,
+                              the_layout.getCellX(the_x) + SpriteCache.OFFSET + the_offset_x,
+                              the_layout.getCellY(the_y) + SpriteCache.OFFSET + the_offset_y,
+                              the_layout.getScale() + 2, the_layout.getScale() + 2);
+    }
+
+    /**
+     * Converts a user space coordinate to the pixels of a layer.
+     *
+     * @param the_value the coordinate in user space
+     * @param the_device_scale the number of device pixels per user space unit
+     * @return the coordinate in pixels
+     */
+    private static int toPixels(final int the_value, final double the_device_scale) {
+        return (int) Math.round(the_value * the_device_scale);
+    }
+
+    /**
+     * @return the number of holiday palette steps taken by the frame clock
+     */
+    private static int getHolidayTick() {
+        return (int) ((System.nanoTime() / HOLIDAY_STEP) & Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the sprite of a board cell in holiday mode: the palette color
+     * the clock has reached, offset by the cell's phase.
+     *
+     * @param the_tick the holiday palette steps taken by the frame clock
+     * @param the_x the column of the cell
+     * @param the_y the row of the cell, from the bottom
+     * @return the sprite
+     */
+    private BufferedImage getHolidaySprite(final int the_tick, final int the_x,
+                                           final int the_y) {
+        final int phase = myHolidayPhases[(Math.max(0, the_y) * myBoardWidth + the_x)
+                                          % myHolidayPhases.length];
+        return myHolidaySprites[(the_tick % myHolidaySprites.length + phase)
+                                % myHolidaySprites.length];
+    }
+}
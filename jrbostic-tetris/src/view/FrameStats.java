@@ -0,0 +1,158 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package view;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+
+import engine.GameSnapshot;
+import tools.LatencyHistogram;
+
+/**
+ * Frame timing for the debug overlay, enabled with -Dtetris.overlay=true.
+ * Records the interval between frames that show a new snapshot and the
+ * latency from a snapshot being published to it reaching the screen, and
+ * summarizes both every few seconds on screen and on standard output, so
+ * the passive and active rendering paths can be compared. Only the thread
+ * drawing frames uses this class.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+class FrameStats {
+
+    /**
+     * Whether the overlay was requested.
+     */
+    static final boolean ENABLED = Boolean.getBoolean("tetris.overlay");
+
+    /**
+     * The length of one summary window, in nanoseconds.
+     */
+    private static final long WINDOW = 5000000000L;
+
+    /**
+     * Intervals longer than this are idle time rather than frame time, in nanoseconds.
+     */
+    private static final long IDLE = 250000000L;
+
+    /**
+     * The font of the overlay.
+     */
+    private static final Font OVERLAY_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+
+    /**
+     * The line height of the overlay.
+     */
+    private static final int LINE_HEIGHT = 13;
+
+    /**
+     * The name of the rendering path measured.
+     */
+    private final String myPath;
+
+    /**
+     * The intervals between frames showing new snapshots.
+     */
+    private final LatencyHistogram myIntervals;
+
+    /**
+     * The latency from publication to presentation.
+     */
+    private final LatencyHistogram myLatency;
+
+    /**
+     * The lines of the last summary.
+     */
+    private final String[] mySummary;
+
+    /**
+     * The sequence of the last snapshot shown.
+     */
+    private long myLastSequence;
+
+    /**
+     * The time the last new snapshot was shown.
+     */
+    private long myLastFrame;
+
+    /**
+     * The start of the current window.
+     */
+    private long myWindowStart;
+
+    /**
+     * Constructs the statistics of one rendering path.
+     *
+     * @param the_path the name of the path, as shown in the summary
+     */
+    FrameStats(final String the_path) {
+        myPath = the_path;
+        myIntervals = new LatencyHistogram();
+        myLatency = new LatencyHistogram();
+        mySummary = new String[] {the_path + " collecting...", ""};
+        myLastSequence = -1;
+        myWindowStart = System.nanoTime();
+    }
+
+    /**
+     * Records a frame that has just been presented.
+     *
+     * @param the_snapshot the snapshot the frame showed
+     * @return true if a new summary is ready to draw
+     */
+    boolean frameShown(final GameSnapshot the_snapshot) {
+        final long now = System.nanoTime();
+        if (the_snapshot.getSequence() != myLastSequence) {
+            myLastSequence = the_snapshot.getSequence();
+            myLatency.record(now - the_snapshot.getTime());
+            if (myLastFrame != 0 && now - myLastFrame < IDLE) {
+                myIntervals.record(now - myLastFrame);
+            }
+            myLastFrame = now;
+        }
+        boolean result = false;
+        if (now - myWindowStart >= WINDOW) {
+            myWindowStart = now;
+            mySummary[0] = String.format("%s frame p50 %.2f p99 %.2f sd %.2f ms", myPath,
+                                         myIntervals.getPercentile(.5),
+                                         myIntervals.getPercentile(.99),
+                                         myIntervals.getStandardDeviation());
+            mySummary[1] = String.format("%s latency p50 %.2f p99 %.2f sd %.2f ms", myPath,
+                                         myLatency.getPercentile(.5),
+                                         myLatency.getPercentile(.99),
+                                         myLatency.getStandardDeviation());
+            System.out.println(mySummary[0]);
+            System.out.println(mySummary[1]);
+            myIntervals.reset();
+            myLatency.reset();
+            result = true;
+        }
+        return result;
+    }
+
+    /**
+     * Draws the last summary.
+     *
+     * @param the_graphic the graphics2D object to be drawn on
+     * @param the_x the left edge of the text
+     * @param the_y the top edge of the text
+     */
+    void draw(final Graphics2D the_graphic, final int the_x, final int the_y) {
+        the_graphic.setFont(OVERLAY_FONT);
+        the_graphic.setColor(Color.WHITE);
+        for (int i = 0; i < mySummary.length; i++) {
+            the_graphic.drawString(mySummary[i], the_x, the_y + (i + 1) * LINE_HEIGHT);
+        }
+    }
+
+    /**
+     * @return the height of the drawn summary
+     */
+    int getHeight() {
+        return (mySummary.length + 1) * LINE_HEIGHT;
+    }
+}
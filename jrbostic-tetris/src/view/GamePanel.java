@@ -4,35 +4,32 @@
 
 package view;
 
-import java.awt.Color;
+import java.awt.BorderLayout;
 import java.awt.Dimension;
-import java.awt.Font;
-import java.awt.GradientPaint;
+import java.awt.EventQueue;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.Image;
-import java.awt.RenderingHints;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
+import java.awt.Rectangle;
 import java.awt.event.ComponentEvent;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.Map;
 import java.util.Observable;
 import java.util.Observer;
 
-import javax.swing.ImageIcon;
 import javax.swing.JPanel;
-import javax.swing.Timer;
 
-import model.AbstractPiece;
-import model.Block;
-import model.Board;
-import model.Piece;
-import tools.ColorGenerator;
+import engine.GameCommand;
+import engine.GameSnapshot;
+import engine.Replay;
+import engine.SimulationListener;
+import engine.SimulationLoop;
+import scores.GameResult;
+import scores.ScoreStore;
 import tools.MusicPlayer;
 
 /**
@@ -51,55 +48,34 @@ public class GamePanel extends JPanel implements Observer {
     private static final Map<String, Integer> CONTROL_KEYS = new HashMap<String, Integer>();
     
     /**
-     * The initial timer delay controlling game speed.
+     * The mode the scores of games played here are kept under.
      */
-    private static final int START_DELAY = 1000;
+    public static final String SCORE_MODE = "marathon";
     
     /**
-     * The max levels supported for game.
+     * The width of the board whose scores are kept under SCORE_MODE.
      */
-    private static final int HIGHEST_LEVEL = 8;
+    public static final int STANDARD_WIDTH = 10;
     
     /**
-     * The quantifier used to meter timer delay decrement.
+     * The height of the board whose scores are kept under SCORE_MODE.
      */
-    private static final int FIRE_COUNT_QUANTIFIER = 60;
+    public static final int STANDARD_HEIGHT = 20;
     
     /**
-     * The background image for panel.
+     * The player the scores of games played here are kept for.
      */
-    private static final Image BACKGROUND_IMAGE = 
-            new ImageIcon("images/tetris.jpg").getImage();
+    public static final String PLAYER = System.getProperty("user.name", "player");
     
     /**
-     * The margin between left and top margins of panel and board.
+     * The number of nanoseconds in a millisecond.
      */
-    private static final int BOARD_COORD_ADJUST = 10;
+    private static final long NANOS_PER_MILLI = 1000000L;
     
     /**
-     * The color of play grid.
-     */
-    private static final Color GRID_COLOR = new Color(255, 255, 255, 25);
-    
-    /**
-     * The color of overflow line (game over marker).
-     */
-    private static final Color OVERFLOW_LINE_COLOR = new Color(255, 255, 255, 50);
-    
-    /**
-     * The color around edges of board and level display.
-     */
-    private static final Color BOARD_EDGE_COLOR = new Color(0, 0, 0, 175);
-    
-    /**
-     * The rounding of blocks.
-     */
-    private static final int BLOCK_ROUNDING = 5;
-    
-    /**
-     * The rounding of frames for board and level display.
+     * The max levels supported for game.
      */
-    private static final int FRAME_ROUNDING = 5;
+    private static final int HIGHEST_LEVEL = 8;
     
     /**
      * The ratio of scale to width.
@@ -112,64 +88,50 @@ public class GamePanel extends JPanel implements Observer {
     private static final int HEIGHT_RATIO = 26;
     
     /**
-     * Double representing 33 percent.
-     */
-    private static final double PERCENT_33 = .33;
-    
-    /**
-     * Double representing 75 percent.
-     */
-    private static final double PERCENT_75 = .75;
-    
-    /**
-     * Three pixels.
-     */
-    private static final int THREE_PIXELS = 3;
-    
-    /**
-     * Four pixels.
+     * The simulation running the game board off the EDT.
      */
-    private static final int FOUR_PIXELS = 4;
+    private final SimulationLoop mySimulation;
     
     /**
-     * Five pixels.
+     * The player controlling flow of music.
      */
-    private static final int FIVE_PIXELS = 5;
+    private final MusicPlayer myMusicPlayer;
     
     /**
-     * Nine pixels.
+     * The width of game board.
      */
-    private static final int NINE_PIXELS = 9;
+    private final int myBoardWidth;
     
     /**
-     * Ten pixels.
+     * The height of game board.
      */
-    private static final int TEN_PIXELS = 3;
+    private final int myBoardHeight;
     
     /**
-     * The game board.
+     * The mode the scores of games played here are kept under.
      */
-    private final Board myBoard;
+    private final String myScoreMode;
     
     /**
-     * The timer controlling game speed.
+     * The renderer drawing the board.
      */
-    private final Timer myTimer;
+    private final BoardRenderer myRenderer;
     
     /**
-     * The player controlling flow of music.
+     * The canvas drawing the board in active rendering mode, null when
+     * the board is painted by Swing.
      */
-    private final MusicPlayer myMusicPlayer;
+    private final ActiveGameCanvas myCanvas;
     
     /**
-     * The width of game board.
+     * The frame timing of passive painting, null when the overlay is off.
      */
-    private final int myBoardWidth;
+    private final FrameStats myStats;
     
     /**
-     * The height of game board.
+     * The store finished games are recorded in, null if they are not kept.
      */
-    private final int myBoardHeight;
+    private volatile ScoreStore myScores;
     
     /**
      * The key listener for an active game.
@@ -182,19 +144,9 @@ public class GamePanel extends JPanel implements Observer {
     private KeySmasher myPausedListener;
     
     /**
-     * The scale to which panel contents should be drawn.
+     * The area being repainted, reused on every paint.
      */
-    private int myScale;
-    
-    /**
-     * A count of timer firings on current level.
-     */
-    private int myTimeElapsed;
-    
-    /**
-     * The current level of game.
-     */
-    private int myLevel;
+    private final Rectangle myClip;
     
     /**
      * Holds whether game is paused.
@@ -202,37 +154,53 @@ public class GamePanel extends JPanel implements Observer {
     private boolean myIsPaused;
     
     /**
-     * Holds whether grid is enabled.
-     */
-    private boolean myGridEnabled;
-    
-    /**
-     * Holds whether holiday mode enabled.
+     * Holds whether the simulation has been started.
      */
-    private boolean myHolidayEnabled;
+    private boolean myIsStarted;
     
     /**
-     * Holds currently active piece.
+     * Holds whether the current game is over.
      */
-    private Piece myCurrentPiece;
+    private boolean myIsGameOver;
     
     /**
      * Constructor for game board and panel.
      * 
      * @param the_width the block width of game board
      * @param the_height the block height of game board
+     * @param the_sprites the cache of pre-rendered blocks
      */
-    public GamePanel(final int the_width, final int the_height) {
+    public GamePanel(final int the_width, final int the_height, 
+                     final SpriteCache the_sprites) {
         myBoardWidth = the_width;
         myBoardHeight = the_height;
-        myBoard = new Board(myBoardWidth, myBoardHeight, new LinkedList<Piece>());
-        myBoard.addObserver(this);
+        if (the_width == STANDARD_WIDTH && the_height == STANDARD_HEIGHT) {
+            myScoreMode = SCORE_MODE;
+        } else {
+            myScoreMode = SCORE_MODE + "-" + the_width + "x" + the_height;
+        }
+        myRenderer = new BoardRenderer(myBoardWidth, myBoardHeight, the_sprites, 
+                                       getBackground());
+        myClip = new Rectangle();
+        mySimulation = new SimulationLoop(myBoardWidth, myBoardHeight);
+        mySimulation.setListener(new SimulationEvents());
         
-        myTimer = new Timer(START_DELAY, new TickListener());
         myMusicPlayer = new MusicPlayer();
         setupGameState();
         
-        myScale = myBoardHeight;
+        if (Boolean.getBoolean("tetris.active")) {
+            myCanvas = new ActiveGameCanvas(myRenderer, mySimulation);
+            setLayout(new BorderLayout());
+            add(myCanvas, BorderLayout.CENTER);
+            myStats = null;
+        } else {
+            myCanvas = null;
+            if (FrameStats.ENABLED) {
+                myStats = new FrameStats("passive");
+            } else {
+                myStats = null;
+            }
+        }
     }
     
     /**
@@ -243,31 +211,38 @@ public class GamePanel extends JPanel implements Observer {
         myPlayListener = new KeySmasher();
         myPausedListener = myPlayListener.getPauseListener();
         addKeyListener(myPlayListener);
-        myGridEnabled = false;
-        myHolidayEnabled = false;        
-        myTimeElapsed = 0;
-        myLevel = 1;
+        addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(final FocusEvent the_event) {
+                autoPause();
+            }
+        });
     }
     
     /**
      * Method to start a newly constructed game.
      */
     public void start() {
-        myCurrentPiece = myBoard.getCurrentPiece();
-        myTimer.start();
+        if (!myIsStarted) {
+            myIsStarted = true;
+            mySimulation.start();
+            if (myCanvas != null) {
+                myCanvas.setStarted(true);
+            }
+        }
         myMusicPlayer.start();
+        repaint();
     }
     
     /**
      * Method to clear old and start a new game.
      */
     public void newGame() {
-        myTimeElapsed = 0;
-        myLevel = 1;
-        myBoard.newGame(myBoardWidth, myBoardHeight, new LinkedList<Piece>());
+        mySimulation.newGame();
         myMusicPlayer.reset();
-        myIsPaused = false;
-        myTimer.setDelay(START_DELAY);
+        setPaused(false);
+        myIsGameOver = false;
+        mySimulation.setPaused(false);
         removeKeyListener(myPausedListener);
         removeKeyListener(myPlayListener);
         addKeyListener(myPlayListener);
@@ -286,22 +261,65 @@ public class GamePanel extends JPanel implements Observer {
      * Method to pause game.
      */
     public void pause() {
-        if (myTimer.isRunning() && !myIsPaused) {
-            myTimer.stop();
+        if (myIsStarted && !myIsGameOver && !myIsPaused) {
+            mySimulation.setPaused(true);
             addKeyListener(myPausedListener);
             removeKeyListener(myPlayListener);
-            myIsPaused = true;
+            setPaused(true);
             myMusicPlayer.pause();
-            update((Observable) myBoard, null);
-        } else if (!myBoard.isGameOver() && myIsPaused) {
-            myTimer.start();
+            repaint();
+        } else if (!myIsGameOver && myIsPaused) {
+            mySimulation.setPaused(false);
             addKeyListener(myPlayListener);
             removeKeyListener(myPausedListener);
             myMusicPlayer.resume();
-            myIsPaused = false;
+            setPaused(false);
+            repaint();
+        }
+    }
+    
+    /**
+     * Records whether the game is paused, for whichever path draws the board.
+     * 
+     * @param the_paused whether the game is paused
+     */
+    private void setPaused(final boolean the_paused) {
+        myIsPaused = the_paused;
+        if (myCanvas != null) {
+            myCanvas.setPaused(the_paused);
         }
     }
     
+    /**
+     * Method to set the auto repeat of held movement keys.
+     * 
+     * @param the_delay the delay before a held key repeats, in milliseconds
+     * @param the_rate the interval between repeats in milliseconds; 0 slides to the wall
+     */
+    public void setAutoShift(final int the_delay, final int the_rate) {
+        mySimulation.setAutoShift(the_delay, the_rate);
+    }
+    
+    /**
+     * Method to set the time a piece resting on the stack waits before it locks.
+     * 
+     * @param the_delay the lock delay in milliseconds; 0 locks pieces as they land
+     */
+    public void setLockDelay(final int the_delay) {
+        mySimulation.setLockDelay(the_delay);
+    }
+    
+    /**
+     * Query to obtain the mode the scores of games played here are kept
+     * under: SCORE_MODE on the standard board, with the size appended on
+     * any other.
+     * 
+     * @return the score mode
+     */
+    public String getScoreMode() {
+        return myScoreMode;
+    }
+    
     /**
      * Method to enable/disable sound.
      * 
@@ -309,7 +327,7 @@ public class GamePanel extends JPanel implements Observer {
      */
     public void enableSound(final boolean the_enabler) {
         myMusicPlayer.setEnabled(the_enabler);
-        if (!myBoard.isGameOver() && !myIsPaused) {
+        if (!myIsGameOver && !myIsPaused) {
             myMusicPlayer.resume();
         }
     }
@@ -320,7 +338,8 @@ public class GamePanel extends JPanel implements Observer {
      * @param the_enabler whether grid should be enabled
      */
     public void enableGrid(final boolean the_enabler) {
-        myGridEnabled = the_enabler;
+        myRenderer.setGridEnabled(the_enabler);
+        repaint();
     }
     
     /**
@@ -329,7 +348,7 @@ public class GamePanel extends JPanel implements Observer {
      * @param the_enabler whether holiday mode should be enabled
      */
     public void enableHoliday(final boolean the_enabler) {
-        myHolidayEnabled = the_enabler;
+        myRenderer.setHolidayEnabled(the_enabler);
     }
     
     /**
@@ -347,7 +366,25 @@ public class GamePanel extends JPanel implements Observer {
      * @param the_ob the observer to add to board
      */
     public void addGameObserver(final Observer the_ob) {
-        myBoard.addObserver(the_ob);
+        mySimulation.addBoardObserver(the_ob);
+    }
+    
+    /**
+     * Sets the store the result of each finished game is recorded in.
+     * 
+     * @param the_scores the store, null to keep no scores
+     */
+    public void setScoreStore(final ScoreStore the_scores) {
+        myScores = the_scores;
+    }
+    
+    /**
+     * Records the current game so far, or the last game once it is over.
+     * 
+     * @return the replay
+     */
+    public Replay getReplay() {
+        return mySimulation.getReplay();
     }
     
     /**
@@ -368,153 +405,31 @@ public class GamePanel extends JPanel implements Observer {
      */
     @Override
     public void paintComponent(final Graphics the_graphic) {
-        super.paintComponent(the_graphic);
-        final Graphics2D g2d = (Graphics2D) the_graphic;
-        
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, 
-                             RenderingHints.VALUE_ANTIALIAS_ON);
-        
-        //draw tiled background
-        final int imageWidth = BACKGROUND_IMAGE.getWidth(this);
-        final int imageHeight = BACKGROUND_IMAGE.getHeight(this);
-        final int panelWidth = getWidth();
-        final int panelHeight = getHeight();
-        for (int i = 0; i * imageWidth < panelWidth; i++) {
-            for (int j = 0; j * imageHeight < panelHeight; j++) {
-                g2d.drawImage(BACKGROUND_IMAGE, i * imageWidth, j * imageHeight, this);
-            }
+        if (myCanvas != null) {
+            return;
         }
+        final Graphics2D g2d = (Graphics2D) the_graphic;
+        //the bounds are left whole when nothing is clipped
+        myClip.setBounds(0, 0, getWidth(), getHeight());
+        g2d.getClipBounds(myClip);
+        myRenderer.drawBackground(g2d, getWidth(), getHeight(), myClip);
         
-        //draw background
-        if (myHolidayEnabled) {
-            g2d.setColor(ColorGenerator.generateColor().brighter());
-        } else {
-            g2d.setColor(BOARD_EDGE_COLOR);
-        }
-        g2d.fillRoundRect(BOARD_COORD_ADJUST - FOUR_PIXELS, BOARD_COORD_ADJUST, 
-                          myBoardWidth * myScale + NINE_PIXELS, 
-                          (myBoardHeight + 1) * myScale + FIVE_PIXELS, 
-                          FRAME_ROUNDING, FRAME_ROUNDING);
-        g2d.setColor(Color.BLACK);
-        g2d.fillRect(BOARD_COORD_ADJUST, BOARD_COORD_ADJUST, myBoardWidth * myScale + 1, 
-                     (myBoardHeight + 1) * myScale + 1);
-        
-        if (!myIsPaused && myCurrentPiece != null) {
+        if (!myIsPaused && myIsStarted) {
             
-            drawGameInProgress(g2d);
+            final GameSnapshot snapshot = mySimulation.getSnapshot();
+            myRenderer.drawGame(g2d, snapshot, myClip, 0, 0);
+            Startup.frameShown();
+            if (myStats != null && myStats.frameShown(snapshot)) {
+                repaint(0, 0, getWidth(), myStats.getHeight());
+            }
             
         } else if (myIsPaused) { //if paused, draw on board
-            g2d.setFont(new Font("Paused Font", Font.ITALIC, myScale));
-            g2d.setColor(Color.WHITE);
-            g2d.drawString("*PAUSED*", myScale * THREE_PIXELS, 
-                           myScale * THREE_PIXELS * TEN_PIXELS);
+            myRenderer.drawPaused(g2d);
         }
-        
-    }
-    
-    /**
-     * Draws frozen blocks, current block, level display and grid.
-     * 
-     * @param the_graphic the graphics2D object to be drawn on
-     */
-    private void drawGameInProgress(final Graphics2D the_graphic) {
-        //draw frozen blocks
-        int row = 0;
-        for (Block[] b : myBoard.getFrozenBlocks()) {
-            int column = 0;
-            for (Block block : b) {
-                if (myHolidayEnabled && block != Block.EMPTY) {
-                    the_graphic.setColor(ColorGenerator.generateColor());
-                } else {
-                    the_graphic.setColor(block.getColor().darker());
-                }
-                the_graphic.fillRoundRect(BOARD_COORD_ADJUST + column * myScale, 
-                                  BOARD_COORD_ADJUST + (myBoardHeight - row) 
-                                  * myScale, myScale, myScale, BLOCK_ROUNDING, 
-                                  BLOCK_ROUNDING);
-                the_graphic.setColor(Color.BLACK);
-                the_graphic.drawRoundRect(BOARD_COORD_ADJUST + column * myScale, 
-                                  BOARD_COORD_ADJUST + (myBoardHeight - row)
-                                  * myScale, myScale, myScale, BLOCK_ROUNDING, 
-                                  BLOCK_ROUNDING);
-                column++;
-            }
-            row++;
-        }  
-        
-        //draw current block
-        final Piece p = myBoard.getCurrentPiece();
-        final int[][] piece = ((AbstractPiece) p).getBoardCoordinates();
-        final Color currentColor = ((AbstractPiece) p).getBlock().getColor();
-        
-        for (int[] block : piece) {
-            if (myHolidayEnabled) {
-                the_graphic.setColor(ColorGenerator.generateColor());
-            } else {
-                the_graphic.setColor(currentColor);
-            }
-            the_graphic.fillRoundRect(BOARD_COORD_ADJUST + block[0] * myScale, 
-                                      BOARD_COORD_ADJUST + (myBoardHeight - block[1]) 
-                                      * myScale, myScale, myScale, BLOCK_ROUNDING, 
-                                      BLOCK_ROUNDING);  
-            the_graphic.setColor(Color.BLACK);
-            the_graphic.drawRoundRect(BOARD_COORD_ADJUST + block[0] * myScale, 
-                                      BOARD_COORD_ADJUST + (myBoardHeight - block[1]) 
-                                      * myScale, myScale, myScale, BLOCK_ROUNDING, 
-                                      BLOCK_ROUNDING);
-        }  
-        
-        //draw current level
-        the_graphic.setColor(BOARD_EDGE_COLOR);
-        the_graphic.fillRoundRect(BOARD_COORD_ADJUST * (int) (myScale * PERCENT_33) - 2, 
-                          2 * (BOARD_COORD_ADJUST + 1) + (myBoardHeight + 1) 
-                          * myScale, FOUR_PIXELS * (myScale + 1), 
-                          myScale + 2, FRAME_ROUNDING, FRAME_ROUNDING);
-        the_graphic.setPaint(new GradientPaint(BOARD_COORD_ADJUST 
-                      * (int) (myScale * PERCENT_33) - 2, 2 * (BOARD_COORD_ADJUST + 1) 
-                      + (myBoardHeight + 1) * myScale, Color.GREEN.darker(), 
-                      BOARD_COORD_ADJUST * (int) (myScale * PERCENT_33) + FOUR_PIXELS 
-                      * (myScale + 1) - 2, 2 * BOARD_COORD_ADJUST + myBoard.getHeight() 
-                      * myScale + myScale + 2 + myScale + 2, Color.RED.brighter()));
-        the_graphic.fillRoundRect(BOARD_COORD_ADJUST * (int) (myScale * PERCENT_33) - 2, 
-                          2 * BOARD_COORD_ADJUST + myBoardHeight * myScale 
-                          + myScale + 2, (int) ((FOUR_PIXELS * (myScale + 1)) 
-                          * ((double) myTimeElapsed / (myLevel * FIRE_COUNT_QUANTIFIER))), 
-                          myScale + 2, FRAME_ROUNDING, FRAME_ROUNDING);
-        the_graphic.setColor(Color.WHITE);
-        the_graphic.drawRoundRect(BOARD_COORD_ADJUST * (int) (myScale * PERCENT_33) - 2, 
-                          2 * BOARD_COORD_ADJUST + myBoardHeight * myScale 
-                          + myScale + 2, FOUR_PIXELS * (myScale + 1), myScale + 2, 
-                          FRAME_ROUNDING, FRAME_ROUNDING);
-        
-        the_graphic.setFont(new Font("Level Font", Font.BOLD, myScale));
-        the_graphic.setColor(Color.WHITE);
-        the_graphic.drawString("LEVEL " + myLevel, BOARD_COORD_ADJUST 
-                       * (int) (myScale * PERCENT_33), 2 * BOARD_COORD_ADJUST 
-                       + myBoardHeight * myScale + 2 * myScale);
-        
-        //draw overflow
-        the_graphic.setColor(OVERFLOW_LINE_COLOR);
-        for (int i = 0; i < myBoardWidth; i++) {
-            the_graphic.drawLine(BOARD_COORD_ADJUST + myScale * i + FIVE_PIXELS, 
-                         BOARD_COORD_ADJUST + myScale, BOARD_COORD_ADJUST + myScale 
-                         * (i + 1) - FIVE_PIXELS, BOARD_COORD_ADJUST + myScale);
+        if (myStats != null) {
+            myStats.draw(g2d, 2, 0);
         }
         
-        //draw grid
-        if (myGridEnabled) {
-            the_graphic.setColor(GRID_COLOR);
-            for (int i = 1; i < myBoardWidth; i++) {
-                the_graphic.drawLine(BOARD_COORD_ADJUST + myScale * i, BOARD_COORD_ADJUST, 
-                             BOARD_COORD_ADJUST + myScale * i, BOARD_COORD_ADJUST 
-                             + myBoardHeight * myScale + myScale);
-            }
-            for (int i = 1; i <= myBoardHeight; i++) {
-                the_graphic.drawLine(BOARD_COORD_ADJUST, BOARD_COORD_ADJUST + myScale * i, 
-                             BOARD_COORD_ADJUST + myBoardWidth * myScale, 
-                             BOARD_COORD_ADJUST + myScale * i);
-            }
-        }
     }
     
     /**
@@ -530,58 +445,217 @@ public class GamePanel extends JPanel implements Observer {
         if (the_observer instanceof TetrisGame) {
             final Dimension currentSize = 
                     ((ComponentEvent) the_object).getComponent().getSize();
-            final double width = currentSize.getWidth();
-            final double height = currentSize.getHeight();
-            if (width < height) {
-                myScale = (int) width / WIDTH_RATIO;
-            } else {
-                myScale = (int) height / HEIGHT_RATIO - 1;
-            }
-        }
-        if (!this.isFocusOwner() && !myIsPaused && myTimeElapsed > 0 
-                && !myBoard.isGameOver()) {
-            pause();
+            myRenderer.setLayout(getWidth(), getHeight(), 
+                                 getScale(currentSize.getWidth(), currentSize.getHeight()), 
+                                 SpriteCache.getDeviceScale(getGraphicsConfiguration()));
         }
+        autoPause();
         
         repaint();
         
     }
     
     /**
-     * Class to for listening to timer and performing appropriate action on each firing.
+     * Returns the width and height of a cell in a game frame.
+     * 
+     * @param the_width the width of the frame
+     * @param the_height the height of the frame
+     * @return the scale
+     */
+    static int getScale(final double the_width, final double the_height) {
+        final int result;
+        if (the_width < the_height) {
+            result = (int) the_width / WIDTH_RATIO;
+        } else {
+            result = (int) the_height / HEIGHT_RATIO - 1;
+        }
+        return result;
+    }
+    
+    /**
+     * Pauses a game in progress once the panel no longer has focus.
+     */
+    private void autoPause() {
+        if (!this.isFocusOwner() && !myIsPaused && !myIsGameOver 
+                && mySimulation.getSnapshot().getLevelTicks() > 0) {
+            pause();
+        }
+    }
+    
+    /**
+     * Class for responding to events from the simulation thread.
      * 
      * @author Jesse Bostic
      * @version Autumn 2013
      */
-    private class TickListener implements ActionListener {
+    private class SimulationEvents implements SimulationListener {
+        
+        /**
+         * The snapshot whose changes were last handed to the repaint manager;
+         * touched only by the simulation thread.
+         */
+        private GameSnapshot myLastFrame;
+        
+        /**
+         * The bounds of the area changed since the last snapshot.
+         */
+        private final Rectangle myDirty = new Rectangle();
         
         /**
-         * Determines what should be done at each firing of timer.
+         * A changed part of the board.
+         */
+        private final Rectangle myChange = new Rectangle();
+        
+        /**
+         * Repaints only the parts of the board that differ from the previous
+         * snapshot: rows replaced by a freeze or a clear, the cells the
+         * current piece left and entered, and the level display. Only the
+         * rows in the viewport are compared; a viewport that scrolled
+         * repaints everything.
+         * 
+         * {@inheritDoc}
+         */
+        @Override
+        public void framePublished() {
+            final GameSnapshot current = mySimulation.getSnapshot();
+            final GameSnapshot previous = myLastFrame;
+            myLastFrame = current;
+            if (myCanvas != null) {
+                return;
+            }
+            final BoardLayout layout = myRenderer.getLayout();
+            //a resize waiting to be laid out redraws everything anyway
+            if (previous == null || myRenderer.isHolidayEnabled() 
+                    || !layout.fits(getWidth(), getHeight())
+                    || layout.getFirstColumn(previous) != layout.getFirstColumn(current)
+                    || layout.getFirstRow(previous) != layout.getFirstRow(current)) {
+                repaint();
+                return;
+            }
+            myDirty.setBounds(0, 0, 0, 0);
+            final int firstColumn = layout.getFirstColumn(current);
+            final int firstRow = layout.getFirstRow(current);
+            final int rows = Math.min(Math.max(previous.getRowCount(), current.getRowCount()), 
+                                      firstRow + layout.getViewRows() + 1);
+            for (int row = firstRow; row < rows; row++) {
+                if (row >= previous.getRowCount() || row >= current.getRowCount() 
+                        || previous.getRow(row) != current.getRow(row)) {
+                    addDirtyCells(layout, 0, row - firstRow, layout.getViewColumns());
+                }
+            }
+            if (!isSamePiece(previous, current)) {
+                for (int i = 0; i < previous.getPieceSize(); i++) {
+                    addDirtyCells(layout, previous.getPieceCoordinate(i, 0) - firstColumn, 
+                                  previous.getPieceCoordinate(i, 1) - firstRow, 1);
+                }
+                for (int i = 0; i < current.getPieceSize(); i++) {
+                    addDirtyCells(layout, current.getPieceCoordinate(i, 0) - firstColumn, 
+                                  current.getPieceCoordinate(i, 1) - firstRow, 1);
+                }
+            }
+            if (previous.getLevelTicks() != current.getLevelTicks() 
+                    || previous.getLevel() != current.getLevel()) {
+                layout.getLevelBounds(myChange);
+                addDirty(myChange);
+            }
+            if (!myDirty.isEmpty()) {
+                repaint(myDirty.x, myDirty.y, myDirty.width, myDirty.height);
+            }
+        }
+        
+        /**
+         * Query as to whether the current piece is unchanged between snapshots.
+         * 
+         * @param the_previous the earlier snapshot
+         * @param the_current the later snapshot
+         * @return true if the piece has the same type and cells in both
+         */
+        private boolean isSamePiece(final GameSnapshot the_previous, 
+                                    final GameSnapshot the_current) {
+            boolean result = the_previous.getPieceBlock() == the_current.getPieceBlock()
+                    && the_previous.getPieceSize() == the_current.getPieceSize();
+            for (int i = 0; result && i < the_current.getPieceSize(); i++) {
+                result = the_previous.getPieceCoordinate(i, 0) 
+                         == the_current.getPieceCoordinate(i, 0)
+                         && the_previous.getPieceCoordinate(i, 1) 
+                         == the_current.getPieceCoordinate(i, 1);
+            }
+            return result;
+        }
+        
+        /**
+         * Adds a run of viewport cells in one row to the changed area.
+         * 
+         * @param the_layout the layout the board is drawn with
+         * @param the_column the leftmost column of the viewport
+         * @param the_row the row of the viewport, from the bottom
+         * @param the_count the number of cells
+         */
+        private void addDirtyCells(final BoardLayout the_layout, final int the_column, 
+                                   final int the_row, final int the_count) {
+            the_layout.getCellBounds(the_column, the_row, the_count, myChange);
+            addDirty(myChange);
+        }
+        
+        /**
+         * Adds a rectangle to the changed area.
+         * 
+         * @param the_change the changed rectangle
+         */
+        private void addDirty(final Rectangle the_change) {
+            if (myDirty.isEmpty()) {
+                myDirty.setBounds(the_change);
+            } else {
+                myDirty.add(the_change);
+            }
+        }
+        
+        /**
+         * Advances the music on the EDT.
          * 
          * {@inheritDoc}
          * 
-         * @param the_event the timer firing event
+         * @param the_level the new level
          */
         @Override
-        public void actionPerformed(final ActionEvent the_event) {
-            if (!myBoard.isGameOver()) { 
-                myBoard.step();
-                myTimeElapsed++;
-                if (myTimeElapsed == (myLevel * FIRE_COUNT_QUANTIFIER)) { 
-                    myTimeElapsed = 0;
-                    myLevel++;
-                    myTimer.setDelay((int) (myTimer.getDelay() * PERCENT_75));
-                    if (myLevel <= HIGHEST_LEVEL) {
+        public void levelUp(final int the_level) {
+            EventQueue.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    if (the_level <= HIGHEST_LEVEL) {
                         myMusicPlayer.levelUp();
                     }
                 }
-            } else {
-                myTimer.stop();
-                myMusicPlayer.gameOver();
-                for (KeyListener l : getKeyListeners()) {
-                    removeKeyListener(l);
+            });
+        }
+        
+        /**
+         * Records the result of the game, then ends the game on the EDT.
+         * 
+         * {@inheritDoc}
+         */
+        @Override
+        public void gameOver() {
+            final ScoreStore scores = myScores;
+            if (scores != null) {
+                final GameSnapshot last = mySimulation.getSnapshot();
+                final Replay replay = mySimulation.getReplay();
+                scores.record(new GameResult(myScoreMode, PLAYER, last.getScore(), 
+                                             last.getLines(), last.getPieces(), 
+                                             last.getLevel(), replay.getLength() 
+                                             * SimulationLoop.STEP / NANOS_PER_MILLI, 
+                                             replay.getId(), System.currentTimeMillis()));
+            }
+            EventQueue.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    myIsGameOver = true;
+                    myMusicPlayer.gameOver();
+                    for (KeyListener l : getKeyListeners()) {
+                        removeKeyListener(l);
+                    }
                 }
-            }         
+            });
         }
         
     }
@@ -673,20 +747,42 @@ public class GamePanel extends JPanel implements Observer {
         @Override
         public void keyPressed(final KeyEvent the_event) {
             if (the_event.getKeyCode() == CONTROL_KEYS.get(LEFT)) {
-                myBoard.moveLeft();
+                mySimulation.press(GameCommand.LEFT);
             } else if (the_event.getKeyCode() == CONTROL_KEYS.get(RIGHT)) {
-                myBoard.moveRight();
+                mySimulation.press(GameCommand.RIGHT);
             } else if (the_event.getKeyCode() == CONTROL_KEYS.get(DOWN)) {
-                myBoard.moveDown();
+                mySimulation.press(GameCommand.DOWN);
             } else if (the_event.getKeyCode() == CONTROL_KEYS.get(DROP)) {
-                myBoard.hardDrop();
+                mySimulation.press(GameCommand.DROP);
             } else if (the_event.getKeyCode() == CONTROL_KEYS.get(ROTATE)) {
-                myBoard.rotate();
+                mySimulation.press(GameCommand.ROTATE);
             } else if (the_event.getKeyCode() == CONTROL_KEYS.get(PAUSE)) {  
                 pause();
             } 
         }
         
+        /**
+         * Tells the simulation a control key was let go, so it stops repeating.
+         * 
+         * {@inheritDoc}
+         * 
+         * @param the_event the key release event to be analyzed
+         */
+        @Override
+        public void keyReleased(final KeyEvent the_event) {
+            if (the_event.getKeyCode() == CONTROL_KEYS.get(LEFT)) {
+                mySimulation.release(GameCommand.LEFT);
+            } else if (the_event.getKeyCode() == CONTROL_KEYS.get(RIGHT)) {
+                mySimulation.release(GameCommand.RIGHT);
+            } else if (the_event.getKeyCode() == CONTROL_KEYS.get(DOWN)) {
+                mySimulation.release(GameCommand.DOWN);
+            } else if (the_event.getKeyCode() == CONTROL_KEYS.get(DROP)) {
+                mySimulation.release(GameCommand.DROP);
+            } else if (the_event.getKeyCode() == CONTROL_KEYS.get(ROTATE)) {
+                mySimulation.release(GameCommand.ROTATE);
+            }
+        }
+        
         /**
          * Class for handling key controls while game is paused.
          * 
@@ -0,0 +1,277 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package view;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.swing.UIManager;
+
+import engine.Replay;
+import engine.ReplayPlayer;
+
+/**
+ * Renders a saved replay to a numbered sequence of PNG images without a
+ * display; run it with -Djava.awt.headless=true. Each frame shows the game
+ * board and the statistics panel side by side, drawn by the same code as the
+ * game window.
+ *
+ * <p>The frames are split into runs rendered in parallel, one worker per core.
+ * A worker plays the replay from its start up to its run, which costs far less
+ * than drawing and encoding the frames it skips, then renders its frames into
+ * a single reused image, so memory stays at one image per worker however long
+ * the replay is.
+ *
+ * <p>Arguments: replay file, output directory, [steps per frame] [workers].
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+public final class ReplayExporter {
+
+    /**
+     * The default number of simulation steps per frame; 30 frames a second.
+     */
+    private static final int DEFAULT_STEPS_PER_FRAME = 2;
+
+    /**
+     * The width of each panel in a frame.
+     */
+    private static final int PANEL_WIDTH = 320;
+
+    /**
+     * The height of a frame.
+     */
+    private static final int FRAME_HEIGHT = 640;
+
+    /**
+     * The PNG compression quality; favors encoding speed over a few percent
+     * of file size, as encoding takes most of the time of a frame.
+     */
+    private static final float COMPRESSION_QUALITY = .8f;
+
+    /**
+     * The number of runs each worker's share of frames is split into, so
+     * workers that finish early can take another.
+     */
+    private static final int RUNS_PER_WORKER = 4;
+
+    /**
+     * The block blits and images shared by every worker.
+     */
+    private final SpriteCache mySprites;
+
+    /**
+     * The replay to render.
+     */
+    private final Replay myReplay;
+
+    /**
+     * The directory the frames are written to.
+     */
+    private final File myDirectory;
+
+    /**
+     * The number of simulation steps per frame.
+     */
+    private final int myStepsPerFrame;
+
+    /**
+     * Sets up an export.
+     *
+     * @param the_replay the replay to render
+     * @param the_directory the directory the frames are written to
+     * @param the_steps_per_frame the number of simulation steps per frame
+     */
+    public ReplayExporter(final Replay the_replay, final File the_directory,
+                          final int the_steps_per_frame) {
+        myReplay = the_replay;
+        myDirectory = the_directory;
+        myStepsPerFrame = Math.max(1, the_steps_per_frame);
+        mySprites = new SpriteCache();
+    }
+
+    /**
+     * Renders a replay file.
+     *
+     * @param the_args the replay file, the output directory, and optionally
+     *                 the steps per frame and the number of workers
+     * @throws Exception if the replay cannot be read or a frame cannot be written
+     */
+    public static void main(final String[] the_args) throws Exception {
+        if (the_args.length < 2) {
+            System.err.println("usage: ReplayExporter replay directory "
+                               + "[steps per frame] [workers]");
+            System.exit(1);
+        }
+        final Replay replay;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(the_args[0]))) {
+            replay = Replay.read(in);
+        }
+        int stepsPerFrame = DEFAULT_STEPS_PER_FRAME;
+        if (the_args.length > 2) {
+            stepsPerFrame = Integer.parseInt(the_args[2]);
+        }
+        int workers = Runtime.getRuntime().availableProcessors();
+        if (the_args.length > 3) {
+            workers = Integer.parseInt(the_args[3]);
+        }
+
+        final long start = System.nanoTime();
+        final int frames = new ReplayExporter(replay, new File(the_args[1]), stepsPerFrame)
+                .export(workers);
+        System.out.printf("%d frames written in %.1f s%n", frames,
+                          (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Renders every frame of the replay.
+     *
+     * @param the_workers the number of frames rendered at once
+     * @return the number of frames written
+     * @throws IOException if the directory cannot be made or a frame cannot be written
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public int export(final int the_workers) throws IOException, InterruptedException {
+        if (!myDirectory.isDirectory() && !myDirectory.mkdirs()) {
+            throw new IOException("cannot create " + myDirectory);
+        }
+        //frames are encoded in memory rather than through temporary files
+        ImageIO.setUseCache(false);
+
+        //the last frame shows the end of the replay, even between frame steps
+        final int frames = (myReplay.getLength() + myStepsPerFrame - 1) / myStepsPerFrame + 1;
+        final int workers = Math.max(1, the_workers);
+        final int runLength = Math.max(1, (frames + workers * RUNS_PER_WORKER - 1)
+                                          / (workers * RUNS_PER_WORKER));
+        final ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            final List<Future<Void>> runs = new ArrayList<>();
+            for (int first = 0; first < frames; first += runLength) {
+                runs.add(pool.submit(new Run(first, Math.min(frames, first + runLength))));
+            }
+            for (Future<Void> run : runs) {
+                run.get();
+            }
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return frames;
+    }
+
+    /**
+     * A run of consecutive frames rendered by one worker.
+     *
+     * @author Jesse Bostic
+     * @version Autumn 2013
+     */
+    private final class Run implements Callable<Void> {
+
+        /**
+         * The first frame of the run.
+         */
+        private final int myFirst;
+
+        /**
+         * The frame after the last of the run.
+         */
+        private final int myEnd;
+
+        /**
+         * Constructs a run.
+         *
+         * @param the_first the first frame of the run
+         * @param the_end the frame after the last of the run
+         */
+        Run(final int the_first, final int the_end) {
+            myFirst = the_first;
+            myEnd = the_end;
+        }
+
+        /**
+         * Plays the replay up to the run, then renders and writes its frames.
+         *
+         * {@inheritDoc}
+         */
+        @Override
+        public Void call() throws IOException {
+            final Color background = UIManager.getColor("Panel.background");
+            final BoardRenderer renderer = new BoardRenderer(myReplay.getWidth(),
+                                                             myReplay.getHeight(), mySprites,
+                                                             background);
+            renderer.setLayout(PANEL_WIDTH, FRAME_HEIGHT,
+                               GamePanel.getScale(2 * PANEL_WIDTH, FRAME_HEIGHT), 1);
+            final StatsPanel stats = new StatsPanel(mySprites);
+            stats.setSize(PANEL_WIDTH, FRAME_HEIGHT);
+            stats.setLayout(new StatsLayout(PANEL_WIDTH, FRAME_HEIGHT,
+                                            StatsPanel.getScale(2 * PANEL_WIDTH,
+                                                                FRAME_HEIGHT), 1));
+            final ReplayPlayer player = new ReplayPlayer(myReplay);
+            player.addBoardObserver(stats);
+
+            final BufferedImage image = new BufferedImage(2 * PANEL_WIDTH, FRAME_HEIGHT,
+                                                          BufferedImage.TYPE_INT_RGB);
+            final Rectangle clip = new Rectangle(0, 0, PANEL_WIDTH, FRAME_HEIGHT);
+            final ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+            final ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(COMPRESSION_QUALITY);
+            }
+            final IIOImage frameImage = new IIOImage(image, null, null);
+            try {
+                for (int frame = myFirst; frame < myEnd; frame++) {
+                    player.skipTo(Math.min(frame * myStepsPerFrame, myReplay.getLength()));
+                    final Graphics2D g2d = image.createGraphics();
+                    g2d.setClip(clip);
+                    renderer.drawBackground(g2d, PANEL_WIDTH, FRAME_HEIGHT, clip);
+                    renderer.drawGame(g2d, player.getSnapshot(), clip, 0, 0);
+                    g2d.setClip(null);
+                    g2d.translate(PANEL_WIDTH, 0);
+                    stats.paintComponent(g2d);
+                    g2d.dispose();
+                    final File file = new File(myDirectory,
+                                               String.format("frame%06d.png", frame));
+                    try (OutputStream stream = new BufferedOutputStream(
+                                new FileOutputStream(file));
+                         ImageOutputStream out = ImageIO.createImageOutputStream(stream)) {
+                        writer.setOutput(out);
+                        writer.write(null, frameImage, param);
+                    }
+                }
+            } finally {
+                writer.dispose();
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package view;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+import model.Block;
+import tools.ColorGenerator;
+
+/**
+ * A cache of pre-rendered block images, so boards are drawn with plain image
+ * blits rather than an antialiased fill and outline per cell per repaint.
+ * Each set holds one sprite per block type for a given cell size, corner
+ * rounding and shade, or one per holiday palette color for a given cell size
+ * and rounding; sets are rendered on first use and kept until the
+ * cache is invalidated, which the game does whenever the frame is resized.
+ * The cache is shared by the EDT and the active rendering thread, so it is
+ * safe to use from any thread.
+ *
+ * <p>A sprite is one pixel larger than its cell on every side, so the
+ * antialiased outline is not clipped; draw it at {@link #OFFSET} from the
+ * cell's corner. Sizes are given in user space; on a display that scales
+ * user space, such as a 4K screen at 200%, sprites are rendered with that
+ * many more pixels and should be drawn with {@link #drawLayer}, which maps
+ * them back to their user space size so each pixel lands on one device pixel.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+public class SpriteCache {
+
+    /**
+     * The offset from a cell's corner at which its sprite is drawn.
+     */
+    public static final int OFFSET = -1;
+
+    /**
+     * The kind of sprite set holding block colors.
+     */
+    private static final int BLOCK_SET = 0;
+
+    /**
+     * The kind of sprite set holding darkened block colors.
+     */
+    private static final int DARK_SET = 1;
+
+    /**
+     * The kind of sprite set holding holiday palette colors.
+     */
+    private static final int HOLIDAY_SET = 2;
+
+    /**
+     * The number of bits of a set's key holding its kind.
+     */
+    private static final int KIND_BITS = 2;
+
+    /**
+     * The position in a set's key of the device scale.
+     */
+    private static final int DEVICE_SCALE_SHIFT = 16;
+
+    /**
+     * The precision of the device scale in a set's key.
+     */
+    private static final int DEVICE_SCALE_STEPS = 100;
+
+    /**
+     * The sets of sprites rendered so far, by size, device scale, rounding and kind.
+     */
+    private final Map<Long, BufferedImage[]> mySets;
+
+    /**
+     * Constructs an empty cache.
+     */
+    public SpriteCache() {
+        mySets = new HashMap<Long, BufferedImage[]>();
+    }
+
+    /**
+     * Returns the sprites of every block type for a cell size, rendering them
+     * if they are not cached. The result is indexed by Block ordinal and may
+     * be kept until the next resize.
+     *
+     * @param the_size the width and height of a cell in user space
+     * @param the_rounding the rounding of a block's corners
+     * @param the_dark whether blocks are drawn in the darker shade of frozen blocks
+     * @param the_device_scale the number of device pixels per user space unit
+     * @return the sprites, indexed by Block ordinal
+     */
+    public synchronized BufferedImage[] getSprites(final int the_size, final int the_rounding,
+                                                   final boolean the_dark,
+                                                   final double the_device_scale) {
+        final int kind;
+        if (the_dark) {
+            kind = DARK_SET;
+        } else {
+            kind = BLOCK_SET;
+        }
+        final Long key = getKey(the_size, the_rounding, kind, the_device_scale);
+        BufferedImage[] sprites = mySets.get(key);
+        if (sprites == null) {
+            final Block[] blocks = Block.values();
+            sprites = new BufferedImage[blocks.length];
+            for (int i = 0; i < blocks.length; i++) {
+                final Color color = blocks[i].getColor();
+                sprites[i] = renderSprite(the_dark ? color.darker() : color,
+                                          Math.max(1, the_size), the_rounding,
+                                          the_device_scale);
+            }
+            mySets.put(key, sprites);
+        }
+        return sprites;
+    }
+
+    /**
+     * Returns a sprite for every holiday palette color at a cell size,
+     * rendering them if they are not cached. The result is indexed like the
+     * palette and may be kept until the next resize.
+     *
+     * @param the_size the width and height of a cell in user space
+     * @param the_rounding the rounding of a block's corners
+     * @param the_device_scale the number of device pixels per user space unit
+     * @return the sprites, indexed by palette color
+     * @see ColorGenerator#getPaletteColor(int)
+     */
+    public synchronized BufferedImage[] getHolidaySprites(final int the_size,
+                                                          final int the_rounding,
+                                                          final double the_device_scale) {
+        final Long key = getKey(the_size, the_rounding, HOLIDAY_SET, the_device_scale);
+        BufferedImage[] sprites = mySets.get(key);
+        if (sprites == null) {
+            sprites = new BufferedImage[ColorGenerator.PALETTE_SIZE];
+            for (int i = 0; i < sprites.length; i++) {
+                sprites[i] = renderSprite(ColorGenerator.getPaletteColor(i),
+                                          Math.max(1, the_size), the_rounding,
+                                          the_device_scale);
+            }
+            mySets.put(key, sprites);
+        }
+        return sprites;
+    }
+
+    /**
+     * Returns the key of a set of sprites.
+     *
+     * @param the_size the width and height of a cell in user space
+     * @param the_rounding the rounding of a block's corners
+     * @param the_kind the kind of set
+     * @param the_device_scale the number of device pixels per user space unit
+     * @return the key of the set
+     */
+    private static Long getKey(final int the_size, final int the_rounding, final int the_kind,
+                               final double the_device_scale) {
+        final long deviceScale = Math.round(the_device_scale * DEVICE_SCALE_STEPS);
+        return ((long) the_size << Integer.SIZE) | (deviceScale << DEVICE_SCALE_SHIFT)
+               | (the_rounding << KIND_BITS) | the_kind;
+    }
+
+    /**
+     * Discards every cached sprite, as when the cell sizes change.
+     */
+    public synchronized void invalidate() {
+        mySets.clear();
+    }
+
+    /**
+     * Renders a single block: a rounded cell filled with its color and
+     * outlined in black.
+     *
+     * @param the_color the fill color
+     * @param the_size the width and height of a cell in user space
+     * @param the_rounding the rounding of the corners
+     * @param the_device_scale the number of device pixels per user space unit
+     * @return the sprite
+     */
+    private static BufferedImage renderSprite(final Color the_color, final int the_size,
+                                              final int the_rounding,
+                                              final double the_device_scale) {
+        final BufferedImage result = createLayer(the_size + 2, the_size + 2,
+                                                 the_device_scale, Transparency.TRANSLUCENT);
+        final Graphics2D g2d = result.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                             RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.scale(the_device_scale, the_device_scale);
+        g2d.translate(-OFFSET, -OFFSET);
+        g2d.setColor(the_color);
+        g2d.fillRoundRect(0, 0, the_size, the_size, the_rounding, the_rounding);
+        g2d.setColor(Color.BLACK);
+        g2d.drawRoundRect(0, 0, the_size, the_size, the_rounding, the_rounding);
+        g2d.dispose();
+        return result;
+    }
+
+    /**
+     * Creates an image in the screen's native format where there is a
+     * screen, so blits can be accelerated.
+     *
+     * @param the_width the width of the image
+     * @param the_height the height of the image
+     * @param the_transparency Transparency.OPAQUE or Transparency.TRANSLUCENT
+     * @return the image
+     */
+    static BufferedImage createImage(final int the_width, final int the_height,
+                                     final int the_transparency) {
+        final BufferedImage result;
+        if (GraphicsEnvironment.isHeadless()) {
+            final int type;
+            if (the_transparency == Transparency.OPAQUE) {
+                type = BufferedImage.TYPE_INT_RGB;
+            } else {
+                //premultiplied, as screens use, so blits need no conversion
+                type = BufferedImage.TYPE_INT_ARGB_PRE;
+            }
+            result = new BufferedImage(the_width, the_height, type);
+        } else {
+            result = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                    .getDefaultScreenDevice().getDefaultConfiguration()
+                    .createCompatibleImage(the_width, the_height, the_transparency);
+        }
+        return result;
+    }
+
+    /**
+     * Creates an image for a layer of user space size drawn at a device
+     * scale; draw on it through a graphics scaled by the device scale.
+     *
+     * @param the_width the width of the layer in user space
+     * @param the_height the height of the layer in user space
+     * @param the_device_scale the number of device pixels per user space unit
+     * @param the_transparency Transparency.OPAQUE or Transparency.TRANSLUCENT
+     * @return the image
+     */
+    static BufferedImage createLayer(final int the_width, final int the_height,
+                                     final double the_device_scale,
+                                     final int the_transparency) {
+        return createImage(Math.max(1, (int) Math.ceil(the_width * the_device_scale)),
+                           Math.max(1, (int) Math.ceil(the_height * the_device_scale)),
+                           the_transparency);
+    }
+
+    /**
+     * Draws a layer made by {@link #createLayer} at its user space size. At a
+     * device scale of 1 this is a plain blit.
+     *
+     * @param the_graphic the graphics2D object to be drawn on
+     * @param the_layer the layer
+     * @param the_x the left edge in user space
+     * @param the_y the top edge in user space
+     * @param the_width the width of the layer in user space
+     * @param the_height the height of the layer in user space
+     */
+    static void drawLayer(final Graphics2D the_graphic, final BufferedImage the_layer,
+                          final int the_x, final int the_y, final int the_width,
+                          final int the_height) {
+        if (the_layer.getWidth() == the_width && the_layer.getHeight() == the_height) {
+            the_graphic.drawImage(the_layer, the_x, the_y, null);
+        } else {
+            the_graphic.drawImage(the_layer, the_x, the_y, the_width, the_height, null);
+        }
+    }
+
+    /**
+     * Returns the number of device pixels per user space unit of a screen.
+     *
+     * @param the_configuration the screen's configuration, or null if unknown
+     * @return the device scale, 1 if unknown
+     */
+    static double getDeviceScale(final GraphicsConfiguration the_configuration) {
+        double result = 1;
+        if (the_configuration != null) {
+            final double scale = the_configuration.getDefaultTransform().getScaleX();
+            if (scale > 0) {
+                result = scale;
+            }
+        }
+        return result;
+    }
+}
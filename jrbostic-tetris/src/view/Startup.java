@@ -0,0 +1,200 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package view;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+
+import javax.swing.UIManager;
+
+import engine.Autoplayer;
+
+/**
+ * The cold start of the game window. While the intro dialog is up, a
+ * background thread plays a few seconds of a game by itself and draws it
+ * offscreen, so the JIT has compiled the board and the painting code before
+ * the first real move instead of during it. Once the first game frame is
+ * shown, the startup times are printed on standard output: from the JVM
+ * starting to main, from main to the intro dialog, and from the dialog
+ * closing to the first frame.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+final class Startup {
+
+    /**
+     * The longest time the warm-up runs, in nanoseconds.
+     */
+    private static final long WARM_UP_NANOS = 3000000000L;
+
+    /**
+     * The number of steps simulated between frames drawn by the warm-up.
+     */
+    private static final int STEPS_PER_FRAME = 2;
+
+    /**
+     * The width of the warm-up frame.
+     */
+    private static final int FRAME_WIDTH = 320;
+
+    /**
+     * The height of the warm-up frame.
+     */
+    private static final int FRAME_HEIGHT = 640;
+
+    /**
+     * The number of nanoseconds in a millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * The time main was entered, in milliseconds since the epoch.
+     */
+    private static volatile long myMainMillis;
+
+    /**
+     * The time main was entered.
+     */
+    private static volatile long myMain;
+
+    /**
+     * The time the intro dialog was shown, zero until it is.
+     */
+    private static volatile long myIntroShown;
+
+    /**
+     * The time the intro dialog was closed, zero until it is.
+     */
+    private static volatile long myIntroClosed;
+
+    /**
+     * The number of steps the warm-up simulated.
+     */
+    private static volatile int myWarmUpSteps;
+
+    /**
+     * Whether the first frame has been shown.
+     */
+    private static volatile boolean myFirstFrameShown;
+
+    /**
+     * Constructor to ensure uninstantiability.
+     */
+    private Startup() {
+        //ensure uninstantiability
+    }
+
+    /**
+     * Records main being entered.
+     */
+    static void mainEntered() {
+        myMainMillis = System.currentTimeMillis();
+        myMain = System.nanoTime();
+    }
+
+    /**
+     * Records the intro dialog being shown and starts the warm-up; called on
+     * the event dispatch thread.
+     *
+     * @param the_width the width of the game board
+     * @param the_height the height of the game board
+     */
+    static void introShowing(final int the_width, final int the_height) {
+        if (myIntroShown != 0) {
+            return;
+        }
+        myIntroShown = System.nanoTime();
+        final Thread warmUp = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                warmUp(the_width, the_height);
+            }
+        }, "warm-up");
+        warmUp.setDaemon(true);
+        warmUp.setPriority(Thread.MIN_PRIORITY);
+        warmUp.start();
+    }
+
+    /**
+     * Records the intro dialog being closed, which ends the warm-up.
+     */
+    static void introClosed() {
+        if (myIntroClosed == 0) {
+            myIntroClosed = System.nanoTime();
+        }
+    }
+
+    /**
+     * Records a frame of a game being shown, printing the startup times the
+     * first time; cheap enough to call on every frame.
+     */
+    static void frameShown() {
+        if (!myFirstFrameShown && myIntroClosed != 0) {
+            myFirstFrameShown = true;
+            final long now = System.nanoTime();
+            //the management classes are slow to load, so not on a drawing thread
+            final Thread report = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    report(now);
+                }
+            }, "startup report");
+            report.setDaemon(true);
+            report.start();
+        }
+    }
+
+    /**
+     * Prints the startup times.
+     *
+     * @param the_first_frame the time the first frame was shown
+     */
+    private static void report(final long the_first_frame) {
+        final long jvm = myMainMillis - ManagementFactory.getRuntimeMXBean().getStartTime();
+        System.out.printf("startup: JVM to main %d ms, main to intro %.1f ms, "
+                          + "intro closed to first frame %.1f ms, %d warm-up steps%n", jvm,
+                          (myIntroShown - myMain) / NANOS_PER_MILLI,
+                          (the_first_frame - myIntroClosed) / NANOS_PER_MILLI,
+                          myWarmUpSteps);
+    }
+
+    /**
+     * Plays a game by itself and draws it offscreen until the intro dialog
+     * closes or the time runs out.
+     *
+     * @param the_width the width of the game board
+     * @param the_height the height of the game board
+     */
+    private static void warmUp(final int the_width, final int the_height) {
+        final BoardRenderer renderer = new BoardRenderer(the_width, the_height,
+                                                         new SpriteCache(),
+                                                         UIManager.getColor("Panel.background"));
+        renderer.setLayout(FRAME_WIDTH, FRAME_HEIGHT,
+                           GamePanel.getScale(2 * FRAME_WIDTH, FRAME_HEIGHT), 1);
+        final Autoplayer player = new Autoplayer(the_width, the_height, 0);
+        final BufferedImage image = new BufferedImage(FRAME_WIDTH, FRAME_HEIGHT,
+                                                      BufferedImage.TYPE_INT_RGB);
+        final Rectangle clip = new Rectangle(0, 0, FRAME_WIDTH, FRAME_HEIGHT);
+        final Graphics2D g2d = image.createGraphics();
+        final long end = System.nanoTime() + WARM_UP_NANOS;
+        int steps = 0;
+        try {
+            while (myIntroClosed == 0 && System.nanoTime() - end < 0) {
+                player.step();
+                steps++;
+                if (steps % STEPS_PER_FRAME == 0) {
+                    renderer.drawBackground(g2d, FRAME_WIDTH, FRAME_HEIGHT, clip);
+                    renderer.drawGame(g2d, player.getSnapshot(), clip, 0, 0);
+                }
+            }
+        } finally {
+            g2d.dispose();
+            myWarmUpSteps = steps;
+        }
+    }
+}
@@ -0,0 +1,405 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package view;
+
+import java.awt.Font;
+import java.awt.Point;
+import java.awt.Rectangle;
+
+/**
+ * The geometry of the score panel at one size: every rectangle and text
+ * position the panel is drawn with, worked out once per resize instead of
+ * on every paint. Layouts are immutable; the rectangles and points they
+ * return must not be modified.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+final class StatsLayout {
+
+    /**
+     * Count array position of IPiece, whose count is drawn further out.
+     */
+    private static final int IPIECE = 6;
+
+    /**
+     * Double representing 12.5 percent.
+     */
+    private static final double PERCENT_12 = .125;
+
+    /**
+     * Double representing 20 percent.
+     */
+    private static final double PERCENT_20 = .2;
+
+    /**
+     * Double representing 25 percent.
+     */
+    private static final double PERCENT_25 = .25;
+
+    /**
+     * Double representing 33 percent.
+     */
+    private static final double PERCENT_33 = .33;
+
+    /**
+     * Double representing 40 percent.
+     */
+    private static final double PERCENT_40 = .4;
+
+    /**
+     * Double representing 57 percent.
+     */
+    private static final double PERCENT_57 = .57;
+
+    /**
+     * Double representing 60 percent.
+     */
+    private static final double PERCENT_60 = .6;
+
+    /**
+     * Double representing 70 percent.
+     */
+    private static final double PERCENT_70 = .7;
+
+    /**
+     * Double representing 75 percent.
+     */
+    private static final double PERCENT_75 = .75;
+
+    /**
+     * Double representing 80 percent.
+     */
+    private static final double PERCENT_80 = .8;
+
+    /**
+     * Double representing 87.5 percent.
+     */
+    private static final double PERCENT_87 = .875;
+
+    /**
+     * Represents three pixel shift.
+     */
+    private static final int THREE_PIXELS = 3;
+
+    /**
+     * Represents five pixel shift.
+     */
+    private static final int FIVE_PIXELS = 5;
+
+    /**
+     * Represents ten pixel shift.
+     */
+    private static final int TEN_PIXELS = 10;
+
+    /**
+     * Represents twenty pixel shift.
+     */
+    private static final int TWENTY_PIXELS = 20;
+
+    /**
+     * Eleven pixels.
+     */
+    private static final int ELEVEN_PIXELS = 11;
+
+    /**
+     * Twelve pixels.
+     */
+    private static final int TWELVE_PIXELS = 12;
+
+    /**
+     * Thirteen pixels.
+     */
+    private static final int THIRTEEN_PIXELS = 13;
+
+    /**
+     * The horizontal position of each piece type's count, as a fraction of width.
+     */
+    private static final double[] COUNT_X = {PERCENT_20, PERCENT_57, PERCENT_20, PERCENT_57,
+        PERCENT_20, PERCENT_57, PERCENT_40};
+
+    /**
+     * The vertical position of each piece type's count, as a fraction of height.
+     */
+    private static final double[] COUNT_Y = {PERCENT_60, PERCENT_60, PERCENT_70, PERCENT_70,
+        PERCENT_80, PERCENT_80, PERCENT_87};
+
+    /**
+     * The width of the panel, 0 if not yet known.
+     */
+    private final int myWidth;
+
+    /**
+     * The height of the panel, 0 if not yet known.
+     */
+    private final int myHeight;
+
+    /**
+     * The scale panel items are drawn to.
+     */
+    private final int myScale;
+
+    /**
+     * The number of device pixels per user space unit.
+     */
+    private final double myDeviceScale;
+
+    /**
+     * The font of the panel text.
+     */
+    private final Font myFont;
+
+    /**
+     * The outer border of the panel.
+     */
+    private final Rectangle myOuterBorder;
+
+    /**
+     * The inner border of the panel.
+     */
+    private final Rectangle myInnerBorder;
+
+    /**
+     * The box around the next piece.
+     */
+    private final Rectangle myNextBox;
+
+    /**
+     * The baseline start of the next piece title.
+     */
+    private final Point myNextTitle;
+
+    /**
+     * The corner the next piece's cells are drawn from.
+     */
+    private final Point myNextPiece;
+
+    /**
+     * The baseline start of the pieces placed display.
+     */
+    private final Point myPiecesText;
+
+    /**
+     * The baseline start of the lines cleared display.
+     */
+    private final Point myLinesText;
+
+    /**
+     * The baseline start of the total score display.
+     */
+    private final Point myScoreText;
+
+    /**
+     * The corner each counted piece is drawn from. (T,S,Z,O,J,L,I)
+     */
+    private final Point[] myCountPieces;
+
+    /**
+     * The baseline start of each piece count. (T,S,Z,O,J,L,I)
+     */
+    private final Point[] myCountTexts;
+
+    /**
+     * Lays out the panel.
+     *
+     * @param the_width the width of the panel, 0 if not yet known
+     * @param the_height the height of the panel, 0 if not yet known
+     * @param the_scale the scale panel items are drawn to
+     * @param the_device_scale the number of device pixels per user space unit
+     */
+    StatsLayout(final int the_width, final int the_height, final int the_scale,
+                final double the_device_scale) {
+        myWidth = the_width;
+        myHeight = the_height;
+        myScale = the_scale;
+        myDeviceScale = the_device_scale;
+        myFont = new Font("stretch", Font.BOLD, (int) (PERCENT_75 * the_scale));
+
+        myOuterBorder = new Rectangle(the_scale - FIVE_PIXELS, the_scale - FIVE_PIXELS,
+                                      the_width - 2 * the_scale + TEN_PIXELS,
+                                      the_height - 2 * the_scale + TEN_PIXELS);
+        myInnerBorder = new Rectangle(the_scale, the_scale, the_width - 2 * the_scale,
+                                      the_height - 2 * the_scale);
+        final int third = (int) (the_width * PERCENT_33);
+        myNextBox = new Rectangle(third - TEN_PIXELS, THREE_PIXELS * the_scale,
+                                  the_scale * FIVE_PIXELS, the_scale * FIVE_PIXELS);
+        myNextTitle = new Point(third - 1, (the_scale - 1) * THREE_PIXELS);
+        myNextPiece = new Point(third, THREE_PIXELS * the_scale + the_scale / 2);
+        myPiecesText = new Point(third - TWENTY_PIXELS, the_scale * ELEVEN_PIXELS);
+        myLinesText = new Point(third - TWENTY_PIXELS, the_scale * TWELVE_PIXELS);
+        myScoreText = new Point(third - TWENTY_PIXELS, the_scale * THIRTEEN_PIXELS);
+
+        myCountPieces = new Point[COUNT_X.length];
+        myCountTexts = new Point[COUNT_X.length];
+        for (int i = 0; i < COUNT_X.length; i++) {
+            final int x = (int) (the_width * COUNT_X[i]);
+            final int y = (int) (the_height * COUNT_Y[i]);
+            myCountPieces[i] = new Point(x, y);
+            if (i == IPIECE) {
+                myCountTexts[i] = new Point(x + THREE_PIXELS * the_scale,
+                                            y + the_scale + TEN_PIXELS);
+            } else {
+                myCountTexts[i] = new Point(x + 2 * the_scale, y + the_scale);
+            }
+        }
+    }
+
+    /**
+     * Query as to whether this layout was made for a panel size.
+     *
+     * @param the_width the width of the panel
+     * @param the_height the height of the panel
+     * @return true if the layout fits the size
+     */
+    boolean fits(final int the_width, final int the_height) {
+        return myWidth == the_width && myHeight == the_height;
+    }
+
+    /**
+     * @return true if the size of the panel was known when laid out
+     */
+    boolean isSized() {
+        return myWidth > 0 && myHeight > 0;
+    }
+
+    /**
+     * @return the width of the panel
+     */
+    int getWidth() {
+        return myWidth;
+    }
+
+    /**
+     * @return the height of the panel
+     */
+    int getHeight() {
+        return myHeight;
+    }
+
+    /**
+     * @return the scale panel items are drawn to
+     */
+    int getScale() {
+        return myScale;
+    }
+
+    /**
+     * @return the number of device pixels per user space unit
+     */
+    double getDeviceScale() {
+        return myDeviceScale;
+    }
+
+    /**
+     * @return the font of the panel text
+     */
+    Font getFont() {
+        return myFont;
+    }
+
+    /**
+     * @return the outer border of the panel
+     */
+    Rectangle getOuterBorder() {
+        return myOuterBorder;
+    }
+
+    /**
+     * @return the inner border of the panel
+     */
+    Rectangle getInnerBorder() {
+        return myInnerBorder;
+    }
+
+    /**
+     * @return the box around the next piece
+     */
+    Rectangle getNextBox() {
+        return myNextBox;
+    }
+
+    /**
+     * @return the baseline start of the next piece title
+     */
+    Point getNextTitle() {
+        return myNextTitle;
+    }
+
+    /**
+     * @return the corner the next piece's cells are drawn from
+     */
+    Point getNextPiece() {
+        return myNextPiece;
+    }
+
+    /**
+     * @return the width and height of a cell of the next piece
+     */
+    int getNextCell() {
+        return myScale;
+    }
+
+    /**
+     * @return the rounding of the next piece's blocks
+     */
+    int getNextRounding() {
+        return (int) (myScale * PERCENT_25);
+    }
+
+    /**
+     * @return the baseline start of the pieces placed display
+     */
+    Point getPiecesText() {
+        return myPiecesText;
+    }
+
+    /**
+     * @return the baseline start of the lines cleared display
+     */
+    Point getLinesText() {
+        return myLinesText;
+    }
+
+    /**
+     * @return the baseline start of the total score display
+     */
+    Point getScoreText() {
+        return myScoreText;
+    }
+
+    /**
+     * Returns the corner a counted piece is drawn from.
+     *
+     * @param the_type the count array position of the piece type (T,S,Z,O,J,L,I)
+     * @return the corner
+     */
+    Point getCountPiece(final int the_type) {
+        return myCountPieces[the_type];
+    }
+
+    /**
+     * Returns the baseline start of a piece count.
+     *
+     * @param the_type the count array position of the piece type (T,S,Z,O,J,L,I)
+     * @return the baseline start
+     */
+    Point getCountText(final int the_type) {
+        return myCountTexts[the_type];
+    }
+
+    /**
+     * @return the width and height of a cell of the counted pieces
+     */
+    int getCountCell() {
+        return myScale / 2;
+    }
+
+    /**
+     * @return the rounding of the counted pieces' blocks
+     */
+    int getCountRounding() {
+        return (int) (myScale * PERCENT_12);
+    }
+}
@@ -6,21 +6,26 @@ package view;
 
 import java.awt.Color;
 import java.awt.Dimension;
-import java.awt.Font;
+import java.awt.EventQueue;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.Image;
+import java.awt.GraphicsEnvironment;
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
+import java.awt.Transparency;
 import java.awt.event.ComponentEvent;
+import java.awt.image.BufferedImage;
 import java.util.Observable;
 import java.util.Observer;
 
-import javax.swing.ImageIcon;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 
 import model.AbstractPiece;
+import model.Block;
 import model.Board;
+import model.GameStats;
 import model.IPiece;
 import model.JPiece;
 import model.LPiece;
@@ -29,6 +34,7 @@ import model.Piece;
 import model.SPiece;
 import model.TPiece;
 import model.ZPiece;
+import tools.AssetManager;
 
 /**
  * Class representing the score/stats panel of tetris game.
@@ -44,57 +50,11 @@ public class StatsPanel extends JPanel implements Observer {
      */
     private static final int NUMBER_OF_PIECE_TYPES = 7;
     
-    /**
-     * An array holding count for each type of piece. (T,S,Z,O,J,L,I)
-     */
-    private static final int[] PIECES_COUNT = new int[NUMBER_OF_PIECE_TYPES];
-    
-    /**
-     * Count array position of TPiece.
-     */
-    private static final int TPIECE = 0;
-    
-    /**
-     * Count array position of SPiece.
-     */
-    private static final int SPIECE = 1;
-    
-    /**
-     * Count array position of ZPiece.
-     */
-    private static final int ZPIECE = 2;
-    
-    /**
-     * Count array position of OPiece.
-     */
-    private static final int OPIECE = 3;
-    
-    /**
-     * Count array position of JPiece.
-     */
-    private static final int JPIECE = 4;
-    
-    /**
-     * Count array position of LPiece.
-     */
-    private static final int LPIECE = 5;
-    
-    /**
-     * Count array position of IPiece.
-     */
-    private static final int IPIECE = 6;
-    
     /**
      * The initial scale to which panel should be drawn.
      */
     private static final int INITIAL_SCALE = 20;
     
-    /**
-     * The background image.
-     */
-    private static final Image BACKGROUND_IMAGE = 
-            new ImageIcon("images/tetris.jpg").getImage();
-    
     /**
      * Height and width dimension of game over window icon.
      */
@@ -110,16 +70,6 @@ public class StatsPanel extends JPanel implements Observer {
      */
     private static final Color PANEL_COLOR = new Color(0, 0, 0, 175);
     
-    /**
-     * Points scored per piece played.
-     */
-    private static final int SCORE_PER_PIECE = 10;
-    
-    /**
-     * Points scored "per" line (multiplier).
-     */
-    private static final int SCORE_PER_LINE = 50;
-    
     /**
      * The ratio of scale to width.
      */
@@ -131,155 +81,132 @@ public class StatsPanel extends JPanel implements Observer {
     private static final int HEIGHT_RATIO = 25;
     
     /**
-     * Double representing 12.5 percent.
-     */
-    private static final double PERCENT_12 = .125;
-    
-    /**
-     * Double representing 20 percent.
-     */
-    private static final double PERCENT_20 = .2;
-    
-    /**
-     * Double representing 25 percent.
-     */
-    private static final double PERCENT_25 = .25;
-    
-    /**
-     * Double representing 33 percent.
-     */
-    private static final double PERCENT_33 = .33;
-    
-    /**
-     * Double representing 40 percent.
-     */
-    private static final double PERCENT_40 = .4;
-    
-    /**
-     * Double representing 57 percent.
-     */
-    private static final double PERCENT_57 = .57;
-    
-    /**
-     * Double representing 60 percent.
-     */
-    private static final double PERCENT_60 = .6;
-    
-    /**
-     * Double representing 70 percent.
-     */
-    private static final double PERCENT_70 = .7;
-    
-    /**
-     * Double representing 75 percent.
-     */
-    private static final double PERCENT_75 = .75;
-    
-    /**
-     * Double representing 80 percent.
+     * Represents five pixel shift.
      */
-    private static final double PERCENT_80 = .8;
+    private static final int FIVE_PIXELS = 5;
     
     /**
-     * Double representing 87.5 percent.
+     * Represents ten pixel shift.
      */
-    private static final double PERCENT_87 = .875;
+    private static final int TEN_PIXELS = 10;
     
     /**
-     * Represents three pixel shift.
+     * The multiplication symbol used for displaying pice type count.
      */
-    private static final int THREE_PIXELS = 3;
+    private static final String PIECE_MULT_SYMBOL = "x ";
     
     /**
-     * Represents five pixel shift.
+     * The pieces shown beside their counts, each turned once. (T,S,Z,O,J,L,I)
      */
-    private static final int FIVE_PIXELS = 5;
+    private static final AbstractPiece[] COUNT_PIECES = countPieces();
     
     /**
-     * Represents ten pixel shift.
+     * The block coordinates of each counted piece, computed once.
      */
-    private static final int TEN_PIXELS = 10;
+    private static final int[][][] COUNT_SHAPES = countShapes();
     
     /**
-     * Represents twenty pixel shift.
+     * The stats of a game that has not started.
      */
-    private static final int TWENTY_PIXELS = 20;
+    private static final Shown NO_GAME = new Shown(null, new GameStats());
     
     /**
-     * Eleven pixels.
+     * The stats shown, replaced whole on the simulation thread and read on
+     * the EDT.
      */
-    private static final int ELEVEN_PIXELS = 11;
+    private volatile Shown myShown;
     
     /**
-     * Twelve pixels.
+     * The layout the panel is drawn with.
      */
-    private static final int TWELVE_PIXELS = 12;
+    private StatsLayout myLayout;
     
     /**
-     * Thirteen pixels.
+     * The lines cleared display.
      */
-    private static final int THIRTEEN_PIXELS = 13;
+    private final TextLabel myLinesLabel;
     
     /**
-     * The multiplication symbol used for displaying pice type count.
+     * The pieces placed display.
      */
-    private static final String PIECE_MULT_SYMBOL = "x ";
+    private final TextLabel myPiecesLabel;
     
     /**
-     * The next piece.
+     * The total score display.
      */
-    private Piece myNextPiece;
+    private final TextLabel myScoreLabel;
     
     /**
-     * Pixel x-coordinate shift adjustment for next piece display.
+     * The count display of each piece type. (T,S,Z,O,J,L,I)
      */
-    private int myXAdjust;
+    private final TextLabel[] myCountLabels;
     
     /**
-     * Pixel y-coordinate shift adjustment for next piece display.
+     * The cache of pre-rendered blocks shared with the game panel.
      */
-    private int myYAdjust;
+    private final SpriteCache mySpriteCache;
     
     /**
-     * The number of lines cleared in current game.
+     * The sprites of the next piece at the current scale, null until needed.
      */
-    private int myLineScore;
+    private BufferedImage[] myNextSprites;
     
     /**
-     * The number of pieces placed in current game.
+     * The sprites of the piece count display at the current scale, null until needed.
      */
-    private int myPieceScore;
+    private BufferedImage[] myCountSprites;
     
     /**
-     * The actual points scored in current game.
+     * The tiled background and panel frame at the current size, null until needed.
      */
-    private int myTotalScore;
+    private BufferedImage myBackground;
     
     /**
-     * The current scale to which panel items are drawn.
+     * Constructs new stat panel object.
+     * 
+     * @param the_sprites the cache of pre-rendered blocks
      */
-    private int myScale;
+    public StatsPanel(final SpriteCache the_sprites) {
+        mySpriteCache = the_sprites;
+        myShown = NO_GAME;
+        
+        myLayout = new StatsLayout(0, 0, INITIAL_SCALE, 1);
+        
+        myLinesLabel = new TextLabel("Lines Cleared: ");
+        myPiecesLabel = new TextLabel("Pieces Placed: ");
+        myScoreLabel = new TextLabel("Total Score: ");
+        myCountLabels = new TextLabel[NUMBER_OF_PIECE_TYPES];
+        for (int i = 0; i < myCountLabels.length; i++) {
+            myCountLabels[i] = new TextLabel(PIECE_MULT_SYMBOL);
+        }
+    }
     
     /**
-     * Whether a new piece has been counted by type.
-     */
-    private boolean myHasBeenCounted;
+     * Creates the pieces shown beside their counts.
+     * 
+     * @return the pieces, each turned once (T,S,Z,O,J,L,I)
+     */
+    private static AbstractPiece[] countPieces() {
+        final AbstractPiece[] result = {new TPiece(0, 0), new SPiece(0, 0), new ZPiece(0, 0), 
+                                        new OPiece(0, 0), new JPiece(0, 0), new LPiece(0, 0), 
+                                        new IPiece(0, 0)};
+        for (AbstractPiece piece : result) {
+            piece.rotate();
+        }
+        return result;
+    }
     
     /**
-     * Constructs new stat panel object.
+     * Takes the block coordinates of the pieces shown beside their counts.
+     * 
+     * @return the coordinates of each piece's blocks (T,S,Z,O,J,L,I)
      */
-    public StatsPanel() {
-        myNextPiece = null;
-        myXAdjust = 0;
-        myYAdjust = 0;
-        
-        myLineScore = 0;
-        myPieceScore = 0;
-        myTotalScore = 0;
-        
-        myScale = INITIAL_SCALE;
-        
-        myHasBeenCounted = false;
+    private static int[][][] countShapes() {
+        final int[][][] result = new int[COUNT_PIECES.length][][];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = COUNT_PIECES[i].getRotation();
+        }
+        return result;
     }
     
     /**
@@ -294,130 +221,87 @@ public class StatsPanel extends JPanel implements Observer {
     public void update(final Observable the_obs, final Object the_obj) {
         if (the_obs instanceof Board) {
             final Board board = (Board) the_obs;
-            final Piece nextPiece = board.getNextPiece();
-            countPieceType(board.getCurrentPiece(), board.getHeight());
-            calculatePieceScore(nextPiece);
-            calculatePieceAlignment(nextPiece);
-            calculateLinesCleared(the_obj);
-            if (board.isGameOver()) {
-                Image image = new ImageIcon("images/tetris.png").getImage();  
-                image = image.getScaledInstance(ICON_DIMENSIONS, ICON_DIMENSIONS, 
-                                                java.awt.Image.SCALE_SMOOTH);
-                JOptionPane.showMessageDialog(this.getParent(), "YOUR FINAL SCORE WAS >>> "
-                                                + myTotalScore, "Game Over", 
-                                                JOptionPane.PLAIN_MESSAGE, 
-                                                new ImageIcon(image));
-                 
+            final Shown shown = myShown;
+            final GameStats stats = board.getStats();
+            if (board.isGameOver() && !GraphicsEnvironment.isHeadless()) {
+                showFinalScore(stats.getScore());
             }
-        } else if (the_obs instanceof TetrisGame) {
-            final Dimension currentSize = ((ComponentEvent) the_obj).getComponent().getSize();
-            final double width = currentSize.getWidth();
-            final double height = currentSize.getHeight();
-            if (width < height) {
-                myScale = (int) width / WIDTH_RATIO;
+            //most moves change nothing shown here
+            if (!shown.isShowing(board.getNextPiece(), stats)) {
+                myShown = new Shown(board.getNextPiece(), stats);
             } else {
-                myScale = (int) height / HEIGHT_RATIO - 1;
+                return;
             }
+        } else if (the_obs instanceof TetrisGame) {
+            final Dimension currentSize = ((ComponentEvent) the_obj).getComponent().getSize();
+            setLayout(new StatsLayout(getWidth(), getHeight(), 
+                                      getScale(currentSize.getWidth(), 
+                                               currentSize.getHeight()), 
+                                      SpriteCache.getDeviceScale(getGraphicsConfiguration())));
         }
         repaint();
     }
     
     /**
-     * Increments counts of piece types in current game.
-     * (T,S,Z,O,J,L,I)
+     * Returns the scale panel items are drawn to in a game frame.
      * 
-     * @param the_piece the current piece
-     * @param the_board_height the height of current board
-     */
-    private void countPieceType(final Piece the_piece, final int the_board_height) {
-        if (the_piece != myNextPiece && the_piece.getY() == the_board_height - 1 
-                && !myHasBeenCounted) {
-            myHasBeenCounted = true;
-            if (the_piece instanceof TPiece) {
-                PIECES_COUNT[TPIECE]++;
-            } else if (the_piece instanceof SPiece) {
-                PIECES_COUNT[SPIECE]++;
-            } else if (the_piece instanceof ZPiece) {
-                PIECES_COUNT[ZPIECE]++;
-            } else if (the_piece instanceof OPiece) {
-                PIECES_COUNT[OPIECE]++;
-            } else if (the_piece instanceof JPiece) {
-                PIECES_COUNT[JPIECE]++;
-            } else if (the_piece instanceof LPiece) {
-                PIECES_COUNT[LPIECE]++;
-            } else if (the_piece instanceof IPiece) {
-                PIECES_COUNT[IPIECE]++;
-            }
+     * @param the_width the width of the frame
+     * @param the_height the height of the frame
+     * @return the scale
+     */
+    static int getScale(final double the_width, final double the_height) {
+        final int result;
+        if (the_width < the_height) {
+            result = (int) the_width / WIDTH_RATIO;
+        } else {
+            result = (int) the_height / HEIGHT_RATIO - 1;
         }
+        return result;
     }
     
     /**
-     * Calculates and updates the score as a piece is placed.
+     * Sets the layout the panel is drawn with, dropping the images drawn for
+     * the last one.
      * 
-     * @param the_piece the current piece in play on board
-     */
-    private void calculatePieceScore(final Piece the_piece) {
-        if (the_piece != myNextPiece && myNextPiece != null) {
-            myHasBeenCounted = false;
-            myPieceScore++;
-            myTotalScore += SCORE_PER_PIECE;
-        }   
-    }
-    
-    /**
-     * Calculates the preferred alignment adjustment for next piece display.
-     * 
-     * @param the_piece the current piece in play on board
+     * @param the_layout the new layout
      */
-    private void calculatePieceAlignment(final Piece the_piece) {
-        if (!the_piece.equals(myNextPiece)) {
-            myNextPiece = the_piece;
-            if (myNextPiece instanceof IPiece) {
-                myXAdjust = -TEN_PIXELS;
-                myYAdjust = 0;
-            } else if (myNextPiece instanceof OPiece) {
-                myYAdjust = -FIVE_PIXELS; 
-                myXAdjust = 0;
-            } else {
-                myXAdjust = 0;
-                myYAdjust = FIVE_PIXELS;
-            }
-        }
+    void setLayout(final StatsLayout the_layout) {
+        myLayout = the_layout;
+        myNextSprites = null;
+        myCountSprites = null;
+        myBackground = null;
     }
     
     /**
-     * Updates lines cleared and score.
+     * Shows the final score of a game; boards notify from the simulation
+     * thread, so the dialog is handed to the EDT.
      * 
-     * @param the_lines_cleared the most recent number of cleared lines
-     */
-    private void calculateLinesCleared(final Object the_lines_cleared) { 
-        if (the_lines_cleared != null && the_lines_cleared instanceof Integer) {
-            final int linesCleared = (int) the_lines_cleared;
-            myLineScore += linesCleared;
-            myTotalScore += linesCleared * linesCleared * SCORE_PER_LINE;
-        }
+     * @param the_score the final score
+     */
+    private void showFinalScore(final int the_score) {
+        EventQueue.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                JOptionPane.showMessageDialog(getParent(), "YOUR FINAL SCORE WAS >>> "
+                                                + the_score, "Game Over", 
+                                                JOptionPane.PLAIN_MESSAGE, 
+                                                AssetManager.getIcon(AssetManager.LOGO,
+                                                                     ICON_DIMENSIONS));
+            }
+        });
     }
     
     /**
      * Sets up panel for a new game.
      */
     public void newGame() {
-        myNextPiece = null;
-        myXAdjust = 0;
-        myYAdjust = 0;
-        
-        myLineScore = 0;
-        myPieceScore = 0;
-        myTotalScore = 0;
-        
-        for (int i = 0; i < PIECES_COUNT.length; i++) {
-            PIECES_COUNT[i] = 0;
-        }
-        myHasBeenCounted = false;
+        myShown = NO_GAME;
+        repaint();
     }
     
     /**
-     * Draws the games score panel and background.
+     * Draws the games score panel and background. While a resize is waiting
+     * to be laid out, the last background is stretched over the panel.
      * 
      * {@inheritDoc}
      * 
@@ -425,97 +309,146 @@ public class StatsPanel extends JPanel implements Observer {
      */
     @Override
     public void paintComponent(final Graphics the_graphic) {
-        super.paintComponent(the_graphic);
         final Graphics2D g2d = (Graphics2D) the_graphic;
         
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, 
-                             RenderingHints.VALUE_ANTIALIAS_ON);
-        
         final int panelWidth = getWidth();
         final int panelHeight = getHeight();
+        if (!myLayout.isSized()) {
+            setLayout(new StatsLayout(panelWidth, panelHeight, myLayout.getScale(), 
+                                      myLayout.getDeviceScale()));
+        }
+        final StatsLayout layout = myLayout;
+        
+        //draw background layer
+        if (myBackground == null) {
+            myBackground = createBackground(layout);
+        }
+        if (layout.fits(panelWidth, panelHeight)) {
+            SpriteCache.drawLayer(g2d, myBackground, 0, 0, panelWidth, panelHeight);
+        } else {
+            g2d.drawImage(myBackground, 0, 0, panelWidth, panelHeight, null);
+        }
+        
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, 
+                             RenderingHints.VALUE_ANTIALIAS_ON);
+        final Shown shown = myShown;
+        drawScores(g2d, layout, shown);
+        drawNextPiece(g2d, layout, shown);
+        drawPieceCount(g2d, layout, shown);
+
+    }
+    
+    /**
+     * Pre-composes the parts of the panel that only change with its layout:
+     * the tiled background, the panel frame and the next piece box.
+     * 
+     * @param the_layout the layout to draw
+     * @return the background layer
+     */
+    private BufferedImage createBackground(final StatsLayout the_layout) {
+        final int width = Math.max(1, the_layout.getWidth());
+        final int height = Math.max(1, the_layout.getHeight());
+        final BufferedImage result = SpriteCache.createLayer(width, height, 
+                                                             the_layout.getDeviceScale(), 
+                                                             Transparency.OPAQUE);
+        final Graphics2D g2d = result.createGraphics();
+        g2d.scale(the_layout.getDeviceScale(), the_layout.getDeviceScale());
+        g2d.setColor(getBackground());
+        g2d.fillRect(0, 0, width, height);
         
         //draw tiled background
-        final int imageWidth = BACKGROUND_IMAGE.getWidth(this);
-        final int imageHeight = BACKGROUND_IMAGE.getHeight(this);
-        for (int i = 0; i * imageWidth < panelWidth; i++) {
-            for (int j = 0; j * imageHeight < panelHeight; j++) {
-                g2d.drawImage(BACKGROUND_IMAGE, i * imageWidth, j * imageHeight, this);
+        final BufferedImage background = AssetManager.getImage(AssetManager.BACKGROUND);
+        final int imageWidth = background.getWidth();
+        final int imageHeight = background.getHeight();
+        for (int i = 0; i * imageWidth < width; i++) {
+            for (int j = 0; j * imageHeight < height; j++) {
+                g2d.drawImage(background, i * imageWidth, j * imageHeight, this);
             }
         }
         
-        drawPanel(g2d, panelWidth, panelHeight);
-        drawNextPiece(g2d, panelWidth, panelHeight);
-        drawPieceCount(g2d, panelWidth, panelHeight);
-
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, 
+                             RenderingHints.VALUE_ANTIALIAS_ON);
+        drawPanel(g2d, the_layout);
+        g2d.dispose();
+        return result;
     }
     
     /**
-     * Draws basic background and string aspects of score panel.
+     * Draws basic background and static string aspects of score panel.
      * 
      * @param the_graphic the graphics object to draw on
-     * @param the_width the current width of panel
-     * @param the_height the current height of panel
+     * @param the_layout the layout to draw
      */
-    private void drawPanel(final Graphics2D the_graphic, final int the_width, 
-                           final int the_height) {
+    private void drawPanel(final Graphics2D the_graphic, final StatsLayout the_layout) {
         //draw outer border of panel
+        final Rectangle outer = the_layout.getOuterBorder();
         the_graphic.setColor(BORDER_COLOR);
-        the_graphic.fillRoundRect(myScale - FIVE_PIXELS, myScale - FIVE_PIXELS, 
-                          the_width - 2 * myScale + TEN_PIXELS, 
-                          the_height - 2 * myScale + TEN_PIXELS, TEN_PIXELS, TEN_PIXELS);
+        the_graphic.fillRoundRect(outer.x, outer.y, outer.width, outer.height, 
+                                  TEN_PIXELS, TEN_PIXELS);
         
         //draw inner border of panel
+        final Rectangle inner = the_layout.getInnerBorder();
         the_graphic.setColor(PANEL_COLOR);
-        the_graphic.fillRoundRect(myScale, myScale, the_width - 2 * myScale, 
-                          the_height - 2 * myScale, FIVE_PIXELS, FIVE_PIXELS);
+        the_graphic.fillRoundRect(inner.x, inner.y, inner.width, inner.height, 
+                                  FIVE_PIXELS, FIVE_PIXELS);
         
         //draw panel text
+        final Rectangle box = the_layout.getNextBox();
         the_graphic.setColor(Color.WHITE);
-        the_graphic.drawRect((int) (the_width * PERCENT_33) - TEN_PIXELS, 
-                             THREE_PIXELS * myScale, myScale * FIVE_PIXELS, 
-                             myScale * FIVE_PIXELS);
-        the_graphic.setFont(new Font("stretch", Font.BOLD, (int) (PERCENT_75 * myScale)));
-        the_graphic.drawString("NEXT PIECE", (int) (the_width * PERCENT_33) - 1, 
-                       (myScale - 1) * THREE_PIXELS);
-        the_graphic.drawString("Lines Cleared: " + myLineScore, 
-                       (int) (the_width * PERCENT_33) - TWENTY_PIXELS, 
-                       myScale * TWELVE_PIXELS);
-        the_graphic.drawString("Pieces Placed: " + myPieceScore, 
-                       (int) (the_width * PERCENT_33) - TWENTY_PIXELS, 
-                       myScale * ELEVEN_PIXELS);
-        the_graphic.drawString("Total Score: " + myTotalScore, 
-                       (int) (the_width * PERCENT_33) - TWENTY_PIXELS, 
-                       myScale * THIRTEEN_PIXELS);
+        the_graphic.drawRect(box.x, box.y, box.width, box.height);
+        the_graphic.setFont(the_layout.getFont());
+        the_graphic.drawString("NEXT PIECE", the_layout.getNextTitle().x, 
+                               the_layout.getNextTitle().y);
+    }
+    
+    /**
+     * Draws the running scores of the current game.
+     * 
+     * @param the_graphic the graphics object to draw on
+     * @param the_layout the layout to draw
+     * @param the_shown the stats to draw
+     */
+    private void drawScores(final Graphics2D the_graphic, final StatsLayout the_layout,
+                            final Shown the_shown) {
+        the_graphic.setColor(Color.WHITE);
+        the_graphic.setFont(the_layout.getFont());
+        myLinesLabel.setValue(the_shown.myLines);
+        myLinesLabel.draw(the_graphic, the_layout.getLinesText().x, 
+                          the_layout.getLinesText().y);
+        myPiecesLabel.setValue(the_shown.myPieces);
+        myPiecesLabel.draw(the_graphic, the_layout.getPiecesText().x, 
+                           the_layout.getPiecesText().y);
+        myScoreLabel.setValue(the_shown.myScore);
+        myScoreLabel.draw(the_graphic, the_layout.getScoreText().x, 
+                          the_layout.getScoreText().y);
     }
     
     /**
      * Draws next piece on score panel.
      * 
      * @param the_graphic the graphics object to draw on
-     * @param the_width the current width of panel
-     * @param the_height the current height of panel
-     */
-    private void drawNextPiece(final Graphics2D the_graphic, final int the_width, 
-                               final int the_height) {
-        if (myNextPiece != null) {
-            final int[][] piece = ((AbstractPiece) myNextPiece).getRotation();
-            final Color currentColor = ((AbstractPiece) myNextPiece).getBlock().getColor();
+     * @param the_layout the layout to draw
+     * @param the_shown the stats to draw
+     */
+    private void drawNextPiece(final Graphics2D the_graphic, final StatsLayout the_layout,
+                               final Shown the_shown) {
+        final int[][] piece = the_shown.myShape;
+        if (piece != null) {
+            final int cell = the_layout.getNextCell();
+            if (myNextSprites == null) {
+                myNextSprites = mySpriteCache.getSprites(cell, the_layout.getNextRounding(), 
+                                                         false, the_layout.getDeviceScale());
+            }
+            final BufferedImage sprite = 
+                    myNextSprites[the_shown.myBlock.ordinal()];
+            final Point corner = the_layout.getNextPiece();
         
             for (int[] block : piece) {
-                the_graphic.setColor(currentColor);
-                the_graphic.fillRoundRect((int) (the_width * PERCENT_33) 
-                                  + block[1] * myScale + myXAdjust, 
-                                  THREE_PIXELS * myScale + block[0] 
-                                  * myScale + myScale / 2 + myYAdjust, 
-                                  myScale, myScale, (int) (myScale * PERCENT_25), 
-                                  (int) (myScale * PERCENT_25));  
-                the_graphic.setColor(Color.BLACK);
-                the_graphic.drawRoundRect((int) (the_width * PERCENT_33) 
-                                  + block[1] * myScale + myXAdjust, 
-                                  THREE_PIXELS * myScale + block[0] 
-                                  * myScale + myScale / 2 + myYAdjust, 
-                                  myScale, myScale, (int) (myScale * PERCENT_25), 
-                                  (int) (myScale * PERCENT_25));
+                SpriteCache.drawLayer(the_graphic, sprite, corner.x + block[1] * cell 
+                                      + the_shown.myXAdjust + SpriteCache.OFFSET, corner.y 
+                                      + block[0] * cell + the_shown.myYAdjust
+                                      + SpriteCache.OFFSET, 
+                                      cell + 2, cell + 2);
             }
         }
     }
@@ -524,51 +457,130 @@ public class StatsPanel extends JPanel implements Observer {
      * Draws piece types and their count on score panel.
      * 
      * @param the_graphic the graphics object to draw on
-     * @param the_width the current width of panel
-     * @param the_height the current height of panel
-     */
-    private void drawPieceCount(final Graphics2D the_graphic, final int the_width, 
-                                final int the_height) {
-        final Piece[] pieces = {new TPiece((int) (the_width * PERCENT_20), 
-                                           (int) (the_height * PERCENT_60)), 
-                                new SPiece((int) (the_width * PERCENT_57), 
-                                           (int) (the_height * PERCENT_60)), 
-                                new ZPiece((int) (the_width * PERCENT_20), 
-                                           (int) (the_height * PERCENT_70)), 
-                                new OPiece((int) (the_width * PERCENT_57), 
-                                           (int) (the_height * PERCENT_70)), 
-                                new JPiece((int) (the_width * PERCENT_20), 
-                                           (int) (the_height * PERCENT_80)), 
-                                new LPiece((int) (the_width * PERCENT_57),
-                                           (int) (the_height * PERCENT_80)), 
-                                new IPiece((int) (the_width * PERCENT_40), 
-                                           (int) (the_height * PERCENT_87))};
-        for (int i = 0; i < pieces.length; i++) {
-            pieces[i].rotate();
-            final int[][] piecePosition = ((AbstractPiece) pieces[i]).getRotation();
-            final Color pieceColor = ((AbstractPiece) pieces[i]).getBlock().getColor();
-            for (int[] block : piecePosition) {
-                the_graphic.setColor(pieceColor);
-                the_graphic.fillRoundRect(pieces[i].getX() + block[1] * (myScale / 2), 
-                                  pieces[i].getY() + block[0] * (myScale / 2), 
-                                  myScale / 2, myScale / 2, (int) (myScale * PERCENT_12), 
-                                  (int) (myScale * PERCENT_12));  
-                the_graphic.setColor(Color.BLACK);
-                the_graphic.drawRoundRect(pieces[i].getX() + block[1] * (myScale / 2), 
-                                  pieces[i].getY() + block[0] * (myScale / 2), 
-                                  myScale / 2, myScale / 2, (int) (myScale * PERCENT_12), 
-                                  (int) (myScale * PERCENT_12));
+     * @param the_layout the layout to draw
+     * @param the_shown the stats to draw
+     */
+    private void drawPieceCount(final Graphics2D the_graphic, final StatsLayout the_layout,
+                                final Shown the_shown) {
+        final int cell = the_layout.getCountCell();
+        if (myCountSprites == null) {
+            myCountSprites = mySpriteCache.getSprites(cell, the_layout.getCountRounding(), 
+                                                      false, the_layout.getDeviceScale());
+        }
+        for (int i = 0; i < COUNT_SHAPES.length; i++) {
+            final Point corner = the_layout.getCountPiece(i);
+            final BufferedImage sprite = 
+                    myCountSprites[COUNT_PIECES[i].getBlock().ordinal()];
+            for (int[] block : COUNT_SHAPES[i]) {
+                SpriteCache.drawLayer(the_graphic, sprite, corner.x + block[1] * cell 
+                                      + SpriteCache.OFFSET, corner.y + block[0] * cell 
+                                      + SpriteCache.OFFSET, cell + 2, cell + 2);
             }
             the_graphic.setColor(Color.WHITE);
-            if (pieces[i] instanceof IPiece) {
-                the_graphic.drawString(PIECE_MULT_SYMBOL + PIECES_COUNT[i], 
-                               pieces[i].getX() + THREE_PIXELS * myScale, 
-                               pieces[i].getY() + myScale + TEN_PIXELS);
+            myCountLabels[i].setValue(the_shown.myCounts[i]);
+            myCountLabels[i].draw(the_graphic, the_layout.getCountText(i).x, 
+                                  the_layout.getCountText(i).y);
+        }
+    }
+    
+    /**
+     * The stats of a game as shown at one instant, taken on the simulation
+     * thread and never changed after, so the EDT always paints one whole
+     * update.
+     * 
+     * @author Jesse Bostic
+     * @version Autumn 2013
+     */
+    private static final class Shown {
+        
+        /**
+         * The next piece, or null before a game.
+         */
+        private final Piece myPiece;
+        
+        /**
+         * The block coordinates of the next piece, or null before a game.
+         */
+        private final int[][] myShape;
+        
+        /**
+         * The block type of the next piece, or null before a game.
+         */
+        private final Block myBlock;
+        
+        /**
+         * Pixel x-coordinate shift adjustment for next piece display.
+         */
+        private final int myXAdjust;
+        
+        /**
+         * Pixel y-coordinate shift adjustment for next piece display.
+         */
+        private final int myYAdjust;
+        
+        /**
+         * The number of lines cleared.
+         */
+        private final int myLines;
+        
+        /**
+         * The number of pieces placed.
+         */
+        private final int myPieces;
+        
+        /**
+         * The points scored.
+         */
+        private final int myScore;
+        
+        /**
+         * The count of each type of piece placed. (T,S,Z,O,J,L,I)
+         */
+        private final int[] myCounts = new int[NUMBER_OF_PIECE_TYPES];
+        
+        /**
+         * Takes the stats shown for a game.
+         * 
+         * @param the_piece the next piece, or null before a game
+         * @param the_stats the statistics of the game
+         */
+        private Shown(final Piece the_piece, final GameStats the_stats) {
+            myPiece = the_piece;
+            if (the_piece == null) {
+                myShape = null;
+                myBlock = null;
             } else {
-                the_graphic.drawString(PIECE_MULT_SYMBOL + PIECES_COUNT[i], 
-                               pieces[i].getX() + 2 * myScale, 
-                               pieces[i].getY() + myScale);
+                myShape = ((AbstractPiece) the_piece).getRotation();
+                myBlock = ((AbstractPiece) the_piece).getBlock();
             }
+            if (the_piece instanceof IPiece) {
+                myXAdjust = -TEN_PIXELS;
+                myYAdjust = 0;
+            } else if (the_piece instanceof OPiece) {
+                myXAdjust = 0;
+                myYAdjust = -FIVE_PIXELS;
+            } else {
+                myXAdjust = 0;
+                myYAdjust = FIVE_PIXELS;
+            }
+            myLines = the_stats.getLines();
+            myPieces = the_stats.getPieces();
+            myScore = the_stats.getScore();
+            for (int i = 0; i < myCounts.length; i++) {
+                myCounts[i] = the_stats.getPieceCount(COUNT_PIECES[i].getBlock());
+            }
+        }
+        
+        /**
+         * Query as to whether these are the stats of a game at some instant.
+         * 
+         * @param the_piece the game's next piece
+         * @param the_stats the game's statistics
+         * @return true if nothing shown differs
+         */
+        private boolean isShowing(final Piece the_piece, final GameStats the_stats) {
+            return the_piece == myPiece && the_stats.getPieces() == myPieces
+                   && the_stats.getLines() == myLines && the_stats.getScore() == myScore;
         }
     }
 
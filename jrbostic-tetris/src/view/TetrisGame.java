@@ -5,19 +5,28 @@
 package view;
 
 import actions.SetControls;
+import engine.Replay;
+import engine.SimulationLoop;
+import scores.GameResult;
+import scores.ScoreStore;
+import tools.AssetManager;
 
 import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.awt.GridLayout;
-import java.awt.Image;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Observable;
 
-import javax.swing.ImageIcon;
 import javax.swing.JCheckBox;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
@@ -27,6 +36,7 @@ import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 import javax.swing.SpringLayout;
+import javax.swing.Timer;
 
 /**
  * Class for setting up the Tetris game frame and menu functionality.
@@ -37,9 +47,12 @@ import javax.swing.SpringLayout;
 public class TetrisGame extends Observable {
     
     /**
-     * Represents the desired block dimension for tetris board.
+     * Represents the desired block dimension for tetris board, unless set
+     * with -Dtetris.columns and -Dtetris.rows for a large board.
      */
-    private static final int[] GAME_DIMENSIONS = {10, 20};
+    private static final int[] GAME_DIMENSIONS = 
+        {Integer.getInteger("tetris.columns", GamePanel.STANDARD_WIDTH), 
+         Integer.getInteger("tetris.rows", GamePanel.STANDARD_HEIGHT)};
     
     /**
      * Represents the height and width of frame icon.
@@ -61,6 +74,16 @@ public class TetrisGame extends Observable {
      */
     private static final int[] INTRO_TEXTAREA_DIMENSION = {10, 18};
     
+    /**
+     * The quiet time after the last resize event before panels are laid out, in ms.
+     */
+    private static final int RESIZE_DELAY = 100;
+    
+    /**
+     * The number of scores listed in each part of the high scores.
+     */
+    private static final int HIGH_SCORE_COUNT = 10;
+    
     /**
      * The frame in which the game is displayed.
      */
@@ -76,23 +99,102 @@ public class TetrisGame extends Observable {
      */
     private final StatsPanel myStatsPanel;
     
+    /**
+     * The cache of pre-rendered blocks shared by both panels.
+     */
+    private final SpriteCache mySpriteCache;
+    
+    /**
+     * The store of finished games, null if the score log cannot be opened.
+     */
+    private final ScoreStore myScores;
+    
+    /**
+     * The timer laying panels out once a resize settles.
+     */
+    private final Timer myResizeTimer;
+    
+    /**
+     * The latest resize event, passed on once the resize settles.
+     */
+    private ComponentEvent myLastResize;
+    
     /**
      * No-arg constructor for a tetris game object.
      */
     public TetrisGame() {
         myFrame = new JFrame();
-        myGamePanel = new GamePanel(GAME_DIMENSIONS[0], GAME_DIMENSIONS[1]);
-        myStatsPanel = new StatsPanel();
+        mySpriteCache = new SpriteCache();
+        myGamePanel = new GamePanel(GAME_DIMENSIONS[0], GAME_DIMENSIONS[1], mySpriteCache);
+        myStatsPanel = new StatsPanel(mySpriteCache);
+        myScores = openScores();
+        myGamePanel.setScoreStore(myScores);
+        myResizeTimer = new Timer(RESIZE_DELAY, new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent the_event) {
+                mySpriteCache.invalidate();
+                setChanged();
+                notifyObservers(myLastResize);
+            }
+        });
+        myResizeTimer.setRepeats(false);
         addObserver(myGamePanel);
         addObserver(myStatsPanel);
         myGamePanel.addGameObserver(myStatsPanel);
+        myGamePanel.setAutoShift(Integer.getInteger("tetris.das", 
+                                                    SimulationLoop.DEFAULT_SHIFT_DELAY), 
+                                 Integer.getInteger("tetris.arr", 
+                                                    SimulationLoop.DEFAULT_SHIFT_RATE));
+        myGamePanel.setLockDelay(Integer.getInteger("tetris.lock", 
+                                                    SimulationLoop.DEFAULT_LOCK_DELAY));
         
         setupFrame();
+        Startup.introShowing(GAME_DIMENSIONS[0], GAME_DIMENSIONS[1]);
         orientUser();
+        Startup.introClosed();
         
         myGamePanel.start();
     }
     
+    /**
+     * Starts loading the images on background threads, so the frame and the
+     * intro dialog need not wait for them; call before constructing a game.
+     */
+    static void preload() {
+        AssetManager.preload(AssetManager.LOGO, FRAME_ICON_DIMENSIONS);
+        AssetManager.preload(AssetManager.ICON, INTRO_ICON_DIMENSIONS);
+        AssetManager.preload(AssetManager.BACKGROUND);
+    }
+    
+    /**
+     * Opens the score log in the working directory, to be flushed to the disk
+     * as the game exits.
+     * 
+     * @return the store, null if the log cannot be opened
+     */
+    private static ScoreStore openScores() {
+        ScoreStore result = null;
+        try {
+            result = new ScoreStore(new File(ScoreStore.DEFAULT_FILE));
+        } catch (final IOException e) {
+            System.err.println("scores will not be kept: " + e.getMessage());
+        }
+        final ScoreStore scores = result;
+        if (scores != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        scores.close();
+                    } catch (final IOException e) {
+                        System.err.println("cannot write scores: " + e.getMessage());
+                    }
+                }
+            }, "score log close"));
+        }
+        return result;
+    }
+    
     /**
      * Pops up a message to orient user as to game functionality.
      */
@@ -106,11 +208,10 @@ public class TetrisGame extends Observable {
      * @param the_title_string string to assign to title bar
      */
     private void orientUser(final String the_title_string) {
-        Image image = new ImageIcon("images/tetris.png").getImage();  
-        image = image.getScaledInstance(FRAME_ICON_DIMENSIONS, FRAME_ICON_DIMENSIONS, 
-                                        java.awt.Image.SCALE_SMOOTH);
         JOptionPane.showMessageDialog(myFrame, getStartInfoPanel(), the_title_string, 
-                                      JOptionPane.PLAIN_MESSAGE, new ImageIcon(image));  
+                                      JOptionPane.PLAIN_MESSAGE, 
+                                      AssetManager.getIcon(AssetManager.LOGO, 
+                                                           FRAME_ICON_DIMENSIONS));  
     }
 
     /**
@@ -122,17 +223,16 @@ public class TetrisGame extends Observable {
         myFrame.setTitle("TETRIS");
         
         //setup frame icon
-        Image image = new ImageIcon("images/icon.png").getImage();  
-        image = image.getScaledInstance(INTRO_ICON_DIMENSIONS, INTRO_ICON_DIMENSIONS, 
-                                        java.awt.Image.SCALE_SMOOTH);
-        myFrame.setIconImage(image);
+        myFrame.setIconImage(AssetManager.getScaledImage(AssetManager.ICON, 
+                                                         INTRO_ICON_DIMENSIONS, 
+                                                         INTRO_ICON_DIMENSIONS));
         
-        //set up resize listener
+        //set up resize listener; a drag fires many events, so lay out once it settles
         myFrame.addComponentListener(new ComponentAdapter() {
             @Override
             public void componentResized(final ComponentEvent the_event) {
-                setChanged();
-                notifyObservers(the_event);
+                myLastResize = the_event;
+                myResizeTimer.restart();
             }
         });
         myFrame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -257,6 +357,27 @@ public class TetrisGame extends Observable {
             }
         });
         
+        //save replay option setup
+        final JMenuItem saveReplayOption = new JMenuItem("Save Replay...");
+        saveReplayOption.setMnemonic('s');
+        saveReplayOption.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent the_event) {
+                saveReplay();
+            }
+        });
+        
+        //high scores option setup
+        final JMenuItem highScoresOption = new JMenuItem("High Scores...");
+        highScoresOption.setMnemonic('h');
+        highScoresOption.setEnabled(myScores != null);
+        highScoresOption.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent the_event) {
+                showHighScores();
+            }
+        });
+        
         //exit option setup
         final JMenuItem exitOption = new JMenuItem("Exit");
         exitOption.setMnemonic('e');
@@ -270,12 +391,56 @@ public class TetrisGame extends Observable {
         
         //add items to file menu
         fileMenu.add(newGameOption);
+        fileMenu.add(saveReplayOption);
+        fileMenu.add(highScoresOption);
         fileMenu.addSeparator();
         fileMenu.add(exitOption);
         
         the_menuBar.add(fileMenu);
     }
     
+    /**
+     * Asks for a file and saves a replay of the current game to it.
+     */
+    private void saveReplay() {
+        final Replay replay = myGamePanel.getReplay();
+        final JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File("tetris.replay"));
+        if (chooser.showSaveDialog(myFrame) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try (OutputStream out = new BufferedOutputStream(
+                new FileOutputStream(chooser.getSelectedFile()))) {
+            replay.write(out);
+        } catch (final IOException e) {
+            JOptionPane.showMessageDialog(myFrame, "The replay could not be saved: " 
+                                          + e.getMessage(), "Save Replay", 
+                                          JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    /**
+     * Shows the best scores kept and the player's latest games.
+     */
+    private void showHighScores() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("HIGH SCORES:\n");
+        int rank = 1;
+        for (GameResult result : myScores.getTop(myGamePanel.getScoreMode(), HIGH_SCORE_COUNT)) {
+            builder.append(rank++).append(". ").append(result).append('\n');
+        }
+        builder.append("\nYOUR LATEST GAMES:\n");
+        for (GameResult result : myScores.getHistory(GamePanel.PLAYER, HIGH_SCORE_COUNT)) {
+            builder.append(result).append('\n');
+        }
+        final JTextArea textArea = new JTextArea(builder.toString());
+        textArea.setEditable(false);
+        JOptionPane.showMessageDialog(myFrame, textArea, "High Scores", 
+                                      JOptionPane.PLAIN_MESSAGE, 
+                                      AssetManager.getIcon(AssetManager.LOGO, 
+                                                           FRAME_ICON_DIMENSIONS));
+    }
+    
     /**
     * Sets up the help menu and adds it to menu bar.
     * 
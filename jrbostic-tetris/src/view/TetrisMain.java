@@ -27,6 +27,8 @@ public final class TetrisMain {
      * @param the_args standard accepted argument array for main
      */
     public static void main(final String[] the_args) {
+        Startup.mainEntered();
+        TetrisGame.preload();
         EventQueue.invokeLater(new Runnable() {
             @Override
             public void run() {
@@ -0,0 +1,93 @@
+/*
+ * Tetris - TCSS305 - Autumn 2013
+ */
+
+package view;
+
+import java.awt.Graphics2D;
+
+/**
+ * A fixed caption followed by a number, kept in a reusable character buffer
+ * so that drawing a changing value such as a score allocates nothing.
+ *
+ * @author Jesse Bostic
+ * @version Autumn 2013
+ */
+final class TextLabel {
+
+    /**
+     * The most digits a non-negative int can have.
+     */
+    private static final int MAX_DIGITS = 10;
+
+    /**
+     * The radix of the displayed number.
+     */
+    private static final int RADIX = 10;
+
+    /**
+     * The caption followed by room for the digits.
+     */
+    private final char[] myChars;
+
+    /**
+     * The length of the caption.
+     */
+    private final int myCaptionLength;
+
+    /**
+     * The length of the caption and the current digits.
+     */
+    private int myLength;
+
+    /**
+     * The number currently held.
+     */
+    private int myValue;
+
+    /**
+     * Constructs a label showing zero.
+     *
+     * @param the_caption the text before the number
+     */
+    TextLabel(final String the_caption) {
+        myCaptionLength = the_caption.length();
+        myChars = new char[myCaptionLength + MAX_DIGITS];
+        the_caption.getChars(0, myCaptionLength, myChars, 0);
+        myValue = -1;
+        setValue(0);
+    }
+
+    /**
+     * Sets the number shown after the caption.
+     *
+     * @param the_value the number, shown as zero if negative
+     */
+    void setValue(final int the_value) {
+        final int value = Math.max(0, the_value);
+        if (value != myValue) {
+            myValue = value;
+            int digits = 1;
+            for (int rest = value / RADIX; rest > 0; rest /= RADIX) {
+                digits++;
+            }
+            myLength = myCaptionLength + digits;
+            int rest = value;
+            for (int i = myLength - 1; i >= myCaptionLength; i--) {
+                myChars[i] = (char) ('0' + rest % RADIX);
+                rest /= RADIX;
+            }
+        }
+    }
+
+    /**
+     * Draws the caption and number with the graphics' current font and color.
+     *
+     * @param the_graphic the graphics2D object to be drawn on
+     * @param the_x the x-coordinate of the baseline's start
+     * @param the_y the y-coordinate of the baseline
+     */
+    void draw(final Graphics2D the_graphic, final int the_x, final int the_y) {
+        the_graphic.drawChars(myChars, 0, myLength, the_x, the_y);
+    }
+}